@@ -32,7 +32,20 @@ public final class Functions {
      */
     public static DoubleUnaryOperator sampled(float[] samples, double xMax) {
         Preconditions.checkArgument(samples.length >= 2 && xMax > 0);
-        return new Sampled(samples, xMax);
+        return new Sampled(samples, xMax, true);
+    }
+
+    /**
+     * Returns a function mapping a set of values between 0 and a maximum value, without
+     * copying them : the array must not be modified afterwards
+     *
+     * @param samples set of values
+     * @param xMax    maximum value of x
+     * @return a function
+     */
+    public static DoubleUnaryOperator sampledView(float[] samples, double xMax) {
+        Preconditions.checkArgument(samples.length >= 2 && xMax > 0);
+        return new Sampled(samples, xMax, false);
     }
 
     private static final class Constant implements DoubleUnaryOperator {
@@ -59,9 +72,13 @@ public final class Functions {
         private final double xMax;
         private final int NB_OF_STEPS;
 
-        private Sampled(float[] samples, double xMax) {
-            this.samples = new float[samples.length];
-            System.arraycopy(samples, 0, this.samples, 0, samples.length);
+        private Sampled(float[] samples, double xMax, boolean copy) {
+            if (copy) {
+                this.samples = new float[samples.length];
+                System.arraycopy(samples, 0, this.samples, 0, samples.length);
+            } else {
+                this.samples = samples;
+            }
             this.xMax = xMax;
             NB_OF_STEPS = samples.length - 1;
         }
@@ -80,7 +97,8 @@ public final class Functions {
                 return samples[NB_OF_STEPS];
             } else {
                 double step = xMax / NB_OF_STEPS;
-                int i = (int) (x / step);
+                // x / step may be rounded up to the number of steps just before xMax
+                int i = Math.min((int) (x / step), NB_OF_STEPS - 1);
                 double newX = (x / step) - i;
                 return Math2.interpolate(
                         samples[i],
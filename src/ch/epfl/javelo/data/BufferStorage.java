@@ -0,0 +1,46 @@
+package ch.epfl.javelo.data;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Represents a storage reading a single buffer, and thus limited to 2 GB.
+ *
+ * @param buffer the buffer
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+record BufferStorage(ByteBuffer buffer) implements Storage {
+
+    @Override
+    public long byteSize() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public short getShort(long offset) {
+        return buffer.getShort(Math.toIntExact(offset));
+    }
+
+    @Override
+    public int getInt(long offset) {
+        return buffer.getInt(Math.toIntExact(offset));
+    }
+
+    @Override
+    public long getLong(long offset) {
+        return buffer.getLong(Math.toIntExact(offset));
+    }
+
+    @Override
+    public Storage load() {
+        if (buffer instanceof MappedByteBuffer mapped) mapped.load();
+        return this;
+    }
+
+    @Override
+    public Storage copyToHeap() {
+        return new BufferStorage(ByteBuffer.allocate(buffer.capacity())
+                .put(buffer.duplicate().clear())
+                .flip());
+    }
+}
@@ -0,0 +1,133 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Represents a storage made of consecutive mapped chunks of a file, so that the file can
+ * be larger than a single buffer.
+ * <p>
+ * Each chunk also maps the first bytes of the next one, so that a value starting in a
+ * chunk (even one which is not aligned, as in the 10-byte edges) is always read from
+ * that chunk alone. The values are read through {@link VarHandle} views of the chunks.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+final class ChunkedStorage implements Storage {
+    private final ByteBuffer[] chunks;
+    private final int chunkShift;
+    private final long chunkMask;
+    private final long byteSize;
+
+    /**
+     * Base 2 logarithm of the size of the chunks (1 GB).
+     */
+    static final int CHUNK_SHIFT = 30;
+    // Size of the largest value, mapped twice at the end of each chunk
+    private static final int OVERLAP = Long.BYTES;
+
+    private static final VarHandle SHORT =
+            MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private ChunkedStorage(ByteBuffer[] chunks, int chunkShift, long byteSize) {
+        this.chunks = chunks;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.byteSize = byteSize;
+    }
+
+    /**
+     * Maps the given file in chunks of the given size.
+     *
+     * @param path       the path of the file
+     * @param chunkShift the base 2 logarithm of the size of the chunks
+     * @return the storage
+     * @throws IOException if there is a problem with the file
+     */
+    static ChunkedStorage map(Path path, int chunkShift) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return map(channel, 0, channel.size(), chunkShift);
+        }
+    }
+
+    /**
+     * Maps the given region of a file in chunks of the given size (the mapping remains valid
+     * once the channel is closed).
+     *
+     * @param channel    the channel of the file
+     * @param position   the position of the region in the file
+     * @param size       the size of the region
+     * @param chunkShift the base 2 logarithm of the size of the chunks
+     * @return the storage
+     * @throws IOException if there is a problem with the file
+     */
+    static ChunkedStorage map(FileChannel channel, long position, long size, int chunkShift)
+            throws IOException {
+        Preconditions.checkArgument(chunkShift >= 3 && chunkShift <= CHUNK_SHIFT);
+        Preconditions.checkArgument(position >= 0 && size >= 0);
+        long chunkSize = 1L << chunkShift;
+        int chunkCount = (int) Math.max(1, (size + chunkSize - 1) >>> chunkShift);
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            long start = (long) i << chunkShift;
+            long length = Math.min(chunkSize + OVERLAP, size - start);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, Math.max(0, length));
+        }
+        return new ChunkedStorage(chunks, chunkShift, size);
+    }
+
+    @Override
+    public long byteSize() {
+        return byteSize;
+    }
+
+    @Override
+    public short getShort(long offset) {
+        return (short) SHORT.get(chunk(offset), (int) (offset & chunkMask));
+    }
+
+    @Override
+    public int getInt(long offset) {
+        return (int) INT.get(chunk(offset), (int) (offset & chunkMask));
+    }
+
+    @Override
+    public long getLong(long offset) {
+        return (long) LONG.get(chunk(offset), (int) (offset & chunkMask));
+    }
+
+    @Override
+    public Storage load() {
+        Arrays.stream(chunks).parallel().forEach(chunk -> {
+            if (chunk instanceof MappedByteBuffer mapped) mapped.load();
+        });
+        return this;
+    }
+
+    @Override
+    public Storage copyToHeap() {
+        // The copies keep the overlap of the chunks
+        ByteBuffer[] copies = new ByteBuffer[chunks.length];
+        Arrays.parallelSetAll(copies, i -> ByteBuffer.allocate(chunks[i].capacity())
+                .put(chunks[i].duplicate().clear())
+                .flip());
+        return new ChunkedStorage(copies, chunkShift, byteSize);
+    }
+
+    private ByteBuffer chunk(long offset) {
+        return chunks[(int) (offset >>> chunkShift)];
+    }
+}
@@ -0,0 +1,75 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Q28_4;
+
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Represents the edges of Javelo's graph stored column by column, each attribute of the
+ * edges being in its own buffer so that a search only reads the columns it needs.
+ *
+ * @param targetNodeIds     the index of the target node of each edge (bitwise complemented if inverted)
+ * @param lengths           the length of each edge (unsigned, in Q28.4)
+ * @param elevationGains    the elevation gain of each edge (unsigned, in Q28.4)
+ * @param attributesIndexes the index of the attribute set of each edge (unsigned)
+ * @param profileIds        the profile identity of each edge (type and first sample)
+ * @param elevations        the elevation samples of all the profiles
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public record ColumnarEdges(IntBuffer targetNodeIds, ShortBuffer lengths,
+                            ShortBuffer elevationGains, ShortBuffer attributesIndexes,
+                            IntBuffer profileIds, ShortBuffer elevations) implements EdgeStore {
+    private static final int PROFILE_TYPE_START = 30;
+    private static final int PROFILE_TYPE_LENGTH = 2;
+
+    @Override
+    public int count() {
+        return targetNodeIds.capacity();
+    }
+
+    @Override
+    public boolean isInverted(int edgeId) {
+        return targetNodeIds.get(edgeId) < 0;
+    }
+
+    @Override
+    public int targetNodeId(int edgeId) {
+        int target = targetNodeIds.get(edgeId);
+        return target < 0 ? ~target : target;
+    }
+
+    @Override
+    public double length(int edgeId) {
+        return Q28_4.asDouble(Short.toUnsignedInt(lengths.get(edgeId)));
+    }
+
+    @Override
+    public double elevationGain(int edgeId) {
+        return Q28_4.asDouble(Short.toUnsignedInt(elevationGains.get(edgeId)));
+    }
+
+    @Override
+    public boolean hasProfile(int edgeId) {
+        return Bits.extractUnsigned(profileIds.get(edgeId),
+                PROFILE_TYPE_START,
+                PROFILE_TYPE_LENGTH) != 0;
+    }
+
+    @Override
+    public int profileSampleCount(int edgeId) {
+        return GraphEdges.sampleCount(profileIds.get(edgeId), lengths.get(edgeId));
+    }
+
+    @Override
+    public int profileSamples(int edgeId, float[] destination, int offset) {
+        return GraphEdges.profileSamples(profileIds.get(edgeId), lengths.get(edgeId),
+                isInverted(edgeId), elevations::get, destination, offset);
+    }
+
+    @Override
+    public int attributesIndex(int edgeId) {
+        return Short.toUnsignedInt(attributesIndexes.get(edgeId));
+    }
+}
@@ -0,0 +1,48 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+
+import java.nio.IntBuffer;
+
+/**
+ * Represents the nodes of Javelo's graph stored column by column : the index of the
+ * first edge of each node (followed by the total number of edges, so that the edges of a
+ * node end where the ones of the next node start), and the coordinates of each node.
+ *
+ * @param firstEdgeIds the index of the first edge coming out of each node, then the number of edges
+ * @param coordinates  the east then north coordinate of each node (in Q28.4)
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public record ColumnarNodes(IntBuffer firstEdgeIds, IntBuffer coordinates) implements NodeStore {
+    private static final int OFFSET_E = 0;
+    private static final int OFFSET_N = OFFSET_E + 1;
+    private static final int COORDINATES_INTS = OFFSET_N + 1;
+
+    @Override
+    public int count() {
+        return firstEdgeIds.capacity() - 1;
+    }
+
+    @Override
+    public double nodeE(int nodeId) {
+        return Q28_4.asDouble(coordinates.get(nodeId * COORDINATES_INTS + OFFSET_E));
+    }
+
+    @Override
+    public double nodeN(int nodeId) {
+        return Q28_4.asDouble(coordinates.get(nodeId * COORDINATES_INTS + OFFSET_N));
+    }
+
+    @Override
+    public int outDegree(int nodeId) {
+        return firstEdgeIds.get(nodeId + 1) - firstEdgeIds.get(nodeId);
+    }
+
+    @Override
+    public int edgeId(int nodeId, int edgeIndex) {
+        Preconditions.checkArgument(edgeIndex >= 0
+                && edgeIndex < outDegree(nodeId));
+        return firstEdgeIds.get(nodeId) + edgeIndex;
+    }
+}
@@ -0,0 +1,182 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.PointCh;
+
+/**
+ * Represents a spatial index of the edges of Javelo's graph : a grid of square cells, each
+ * of them listing (in compressed sparse row layout) the edges whose bounding box intersects
+ * it. Each road is only listed once : of an edge and its opposite edge (going between the
+ * same nodes in the other direction), only the one leaving the node of smaller index is.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class EdgeIndex {
+    private final NodeStore nodes;
+    private final EdgeStore edges;
+    private final double minE;
+    private final double minN;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStarts;
+    // Pairs of (edge index, source node index)
+    private final int[] entries;
+
+    private static final double CELL_SIZE = 256;
+    private static final int ENTRY_INTS = 2;
+
+    private EdgeIndex(NodeStore nodes, EdgeStore edges, double minE, double minN,
+                      int columns, int rows, int[] cellStarts, int[] entries) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.minE = minE;
+        this.minN = minN;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellStarts = cellStarts;
+        this.entries = entries;
+    }
+
+    /**
+     * Builds the index of the given edges.
+     *
+     * @param nodes the nodes of the graph
+     * @param edges the edges of the graph
+     * @return the index
+     */
+    public static EdgeIndex of(NodeStore nodes, EdgeStore edges) {
+        double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+        double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int nodeId = 0; nodeId < nodes.count(); nodeId++) {
+            minE = Math.min(minE, nodes.nodeE(nodeId));
+            minN = Math.min(minN, nodes.nodeN(nodeId));
+            maxE = Math.max(maxE, nodes.nodeE(nodeId));
+            maxN = Math.max(maxN, nodes.nodeN(nodeId));
+        }
+        if (nodes.count() == 0) minE = minN = maxE = maxN = 0;
+        int columns = (int) ((maxE - minE) / CELL_SIZE) + 1;
+        int rows = (int) ((maxN - minN) / CELL_SIZE) + 1;
+        int[] cellStarts = new int[columns * rows + 1];
+
+        // First pass : number of edges per cell, second pass : edges of each cell
+        int entryCount = 0;
+        int[] next = null;
+        int[] entries = null;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int nodeId = 0; nodeId < nodes.count(); nodeId++) {
+                for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                    int edgeId = nodes.edgeId(nodeId, i);
+                    int targetNodeId = edges.targetNodeId(edgeId);
+                    if (targetNodeId < nodeId && hasEdge(nodes, edges, targetNodeId, nodeId)) continue;
+                    int column0 = (int) ((Math.min(nodes.nodeE(nodeId), nodes.nodeE(targetNodeId)) - minE) / CELL_SIZE);
+                    int column1 = (int) ((Math.max(nodes.nodeE(nodeId), nodes.nodeE(targetNodeId)) - minE) / CELL_SIZE);
+                    int row0 = (int) ((Math.min(nodes.nodeN(nodeId), nodes.nodeN(targetNodeId)) - minN) / CELL_SIZE);
+                    int row1 = (int) ((Math.max(nodes.nodeN(nodeId), nodes.nodeN(targetNodeId)) - minN) / CELL_SIZE);
+                    for (int row = row0; row <= row1; row++) {
+                        for (int column = column0; column <= column1; column++) {
+                            int cell = row * columns + column;
+                            if (pass == 0) {
+                                cellStarts[cell + 1]++;
+                            } else {
+                                int entry = next[cell]++;
+                                entries[entry * ENTRY_INTS] = edgeId;
+                                entries[entry * ENTRY_INTS + 1] = nodeId;
+                            }
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int cell = 0; cell < columns * rows; cell++) cellStarts[cell + 1] += cellStarts[cell];
+                entryCount = cellStarts[columns * rows];
+                next = cellStarts.clone();
+                entries = new int[entryCount * ENTRY_INTS];
+            }
+        }
+        return new EdgeIndex(nodes, edges, minE, minN, columns, rows, cellStarts, entries);
+    }
+
+    private static boolean hasEdge(NodeStore nodes, EdgeStore edges, int fromNodeId, int toNodeId) {
+        for (int i = 0; i < nodes.outDegree(fromNodeId); i++) {
+            if (edges.targetNodeId(nodes.edgeId(fromNodeId, i)) == toNodeId) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the point of the edges closest to a given point. If several edges are at the
+     * same distance, the one with the smallest index is chosen.
+     *
+     * @param point          the point in swiss coordinates
+     * @param searchDistance the maximum search distance around the point
+     * @return the closest point, or {@link EdgePoint#NONE} if no edge is close enough
+     */
+    public EdgePoint edgePointClosestTo(PointCh point, double searchDistance) {
+        double e = point.e();
+        double n = point.n();
+        int column0 = Math.max(0, (int) Math.floor((e - searchDistance - minE) / CELL_SIZE));
+        int column1 = Math.min(columns - 1, (int) Math.floor((e + searchDistance - minE) / CELL_SIZE));
+        int row0 = Math.max(0, (int) Math.floor((n - searchDistance - minN) / CELL_SIZE));
+        int row1 = Math.min(rows - 1, (int) Math.floor((n + searchDistance - minN) / CELL_SIZE));
+
+        int bestEdgeId = -1;
+        int bestSourceNodeId = -1;
+        double bestSquaredDistance = searchDistance * searchDistance;
+        double bestFraction = 0;
+        for (int row = row0; row <= row1; row++) {
+            for (int column = column0; column <= column1; column++) {
+                int cell = row * columns + column;
+                for (int entry = cellStarts[cell]; entry < cellStarts[cell + 1]; entry++) {
+                    int edgeId = entries[entry * ENTRY_INTS];
+                    int sourceNodeId = entries[entry * ENTRY_INTS + 1];
+                    double aE = nodes.nodeE(sourceNodeId);
+                    double aN = nodes.nodeN(sourceNodeId);
+                    int targetNodeId = edges.targetNodeId(edgeId);
+                    double abE = nodes.nodeE(targetNodeId) - aE;
+                    double abN = nodes.nodeN(targetNodeId) - aN;
+                    double fraction = fraction(abE, abN, e - aE, n - aN);
+                    double squaredDistance = Math2.squaredNorm(
+                            e - (aE + fraction * abE), n - (aN + fraction * abN));
+                    if (squaredDistance < bestSquaredDistance
+                            || squaredDistance == bestSquaredDistance
+                            && (bestEdgeId == -1 || edgeId < bestEdgeId)) {
+                        bestEdgeId = edgeId;
+                        bestSourceNodeId = sourceNodeId;
+                        bestSquaredDistance = squaredDistance;
+                        bestFraction = fraction;
+                    }
+                }
+            }
+        }
+        if (bestEdgeId == -1) return EdgePoint.NONE;
+
+        double aE = nodes.nodeE(bestSourceNodeId);
+        double aN = nodes.nodeN(bestSourceNodeId);
+        int targetNodeId = edges.targetNodeId(bestEdgeId);
+        // At the extremities of the edge, the point is exactly the one of the node, so that
+        // the points of two edges meeting at that node are equal
+        PointCh closest;
+        if (bestFraction == 0)
+            closest = new PointCh(aE, aN);
+        else if (bestFraction == 1)
+            closest = new PointCh(nodes.nodeE(targetNodeId), nodes.nodeN(targetNodeId));
+        else
+            closest = new PointCh(
+                    Math2.interpolate(aE, nodes.nodeE(targetNodeId), bestFraction),
+                    Math2.interpolate(aN, nodes.nodeN(targetNodeId), bestFraction));
+        return new EdgePoint(bestEdgeId,
+                bestFraction * edges.length(bestEdgeId),
+                closest,
+                Math.sqrt(bestSquaredDistance));
+    }
+
+    /**
+     * Returns the fraction (between 0 and 1) of the segment of the given vector at which the
+     * projection of the given point (relative to the start of the segment) lies.
+     */
+    private static double fraction(double abE, double abN, double apE, double apN) {
+        double squaredLength = Math2.squaredNorm(abE, abN);
+        if (squaredLength == 0) return 0;
+        return Math2.clamp(0, Math2.dotProduct(apE, apN, abE, abN) / squaredLength, 1);
+    }
+}
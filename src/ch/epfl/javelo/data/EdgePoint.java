@@ -0,0 +1,21 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.projection.PointCh;
+
+/**
+ * Represents the closest point of an edge of the graph to a reference point.
+ *
+ * @param edgeId              the index of the edge
+ * @param position            the position of the point along the edge (between 0 and its length)
+ * @param point               the point in swiss coordinates
+ * @param distanceToReference the distance between the point and the reference point
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public record EdgePoint(int edgeId, double position, PointCh point, double distanceToReference) {
+
+    /**
+     * Represents a non-existent EdgePoint.
+     */
+    public static final EdgePoint NONE =
+            new EdgePoint(-1, Double.NaN, null, Double.POSITIVE_INFINITY);
+}
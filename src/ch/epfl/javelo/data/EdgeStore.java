@@ -0,0 +1,96 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Represents the storage of the edges of Javelo's graph, whatever its layout.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public interface EdgeStore {
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the number of edges
+     */
+    int count();
+
+    /**
+     * Checks if an edge is inverted.
+     *
+     * @param edgeId the index of the edge
+     * @return a boolean : true if the edge is inverted - false otherwise
+     */
+    boolean isInverted(int edgeId);
+
+    /**
+     * Returns the index of the target node of an edge.
+     *
+     * @param edgeId the index of the edge
+     * @return the index of the target node
+     */
+    int targetNodeId(int edgeId);
+
+    /**
+     * Returns the length of an edge.
+     *
+     * @param edgeId the index of the edge
+     * @return the length of the edge
+     */
+    double length(int edgeId);
+
+    /**
+     * Returns the net positive elevation gain of an edge
+     * (Sum of all positive elevation gains between samples).
+     *
+     * @param edgeId the index of the edge
+     * @return the net positive elevation gain
+     */
+    double elevationGain(int edgeId);
+
+    /**
+     * Checks if a given edge has an elevation profile.
+     *
+     * @param edgeId the index of the edge
+     * @return a boolean : true if the index has a profile - false otherwise
+     */
+    boolean hasProfile(int edgeId);
+
+    /**
+     * Returns the number of elevation samples associated to an edge.
+     *
+     * @param edgeId the index of the edge
+     * @return the number of samples, 0 if the edge has no profile
+     */
+    int profileSampleCount(int edgeId);
+
+    /**
+     * Decodes the elevation samples associated to an edge into the given array, which must
+     * have room for {@link #profileSampleCount(int)} samples from the given index.
+     *
+     * @param edgeId      the index of the edge
+     * @param destination the array receiving the samples
+     * @param offset      the index of the array receiving the first sample
+     * @return the number of samples, 0 if the edge has no profile
+     */
+    int profileSamples(int edgeId, float[] destination, int offset);
+
+    /**
+     * Returns the array of elevation samples associated to an edge.
+     *
+     * @param edgeId the index of the edge
+     * @return the array of floats containing the elevation samples
+     */
+    default float[] profileSamples(int edgeId) {
+        float[] samples = new float[profileSampleCount(edgeId)];
+        profileSamples(edgeId, samples, 0);
+        return samples;
+    }
+
+    /**
+     * Returns the index of the attribute set associated to an edge.
+     *
+     * @param edgeId the index of the edge
+     * @return the index of the attribute set
+     */
+    int attributesIndex(int edgeId);
+}
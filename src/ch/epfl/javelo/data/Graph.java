@@ -1,18 +1,24 @@
 package ch.epfl.javelo.data;
 
 import ch.epfl.javelo.Functions;
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 import java.nio.LongBuffer;
-import java.nio.ShortBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 
 /**
  * Represents the JaVelo Graph.
@@ -20,58 +26,285 @@ import java.util.function.DoubleUnaryOperator;
  * @author Edouard Mignan (345875)
  */
 public final class Graph {
-    private final GraphNodes nodes;
-    private final GraphSectors sectors;
-    private final GraphEdges edges;
+    private final NodeStore nodes;
+    private final EdgeStore edges;
     private final List<AttributeSet> attributeSets;
+    // The bits of the attribute sets, indexed like them, to test them without reaching the objects
+    private final long[] attributeBits;
+    private final ProfileCache profiles;
+    private volatile GraphInEdges inEdges;
+    private volatile NodeIndex nodeIndex;
+    private volatile LongBuffer osmIds;
+    private volatile OsmNodeIndex osmNodeIndex;
+    private volatile EdgeIndex edgeIndex;
+    // Fingerprint of the graph, 0 until it is known
+    private volatile long fingerprint;
+
+    // Files of the graph
+    static final String NODES_FILE = "nodes.bin";
+    static final String EDGES_FILE = "edges.bin";
+    static final String PROFILE_IDS_FILE = "profile_ids.bin";
+    static final String ELEVATIONS_FILE = "elevations.bin";
+    static final String SECTORS_FILE = "sectors.bin";
+    static final String ATTRIBUTES_FILE = "attributes.bin";
+    // Column files of the nodes and edges (see GraphConverter)
+    static final String FIRST_EDGE_IDS_FILE = "nodes_first_edge.bin";
+    static final String COORDINATES_FILE = "nodes_coordinates.bin";
+    static final String TARGETS_FILE = "edges_target.bin";
+    static final String LENGTHS_FILE = "edges_length.bin";
+    static final String ELEVATION_GAINS_FILE = "edges_elevation_gain.bin";
+    static final String ATTRIBUTES_INDEXES_FILE = "edges_attributes.bin";
+    // Optional index of the nodes (see NodeIndex)
+    static final String NODE_INDEX_FILE = "nodes_index.bin";
+    // Optional OpenStreetMap identities of the nodes, and their index (see OsmNodeIndex)
+    static final String OSM_IDS_FILE = "nodes_osmid.bin";
+    static final String OSM_IDS_INDEX_FILE = "nodes_osmid_index.bin";
+    private static final List<String> FILES = List.of(
+            NODES_FILE, EDGES_FILE, PROFILE_IDS_FILE, ELEVATIONS_FILE, SECTORS_FILE, ATTRIBUTES_FILE,
+            FIRST_EDGE_IDS_FILE, COORDINATES_FILE, TARGETS_FILE, LENGTHS_FILE, ELEVATION_GAINS_FILE,
+            ATTRIBUTES_INDEXES_FILE, NODE_INDEX_FILE, OSM_IDS_FILE, OSM_IDS_INDEX_FILE);
 
     /**
-     * Creates a graph from nodes, sectors, edges and a list of attribute sets.
+     * Creates a graph from nodes, edges and a list of attribute sets.
+     * The nodes are searched through a {@link NodeIndex} built on first use.
      *
      * @param nodes         the nodes of the graph
-     * @param sectors       the sectors of the graph
      * @param edges         the edges of the graph
      * @param attributeSets the attribute sets of the edges of the graph
      */
-    public Graph(GraphNodes nodes,
-                 GraphSectors sectors,
-                 GraphEdges edges,
+    public Graph(NodeStore nodes,
+                 EdgeStore edges,
                  List<AttributeSet> attributeSets) {
 
         this.nodes = nodes;
-        this.sectors = sectors;
         this.edges = edges;
         this.attributeSets = List.copyOf(attributeSets);
+        this.attributeBits = new long[this.attributeSets.size()];
+        for (int i = 0; i < attributeBits.length; i++) attributeBits[i] = this.attributeSets.get(i).bits();
+        this.profiles = new ProfileCache(edges, ProfileCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a graph from nodes, sectors, edges and a list of attribute sets.
+     *
+     * @param nodes         the nodes of the graph
+     * @param sectors       the sectors of the graph, which are not used
+     * @param edges         the edges of the graph
+     * @param attributeSets the attribute sets of the edges of the graph
+     * @deprecated the nodes are now searched through a {@link NodeIndex} rather than
+     * through the sectors : use {@link #Graph(NodeStore, EdgeStore, List)}
+     */
+    @Deprecated
+    public Graph(NodeStore nodes,
+                 GraphSectors sectors,
+                 EdgeStore edges,
+                 List<AttributeSet> attributeSets) {
+        this(nodes, edges, attributeSets);
     }
 
-    private static ByteBuffer getBuffer(Path basePath) throws IOException {
-        try (FileChannel channel = FileChannel.open(basePath)) {
-            return channel.map(FileChannel.MapMode.READ_ONLY,
-                    0, channel.size()).asReadOnlyBuffer();
+    /**
+     * Represents the way the files of the graph are brought in memory when it is loaded.
+     */
+    public enum Preload {
+        /**
+         * The files are mapped, and their pages are read from the disk on first access.
+         */
+        NONE,
+        /**
+         * The files are mapped, and all their pages are read before the graph is returned.
+         */
+        LOAD,
+        /**
+         * The files are copied on the heap, where they cannot be evicted by the system.
+         */
+        HEAP
+    }
+
+    /**
+     * Represents the files of a graph, either in a directory or in the sections of a bundle.
+     */
+    interface Source {
+        /**
+         * Checks if the graph has the given file.
+         *
+         * @param name the name of the file
+         * @return true if the file exists, false otherwise
+         */
+        boolean contains(String name);
+
+        /**
+         * Maps the given file (which must be smaller than 2 GB).
+         *
+         * @param name the name of the file
+         * @return the buffer of the content of the file
+         * @throws IOException if there is a problem with the file
+         */
+        MappedByteBuffer buffer(String name) throws IOException;
+
+        /**
+         * Maps the given file, whatever its size.
+         *
+         * @param name the name of the file
+         * @return the storage of the content of the file
+         * @throws IOException if there is a problem with the file
+         */
+        Storage storage(String name) throws IOException;
+
+        /**
+         * Returns a fingerprint of the files, changing when one of them does.
+         *
+         * @return the fingerprint
+         * @throws IOException if there is a problem with a file
+         */
+        long fingerprint() throws IOException;
+    }
+
+    private record DirectorySource(Path basePath) implements Source {
+        @Override
+        public boolean contains(String name) {
+            return Files.exists(basePath.resolve(name));
+        }
+
+        @Override
+        public MappedByteBuffer buffer(String name) throws IOException {
+            try (FileChannel channel = FileChannel.open(basePath.resolve(name))) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
         }
+
+        @Override
+        public Storage storage(String name) throws IOException {
+            return Storage.map(basePath.resolve(name));
+        }
+
+        /**
+         * Returns a fingerprint of the names, sizes and dates of modification of the files,
+         * which are replaced (and not modified in place) when the graph is updated.
+         */
+        @Override
+        public long fingerprint() throws IOException {
+            long fingerprint = 0;
+            for (String name : FILES) {
+                Path file = basePath.resolve(name);
+                if (!Files.exists(file)) continue;
+                fingerprint = mix(fingerprint, name.hashCode());
+                fingerprint = mix(fingerprint, Files.size(file));
+                fingerprint = mix(fingerprint, Files.getLastModifiedTime(file).toMillis());
+            }
+            return fingerprint;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader<T> {
+        T load(String name) throws IOException;
     }
 
     /**
-     * Creates a JaVelo Graph from provided files containing nodes, sectors, edges, profileIds, elevations and attributes.
+     * Represents a growable array of edge indexes.
+     */
+    private static final class EdgeIds {
+        private static final int INITIAL_CAPACITY = 64;
+        private int[] edgeIds = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private void add(int edgeId) {
+            if (size == edgeIds.length) edgeIds = Arrays.copyOf(edgeIds, 2 * size);
+            edgeIds[size++] = edgeId;
+        }
+
+        private int[] sorted() {
+            int[] result = Arrays.copyOf(edgeIds, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    private static ByteBuffer getBuffer(Source source, String name, Preload preload) throws IOException {
+        MappedByteBuffer buffer = source.buffer(name);
+        return switch (preload) {
+            case NONE -> buffer.asReadOnlyBuffer();
+            case LOAD -> buffer.load().asReadOnlyBuffer();
+            case HEAP -> ByteBuffer.allocate(buffer.capacity()).put(buffer).flip().asReadOnlyBuffer();
+        };
+    }
+
+    private static Storage getStorage(Source source, String name, Preload preload) throws IOException {
+        Storage storage = source.storage(name);
+        return switch (preload) {
+            case NONE -> storage;
+            case LOAD -> storage.load();
+            case HEAP -> storage.copyToHeap();
+        };
+    }
+
+    /**
+     * Loads the given files in parallel (preloading can take seconds per file).
+     */
+    private static <T> List<T> loadAll(List<String> names, Loader<T> loader) throws IOException {
+        try {
+            return names.parallelStream()
+                    .map(name -> {
+                        try {
+                            return loader.load(name);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Creates a JaVelo Graph from provided files containing nodes, edges, profileIds, elevations and attributes
+     * (the file of the sectors, which the index of the nodes replaces, is not read).
+     * The nodes and edges are read either from the interleaved files ({@code nodes.bin} and {@code edges.bin})
+     * or, if the directory contains them, from the column files written by {@link GraphConverter}.
+     * The interleaved files are read through a {@link Storage}, and may thus be larger than 2 GB.
+     * If the given path is a file, it is read as a bundle packed by {@link GraphBundle}.
+     * The index of the nodes is read from {@code nodes_index.bin} if it exists, and built on
+     * first use otherwise. The same goes for the index of the OpenStreetMap identities of the
+     * nodes ({@code nodes_osmid_index.bin}), if the identities ({@code nodes_osmid.bin}) exist.
+     * The {@linkplain #fingerprint() fingerprint} of the graph is computed from the sizes and
+     * dates of modification of the files, or from the checksums of the sections of a bundle.
      *
      * @param basePath the path to the files
      * @return the graph built from these files
      * @throws IOException if there is a problem with a file or the path
      */
     public static Graph loadFrom(Path basePath) throws IOException {
-        Path nodesPath = basePath.resolve("nodes.bin");
-        Path edgesPath = basePath.resolve("edges.bin");
-        Path profile_idsPath = basePath.resolve("profile_ids.bin");
-        Path elevationsPath = basePath.resolve("elevations.bin");
-        Path sectorsPath = basePath.resolve("sectors.bin");
-        Path attributesPath = basePath.resolve("attributes.bin");
-
-        IntBuffer nodesBuffer = getBuffer(nodesPath).asIntBuffer();
-        IntBuffer profilesBuffer = getBuffer(profile_idsPath).asIntBuffer();
-        ByteBuffer edgesBuffer = getBuffer(edgesPath).asReadOnlyBuffer();
-        ByteBuffer sectorsBuffer = getBuffer(sectorsPath).asReadOnlyBuffer();
-        ShortBuffer elevationsBuffer = getBuffer(elevationsPath).asShortBuffer();
-        LongBuffer attributeSetsBuffer = getBuffer(attributesPath).asLongBuffer();
+        return loadFrom(basePath, Preload.NONE);
+    }
+
+    /**
+     * Creates a JaVelo Graph from the files in the given directory (see {@link #loadFrom(Path)}),
+     * bringing the files of the nodes, edges and profiles in memory as specified, so that the
+     * first searches on the graph are not slowed down by page faults. Unless nothing is
+     * preloaded, the indexes of the nodes are also built now if they were not written with the files.
+     *
+     * @param basePath the path to the files
+     * @param preload  the way the files are brought in memory
+     * @return the graph built from these files
+     * @throws IOException if there is a problem with a file or the path
+     */
+    public static Graph loadFrom(Path basePath, Preload preload) throws IOException {
+        if (Files.isRegularFile(basePath))
+            return GraphBundle.open(basePath, preload).graph();
+        return load(new DirectorySource(basePath), preload);
+    }
+
+    /**
+     * Creates a JaVelo Graph from the files of the given source.
+     *
+     * @param source  the files of the graph
+     * @param preload the way the files are brought in memory
+     * @return the graph built from these files
+     * @throws IOException if there is a problem with a file
+     */
+    static Graph load(Source source, Preload preload) throws IOException {
+        LongBuffer attributeSetsBuffer = getBuffer(source, ATTRIBUTES_FILE, Preload.NONE).asLongBuffer();
 
         List<AttributeSet> attributeSets = new ArrayList<>(attributeSetsBuffer.capacity());
 
@@ -79,11 +312,78 @@ public final class Graph {
             attributeSets.add(new AttributeSet(attributeSetsBuffer.get(i)));
         }
 
-        GraphNodes nodes = new GraphNodes(nodesBuffer);
-        GraphSectors sectors = new GraphSectors(sectorsBuffer);
-        GraphEdges edges = new GraphEdges(edgesBuffer, profilesBuffer, elevationsBuffer);
+        NodeStore nodes;
+        EdgeStore edges;
+        if (source.contains(FIRST_EDGE_IDS_FILE)) {
+            List<ByteBuffer> buffers = loadAll(List.of(
+                    FIRST_EDGE_IDS_FILE,
+                    COORDINATES_FILE,
+                    TARGETS_FILE,
+                    LENGTHS_FILE,
+                    ELEVATION_GAINS_FILE,
+                    ATTRIBUTES_INDEXES_FILE,
+                    PROFILE_IDS_FILE,
+                    ELEVATIONS_FILE), name -> getBuffer(source, name, preload));
+            nodes = new ColumnarNodes(buffers.get(0).asIntBuffer(), buffers.get(1).asIntBuffer());
+            edges = new ColumnarEdges(
+                    buffers.get(2).asIntBuffer(),
+                    buffers.get(3).asShortBuffer(),
+                    buffers.get(4).asShortBuffer(),
+                    buffers.get(5).asShortBuffer(),
+                    buffers.get(6).asIntBuffer(),
+                    buffers.get(7).asShortBuffer());
+        } else {
+            // Long offsets, so that the files may be larger than 2 GB
+            List<Storage> storages = loadAll(List.of(
+                    NODES_FILE,
+                    EDGES_FILE,
+                    PROFILE_IDS_FILE,
+                    ELEVATIONS_FILE), name -> getStorage(source, name, preload));
+            nodes = new StorageNodes(storages.get(0));
+            edges = new StorageEdges(storages.get(1), storages.get(2), storages.get(3));
+        }
+        Graph graph = new Graph(nodes, edges, attributeSets);
+        graph.fingerprint = nonZero(source.fingerprint());
+        if (source.contains(NODE_INDEX_FILE)) {
+            graph.nodeIndex = NodeIndex.of(
+                    getBuffer(source, NODE_INDEX_FILE, preload).asIntBuffer(), nodes.count());
+        } else if (preload != Preload.NONE) {
+            graph.nodeIndex = NodeIndex.of(nodes);
+        }
+        if (source.contains(OSM_IDS_FILE)) {
+            LongBuffer osmIds = getBuffer(source, OSM_IDS_FILE, preload).asLongBuffer();
+            if (osmIds.capacity() != nodes.count())
+                throw new IOException("Invalid file " + OSM_IDS_FILE + " : its size does not match the number of nodes");
+            graph.osmIds = osmIds;
+            if (source.contains(OSM_IDS_INDEX_FILE)) {
+                graph.osmNodeIndex = OsmNodeIndex.of(getBuffer(source, OSM_IDS_INDEX_FILE, preload), nodes.count());
+            } else if (preload != Preload.NONE) {
+                graph.osmNodeIndex = OsmNodeIndex.of(osmIds);
+            }
+        }
+        return graph;
+    }
 
-        return new Graph(nodes, sectors, edges, attributeSets);
+    /**
+     * Returns a fingerprint of the graph, which changes (with a very high probability) when
+     * the graph does, so that the data derived from the graph and written in files can be
+     * checked to match it. For a graph loaded from files, it is computed from the files
+     * (see {@link #loadFrom(Path)}), and otherwise from the content of the graph on first use.
+     *
+     * @return the fingerprint, never 0
+     */
+    public long fingerprint() {
+        long result = fingerprint;
+        if (result == 0) {
+            synchronized (this) {
+                result = fingerprint;
+                if (result == 0) {
+                    result = nonZero(contentFingerprint());
+                    fingerprint = result;
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -126,28 +426,156 @@ public final class Graph {
         return nodes.edgeId(nodeId, edgeIndex);
     }
 
+    /**
+     * Returns the number of edges entering a node.
+     *
+     * @param nodeId the index of the node
+     * @return the number of edges
+     */
+    public int nodeInDegree(int nodeId) {
+        return inEdges().inDegree(nodeId);
+    }
+
+    /**
+     * Returns the "global" index of an edge entering a given node.
+     *
+     * @param nodeId    the index of the node
+     * @param edgeIndex the "local" index of the edge (restricted to edges entering the node)
+     * @return the index of the edge
+     */
+    public int nodeInEdgeId(int nodeId, int edgeIndex) {
+        return inEdges().edgeId(nodeId, edgeIndex);
+    }
+
     /**
      * Returns the index of the node closest to a given point.
      *
+     * If several nodes are at the same distance, the one with the greatest index is returned.
+     *
      * @param point          the point in swiss coordinates
      * @param searchDistance the maximum search startDistance around the point
      * @return the index of the closest node, or -1 if there is no node
      */
     public int nodeClosestTo(PointCh point, double searchDistance) {
-        double smallestDistanceYet = searchDistance * searchDistance;
-        int closestAcceptableNodeId = -1; // invalid node ID if there is no closest node.
-        List<GraphSectors.Sector> sectorsInArea = sectors.sectorsInArea(point, searchDistance);
-        for (GraphSectors.Sector sector : sectorsInArea) {
-            for (int nodeId = sector.startNodeId(); nodeId < sector.endNodeId(); nodeId++) {
-                PointCh nodePoint = nodePoint(nodeId);
-                double testDistance = point.squaredDistanceTo(nodePoint);
-                if (testDistance <= smallestDistanceYet) {
-                    closestAcceptableNodeId = nodeId;
-                    smallestDistanceYet = testDistance;
-                }
-            }
-        }
-        return closestAcceptableNodeId;
+        return nodeIndex().nodeClosestTo(point, searchDistance);
+    }
+
+    /**
+     * Returns the indexes of the given number of nodes closest to a given point,
+     * the closest one first.
+     *
+     * @param point          the point in swiss coordinates
+     * @param count          the maximum number of nodes
+     * @param searchDistance the maximum search distance around the point
+     * @return the indexes of the nodes, fewer than requested if there are not enough nodes
+     * @throws IllegalArgumentException if the number of nodes is negative
+     */
+    public int[] nodesClosestTo(PointCh point, int count, double searchDistance) {
+        return nodeIndex().nodesClosestTo(point, count, searchDistance);
+    }
+
+    /**
+     * Calls the given action with the index of every node at most at the given distance
+     * of a given point, in no particular order.
+     *
+     * @param point    the point in swiss coordinates
+     * @param distance the distance around the point
+     * @param action   the action
+     */
+    public void forEachNodeWithin(PointCh point, double distance, IntConsumer action) {
+        nodeIndex().forEachNodeWithin(point, distance, action);
+    }
+
+    /**
+     * Checks if the OpenStreetMap identities of the nodes are known, i.e. if the graph
+     * was loaded from files containing them.
+     *
+     * @return true if the identities are known
+     */
+    public boolean hasOsmIds() {
+        return osmIds != null;
+    }
+
+    /**
+     * Returns the OpenStreetMap identity of a given node.
+     *
+     * @param nodeId the index of the node
+     * @return the OpenStreetMap identity of the node
+     * @throws IllegalStateException if the identities are not known
+     */
+    public long nodeOsmId(int nodeId) {
+        return osmIds().get(nodeId);
+    }
+
+    /**
+     * Stores the OpenStreetMap identities of the given nodes in the given array.
+     *
+     * @param nodeIds the indexes of the nodes
+     * @param osmIds  the array receiving the OpenStreetMap identities
+     * @throws IllegalArgumentException if the second array is shorter than the first one
+     * @throws IllegalStateException    if the identities are not known
+     */
+    public void nodeOsmIds(int[] nodeIds, long[] osmIds) {
+        Preconditions.checkArgument(osmIds.length >= nodeIds.length);
+        LongBuffer allOsmIds = osmIds();
+        for (int i = 0; i < nodeIds.length; i++) osmIds[i] = allOsmIds.get(nodeIds[i]);
+    }
+
+    /**
+     * Returns the index of the node having the given OpenStreetMap identity.
+     *
+     * @param osmId the OpenStreetMap identity
+     * @return the index of the node, or -1 if there is no such node
+     * @throws IllegalStateException if the identities are not known
+     */
+    public int nodeIdOfOsmId(long osmId) {
+        return osmNodeIndex().nodeId(osmId);
+    }
+
+    /**
+     * Stores the indexes of the nodes having the given OpenStreetMap identities (or -1 for
+     * the identities of no node) in the given array. The searches are faster when the
+     * identities are sorted.
+     *
+     * @param osmIds  the OpenStreetMap identities
+     * @param nodeIds the array receiving the indexes of the nodes
+     * @throws IllegalArgumentException if the second array is shorter than the first one
+     * @throws IllegalStateException    if the identities are not known
+     */
+    public void nodeIdsOfOsmIds(long[] osmIds, int[] nodeIds) {
+        osmNodeIndex().nodeIds(osmIds, nodeIds);
+    }
+
+    /**
+     * Returns the point of the edges closest to a given point, i.e. the point of the road
+     * closest to it (and not only the closest intersection of roads, which can be far away
+     * on long edges).
+     *
+     * @param point          the point in swiss coordinates
+     * @param searchDistance the maximum search distance around the point
+     * @return the closest point, or {@link EdgePoint#NONE} if no edge is close enough
+     */
+    public EdgePoint edgePointClosestTo(PointCh point, double searchDistance) {
+        return edgeIndex().edgePointClosestTo(point, searchDistance);
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return edges.count();
+    }
+
+    /**
+     * Returns the index of the source node of a given edge.
+     *
+     * @param edgeId the index of the edge
+     * @return the index of the source node
+     */
+    public int edgeSourceNodeId(int edgeId) {
+        return inEdges().sourceNodeId(edgeId);
     }
 
     /**
@@ -181,6 +609,73 @@ public final class Graph {
         return attributeSets.get(attributesIndex);
     }
 
+    /**
+     * Checks if the attribute set of a given edge contains at least one of the given attributes.
+     *
+     * @param edgeId     the index of the edge
+     * @param attributes the attributes
+     * @return true if the attributes of the edge intersect the given ones
+     */
+    public boolean edgeAttributesIntersect(int edgeId, AttributeSet attributes) {
+        return (attributeBits[edges.attributesIndex(edgeId)] & attributes.bits()) != 0;
+    }
+
+    /**
+     * Returns a filter accepting the edges whose attribute set contains at least one of the
+     * given attributes. The attribute sets are tested once, when the filter is created, so
+     * that testing an edge only consists in looking up the index of its set in a bitmap.
+     *
+     * @param attributes the attributes
+     * @return the filter, taking the index of an edge
+     */
+    public IntPredicate edgeFilter(AttributeSet attributes) {
+        BitSet matchingSets = new BitSet(attributeBits.length);
+        for (int i = 0; i < attributeBits.length; i++) {
+            if ((attributeBits[i] & attributes.bits()) != 0) matchingSets.set(i);
+        }
+        return edgeId -> matchingSets.get(edges.attributesIndex(edgeId));
+    }
+
+    /**
+     * Returns the indexes (in increasing order) of the edges whose attribute set contains
+     * at least one of the given attributes.
+     *
+     * @param attributes the attributes
+     * @return the indexes of the edges
+     */
+    public int[] edgesWithAnyOf(AttributeSet attributes) {
+        IntPredicate filter = edgeFilter(attributes);
+        BitSet edgeIds = new BitSet(edges.count());
+        for (int edgeId = 0; edgeId < edges.count(); edgeId++) {
+            if (filter.test(edgeId)) edgeIds.set(edgeId);
+        }
+        return edgeIds.stream().toArray();
+    }
+
+    /**
+     * Returns the indexes (in increasing order) of the edges whose attribute set contains
+     * at least one of the given attributes, and whose source node lies in the given rectangle.
+     *
+     * @param attributes the attributes
+     * @param bottomLeft the bottom left corner of the rectangle
+     * @param topRight   the top right corner of the rectangle
+     * @return the indexes of the edges
+     * @throws IllegalArgumentException if the corners are not ordered
+     */
+    public int[] edgesWithAnyOf(AttributeSet attributes, PointCh bottomLeft, PointCh topRight) {
+        Preconditions.checkArgument(bottomLeft.e() <= topRight.e() && bottomLeft.n() <= topRight.n());
+        IntPredicate filter = edgeFilter(attributes);
+        EdgeIds edgeIds = new EdgeIds();
+        // Only the nodes of the rectangle are visited, each edge having a single source node
+        nodeIndex().forEachNodeIn(bottomLeft, topRight, nodeId -> {
+            for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                if (filter.test(edgeId)) edgeIds.add(edgeId);
+            }
+        });
+        return edgeIds.sorted();
+    }
+
     /**
      * Returns the length of a given edge
      *
@@ -209,9 +704,134 @@ public final class Graph {
      */
     public DoubleUnaryOperator edgeProfile(int edgeId) {
         double length = edges.length(edgeId);
-        boolean hasProfile = edges.hasProfile(edgeId);
-        float[] profileSamples = edges.profileSamples(edgeId);
-        return hasProfile ? Functions.sampled(profileSamples, length)
+        // The decoded samples are cached, and shared by the profiles of the edge
+        return edges.hasProfile(edgeId)
+                ? Functions.sampledView(profiles.samples(edgeId), length)
                 : Functions.constant(Double.NaN);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the reverse adjacency of the graph, which is built on first use
+     * since the files only describe the edges coming out of each node.
+     */
+    private GraphInEdges inEdges() {
+        GraphInEdges result = inEdges;
+        if (result == null) {
+            synchronized (this) {
+                result = inEdges;
+                if (result == null) {
+                    result = GraphInEdges.of(nodes, edges);
+                    inEdges = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the spatial index of the edges, which is built on first use.
+     */
+    private EdgeIndex edgeIndex() {
+        EdgeIndex result = edgeIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = edgeIndex;
+                if (result == null) {
+                    result = EdgeIndex.of(nodes, edges);
+                    edgeIndex = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the spatial index of the nodes, which is built on first use if it was
+     * neither read nor built at load.
+     */
+    private NodeIndex nodeIndex() {
+        NodeIndex result = nodeIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = nodeIndex;
+                if (result == null) {
+                    result = NodeIndex.of(nodes);
+                    nodeIndex = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private long contentFingerprint() {
+        long fingerprint = mix(nodes.count(), edges.count());
+        for (long bits : attributeBits) fingerprint = mix(fingerprint, bits);
+        for (int nodeId = 0; nodeId < nodes.count(); nodeId++) {
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(nodes.nodeE(nodeId)));
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(nodes.nodeN(nodeId)));
+            fingerprint = mix(fingerprint, nodes.outDegree(nodeId));
+        }
+        float[] samples = new float[0];
+        for (int edgeId = 0; edgeId < edges.count(); edgeId++) {
+            fingerprint = mix(fingerprint, edges.targetNodeId(edgeId));
+            fingerprint = mix(fingerprint, edges.isInverted(edgeId) ? 1 : 0);
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(edges.length(edgeId)));
+            fingerprint = mix(fingerprint, Double.doubleToLongBits(edges.elevationGain(edgeId)));
+            fingerprint = mix(fingerprint, edges.attributesIndex(edgeId));
+            int sampleCount = edges.profileSampleCount(edgeId);
+            if (sampleCount > samples.length) samples = new float[sampleCount];
+            edges.profileSamples(edgeId, samples, 0);
+            for (int i = 0; i < sampleCount; i++) fingerprint = mix(fingerprint, Float.floatToIntBits(samples[i]));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Adds a value to a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @param value       the value
+     * @return the new fingerprint
+     */
+    static long mix(long fingerprint, long value) {
+        long h = (fingerprint ^ value) * 0x9E37_79B9_7F4A_7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Returns the given fingerprint, or 1 if it is 0, which stands for a fingerprint not yet computed.
+     */
+    private static long nonZero(long fingerprint) {
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * Returns the OpenStreetMap identities of the nodes.
+     *
+     * @throws IllegalStateException if they are not known (see {@link #hasOsmIds()})
+     */
+    private LongBuffer osmIds() {
+        LongBuffer result = osmIds;
+        if (result == null) throw new IllegalStateException();
+        return result;
+    }
+
+    /**
+     * Returns the index of the OpenStreetMap identities of the nodes, which is built on
+     * first use if it was neither read nor built at load.
+     */
+    private OsmNodeIndex osmNodeIndex() {
+        OsmNodeIndex result = osmNodeIndex;
+        if (result == null) {
+            LongBuffer osmIds = osmIds();
+            synchronized (this) {
+                result = osmNodeIndex;
+                if (result == null) {
+                    result = OsmNodeIndex.of(osmIds);
+                    osmNodeIndex = result;
+                }
+            }
+        }
+        return result;
+    }
+}
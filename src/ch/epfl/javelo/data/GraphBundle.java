@@ -0,0 +1,420 @@
+package ch.epfl.javelo.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Represents a graph packed in a single file (a bundle), made of a header followed by the
+ * files of the graph, each one in its own section.
+ * <p>
+ * The header contains the version of the format, the number of nodes and edges, the
+ * bounds of the nodes, and the position, size and CRC32C checksum of each section. It is
+ * itself followed by its own checksum. When a bundle is opened, its header and the sizes
+ * of the sections are checked before the graph is built, while the checksums of the
+ * sections (which require reading the whole file) are checked on a background thread.
+ * <p>
+ * Bundles are written in a temporary file which is then atomically renamed, so that an
+ * application which maps a bundle never sees it partially written.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class GraphBundle {
+    private final Header header;
+    private final Graph graph;
+    private final CompletableFuture<Void> verification;
+
+    /**
+     * Version of the format written by {@link #pack}.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4A56_4C42; // "JVLB"
+    private static final int ALIGNMENT = Long.BYTES;
+    private static final int MAX_SECTIONS = 64;
+    private static final int SECTORS_SIZE = 128 * 128 * (Integer.BYTES + Short.BYTES);
+    // Size of the slices mapped to compute checksums
+    private static final int SLICE_SIZE = 1 << 30;
+
+    private static final List<String> INTERLEAVED_FILES = List.of(
+            Graph.NODES_FILE, Graph.EDGES_FILE);
+    private static final List<String> COLUMN_FILES = List.of(
+            Graph.FIRST_EDGE_IDS_FILE, Graph.COORDINATES_FILE, Graph.TARGETS_FILE,
+            Graph.LENGTHS_FILE, Graph.ELEVATION_GAINS_FILE, Graph.ATTRIBUTES_INDEXES_FILE);
+    private static final List<String> COMMON_FILES = List.of(
+            Graph.PROFILE_IDS_FILE, Graph.ELEVATIONS_FILE, Graph.ATTRIBUTES_FILE);
+    // The sectors are no longer read by the graph, but still packed if present
+    private static final List<String> OPTIONAL_FILES = List.of(
+            Graph.SECTORS_FILE, Graph.OSM_IDS_FILE, Graph.OSM_IDS_INDEX_FILE, Graph.NODE_INDEX_FILE);
+
+    /**
+     * Represents a section of a bundle.
+     *
+     * @param name     the name of the file stored in the section
+     * @param offset   the position of the section in the bundle
+     * @param length   the size of the section
+     * @param checksum the CRC32C checksum of the section
+     */
+    public record Section(String name, long offset, long length, int checksum) {
+    }
+
+    /**
+     * Represents the header of a bundle.
+     *
+     * @param version   the version of the format
+     * @param nodeCount the number of nodes of the graph
+     * @param edgeCount the number of edges of the graph
+     * @param minE      the smallest east coordinate of a node
+     * @param minN      the smallest north coordinate of a node
+     * @param maxE      the largest east coordinate of a node
+     * @param maxN      the largest north coordinate of a node
+     * @param sections  the sections of the bundle, in increasing order of position
+     */
+    public record Header(int version, int nodeCount, int edgeCount,
+                         double minE, double minN, double maxE, double maxN,
+                         List<Section> sections) {
+
+        /**
+         * Returns the section containing the given file.
+         *
+         * @param name the name of the file
+         * @return the section, or null if the bundle does not contain the file
+         */
+        public Section section(String name) {
+            for (Section section : sections) {
+                if (section.name().equals(name)) return section;
+            }
+            return null;
+        }
+    }
+
+    private GraphBundle(Header header, Graph graph, CompletableFuture<Void> verification) {
+        this.header = header;
+        this.graph = graph;
+        this.verification = verification;
+    }
+
+    /**
+     * Returns the header of the bundle.
+     *
+     * @return the header
+     */
+    public Header header() {
+        return header;
+    }
+
+    /**
+     * Returns the graph of the bundle.
+     *
+     * @return the graph
+     */
+    public Graph graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the verification of the checksums of the sections, which completes
+     * exceptionally (with an {@link IOException}) if one of them does not match.
+     *
+     * @return the verification
+     */
+    public CompletableFuture<Void> verification() {
+        return verification;
+    }
+
+    /**
+     * Packs the files of the graph in the given directory (in either layout, with the OSM
+     * identities of the nodes if present) in a bundle.
+     *
+     * @param directory the directory of the graph
+     * @param bundle    the path of the bundle, replaced if it exists
+     * @throws IOException if there is a problem with a file or a path
+     */
+    public static void pack(Path directory, Path bundle) throws IOException {
+        Graph graph = Graph.loadFrom(directory);
+        double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+        double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            var point = graph.nodePoint(nodeId);
+            minE = Math.min(minE, point.e());
+            minN = Math.min(minN, point.n());
+            maxE = Math.max(maxE, point.e());
+            maxN = Math.max(maxN, point.n());
+        }
+
+        List<String> names = new ArrayList<>(
+                Files.exists(directory.resolve(Graph.FIRST_EDGE_IDS_FILE)) ? COLUMN_FILES : INTERLEAVED_FILES);
+        names.addAll(COMMON_FILES);
+        for (String name : OPTIONAL_FILES)
+            if (Files.exists(directory.resolve(name))) names.add(name);
+
+        // The size of the header only depends on the names of the sections
+        List<Section> sections = new ArrayList<>();
+        for (String name : names) sections.add(new Section(name, 0, 0, 0));
+        long offset = align(headerBytes(new Header(VERSION, 0, 0, 0, 0, 0, 0, sections)).length);
+        sections.clear();
+        for (String name : names) {
+            Path file = directory.resolve(name);
+            long length = Files.size(file);
+            sections.add(new Section(name, offset, length, checksum(file)));
+            offset = align(offset + length);
+        }
+        Header header = new Header(VERSION, graph.nodeCount(), graph.edgeCount(),
+                minE, minN, maxE, maxN, List.copyOf(sections));
+
+        Path parent = bundle.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, bundle.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer headerBuffer = ByteBuffer.wrap(headerBytes(header));
+                while (headerBuffer.hasRemaining()) out.write(headerBuffer);
+                for (Section section : sections) {
+                    // Writing past the end of the file fills the alignment padding with zeros
+                    out.position(section.offset());
+                    try (FileChannel in = FileChannel.open(directory.resolve(section.name()))) {
+                        long copied = 0;
+                        while (copied < section.length())
+                            copied += in.transferTo(copied, section.length() - copied, out);
+                    }
+                }
+            }
+            Files.move(temporary, bundle, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Opens the given bundle, without preloading it.
+     *
+     * @param bundle the path of the bundle
+     * @return the opened bundle
+     * @throws IOException if there is a problem with the file, or its header is invalid
+     */
+    public static GraphBundle open(Path bundle) throws IOException {
+        return open(bundle, Graph.Preload.NONE);
+    }
+
+    /**
+     * Opens the given bundle, checking its header and the sizes of its sections, and starts
+     * the verification of the checksums of its sections on a background thread.
+     *
+     * @param bundle  the path of the bundle
+     * @param preload the way the sections of the graph are brought in memory
+     * @return the opened bundle
+     * @throws IOException if there is a problem with the file, or its header is invalid
+     */
+    public static GraphBundle open(Path bundle, Graph.Preload preload) throws IOException {
+        try (FileChannel channel = FileChannel.open(bundle)) {
+            Header header = readHeader(channel);
+            validate(header, channel.size());
+            Map<String, Section> sections = new HashMap<>();
+            for (Section section : header.sections()) sections.put(section.name(), section);
+
+            Graph graph = Graph.load(new Graph.Source() {
+                @Override
+                public boolean contains(String name) {
+                    return sections.containsKey(name);
+                }
+
+                @Override
+                public MappedByteBuffer buffer(String name) throws IOException {
+                    Section section = section(name);
+                    return channel.map(FileChannel.MapMode.READ_ONLY, section.offset(), section.length());
+                }
+
+                @Override
+                public Storage storage(String name) throws IOException {
+                    Section section = section(name);
+                    return ChunkedStorage.map(channel, section.offset(), section.length(),
+                            ChunkedStorage.CHUNK_SHIFT);
+                }
+
+                @Override
+                public long fingerprint() {
+                    long fingerprint = 0;
+                    for (Section section : header.sections()) {
+                        fingerprint = Graph.mix(fingerprint, section.name().hashCode());
+                        fingerprint = Graph.mix(fingerprint, section.length());
+                        fingerprint = Graph.mix(fingerprint, section.checksum());
+                    }
+                    return fingerprint;
+                }
+
+                private Section section(String name) throws IOException {
+                    Section section = sections.get(name);
+                    if (section == null) throw new IOException("Missing section " + name);
+                    return section;
+                }
+            }, preload);
+
+            CompletableFuture<Void> verification = new CompletableFuture<>();
+            Thread verifier = new Thread(() -> {
+                try {
+                    verify(bundle, header);
+                    verification.complete(null);
+                } catch (IOException e) {
+                    verification.completeExceptionally(e);
+                }
+            }, "javelo-bundle-verification");
+            verifier.setDaemon(true);
+            verifier.start();
+            return new GraphBundle(header, graph, verification);
+        }
+    }
+
+    /**
+     * Packs the graph in the directory given as first argument in the bundle given as
+     * second argument.
+     *
+     * @param args the directory of the graph and the path of the bundle
+     * @throws IOException if there is a problem with a file or a path
+     */
+    public static void main(String[] args) throws IOException {
+        long t0 = System.nanoTime();
+        pack(Path.of(args[0]), Path.of(args[1]));
+        System.out.printf("Graphe empaqueté en %d ms%n", (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private static byte[] headerBytes(Header header) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(header.version());
+            out.writeInt(header.nodeCount());
+            out.writeInt(header.edgeCount());
+            out.writeDouble(header.minE());
+            out.writeDouble(header.minN());
+            out.writeDouble(header.maxE());
+            out.writeDouble(header.maxN());
+            out.writeInt(header.sections().size());
+            for (Section section : header.sections()) {
+                out.writeUTF(section.name());
+                out.writeLong(section.offset());
+                out.writeLong(section.length());
+                out.writeInt(section.checksum());
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        new DataOutputStream(bytes).writeInt((int) crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    private static Header readHeader(FileChannel channel) throws IOException {
+        // The stream must not close the channel, which is still used to map the sections
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel.position(0))) {
+                    @Override
+                    public void close() {
+                    }
+                }, new CRC32C());
+        DataInputStream in = new DataInputStream(checked);
+        check(in.readInt() == MAGIC, "not a graph bundle");
+        int version = in.readInt();
+        check(version == VERSION, "unsupported version " + version);
+        int nodeCount = in.readInt();
+        int edgeCount = in.readInt();
+        double minE = in.readDouble();
+        double minN = in.readDouble();
+        double maxE = in.readDouble();
+        double maxN = in.readDouble();
+        int sectionCount = in.readInt();
+        check(sectionCount >= 0 && sectionCount <= MAX_SECTIONS, "invalid number of sections");
+        List<Section> sections = new ArrayList<>(sectionCount);
+        for (int i = 0; i < sectionCount; i++)
+            sections.add(new Section(in.readUTF(), in.readLong(), in.readLong(), in.readInt()));
+        int expectedChecksum = (int) checked.getChecksum().getValue();
+        check(in.readInt() == expectedChecksum, "corrupted header");
+        return new Header(version, nodeCount, edgeCount, minE, minN, maxE, maxN, List.copyOf(sections));
+    }
+
+    /**
+     * Checks that the sections are in the file, and that the graph has all its files,
+     * with sizes matching the number of nodes and edges.
+     */
+    private static void validate(Header header, long fileSize) throws IOException {
+        int nodeCount = header.nodeCount();
+        int edgeCount = header.edgeCount();
+        check(nodeCount >= 0 && edgeCount >= 0, "invalid counts");
+        for (Section section : header.sections()) {
+            check(section.offset() >= 0 && section.length() >= 0
+                    && section.offset() + section.length() <= fileSize,
+                    "section " + section.name() + " outside of the file");
+            long expectedLength = switch (section.name()) {
+                case Graph.NODES_FILE -> 3L * Integer.BYTES * nodeCount;
+                case Graph.EDGES_FILE -> (Integer.BYTES + 3L * Short.BYTES) * edgeCount;
+                case Graph.FIRST_EDGE_IDS_FILE -> (long) Integer.BYTES * (nodeCount + 1L);
+                case Graph.COORDINATES_FILE -> 2L * Integer.BYTES * nodeCount;
+                case Graph.NODE_INDEX_FILE -> 3L * Integer.BYTES * nodeCount;
+                case Graph.TARGETS_FILE, Graph.PROFILE_IDS_FILE -> (long) Integer.BYTES * edgeCount;
+                case Graph.LENGTHS_FILE, Graph.ELEVATION_GAINS_FILE, Graph.ATTRIBUTES_INDEXES_FILE ->
+                        (long) Short.BYTES * edgeCount;
+                case Graph.SECTORS_FILE -> SECTORS_SIZE;
+                case Graph.OSM_IDS_FILE -> (long) Long.BYTES * nodeCount;
+                case Graph.OSM_IDS_INDEX_FILE -> (long) (Long.BYTES + Integer.BYTES) * nodeCount;
+                default -> -1;
+            };
+            check(expectedLength == -1 || section.length() == expectedLength,
+                    "section " + section.name() + " has an invalid size");
+        }
+        List<String> required = new ArrayList<>(COMMON_FILES);
+        required.addAll(header.section(Graph.FIRST_EDGE_IDS_FILE) != null ? COLUMN_FILES : INTERLEAVED_FILES);
+        for (String name : required)
+            check(header.section(name) != null, "missing section " + name);
+        check(header.section(Graph.ELEVATIONS_FILE).length() % Short.BYTES == 0,
+                "section " + Graph.ELEVATIONS_FILE + " has an invalid size");
+        check(header.section(Graph.ATTRIBUTES_FILE).length() % Long.BYTES == 0,
+                "section " + Graph.ATTRIBUTES_FILE + " has an invalid size");
+    }
+
+    private static void verify(Path bundle, Header header) throws IOException {
+        try (FileChannel channel = FileChannel.open(bundle)) {
+            for (Section section : header.sections()) {
+                check(checksum(channel, section.offset(), section.length()) == section.checksum(),
+                        "corrupted section " + section.name());
+            }
+        }
+    }
+
+    private static int checksum(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return checksum(channel, 0, channel.size());
+        }
+    }
+
+    private static int checksum(FileChannel channel, long offset, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        for (long start = 0; start < length; start += SLICE_SIZE) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+                    Math.min(SLICE_SIZE, length - start)));
+        }
+        return (int) crc.getValue();
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void check(boolean condition, String message) throws IOException {
+        if (!condition) throw new IOException("Invalid graph bundle : " + message);
+    }
+}
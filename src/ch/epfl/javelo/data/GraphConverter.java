@@ -0,0 +1,238 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Converts the files of a graph from the interleaved layout ({@code nodes.bin}, {@code edges.bin})
+ * to the column layout read by {@link ColumnarNodes} and {@link ColumnarEdges}.
+ * <p>
+ * The nodes are renumbered along a Hilbert curve, first over the sectors and then inside
+ * each sector, so that nodes which are close to each other (and thus explored together
+ * by a search) are also close in memory, while the nodes of each sector stay contiguous.
+ * The edges are renumbered in the order of their source node. The files indexed by node
+ * or by edge ({@code profile_ids.bin}, {@code nodes_osmid.bin}) are permuted accordingly,
+ * and the files which are not ({@code elevations.bin}, {@code attributes.bin}) are copied.
+ * Files derived from the node or edge indexes (landmarks, hierarchies...) must be
+ * computed again for the converted graph.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class GraphConverter {
+    private static final int NODE_INTS = 3;
+    private static final int EDGE_BYTES = Integer.BYTES + 3 * Short.BYTES;
+    private static final int SECTOR_BYTES = Integer.BYTES + Short.BYTES;
+    private static final int SECTORS_PER_SIDE = 128;
+    private static final int SECTOR_COUNT = SECTORS_PER_SIDE * SECTORS_PER_SIDE;
+    private static final int FINE_ORDER = 16;
+
+    private static final int OUT_DEGREE_START = 28;
+    private static final int FIRST_EDGE_ID_MASK = (1 << OUT_DEGREE_START) - 1;
+
+    private GraphConverter() {
+    }
+
+    /**
+     * Converts the graph whose files are in the given source directory, and writes the
+     * converted files in the given target directory (which must be a different one).
+     *
+     * @param source the directory containing the interleaved files
+     * @param target the directory receiving the column files
+     * @throws IOException if there is a problem with a file or a path
+     */
+    public static void convert(Path source, Path target) throws IOException {
+        IntBuffer nodes = read(source.resolve(Graph.NODES_FILE)).asIntBuffer();
+        ByteBuffer edges = read(source.resolve(Graph.EDGES_FILE));
+        IntBuffer profileIds = read(source.resolve(Graph.PROFILE_IDS_FILE)).asIntBuffer();
+        ByteBuffer sectors = read(source.resolve(Graph.SECTORS_FILE));
+        int nodeCount = nodes.capacity() / NODE_INTS;
+        int edgeCount = edges.capacity() / EDGE_BYTES;
+
+        // Sector of each node, as given by the original sectors (nodes outside all sectors come last)
+        int[] nodeSectors = new int[nodeCount];
+        Arrays.fill(nodeSectors, SECTOR_COUNT);
+        for (int sector = 0; sector < SECTOR_COUNT; sector++) {
+            int first = sectors.getInt(sector * SECTOR_BYTES);
+            int count = Short.toUnsignedInt(sectors.getShort(sector * SECTOR_BYTES + Integer.BYTES));
+            for (int nodeId = first; nodeId < first + count; nodeId++) nodeSectors[nodeId] = sector;
+        }
+
+        // New order of the nodes : along the curve over the sectors, then along the curve inside them
+        long[] keys = new long[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            int sector = nodeSectors[nodeId];
+            long sectorKey = sector == SECTOR_COUNT
+                    ? SECTOR_COUNT
+                    : hilbertIndex(SECTORS_PER_SIDE, sector % SECTORS_PER_SIDE, sector / SECTORS_PER_SIDE);
+            double e = Q28_4.asDouble(nodes.get(nodeId * NODE_INTS));
+            double n = Q28_4.asDouble(nodes.get(nodeId * NODE_INTS + 1));
+            keys[nodeId] = (sectorKey << Integer.SIZE)
+                    | hilbertIndex(1 << FINE_ORDER,
+                    fineCoordinate(e, SwissBounds.MIN_E, SwissBounds.WIDTH),
+                    fineCoordinate(n, SwissBounds.MIN_N, SwissBounds.HEIGHT));
+        }
+        Integer[] order = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong((Integer nodeId) -> keys[nodeId]));
+        int[] newNodeIds = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) newNodeIds[order[i]] = i;
+
+        // New order of the edges : grouped by (new) source node, in their original order
+        int[] firstEdgeIds = new int[nodeCount + 1];
+        int[] edgeOrder = new int[edgeCount];
+        boolean[] placed = new boolean[edgeCount];
+        int newEdgeId = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            int oldNodeId = order[i];
+            int edgesInfo = nodes.get(oldNodeId * NODE_INTS + 2);
+            int outDegree = edgesInfo >>> OUT_DEGREE_START;
+            int firstEdgeId = edgesInfo & FIRST_EDGE_ID_MASK;
+            firstEdgeIds[i] = newEdgeId;
+            for (int j = 0; j < outDegree; j++) {
+                edgeOrder[newEdgeId++] = firstEdgeId + j;
+                placed[firstEdgeId + j] = true;
+            }
+        }
+        // Edges coming out of no node are unreachable, but are kept
+        for (int oldEdgeId = 0; oldEdgeId < edgeCount; oldEdgeId++) {
+            if (!placed[oldEdgeId]) edgeOrder[newEdgeId++] = oldEdgeId;
+        }
+        firstEdgeIds[nodeCount] = newEdgeId;
+
+        Files.createDirectories(target);
+
+        ByteBuffer coordinates = ByteBuffer.allocate(nodeCount * 2 * Integer.BYTES);
+        for (int i = 0; i < nodeCount; i++) {
+            coordinates.putInt(nodes.get(order[i] * NODE_INTS));
+            coordinates.putInt(nodes.get(order[i] * NODE_INTS + 1));
+        }
+        ByteBuffer firstEdges = ByteBuffer.allocate(firstEdgeIds.length * Integer.BYTES);
+        for (int firstEdgeId : firstEdgeIds) firstEdges.putInt(firstEdgeId);
+        write(target.resolve(Graph.FIRST_EDGE_IDS_FILE), firstEdges);
+        write(target.resolve(Graph.COORDINATES_FILE), coordinates);
+
+        ByteBuffer targets = ByteBuffer.allocate(edgeCount * Integer.BYTES);
+        ByteBuffer lengths = ByteBuffer.allocate(edgeCount * Short.BYTES);
+        ByteBuffer elevationGains = ByteBuffer.allocate(edgeCount * Short.BYTES);
+        ByteBuffer attributesIndexes = ByteBuffer.allocate(edgeCount * Short.BYTES);
+        ByteBuffer newProfileIds = ByteBuffer.allocate(edgeCount * Integer.BYTES);
+        for (int oldEdgeId : edgeOrder) {
+            int offset = oldEdgeId * EDGE_BYTES;
+            int targetNodeId = edges.getInt(offset);
+            targets.putInt(targetNodeId < 0
+                    ? ~newNodeIds[~targetNodeId]
+                    : newNodeIds[targetNodeId]);
+            lengths.putShort(edges.getShort(offset + Integer.BYTES));
+            elevationGains.putShort(edges.getShort(offset + Integer.BYTES + Short.BYTES));
+            attributesIndexes.putShort(edges.getShort(offset + Integer.BYTES + 2 * Short.BYTES));
+            newProfileIds.putInt(profileIds.get(oldEdgeId));
+        }
+        write(target.resolve(Graph.TARGETS_FILE), targets);
+        write(target.resolve(Graph.LENGTHS_FILE), lengths);
+        write(target.resolve(Graph.ELEVATION_GAINS_FILE), elevationGains);
+        write(target.resolve(Graph.ATTRIBUTES_INDEXES_FILE), attributesIndexes);
+        write(target.resolve(Graph.PROFILE_IDS_FILE), newProfileIds);
+
+        // Sectors : the nodes of each sector are still contiguous, but elsewhere
+        ByteBuffer newSectors = ByteBuffer.allocate(SECTOR_COUNT * SECTOR_BYTES);
+        int[] sectorFirst = new int[SECTOR_COUNT];
+        int[] sectorCount = new int[SECTOR_COUNT];
+        for (int i = nodeCount - 1; i >= 0; i--) {
+            int sector = nodeSectors[order[i]];
+            if (sector == SECTOR_COUNT) continue;
+            sectorFirst[sector] = i;
+            sectorCount[sector]++;
+        }
+        for (int sector = 0; sector < SECTOR_COUNT; sector++) {
+            newSectors.putInt(sectorFirst[sector]);
+            newSectors.putShort((short) sectorCount[sector]);
+        }
+        write(target.resolve(Graph.SECTORS_FILE), newSectors);
+
+        Path osmIdsPath = source.resolve(Graph.OSM_IDS_FILE);
+        if (Files.exists(osmIdsPath)) {
+            LongBuffer osmIds = read(osmIdsPath).asLongBuffer();
+            ByteBuffer newOsmIds = ByteBuffer.allocate(nodeCount * Long.BYTES);
+            for (int i = 0; i < nodeCount; i++) newOsmIds.putLong(osmIds.get(order[i]));
+            write(target.resolve(Graph.OSM_IDS_FILE), newOsmIds);
+            OsmNodeIndex.of(newOsmIds.rewind().asLongBuffer())
+                    .writeTo(target.resolve(Graph.OSM_IDS_INDEX_FILE));
+        }
+        for (String name : List.of(Graph.ELEVATIONS_FILE, Graph.ATTRIBUTES_FILE)) {
+            Files.copy(source.resolve(name), target.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Index of the converted nodes, so that it is not built again at each load
+        NodeIndex.of(new ColumnarNodes(firstEdges.rewind().asIntBuffer(), coordinates.rewind().asIntBuffer()))
+                .writeTo(target.resolve(Graph.NODE_INDEX_FILE));
+    }
+
+    /**
+     * Converts the graph whose files are in the first given directory,
+     * and writes the converted files in the second one.
+     *
+     * @param args the source and target directories
+     * @throws IOException if there is a problem with a file or a path
+     */
+    public static void main(String[] args) throws IOException {
+        long t0 = System.nanoTime();
+        convert(Path.of(args[0]), Path.of(args[1]));
+        System.out.printf("Graphe converti en %d ms%n", (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /**
+     * Returns the index of the given cell along the Hilbert curve covering a square grid
+     * of the given size (a power of two).
+     */
+    static long hilbertIndex(int size, int x, int y) {
+        long index = 0;
+        for (int s = size / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant so that the curve stays continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return index;
+    }
+
+    private static int fineCoordinate(double value, double min, double extent) {
+        int max = (1 << FINE_ORDER) - 1;
+        return Math.max(0, Math.min(max, (int) ((value - min) / extent * (max + 1))));
+    }
+
+    private static ByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void write(Path path, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+}
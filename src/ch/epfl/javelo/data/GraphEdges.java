@@ -14,7 +14,7 @@ import java.nio.ShortBuffer;
  * @author Edouard Mignan (345875)
  */
 public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds,
-                         ShortBuffer elevations) {
+                         ShortBuffer elevations) implements EdgeStore {
 
     private static final int LENGTH_OFFSET = Integer.BYTES;
     private static final int HEIGHT_DIFFERENCE_OFFSET = LENGTH_OFFSET
@@ -31,6 +31,29 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds,
 
     private static final int NIBBLE_SIZE = 4;
 
+    /**
+     * Represents the elevation samples of all the profiles, whatever their storage.
+     */
+    @FunctionalInterface
+    interface Samples {
+        /**
+         * Returns the sample at the given index.
+         *
+         * @param index the index of the sample
+         * @return the sample
+         */
+        short get(int index);
+    }
+
+    /**
+     * Returns the number of edges in the graph.
+     *
+     * @return the number of edges
+     */
+    public int count() {
+        return edgesBuffer.capacity() / NEW_EDGE_OFFSET;
+    }
+
     /**
      * Checks if an edge is inverted.
      *
@@ -92,14 +115,48 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds,
         return profileType != 0;
     }
 
+    @Override
+    public int profileSampleCount(int edgeId) {
+        return sampleCount(profileIds.get(edgeId), edgesBuffer.getShort(edgeId * NEW_EDGE_OFFSET + LENGTH_OFFSET));
+    }
+
+    @Override
+    public int profileSamples(int edgeId, float[] destination, int offset) {
+        short elevationData = edgesBuffer.getShort(edgeId
+                * NEW_EDGE_OFFSET
+                + LENGTH_OFFSET);
+        return profileSamples(profileIds.get(edgeId), elevationData, isInverted(edgeId), elevations::get,
+                destination, offset);
+    }
+
     /**
-     * Returns the array of elevation samples associated to an edge.
+     * Returns the number of elevation samples of an edge, given its profile identity and its length.
      *
-     * @param edgeId the index of the edge
-     * @return the array of floats containing the elevation samples
+     * @param profileInfo the profile identity of the edge
+     * @param length      the length of the edge (in Q28.4)
+     * @return the number of samples, 0 if the edge has no profile
      */
-    public float[] profileSamples(int edgeId) {
-        int profileInfo = profileIds.get(edgeId);
+    static int sampleCount(int profileInfo, short length) {
+        int profileType = Bits.extractUnsigned(profileInfo, PROFILE_TYPE_START, PROFILE_TYPE_LENGTH);
+        return profileType == 0 ? 0 : 1 + Math2.ceilDiv(Short.toUnsignedInt(length), Q28_4.ofInt(2));
+    }
+
+    /**
+     * Decodes the elevation samples of an edge, given its profile identity
+     * (type and first sample), its length and its direction, into the given array.
+     * The compressed profiles are decoded a whole short (2 or 4 differences) at a time,
+     * and the samples of inverted edges are reversed in place.
+     *
+     * @param profileInfo the profile identity of the edge
+     * @param length      the length of the edge (in Q28.4)
+     * @param inverted    true if the edge is inverted
+     * @param elevations  all the samples
+     * @param destination the array receiving the samples
+     * @param offset      the index of the array receiving the first sample
+     * @return the number of samples, 0 if the edge has no profile
+     */
+    static int profileSamples(int profileInfo, short length, boolean inverted,
+                              Samples elevations, float[] destination, int offset) {
         int profileType = Bits.extractUnsigned(
                 profileInfo,
                 PROFILE_TYPE_START,
@@ -108,27 +165,27 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds,
                 profileInfo,
                 PROFILE_INFO_START,
                 PROFILE_INFO_LENGTH);
-        short elevationData = edgesBuffer.getShort(edgeId
-                * NEW_EDGE_OFFSET
-                + LENGTH_OFFSET);
-        int nbOfSamples = 1 + Math2.ceilDiv(elevationData, Q28_4.ofInt(2));
-        float[] profileSamples = new float[nbOfSamples];
+        int nbOfSamples = sampleCount(profileInfo, length);
 
         switch (profileType) {
             case 1:
                 for (int i = 0; i < nbOfSamples; i++) {
-                    profileSamples[i] = Q28_4.asFloat(
+                    destination[offset + i] = Q28_4.asFloat(
                             Short.toUnsignedInt(
                                     elevations.get(firstSampleIndex + i)));
                 }
-                return isInverted(edgeId) ? invertArray(profileSamples) : profileSamples;
+                break;
             case 2:
-                return getProfileSamples(2, nbOfSamples, firstSampleIndex, edgeId);
+                decodeDifferences(Byte.SIZE, nbOfSamples, firstSampleIndex, elevations, destination, offset);
+                break;
             case 3:
-                return getProfileSamples(3, nbOfSamples, firstSampleIndex, edgeId);
+                decodeDifferences(NIBBLE_SIZE, nbOfSamples, firstSampleIndex, elevations, destination, offset);
+                break;
             default:
-                return new float[0];
+                return 0;
         }
+        if (inverted) reverse(destination, offset, nbOfSamples);
+        return nbOfSamples;
     }
 
     /**
@@ -145,35 +202,33 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds,
         return Short.toUnsignedInt(extractedAttributes);
     }
 
-    private static float[] invertArray(float[] array) {
-        float[] invertedList = new float[array.length];
-        for (int i = 0; i < array.length / 2 + 1; i++) {
-            invertedList[i] = array[array.length - 1 - i];
-            invertedList[array.length - 1 - i] = array[i];
+    private static void reverse(float[] array, int offset, int count) {
+        for (int i = offset, j = offset + count - 1; i < j; i++, j--) {
+            float sample = array[i];
+            array[i] = array[j];
+            array[j] = sample;
         }
-        return invertedList;
     }
 
-    private float[] getProfileSamples(int type, int nbOfSamples, int firstSampleIndex, int edgeId) {
-        float[] profileSamples = new float[nbOfSamples];
-
-        profileSamples[0] = Q28_4.asFloat(elevations.get(firstSampleIndex));
-        short differences = 0;
-        int start = 0;
-        int length = type == 2 ? Byte.SIZE : NIBBLE_SIZE;
-
-        for (int i = 1; i < nbOfSamples; i++) {
-            if (type == 2) {
-                differences = elevations.get(firstSampleIndex + (i + 1) / 2);
-                start = Byte.SIZE * (i % 2); // to extract first or second byte
-            } else if (type == 3) {
-                differences = elevations.get(firstSampleIndex + (i + 3) / NIBBLE_SIZE);
-                // to extract the correct nibble (4th or 1st, 2nd, 3rd
-                start = (i % NIBBLE_SIZE == 0) ? 0 : (Short.SIZE - i % NIBBLE_SIZE * NIBBLE_SIZE);
+    /**
+     * Decodes the samples of a compressed profile, whose differences of the given size are
+     * packed in the shorts following the first sample, from their most significant bits.
+     */
+    private static void decodeDifferences(int differenceSize, int nbOfSamples, int firstSampleIndex,
+                                          Samples elevations, float[] destination, int offset) {
+        float sample = Q28_4.asFloat(elevations.get(firstSampleIndex));
+        destination[offset] = sample;
+        int index = firstSampleIndex + 1;
+        int i = 1;
+        while (i < nbOfSamples) {
+            int differences = elevations.get(index++);
+            for (int start = Short.SIZE - differenceSize; start >= 0 && i < nbOfSamples; start -= differenceSize) {
+                // Sign extension of the difference starting at the given bit
+                int sampleDiff = (differences << (Integer.SIZE - start - differenceSize))
+                        >> (Integer.SIZE - differenceSize);
+                sample += Q28_4.asFloat(sampleDiff);
+                destination[offset + i++] = sample;
             }
-            int sampleDiff = Bits.extractSigned(differences, start, length);
-            profileSamples[i] = profileSamples[i - 1] + Q28_4.asFloat(sampleDiff);
         }
-        return isInverted(edgeId) ? invertArray(profileSamples) : profileSamples;
     }
 }
@@ -0,0 +1,88 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Represents the reverse adjacency of Javelo's graph : the edges entering each node,
+ * and the source node of each edge (which the graph files do not store).
+ * The index is built from the nodes and edges, in compressed sparse row layout.
+ *
+ * @author Timo Moebel (345665)
+ */
+public final class GraphInEdges {
+    private final int[] starts;
+    private final int[] edgeIds;
+    private final int[] sourceNodeIds;
+
+    private GraphInEdges(int[] starts, int[] edgeIds, int[] sourceNodeIds) {
+        this.starts = starts;
+        this.edgeIds = edgeIds;
+        this.sourceNodeIds = sourceNodeIds;
+    }
+
+    /**
+     * Builds the reverse adjacency of the graph made of the given nodes and edges.
+     *
+     * @param nodes the nodes of the graph
+     * @param edges the edges of the graph
+     * @return the reverse adjacency
+     */
+    public static GraphInEdges of(NodeStore nodes, EdgeStore edges) {
+        int nodeCount = nodes.count();
+        int edgeCount = edges.count();
+        int[] starts = new int[nodeCount + 1];
+        int[] edgeIds = new int[edgeCount];
+        int[] sourceNodeIds = new int[edgeCount];
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                sourceNodeIds[edgeId] = nodeId;
+                starts[edges.targetNodeId(edgeId) + 1]++;
+            }
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            starts[nodeId + 1] += starts[nodeId];
+        }
+        int[] next = Arrays.copyOf(starts, nodeCount);
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            edgeIds[next[edges.targetNodeId(edgeId)]++] = edgeId;
+        }
+        return new GraphInEdges(starts, edgeIds, sourceNodeIds);
+    }
+
+    /**
+     * Returns the number of edges entering a given node.
+     *
+     * @param nodeId the index of the node
+     * @return the number of edges
+     */
+    public int inDegree(int nodeId) {
+        return starts[nodeId + 1] - starts[nodeId];
+    }
+
+    /**
+     * Returns the "global" index of an edge entering a given node.
+     *
+     * @param nodeId    the index of the node
+     * @param edgeIndex the "local" index of the edge (restricted to edges entering the node)
+     * @return the index of the edge
+     */
+    public int edgeId(int nodeId, int edgeIndex) {
+        Preconditions.checkArgument(edgeIndex >= 0
+                && edgeIndex < inDegree(nodeId));
+        return edgeIds[starts[nodeId] + edgeIndex];
+    }
+
+    /**
+     * Returns the index of the source node of an edge.
+     *
+     * @param edgeId the index of the edge
+     * @return the index of the source node
+     */
+    public int sourceNodeId(int edgeId) {
+        return sourceNodeIds[edgeId];
+    }
+}
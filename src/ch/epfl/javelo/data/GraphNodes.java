@@ -11,7 +11,7 @@ import java.nio.IntBuffer;
  *
  * @author Timo Moebel (345665)
  */
-public record GraphNodes(IntBuffer buffer) {
+public record GraphNodes(IntBuffer buffer) implements NodeStore {
     private static final int OFFSET_E = 0;
     private static final int OFFSET_N = OFFSET_E + 1;
     private static final int OFFSET_OUT_EDGES = OFFSET_N + 1;
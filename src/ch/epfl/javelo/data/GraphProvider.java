@@ -0,0 +1,225 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Represents the current graph of the application, which can be replaced by a new one
+ * (e.g. loaded from fresher data) while queries are running.
+ * <p>
+ * A query leases the current graph for its whole duration, so that it runs on a single
+ * graph even if it is replaced in the meantime. A replaced graph is retired once its last
+ * lease is closed : the provider then forgets it, so that its files are unmapped as soon as
+ * the garbage collector reclaims its buffers (Java offers no way to unmap them explicitly).
+ * Everything derived from the node or edge indexes of a graph (cost factors, landmarks,
+ * cached routes, waypoints...) must be computed again by the listeners of the provider.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class GraphProvider {
+    private final AtomicReference<Generation> current;
+    private final List<Consumer<Graph>> listeners;
+    private final Graph.Preload preload;
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "javelo-graph-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Represents a graph and the number of references to it : one for the provider while
+     * it is the current graph, plus one per open lease.
+     */
+    private static final class Generation {
+        private final Graph graph;
+        private final AtomicInteger references;
+        private final CompletableFuture<Void> retired;
+
+        private Generation(Graph graph) {
+            this.graph = graph;
+            this.references = new AtomicInteger(1);
+            this.retired = new CompletableFuture<>();
+        }
+
+        private boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                // Already retired : the caller must read the new current graph
+                if (count == 0) return false;
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) retired.complete(null);
+        }
+    }
+
+    /**
+     * Represents the use of a graph by a query, which must be closed at the end of the query.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Generation generation;
+        private final AtomicBoolean closed;
+
+        private Lease(Generation generation) {
+            this.generation = generation;
+            this.closed = new AtomicBoolean();
+        }
+
+        /**
+         * Returns the leased graph.
+         *
+         * @return the graph
+         */
+        public Graph graph() {
+            return generation.graph;
+        }
+
+        /**
+         * Returns a new lease of the same graph, which remains valid once this one is closed
+         * (e.g. for a query started by the holder of this lease, which may outlive it).
+         *
+         * @return the new lease
+         * @throws IllegalStateException if this lease is closed
+         */
+        public Lease duplicate() {
+            if (closed.get() || !generation.retain()) throw new IllegalStateException();
+            return new Lease(generation);
+        }
+
+        /**
+         * Ends the lease (closing it again has no effect).
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) generation.release();
+        }
+    }
+
+    /**
+     * Creates a provider whose current graph is the given one, and whose graphs are
+     * reloaded without preloading.
+     *
+     * @param graph the initial graph
+     */
+    public GraphProvider(Graph graph) {
+        this(graph, Graph.Preload.NONE);
+    }
+
+    /**
+     * Creates a provider whose current graph is the given one.
+     *
+     * @param graph   the initial graph
+     * @param preload the way the files of the reloaded graphs are brought in memory
+     */
+    public GraphProvider(Graph graph, Graph.Preload preload) {
+        this.current = new AtomicReference<>(new Generation(graph));
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.preload = preload;
+    }
+
+    /**
+     * Returns the current graph, without leasing it.
+     *
+     * @return the current graph
+     */
+    public Graph current() {
+        return current.get().graph;
+    }
+
+    /**
+     * Leases the current graph.
+     *
+     * @return the lease, to be closed once the graph is not used anymore
+     */
+    public Lease acquire() {
+        while (true) {
+            Generation generation = current.get();
+            if (generation.retain()) return new Lease(generation);
+        }
+    }
+
+    /**
+     * Adds a listener called with the new graph after each replacement, on the thread
+     * which replaced it. A listener which cannot rebuild the state it derives from the new
+     * graph must throw an exception, so that the replacement is undone.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<Graph> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Replaces the current graph by the given one. The queries running on the previous
+     * graph go on with it.
+     * <p>
+     * If a listener throws an exception, the previous graph is restored, the listeners
+     * already called with the new graph are called again with it, and the exception is
+     * thrown again.
+     *
+     * @param graph the new graph
+     * @return a future completed once the previous graph is retired (no lease remains)
+     */
+    public CompletableFuture<Void> replace(Graph graph) {
+        Generation next = new Generation(graph);
+        Generation previous = current.getAndSet(next);
+        Generation released = previous;
+        List<Consumer<Graph>> listeners = List.copyOf(this.listeners);
+        int notified = 0;
+        try {
+            for (Consumer<Graph> listener : listeners) {
+                listener.accept(graph);
+                notified++;
+            }
+        } catch (RuntimeException | Error e) {
+            // Unless another graph already replaced the new one
+            if (current.compareAndSet(next, previous)) {
+                released = next;
+                try {
+                    for (Consumer<Graph> listener : listeners.subList(0, notified)) listener.accept(previous.graph);
+                } catch (RuntimeException | Error restoring) {
+                    e.addSuppressed(restoring);
+                }
+            }
+            throw e;
+        } finally {
+            released.release();
+        }
+        return previous.retired;
+    }
+
+    /**
+     * Loads the graph at the given path (see {@link Graph#loadFrom(Path, Graph.Preload)}) on a
+     * background thread, then makes it the current graph. If the loading fails, or a
+     * listener cannot take the new graph into account, the current graph is kept.
+     *
+     * @param basePath the path of the graph
+     * @return a future completed with the new graph once it is the current one, or
+     * completed exceptionally if it could not be loaded or was not accepted by a listener
+     */
+    public CompletableFuture<Graph> reload(Path basePath) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Graph graph = Graph.loadFrom(basePath, preload);
+                replace(graph);
+                return graph;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, LOADER);
+    }
+}
@@ -0,0 +1,392 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Represents a spatial index of the nodes of Javelo's graph : a k-d tree packed in a single
+ * array, in which the root of each range of entries is its middle entry, the entries before
+ * it being on one side of its (east or north, alternately) coordinate and the entries after
+ * it on the other side.
+ * <p>
+ * Each entry stores the index of the node and its coordinates (in Q28.4 format), so that the
+ * searches read the array sequentially and allocate nothing. The array can be written to a
+ * file, and mapped instead of being built again.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class NodeIndex {
+    private final IntBuffer entries;
+    private final int count;
+
+    private static final int ENTRY_INTS = 3;
+    private static final int OFFSET_NODE_ID = 0;
+    private static final int OFFSET_E = 1;
+    private static final int OFFSET_N = 2;
+    private static final int AXIS_E = 0;
+    private static final int AXIS_N = 1;
+    // Below this number of entries, the subtrees are built on the current thread
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private NodeIndex(IntBuffer entries) {
+        this.entries = entries;
+        this.count = entries.capacity() / ENTRY_INTS;
+    }
+
+    /**
+     * Builds (in parallel) the index of the given nodes.
+     *
+     * @param nodes the nodes of the graph
+     * @return the index
+     */
+    public static NodeIndex of(NodeStore nodes) {
+        int nodeCount = nodes.count();
+        int[] entries = new int[nodeCount * ENTRY_INTS];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            entries[nodeId * ENTRY_INTS + OFFSET_NODE_ID] = nodeId;
+            entries[nodeId * ENTRY_INTS + OFFSET_E] = (int) Math.scalb(nodes.nodeE(nodeId), 4);
+            entries[nodeId * ENTRY_INTS + OFFSET_N] = (int) Math.scalb(nodes.nodeN(nodeId), 4);
+        }
+        ForkJoinPool.commonPool().invoke(new Builder(entries, 0, nodeCount, AXIS_E));
+        return new NodeIndex(IntBuffer.wrap(entries));
+    }
+
+    /**
+     * Returns the index whose entries were previously written by {@link #writeTo(Path)}.
+     *
+     * @param entries   the entries of the index
+     * @param nodeCount the number of nodes of the graph
+     * @return the index
+     * @throws IllegalArgumentException if there is not one entry per node
+     */
+    public static NodeIndex of(IntBuffer entries, int nodeCount) {
+        Preconditions.checkArgument(entries.capacity() == (long) nodeCount * ENTRY_INTS);
+        return new NodeIndex(entries);
+    }
+
+    /**
+     * Writes the entries of the index to the given file.
+     *
+     * @param file the file
+     * @throws IOException if there is a problem with the file or the path
+     */
+    public void writeTo(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int i = 0; i < entries.capacity(); i++) out.writeInt(entries.get(i));
+        }
+    }
+
+    /**
+     * Returns the index of the node closest to a given point. If several nodes are at
+     * the same distance, the one with the greatest index is returned (which, as the nodes
+     * are sorted by sector, is the one the sectors of the graph would give last).
+     *
+     * @param point          the point in swiss coordinates
+     * @param searchDistance the maximum search distance around the point
+     * @return the index of the closest node, or -1 if there is no node
+     */
+    public int nodeClosestTo(PointCh point, double searchDistance) {
+        int best = closest(0, count, AXIS_E, point.e(), point.n(),
+                -1, searchDistance * searchDistance);
+        return best == -1 ? -1 : nodeId(best);
+    }
+
+    /**
+     * Returns the indexes of the given number of nodes closest to a given point, the
+     * closest one first (ties being broken as in {@link #nodeClosestTo(PointCh, double)}).
+     *
+     * @param point          the point in swiss coordinates
+     * @param count          the maximum number of nodes
+     * @param searchDistance the maximum search distance around the point
+     * @return the indexes of the nodes, fewer than requested if there are not enough nodes
+     * @throws IllegalArgumentException if the number of nodes is negative
+     */
+    public int[] nodesClosestTo(PointCh point, int count, double searchDistance) {
+        Preconditions.checkArgument(count >= 0);
+        Heap heap = new Heap(count, searchDistance * searchDistance);
+        if (count > 0) closest(0, this.count, AXIS_E, point.e(), point.n(), heap);
+        return heap.sortedNodeIds();
+    }
+
+    /**
+     * Calls the given action with the index of every node at most at the given distance of
+     * a given point, in no particular order.
+     *
+     * @param point    the point in swiss coordinates
+     * @param distance the distance around the point
+     * @param action   the action
+     */
+    public void forEachNodeWithin(PointCh point, double distance, IntConsumer action) {
+        within(0, count, AXIS_E, point.e(), point.n(), distance * distance, action);
+    }
+
+    /**
+     * Calls the given action with the index of every node lying in the given rectangle
+     * (borders included), in no particular order.
+     *
+     * @param bottomLeft the bottom left corner of the rectangle
+     * @param topRight   the top right corner of the rectangle
+     * @param action     the action
+     */
+    public void forEachNodeIn(PointCh bottomLeft, PointCh topRight, IntConsumer action) {
+        inside(0, count, AXIS_E, bottomLeft.e(), bottomLeft.n(), topRight.e(), topRight.n(), action);
+    }
+
+    private int nodeId(int entry) {
+        return entries.get(entry * ENTRY_INTS + OFFSET_NODE_ID);
+    }
+
+    private double coordinate(int entry, int axis) {
+        return Q28_4.asDouble(entries.get(entry * ENTRY_INTS + OFFSET_E + axis));
+    }
+
+    private double squaredDistance(int entry, double e, double n) {
+        return Math2.squaredNorm(e - coordinate(entry, AXIS_E), n - coordinate(entry, AXIS_N));
+    }
+
+    /**
+     * Checks if the first entry is better than the second one, at the given squared distances.
+     */
+    private boolean isBetter(int entry, double squaredDistance, int other, double otherSquaredDistance) {
+        return squaredDistance < otherSquaredDistance
+                || squaredDistance == otherSquaredDistance && nodeId(entry) > nodeId(other);
+    }
+
+    /**
+     * Returns the best entry among the given one and the entries of the given range, or the
+     * given entry (-1 if none) if no entry of the range is closer than the given squared distance.
+     */
+    private int closest(int from, int to, int axis, double e, double n, int best, double bestSquaredDistance) {
+        if (from >= to) return best;
+        int middle = (from + to) >>> 1;
+        double squaredDistance = squaredDistance(middle, e, n);
+        if (best == -1
+                ? squaredDistance <= bestSquaredDistance
+                : isBetter(middle, squaredDistance, best, bestSquaredDistance)) {
+            best = middle;
+            bestSquaredDistance = squaredDistance;
+        }
+        double difference = (axis == AXIS_E ? e : n) - coordinate(middle, axis);
+        int nextAxis = 1 - axis;
+        boolean before = difference < 0;
+        int found = before
+                ? closest(from, middle, nextAxis, e, n, best, bestSquaredDistance)
+                : closest(middle + 1, to, nextAxis, e, n, best, bestSquaredDistance);
+        if (found != best) {
+            best = found;
+            bestSquaredDistance = squaredDistance(found, e, n);
+        }
+        // The other side can only contain nodes farther than the splitting line
+        if (difference * difference <= bestSquaredDistance) {
+            best = before
+                    ? closest(middle + 1, to, nextAxis, e, n, best, bestSquaredDistance)
+                    : closest(from, middle, nextAxis, e, n, best, bestSquaredDistance);
+        }
+        return best;
+    }
+
+    private void closest(int from, int to, int axis, double e, double n, Heap heap) {
+        if (from >= to) return;
+        int middle = (from + to) >>> 1;
+        heap.offer(middle, squaredDistance(middle, e, n));
+        double difference = (axis == AXIS_E ? e : n) - coordinate(middle, axis);
+        int nextAxis = 1 - axis;
+        boolean before = difference < 0;
+        if (before) closest(from, middle, nextAxis, e, n, heap);
+        else closest(middle + 1, to, nextAxis, e, n, heap);
+        if (difference * difference <= heap.bound()) {
+            if (before) closest(middle + 1, to, nextAxis, e, n, heap);
+            else closest(from, middle, nextAxis, e, n, heap);
+        }
+    }
+
+    private void within(int from, int to, int axis, double e, double n,
+                        double squaredDistance, IntConsumer action) {
+        if (from >= to) return;
+        int middle = (from + to) >>> 1;
+        if (squaredDistance(middle, e, n) <= squaredDistance) action.accept(nodeId(middle));
+        double difference = (axis == AXIS_E ? e : n) - coordinate(middle, axis);
+        boolean reachesOtherSide = difference * difference <= squaredDistance;
+        if (difference < 0 || reachesOtherSide) within(from, middle, 1 - axis, e, n, squaredDistance, action);
+        if (difference >= 0 || reachesOtherSide) within(middle + 1, to, 1 - axis, e, n, squaredDistance, action);
+    }
+
+    private void inside(int from, int to, int axis, double minE, double minN,
+                        double maxE, double maxN, IntConsumer action) {
+        if (from >= to) return;
+        int middle = (from + to) >>> 1;
+        double e = coordinate(middle, AXIS_E);
+        double n = coordinate(middle, AXIS_N);
+        if (minE <= e && e <= maxE && minN <= n && n <= maxN) action.accept(nodeId(middle));
+        double coordinate = axis == AXIS_E ? e : n;
+        // Entries before the middle one are not after it on its axis, and conversely
+        if (coordinate >= (axis == AXIS_E ? minE : minN))
+            inside(from, middle, 1 - axis, minE, minN, maxE, maxN, action);
+        if (coordinate <= (axis == AXIS_E ? maxE : maxN))
+            inside(middle + 1, to, 1 - axis, minE, minN, maxE, maxN, action);
+    }
+
+    /**
+     * Represents the best entries found so far by a search of the closest nodes, in a
+     * binary heap whose root is the worst of them.
+     */
+    private final class Heap {
+        private final int[] entries;
+        private final double[] squaredDistances;
+        private final double maxSquaredDistance;
+        private int size;
+
+        private Heap(int capacity, double maxSquaredDistance) {
+            this.entries = new int[capacity];
+            this.squaredDistances = new double[capacity];
+            this.maxSquaredDistance = maxSquaredDistance;
+        }
+
+        /**
+         * Returns the squared distance beyond which no entry can be added.
+         */
+        private double bound() {
+            return size < entries.length ? maxSquaredDistance : squaredDistances[0];
+        }
+
+        private boolean isWorse(int i, int j) {
+            return isBetter(entries[j], squaredDistances[j], entries[i], squaredDistances[i]);
+        }
+
+        private void offer(int entry, double squaredDistance) {
+            if (squaredDistance > maxSquaredDistance) return;
+            if (size < entries.length) {
+                int i = size++;
+                entries[i] = entry;
+                squaredDistances[i] = squaredDistance;
+                while (i > 0 && isWorse(i, (i - 1) / 2)) {
+                    swap(i, (i - 1) / 2);
+                    i = (i - 1) / 2;
+                }
+            } else if (isBetter(entry, squaredDistance, entries[0], squaredDistances[0])) {
+                entries[0] = entry;
+                squaredDistances[0] = squaredDistance;
+                siftDown(0, size);
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (2 * i + 1 < end) {
+                int child = 2 * i + 1;
+                if (child + 1 < end && isWorse(child + 1, child)) child += 1;
+                if (!isWorse(child, i)) return;
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int entry = entries[i];
+            entries[i] = entries[j];
+            entries[j] = entry;
+            double squaredDistance = squaredDistances[i];
+            squaredDistances[i] = squaredDistances[j];
+            squaredDistances[j] = squaredDistance;
+        }
+
+        /**
+         * Empties the heap, and returns the indexes of the nodes of its entries, the best first.
+         */
+        private int[] sortedNodeIds() {
+            int[] nodeIds = new int[size];
+            for (int end = size - 1; end >= 0; end--) {
+                nodeIds[end] = nodeId(entries[0]);
+                swap(0, end);
+                siftDown(0, end);
+            }
+            size = 0;
+            return nodeIds;
+        }
+    }
+
+    /**
+     * Sorts the entries of a range so that its middle entry splits it along the given axis,
+     * then sorts the two halves along the other axis.
+     */
+    private static final class Builder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] entries;
+        private final int from;
+        private final int to;
+        private final int axis;
+
+        private Builder(int[] entries, int from, int to, int axis) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.axis = axis;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) return;
+            int middle = (from + to) >>> 1;
+            select(entries, from, to, middle, axis);
+            Builder before = new Builder(entries, from, middle, 1 - axis);
+            Builder after = new Builder(entries, middle + 1, to, 1 - axis);
+            if (to - from < PARALLEL_THRESHOLD) {
+                before.compute();
+                after.compute();
+            } else {
+                invokeAll(before, after);
+            }
+        }
+
+        /**
+         * Moves the entries of the range so that the given one has its final rank along the
+         * given axis (quickselect, with a three-way partition since coordinates may be equal).
+         */
+        private static void select(int[] entries, int from, int to, int rank, int axis) {
+            while (to - from > 1) {
+                int pivot = medianOfThree(
+                        key(entries, from, axis),
+                        key(entries, (from + to) >>> 1, axis),
+                        key(entries, to - 1, axis));
+                int lower = from, i = from, upper = to;
+                while (i < upper) {
+                    int key = key(entries, i, axis);
+                    if (key < pivot) swap(entries, lower++, i++);
+                    else if (key > pivot) swap(entries, i, --upper);
+                    else i++;
+                }
+                if (rank < lower) to = lower;
+                else if (rank >= upper) from = upper;
+                else return;
+            }
+        }
+
+        private static int key(int[] entries, int entry, int axis) {
+            return entries[entry * ENTRY_INTS + OFFSET_E + axis];
+        }
+
+        private static int medianOfThree(int a, int b, int c) {
+            return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+        }
+
+        private static void swap(int[] entries, int i, int j) {
+            for (int k = 0; k < ENTRY_INTS; k++) {
+                int value = entries[i * ENTRY_INTS + k];
+                entries[i * ENTRY_INTS + k] = entries[j * ENTRY_INTS + k];
+                entries[j * ENTRY_INTS + k] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Represents the storage of the nodes of Javelo's graph, whatever its layout.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public interface NodeStore {
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return the number of nodes
+     */
+    int count();
+
+    /**
+     * Returns a given node's east PointCh Coordinate.
+     *
+     * @param nodeId the index of the node
+     * @return the east coordinate of the node
+     */
+    double nodeE(int nodeId);
+
+    /**
+     * Returns a given node's north PointCh coordinate.
+     *
+     * @param nodeId the index of the node
+     * @return the north coordinate of the node
+     */
+    double nodeN(int nodeId);
+
+    /**
+     * Returns the number of edges coming out of a given node.
+     *
+     * @param nodeId the index of the node
+     * @return the number of edges
+     */
+    int outDegree(int nodeId);
+
+    /**
+     * Returns the "global" index of an edge coming out of a given node.
+     *
+     * @param nodeId    the index of the node
+     * @param edgeIndex the "local" index of the edge (restricted to edges coming out of the node)
+     * @return the index of the edge
+     */
+    int edgeId(int nodeId, int edgeIndex);
+}
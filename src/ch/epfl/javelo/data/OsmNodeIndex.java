@@ -0,0 +1,165 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Represents the index of the nodes of Javelo's graph by their OpenStreetMap identity : the
+ * identities sorted in increasing order, followed by the indexes of the corresponding nodes,
+ * in which an identity is found by binary search.
+ * <p>
+ * The two arrays can be written to a file, and mapped instead of being built again.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class OsmNodeIndex {
+    private final LongBuffer osmIds;
+    private final IntBuffer nodeIds;
+    private final int count;
+
+    private OsmNodeIndex(LongBuffer osmIds, IntBuffer nodeIds) {
+        this.osmIds = osmIds;
+        this.nodeIds = nodeIds;
+        this.count = osmIds.capacity();
+    }
+
+    /**
+     * Builds the index of the given identities.
+     *
+     * @param osmIds the OpenStreetMap identities of the nodes, indexed by node
+     * @return the index
+     */
+    public static OsmNodeIndex of(LongBuffer osmIds) {
+        int nodeCount = osmIds.capacity();
+        long[] sortedOsmIds = new long[nodeCount];
+        int[] nodeIds = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            sortedOsmIds[nodeId] = osmIds.get(nodeId);
+            nodeIds[nodeId] = nodeId;
+        }
+        sort(sortedOsmIds, nodeIds);
+        return new OsmNodeIndex(LongBuffer.wrap(sortedOsmIds), IntBuffer.wrap(nodeIds));
+    }
+
+    /**
+     * Returns the index whose arrays were previously written by {@link #writeTo(Path)}.
+     *
+     * @param buffer    the content of the file
+     * @param nodeCount the number of nodes of the graph
+     * @return the index
+     * @throws IllegalArgumentException if there is not one entry per node
+     */
+    public static OsmNodeIndex of(ByteBuffer buffer, int nodeCount) {
+        int osmIdsSize = nodeCount * Long.BYTES;
+        Preconditions.checkArgument(buffer.capacity() == (long) nodeCount * (Long.BYTES + Integer.BYTES));
+        return new OsmNodeIndex(
+                buffer.slice(0, osmIdsSize).asLongBuffer(),
+                buffer.slice(osmIdsSize, nodeCount * Integer.BYTES).asIntBuffer());
+    }
+
+    /**
+     * Writes the arrays of the index to the given file.
+     *
+     * @param file the file
+     * @throws IOException if there is a problem with the file or the path
+     */
+    public void writeTo(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int i = 0; i < count; i++) out.writeLong(osmIds.get(i));
+            for (int i = 0; i < count; i++) out.writeInt(nodeIds.get(i));
+        }
+    }
+
+    /**
+     * Returns the index of the node having the given OpenStreetMap identity. If several
+     * nodes have it, the one with the smallest index is returned.
+     *
+     * @param osmId the OpenStreetMap identity
+     * @return the index of the node, or -1 if there is no such node
+     */
+    public int nodeId(long osmId) {
+        int i = lowerBound(osmId, 0);
+        return i < count && osmIds.get(i) == osmId ? nodeIds.get(i) : -1;
+    }
+
+    /**
+     * Looks up the nodes having the given OpenStreetMap identities, as
+     * {@link #nodeId(long)} does, and stores their indexes (or -1) in the given array.
+     * The searches are faster when the identities are sorted.
+     *
+     * @param osmIds  the OpenStreetMap identities
+     * @param nodeIds the array receiving the indexes of the nodes
+     * @throws IllegalArgumentException if the second array is shorter than the first one
+     */
+    public void nodeIds(long[] osmIds, int[] nodeIds) {
+        Preconditions.checkArgument(nodeIds.length >= osmIds.length);
+        int from = 0;
+        long previous = Long.MIN_VALUE;
+        for (int j = 0; j < osmIds.length; j++) {
+            long osmId = osmIds[j];
+            // The identities greater than the previous one cannot be before its position
+            if (osmId < previous) from = 0;
+            int i = lowerBound(osmId, from);
+            nodeIds[j] = i < count && this.osmIds.get(i) == osmId ? this.nodeIds.get(i) : -1;
+            from = i;
+            previous = osmId;
+        }
+    }
+
+    /**
+     * Returns the position of the first identity greater or equal to the given one,
+     * knowing that it is not before the given position.
+     */
+    private int lowerBound(long osmId, int from) {
+        int low = from, high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (osmIds.get(middle) < osmId) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Sorts the identities in increasing order and the node indexes along with them.
+     * The sort (a bottom-up merge sort) is stable, so that the nodes having the same
+     * identity stay in increasing order.
+     */
+    private static void sort(long[] osmIds, int[] nodeIds) {
+        int n = osmIds.length;
+        long[] osmIdsFrom = osmIds, osmIdsTo = new long[n];
+        int[] nodeIdsFrom = nodeIds, nodeIdsTo = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int start = 0; start < n; start += 2 * width) {
+                int middle = Math.min(start + width, n);
+                int end = Math.min(start + 2 * width, n);
+                int i = start, j = middle;
+                for (int k = start; k < end; k++) {
+                    boolean left = j >= end || i < middle && osmIdsFrom[i] <= osmIdsFrom[j];
+                    int source = left ? i++ : j++;
+                    osmIdsTo[k] = osmIdsFrom[source];
+                    nodeIdsTo[k] = nodeIdsFrom[source];
+                }
+            }
+            long[] osmIdsSwap = osmIdsFrom;
+            osmIdsFrom = osmIdsTo;
+            osmIdsTo = osmIdsSwap;
+            int[] nodeIdsSwap = nodeIdsFrom;
+            nodeIdsFrom = nodeIdsTo;
+            nodeIdsTo = nodeIdsSwap;
+        }
+        if (osmIdsFrom != osmIds) {
+            System.arraycopy(osmIdsFrom, 0, osmIds, 0, n);
+            System.arraycopy(nodeIdsFrom, 0, nodeIds, 0, n);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * Represents a bounded cache of the decoded elevation profiles of the edges, so that the
+ * profiles of the edges used repeatedly (by successive routes) are only decoded once.
+ * The cache is direct-mapped : each edge has a single slot, chosen from the low bits of
+ * its index, and the profile of an edge replaces the one previously stored in its slot.
+ * <p>
+ * The cache can be shared between threads without locking : its entries are immutable,
+ * so a thread reads either an old entry or a new one, never a partially built one.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+final class ProfileCache {
+    private final EdgeStore edges;
+    private final Entry[] entries;
+    private final int mask;
+
+    static final int DEFAULT_CAPACITY = 1 << 13;
+
+    private record Entry(int edgeId, float[] samples) {
+    }
+
+    /**
+     * Creates a cache of the profiles of the given edges.
+     *
+     * @param edges    the edges
+     * @param capacity the number of profiles kept in memory
+     * @throws IllegalArgumentException if the capacity is not a positive power of two
+     */
+    ProfileCache(EdgeStore edges, int capacity) {
+        Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1);
+        this.edges = edges;
+        this.entries = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the elevation samples of an edge, decoding them if they are not in the cache.
+     * The returned array is shared and must not be modified.
+     *
+     * @param edgeId the index of the edge
+     * @return the elevation samples, an empty array if the edge has no profile
+     */
+    float[] samples(int edgeId) {
+        int slot = edgeId & mask;
+        Entry entry = entries[slot];
+        if (entry != null && entry.edgeId() == edgeId) return entry.samples();
+        float[] samples = edges.profileSamples(edgeId);
+        entries[slot] = new Entry(edgeId, samples);
+        return samples;
+    }
+}
@@ -0,0 +1,84 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Represents a read-only block of big-endian binary data addressed by long offsets,
+ * such as the content of one of the files of the graph.
+ * <p>
+ * Unlike a {@link ByteBuffer}, a storage is not limited to 2 GB, and its offsets cannot
+ * overflow when the index of an element is multiplied by the size of an element.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public interface Storage {
+
+    /**
+     * Returns the size of the storage.
+     *
+     * @return the size in bytes
+     */
+    long byteSize();
+
+    /**
+     * Returns the short starting at the given offset.
+     *
+     * @param offset the offset in bytes
+     * @return the short
+     */
+    short getShort(long offset);
+
+    /**
+     * Returns the int starting at the given offset.
+     *
+     * @param offset the offset in bytes
+     * @return the int
+     */
+    int getInt(long offset);
+
+    /**
+     * Returns the long starting at the given offset.
+     *
+     * @param offset the offset in bytes
+     * @return the long
+     */
+    long getLong(long offset);
+
+    /**
+     * Reads all the pages of the storage from the disk, if it is mapped, so that the next
+     * accesses do not wait for the disk (as long as the system does not evict the pages).
+     *
+     * @return this storage
+     */
+    Storage load();
+
+    /**
+     * Returns a copy of the storage on the heap.
+     *
+     * @return the copy
+     */
+    Storage copyToHeap();
+
+    /**
+     * Returns a storage reading the given buffer (from its index 0 to its capacity).
+     *
+     * @param buffer the buffer
+     * @return the storage
+     */
+    static Storage of(ByteBuffer buffer) {
+        return new BufferStorage(buffer);
+    }
+
+    /**
+     * Maps the given file in memory, whatever its size.
+     *
+     * @param path the path of the file
+     * @return the storage of the content of the file
+     * @throws IOException if there is a problem with the file
+     */
+    static Storage map(Path path) throws IOException {
+        return ChunkedStorage.map(path, ChunkedStorage.CHUNK_SHIFT);
+    }
+}
@@ -0,0 +1,82 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Q28_4;
+
+/**
+ * Represents the edges of Javelo's graph in the layout of {@link GraphEdges}, read from
+ * {@link Storage}s with long offsets.
+ *
+ * @param edges      the content of the edges file
+ * @param profileIds the content of the profile identities file
+ * @param elevations the content of the elevation samples file
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public record StorageEdges(Storage edges, Storage profileIds, Storage elevations) implements EdgeStore {
+    private static final int LENGTH_OFFSET = Integer.BYTES;
+    private static final int HEIGHT_DIFFERENCE_OFFSET = LENGTH_OFFSET + Short.BYTES;
+    private static final int ATTRIBUTES_INDEX_OFFSET = HEIGHT_DIFFERENCE_OFFSET + Short.BYTES;
+    private static final int EDGE_BYTES = ATTRIBUTES_INDEX_OFFSET + Short.BYTES;
+
+    private static final int PROFILE_TYPE_START = 30;
+    private static final int PROFILE_TYPE_LENGTH = 2;
+
+    @Override
+    public int count() {
+        return Math.toIntExact(edges.byteSize() / EDGE_BYTES);
+    }
+
+    @Override
+    public boolean isInverted(int edgeId) {
+        return edges.getInt(offset(edgeId)) < 0;
+    }
+
+    @Override
+    public int targetNodeId(int edgeId) {
+        int wayAndNodeId = edges.getInt(offset(edgeId));
+        return wayAndNodeId < 0 ? ~wayAndNodeId : wayAndNodeId;
+    }
+
+    @Override
+    public double length(int edgeId) {
+        return Q28_4.asDouble(Short.toUnsignedInt(edges.getShort(offset(edgeId) + LENGTH_OFFSET)));
+    }
+
+    @Override
+    public double elevationGain(int edgeId) {
+        return Q28_4.asDouble(Short.toUnsignedInt(
+                edges.getShort(offset(edgeId) + HEIGHT_DIFFERENCE_OFFSET)));
+    }
+
+    @Override
+    public boolean hasProfile(int edgeId) {
+        return Bits.extractUnsigned(profileId(edgeId), PROFILE_TYPE_START, PROFILE_TYPE_LENGTH) != 0;
+    }
+
+    @Override
+    public int profileSampleCount(int edgeId) {
+        return GraphEdges.sampleCount(profileId(edgeId), edges.getShort(offset(edgeId) + LENGTH_OFFSET));
+    }
+
+    @Override
+    public int profileSamples(int edgeId, float[] destination, int offset) {
+        return GraphEdges.profileSamples(profileId(edgeId),
+                edges.getShort(offset(edgeId) + LENGTH_OFFSET),
+                isInverted(edgeId),
+                index -> elevations.getShort((long) index * Short.BYTES),
+                destination, offset);
+    }
+
+    @Override
+    public int attributesIndex(int edgeId) {
+        return Short.toUnsignedInt(edges.getShort(offset(edgeId) + ATTRIBUTES_INDEX_OFFSET));
+    }
+
+    private int profileId(int edgeId) {
+        return profileIds.getInt((long) edgeId * Integer.BYTES);
+    }
+
+    private static long offset(int edgeId) {
+        return (long) edgeId * EDGE_BYTES;
+    }
+}
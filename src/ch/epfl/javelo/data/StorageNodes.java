@@ -0,0 +1,56 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+
+/**
+ * Represents the nodes of Javelo's graph in the layout of {@link GraphNodes}, read from a
+ * {@link Storage} with long offsets.
+ *
+ * @param storage the content of the nodes file
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public record StorageNodes(Storage storage) implements NodeStore {
+    private static final int OFFSET_E = 0;
+    private static final int OFFSET_N = OFFSET_E + Integer.BYTES;
+    private static final int OFFSET_OUT_EDGES = OFFSET_N + Integer.BYTES;
+    private static final int NODE_BYTES = OFFSET_OUT_EDGES + Integer.BYTES;
+
+    private static final int OUT_DEGREE_START = 28;
+    private static final int OUT_DEGREE_LENGTH = 4;
+    private static final int FIRST_EDGE_ID_START = 0;
+    private static final int FIRST_EDGE_ID_LENGTH = 28;
+
+    @Override
+    public int count() {
+        return Math.toIntExact(storage.byteSize() / NODE_BYTES);
+    }
+
+    @Override
+    public double nodeE(int nodeId) {
+        return Q28_4.asDouble(storage.getInt((long) nodeId * NODE_BYTES + OFFSET_E));
+    }
+
+    @Override
+    public double nodeN(int nodeId) {
+        return Q28_4.asDouble(storage.getInt((long) nodeId * NODE_BYTES + OFFSET_N));
+    }
+
+    @Override
+    public int outDegree(int nodeId) {
+        return Bits.extractUnsigned(edgesInfo(nodeId), OUT_DEGREE_START, OUT_DEGREE_LENGTH);
+    }
+
+    @Override
+    public int edgeId(int nodeId, int edgeIndex) {
+        int edgesInfo = edgesInfo(nodeId);
+        Preconditions.checkArgument(edgeIndex >= 0
+                && edgeIndex < Bits.extractUnsigned(edgesInfo, OUT_DEGREE_START, OUT_DEGREE_LENGTH));
+        return Bits.extractUnsigned(edgesInfo, FIRST_EDGE_ID_START, FIRST_EDGE_ID_LENGTH) + edgeIndex;
+    }
+
+    private int edgesInfo(int nodeId) {
+        return storage.getInt((long) nodeId * NODE_BYTES + OFFSET_OUT_EDGES);
+    }
+}
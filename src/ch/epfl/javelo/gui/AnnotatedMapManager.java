@@ -1,9 +1,11 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphProvider;
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
 import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
 import ch.epfl.javelo.routing.RoutePoint;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
@@ -25,6 +27,7 @@ public final class AnnotatedMapManager {
     private final DoubleProperty mousePositionOnRouteProperty;
     private final ObjectProperty<MapViewParameters> mvpProperty;
     private final RouteBean routeBean;
+    private final WaypointsManager waypointsManager;
     private final Pane pane;
 
     private static final int INITIAL_X_TOP_LEFT = 543_200;
@@ -54,7 +57,7 @@ public final class AnnotatedMapManager {
         mousePositionProperty = new SimpleObjectProperty<>();
         mousePositionOnRouteProperty = new SimpleDoubleProperty(Double.NaN);
 
-        WaypointsManager wpm = new WaypointsManager(
+        this.waypointsManager = new WaypointsManager(
                 graph,
                 mvpProperty,
                 routeBean.waypointsObservableList(),
@@ -62,12 +65,13 @@ public final class AnnotatedMapManager {
 
         this.routeBean = routeBean;
 
-        BaseMapManager bmp = new BaseMapManager(tileManager, wpm, mvpProperty);
+        BaseMapManager bmp = new BaseMapManager(tileManager, waypointsManager, mvpProperty);
         RouteManager routeManager = new RouteManager(routeBean,
+                waypointsManager,
                 mvpProperty);
 
 
-        pane = new StackPane(bmp.pane(), wpm.pane(), routeManager.pane());
+        pane = new StackPane(bmp.pane(), waypointsManager.pane(), routeManager.pane());
         pane.getStylesheets().add("map.css");
 
         addEvents();
@@ -83,6 +87,19 @@ public final class AnnotatedMapManager {
         return pane;
     }
 
+    /**
+     * Replaces the graph and the route computer using it : the waypoints are attached to
+     * the nodes of the new graph, and the route is computed again.
+     *
+     * @param lease         the lease of the new graph, closed by the route bean once it uses
+     *                      another graph
+     * @param routeComputer the route computer of the new graph
+     */
+    public void graphChanged(GraphProvider.Lease lease, RouteComputer routeComputer) {
+        routeBean.setRouteComputer(routeComputer, lease);
+        waypointsManager.graphChanged(lease.graph());
+    }
+
     /**
      * Returns a read-only property containing the position (in meters) of the
      * position highlighted by the mouse on the route.
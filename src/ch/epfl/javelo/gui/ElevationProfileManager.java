@@ -225,17 +225,55 @@ public final class ElevationProfileManager {
         Rectangle2D rect = profileRectangleProperty.get();
         ElevationProfile ep = profileProperty.get();
         Transform worldToScreen = worldToScreenProperty.get();
-        double step = ep.length() / (rect.getWidth());
-        polygon.getPoints().clear();
-        polygon.getPoints().addAll(rect.getMinX(), rect.getMaxY());
-        for (double i = 0; i <= ep.length(); i += step) {
-            Point2D worldPoint = new Point2D(i, ep.elevationAt(i));
-            Point2D screenPoint = worldToScreen.transform(worldPoint);
-            polygon.getPoints().addAll(
-                    screenPoint.getX(),
-                    screenPoint.getY());
+        int columnCount = (int) Math.ceil(rect.getWidth());
+        if (columnCount == 0) {
+            polygon.getPoints().clear();
+            return;
         }
-        polygon.getPoints().addAll(rect.getMaxX(), rect.getMaxY());
+        double columnLength = ep.length() / columnCount;
+
+        // Screen coordinates of the points of the polygon, set at once
+        Double[] points;
+        int p = 0;
+        if (ep.sampleCount() - 1 <= columnCount) {
+            // Fewer samples than columns : the profile is drawn through its points at the column limits
+            points = new Double[2 * (columnCount + 3)];
+            for (int j = 0; j <= columnCount; j++) {
+                double position = j * columnLength;
+                p = addPoint(points, p, worldToScreen, position, ep.elevationAt(position));
+            }
+        } else {
+            // Several samples per column : the profile is drawn as the range of its elevations
+            // in each column, from the end nearest to the previous column to the other one
+            float[] minElevations = new float[columnCount];
+            float[] maxElevations = new float[columnCount];
+            ep.elevationRanges(minElevations, maxElevations);
+            points = new Double[2 * (2 * columnCount + 4)];
+            p = addPoint(points, p, worldToScreen, 0, ep.elevationAt(0));
+            for (int j = 0; j < columnCount; j++) {
+                double position = (j + 0.5) * columnLength;
+                boolean descending = ep.elevationAt(j * columnLength) > ep.elevationAt((j + 1) * columnLength);
+                p = addPoint(points, p, worldToScreen, position,
+                        descending ? maxElevations[j] : minElevations[j]);
+                p = addPoint(points, p, worldToScreen, position,
+                        descending ? minElevations[j] : maxElevations[j]);
+            }
+            p = addPoint(points, p, worldToScreen, ep.length(), ep.elevationAt(ep.length()));
+        }
+        points[p++] = rect.getMaxX();
+        points[p++] = rect.getMaxY();
+        points[p++] = rect.getMinX();
+        points[p] = rect.getMaxY();
+        polygon.getPoints().setAll(points);
+    }
+
+    private static int addPoint(Double[] points, int index, Transform worldToScreen,
+                                double position, double elevation) {
+        points[index] = worldToScreen.getMxx() * position + worldToScreen.getMxy() * elevation
+                + worldToScreen.getTx();
+        points[index + 1] = worldToScreen.getMyx() * position + worldToScreen.getMyy() * elevation
+                + worldToScreen.getTy();
+        return index + 2;
     }
 
     private void createGridAndEtiquettes() {
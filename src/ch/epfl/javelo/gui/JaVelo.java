@@ -1,8 +1,11 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphBundle;
+import ch.epfl.javelo.data.GraphProvider;
 import ch.epfl.javelo.routing.*;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.BooleanBinding;
 import javafx.geometry.Orientation;
@@ -18,6 +21,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.function.Consumer;
 
@@ -29,6 +33,11 @@ import java.util.function.Consumer;
 public final class JaVelo extends Application {
 
     private static final Path GRAPH_DATA_PATH = Path.of("javelo-data");
+    private static final String COST_PROFILE = "citybike";
+    private static final String OVERLAY_FILE_NAME = "overlay.txt";
+    private static final String PRELOAD_PARAMETER = "preload";
+    private static final String BUNDLE_FILE_NAME = "graph.bundle";
+    private static final String RELOAD_ERROR = "Chargement des données impossible !";
     private static final Path CACHE_PATH = Path.of("osm-cache");
     private static final String TILE_SERVER_NAME = "tile.openstreetmap.org";
     private static final String WINDOW_NAME = "JaVelo";
@@ -66,18 +75,57 @@ public final class JaVelo extends Application {
             }
         }
 
-        Graph graph = Graph.loadFrom(GRAPH_DATA_PATH);
-        CostFunction cf = new CityBikeCF(graph);
+        // e.g. --preload=heap, for predictable response times from the first route on
+        Graph.Preload preload = Graph.Preload.valueOf(getParameters().getNamed()
+                .getOrDefault(PRELOAD_PARAMETER, Graph.Preload.NONE.name())
+                .toUpperCase());
+        long t0 = System.nanoTime();
+        Path bundlePath = GRAPH_DATA_PATH.resolve(BUNDLE_FILE_NAME);
+        Graph graph;
+        if (Files.exists(bundlePath)) {
+            GraphBundle bundle = GraphBundle.open(bundlePath, preload);
+            bundle.verification().whenComplete((v, e) -> {
+                if (e != null) Platform.runLater(() -> errorManager.displayError("Données corrompues !"));
+            });
+            graph = bundle.graph();
+        } else {
+            graph = Graph.loadFrom(GRAPH_DATA_PATH, preload);
+        }
+        System.out.printf("Graphe chargé en %d ms (préchargement : %s)%n",
+                (System.nanoTime() - t0) / 1_000_000, preload);
+        Path graphPath = Files.exists(bundlePath) ? bundlePath : GRAPH_DATA_PATH;
+        GraphProvider graphProvider = new GraphProvider(graph, preload);
+        EdgeOverlay overlay = loadOverlay(graph);
+        CostFunction cf = costFunction(graph, overlay);
 
         BorderPane mainPane = new BorderPane();
         SplitPane mapAndProfile = new SplitPane();
 
         TileManager tm = new TileManager(CACHE_PATH, TILE_SERVER_NAME);
         RouteComputer rc = new RouteComputer(graph, cf);
-        RouteBean routeBean = new RouteBean(rc);
+        RouteBean routeBean = new RouteBean(rc, graphProvider.acquire());
+        overlay.addListener(update -> Platform.runLater(() -> routeBean.overlayChanged(update)));
 
         ErrorConsumer errorConsumer = new ErrorConsumer();
         AnnotatedMapManager amm = new AnnotatedMapManager(graph, tm, routeBean, errorConsumer);
+        // Called on the loading thread, where the data derived from the new graph is computed.
+        // If it cannot be, the new graph is rejected and the reload fails.
+        graphProvider.addListener(newGraph -> {
+            EdgeOverlay newOverlay;
+            RouteComputer newRc;
+            try {
+                newOverlay = loadOverlay(newGraph);
+                newRc = new RouteComputer(newGraph, costFunction(newGraph, newOverlay));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // The new graph is the current one while the listeners are called
+            GraphProvider.Lease newLease = graphProvider.acquire();
+            Platform.runLater(() -> {
+                newOverlay.addListener(update -> Platform.runLater(() -> routeBean.overlayChanged(update)));
+                amm.graphChanged(newLease, newRc);
+            });
+        });
         ElevationProfileManager epm = new ElevationProfileManager(
                 routeBean.getElevationProfile(),
                 routeBean.highlightedPositionProperty());
@@ -107,6 +155,11 @@ public final class JaVelo extends Application {
             }
         });
         menu.getItems().add(menuItem);
+        MenuItem reloadItem = new MenuItem("Recharger les données");
+        reloadItem.setOnAction(e -> graphProvider.reload(graphPath).whenComplete((newGraph, exception) -> {
+            if (exception != null) Platform.runLater(() -> errorManager.displayError(RELOAD_ERROR));
+        }));
+        menu.getItems().add(reloadItem);
         menuBar.getMenus().add(menu);
 
         mainPane.setTop(menuBar);
@@ -137,4 +190,17 @@ public final class JaVelo extends Application {
         primaryStage.setScene(scene);
         primaryStage.show();
     }
+
+    private static EdgeOverlay loadOverlay(Graph graph) throws IOException {
+        EdgeOverlay overlay = new EdgeOverlay(graph);
+        Path overlayPath = GRAPH_DATA_PATH.resolve(OVERLAY_FILE_NAME);
+        if (Files.exists(overlayPath)) overlay.loadFrom(overlayPath);
+        return overlay;
+    }
+
+    private static CostFunction costFunction(Graph graph, EdgeOverlay overlay) throws IOException {
+        PrecomputedCF precomputed = PrecomputedCF.loadOrCompute(
+                GRAPH_DATA_PATH, COST_PROFILE, graph, new CityBikeCF(graph));
+        return new OverlayCF(precomputed, overlay);
+    }
 }
@@ -1,19 +1,37 @@
 package ch.epfl.javelo.gui;
 
+import ch.epfl.javelo.data.EdgePoint;
+import ch.epfl.javelo.data.GraphProvider;
 import ch.epfl.javelo.routing.*;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.util.Pair;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 /**
  * Represents a JavaFX Bean containing properties related to the route.
+ * <p>
+ * The legs of the route which are not in the cache are computed concurrently on
+ * background threads, and the route is updated on the JavaFX thread once all of them
+ * are known, unless the waypoints changed again in the meantime, in which case the
+ * searches still running are abandoned.
+ * <p>
+ * If the graph of the route computer is provided by a {@link GraphProvider}, the bean holds
+ * a lease of it, and each batch of searches its own one, so that the graph is only retired
+ * once the bean uses another one and the searches on it are over.
  *
  * @author Timo Moebel (345665)
  */
@@ -23,11 +41,76 @@ public final class RouteBean {
     private final ObjectProperty<Route> route;
     private final ObjectProperty<ElevationProfile> elevationProfile;
     private final DoubleProperty highlightedPosition;
-    private final RouteComputer routeComputer;
-    private final Map<Pair<Integer, Integer>, Route> memoryCache;
+    private RouteComputer routeComputer;
+    private GraphProvider.Lease lease;
+    private final Map<Leg, Route> memoryCache;
+    // Incremented each time the waypoints change, so that stale computations can be abandoned
+    private final AtomicLong generation;
+    private List<Integer> segmentWaypointIndexes;
 
     private static final int MAX_STEP_LENGTH = 5;
     private static final int CACHE_SIZE = 50;
+    private static final int ROUTING_THREADS =
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    // Shared by all beans, its (daemon) threads do not prevent the application from exiting
+    private static final ExecutorService EXECUTOR =
+            Executors.newFixedThreadPool(ROUTING_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "javelo-routing");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Represents the extremities of a leg of the route : the points of the roads closest to
+     * its waypoints if all the waypoints have one, their closest nodes otherwise.
+     */
+    record Leg(EdgePoint start, EdgePoint end, int startNodeId, int endNodeId) {
+
+        /**
+         * Returns the legs between consecutive waypoints (empty ones included), which meet
+         * at the same point : since a waypoint which is not attached to the roads can only
+         * be reached at its node, the legs all go from node to node if there is one.
+         *
+         * @param waypoints the waypoints
+         * @return the legs, the one of index i going from waypoint i to waypoint i + 1
+         */
+        static List<Leg> between(List<Waypoint> waypoints) {
+            boolean alongEdges = true;
+            for (Waypoint waypoint : waypoints) {
+                if (waypoint.edgePoint() == EdgePoint.NONE) alongEdges = false;
+            }
+            List<Leg> legs = new ArrayList<>(Math.max(0, waypoints.size() - 1));
+            for (int i = 0; i < waypoints.size() - 1; i++) {
+                Waypoint from = waypoints.get(i);
+                Waypoint to = waypoints.get(i + 1);
+                legs.add(alongEdges
+                        ? new Leg(from.edgePoint(), to.edgePoint(), -1, -1)
+                        : new Leg(EdgePoint.NONE, EdgePoint.NONE, from.closestNodeId(), to.closestNodeId()));
+            }
+            return legs;
+        }
+
+        /**
+         * Returns true iff both extremities are at the same place, e.g. at the node where
+         * the edges of both points meet, in which case the leg has no itinerary.
+         */
+        boolean isEmpty() {
+            return start == EdgePoint.NONE
+                    ? startNodeId == endNodeId
+                    : start.point().equals(end.point());
+        }
+
+        /**
+         * Returns the itinerary of the leg (or null if there is none), computed with the
+         * given route computer until the given condition is true.
+         */
+        Route computeWith(RouteComputer computer, BooleanSupplier cancelled) {
+            return start == EdgePoint.NONE
+                    ? computer.bestRouteBetween(startNodeId, endNodeId, cancelled)
+                    : computer.bestRouteBetween(start, end, cancelled);
+        }
+    }
 
     /**
      * Creates a route bean.
@@ -35,11 +118,24 @@ public final class RouteBean {
      * @param routeComputer the route computer used to compute a route
      */
     public RouteBean(RouteComputer routeComputer) {
+        this(routeComputer, null);
+    }
+
+    /**
+     * Creates a route bean using a graph leased from a {@link GraphProvider}.
+     *
+     * @param routeComputer the route computer used to compute a route
+     * @param lease         the lease of the graph of the route computer, closed by the bean
+     *                      once it uses another graph (or null if the graph is not leased)
+     */
+    public RouteBean(RouteComputer routeComputer, GraphProvider.Lease lease) {
+        this.lease = lease;
 
         this.elevationProfile = new SimpleObjectProperty<>();
         this.route = new SimpleObjectProperty<>();
         this.routeComputer = routeComputer;
         this.highlightedPosition = new SimpleDoubleProperty(Double.NaN);
+        this.generation = new AtomicLong();
 
         waypoints = FXCollections.observableArrayList();
 
@@ -67,40 +163,121 @@ public final class RouteBean {
     }
 
     private void buildRoute() {
-        if (waypoints.size() >= 2) {
-            List<Route> singleRoutes = new ArrayList<>();
-            for (int i = 0; i < waypoints.size() - 1; i++) {
-                int startNodeId = waypoints.get(i).closestNodeId();
-                int endNodeId = waypoints.get(i + 1).closestNodeId();
-                if (startNodeId == endNodeId) continue;
-                Pair<Integer, Integer> pair = new Pair<>(startNodeId, endNodeId);
-                boolean needToCalculateRoute = true;
-
-                for (Pair<Integer, Integer> p : memoryCache.keySet()) {
-                    if (p.equals(pair)) {
-                        singleRoutes.add(memoryCache.get(p));
-                        needToCalculateRoute = false;
-                        break;
-                    }
-                }
-                if (needToCalculateRoute) {
-                    Route singleRoute = routeComputer.bestRouteBetween(startNodeId, endNodeId);
-                    if (singleRoute == null) {
-                        route.set(null);
+        long currentGeneration = generation.incrementAndGet();
+        if (waypoints.size() < 2) {
+            setRoute(null, null);
+            return;
+        }
+
+        // Legs of the route, skipping the empty ones (two waypoints at the same place of the roads)
+        List<Leg> legs = new ArrayList<>();
+        List<Integer> legWaypointIndexes = new ArrayList<>();
+        List<Leg> allLegs = Leg.between(waypoints);
+        for (int i = 0; i < allLegs.size(); i++) {
+            Leg leg = allLegs.get(i);
+            if (leg.isEmpty()) continue;
+            legs.add(leg);
+            legWaypointIndexes.add(i);
+        }
+        if (legs.isEmpty()) {
+            setRoute(null, null);
+            return;
+        }
+
+        // Legs missing from the cache are computed concurrently, outside the JavaFX thread.
+        // The searches are abandoned (before or while running) once the waypoints change again.
+        Map<Leg, CompletableFuture<Route>> computations = new HashMap<>();
+        RouteComputer computer = routeComputer;
+        BooleanSupplier stale = () -> generation.get() != currentGeneration;
+        for (Leg leg : legs) {
+            if (memoryCache.containsKey(leg) || computations.containsKey(leg)) continue;
+            computations.put(leg, CompletableFuture.supplyAsync(() -> {
+                if (stale.getAsBoolean()) throw new CancellationException();
+                return leg.computeWith(computer, stale);
+            }, EXECUTOR));
+        }
+        if (computations.isEmpty()) {
+            assembleRoute(legs, legWaypointIndexes, computations);
+            return;
+        }
+
+        // The graph of the searches is leased until all of them are over
+        GraphProvider.Lease searchLease = lease == null ? null : lease.duplicate();
+        CompletableFuture.allOf(computations.values().toArray(new CompletableFuture<?>[0]))
+                .whenComplete((unused, exception) -> {
+                    if (searchLease != null) searchLease.close();
+                })
+                .whenComplete((unused, exception) -> Platform.runLater(() -> {
+                    // The waypoints changed again in the meantime : these legs are stale
+                    if (generation.get() != currentGeneration) return;
+                    if (exception != null) {
+                        setRoute(null, null);
                         return;
                     }
-                    memoryCache.put(pair, singleRoute);
-                    singleRoutes.add(singleRoute);
-                }
-            }
-            if (!singleRoutes.isEmpty()) {
-                route.set(new MultiRoute(singleRoutes));
-            } else {
-                route.set(null);
+                    computations.forEach((leg, computation) -> {
+                        Route singleRoute = computation.join();
+                        if (singleRoute != null) memoryCache.put(leg, singleRoute);
+                    });
+                    assembleRoute(legs, legWaypointIndexes, computations);
+                }));
+    }
+
+    private void assembleRoute(List<Leg> legs,
+                               List<Integer> legWaypointIndexes,
+                               Map<Leg, CompletableFuture<Route>> computations) {
+        List<Route> singleRoutes = new ArrayList<>(legs.size());
+        for (Leg leg : legs) {
+            CompletableFuture<Route> computation = computations.get(leg);
+            Route singleRoute = computation != null ? computation.join() : memoryCache.get(leg);
+            if (singleRoute == null) {
+                setRoute(null, null);
+                return;
             }
+            singleRoutes.add(singleRoute);
+        }
+        setRoute(new MultiRoute(singleRoutes), legWaypointIndexes);
+    }
+
+    private void setRoute(Route newRoute, List<Integer> newSegmentWaypointIndexes) {
+        segmentWaypointIndexes = newSegmentWaypointIndexes;
+        route.set(newRoute);
+    }
+
+    /**
+     * Takes an update of the penalties of the edges into account : the cached routes going
+     * along a modified edge are forgotten (all of them if some penalty decreased, since a
+     * better route may then exist anywhere), and the route is computed again if needed.
+     * Must be called on the JavaFX thread.
+     *
+     * @param update the update of the edge overlay
+     */
+    public void overlayChanged(EdgeOverlay.Update update) {
+        if (update.relaxed()) {
+            memoryCache.clear();
         } else {
-            route.set(null);
+            memoryCache.values().removeIf(update::affects);
         }
+        if (update.relaxed() || (route.get() != null && update.affects(route.get())))
+            buildRoute();
+    }
+
+    /**
+     * Replaces the route computer, e.g. because the graph was replaced : the cached routes
+     * (whose keys are node indexes of the previous graph) are forgotten, the routes being
+     * computed are abandoned, and the lease of the previous graph is closed. The route is
+     * computed again once the waypoints are attached to the nodes of the new graph.
+     * Must be called on the JavaFX thread.
+     *
+     * @param newRouteComputer the new route computer
+     * @param newLease         the lease of the graph of the new route computer, closed by the
+     *                         bean once it uses another graph (or null if the graph is not leased)
+     */
+    public void setRouteComputer(RouteComputer newRouteComputer, GraphProvider.Lease newLease) {
+        routeComputer = newRouteComputer;
+        if (lease != null) lease.close();
+        lease = newLease;
+        memoryCache.clear();
+        generation.incrementAndGet();
     }
 
     /**
@@ -112,12 +289,7 @@ public final class RouteBean {
      */
     public int indexOfNonEmptySegmentAt(double position) {
         int index = route().indexOfSegmentAt(position);
-        for (int i = 0; i <= index; i += 1) {
-            int n1 = waypoints.get(i).closestNodeId();
-            int n2 = waypoints.get(i + 1).closestNodeId();
-            if (n1 == n2) index += 1;
-        }
-        return index;
+        return segmentWaypointIndexes.get(index);
     }
 
     /**
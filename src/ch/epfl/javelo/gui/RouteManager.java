@@ -4,7 +4,6 @@ import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
 import ch.epfl.javelo.routing.Route;
 import javafx.beans.property.ReadOnlyProperty;
-import javafx.geometry.Point2D;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Polyline;
@@ -17,6 +16,7 @@ import javafx.scene.shape.Polyline;
 public final class RouteManager {
     private final Pane pane;
     private final RouteBean routeBean;
+    private final WaypointsManager waypointsManager;
     private final ReadOnlyProperty<MapViewParameters> mapViewParameters;
     private final Polyline routeLine;
     private final Circle positionCircle;
@@ -29,12 +29,16 @@ public final class RouteManager {
      * Creates a route manager.
      *
      * @param routeBean         a Java Bean containing properties about the route
+     * @param waypointsManager  the waypoints manager, attaching the waypoints added on the
+     *                          route to the roads
      * @param mapViewParameters the property containing the parameters of the map view
      */
     public RouteManager(RouteBean routeBean,
+                        WaypointsManager waypointsManager,
                         ReadOnlyProperty<MapViewParameters> mapViewParameters) {
 
         this.routeBean = routeBean;
+        this.waypointsManager = waypointsManager;
         this.mapViewParameters = mapViewParameters;
 
         pane = new Pane();
@@ -94,12 +98,11 @@ public final class RouteManager {
         positionCircle.setOnMouseClicked(e -> {
             Route route = routeBean.route();
             double hPosition = routeBean.highlightedPosition();
-            MapViewParameters mvp = mapViewParameters.getValue();
-            Point2D mouse = positionCircle.localToParent(e.getX(), e.getY());
 
-            PointCh point = mvp.pointAt(mouse.getX(), mouse.getY()).toPointCh();
-            int circleNode = route.nodeClosestTo(hPosition);
-            Waypoint circleWaypoint = new Waypoint(point, circleNode);
+            // Attached to the roads like the other waypoints, so that the legs on both
+            // sides of it meet at the same point
+            Waypoint circleWaypoint = waypointsManager.waypointAt(route.pointAt(hPosition));
+            if (circleWaypoint == null) return;
             int waypointIndex = routeBean.indexOfNonEmptySegmentAt(hPosition) + 1;
             routeBean.waypointsObservableList().add(waypointIndex, circleWaypoint);
         });
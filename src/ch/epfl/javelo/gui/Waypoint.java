@@ -1,5 +1,6 @@
 package ch.epfl.javelo.gui;
 
+import ch.epfl.javelo.data.EdgePoint;
 import ch.epfl.javelo.projection.PointCh;
 
 /**
@@ -9,6 +10,18 @@ import ch.epfl.javelo.projection.PointCh;
  *
  * @param position      the position of the point
  * @param closestNodeId the index of the closest node to the waypoint
+ * @param edgePoint     the closest point of the roads to the waypoint, from which the itinerary
+ *                      starts (or {@link EdgePoint#NONE} to start from the closest node)
  */
-public record Waypoint(PointCh position, int closestNodeId) {
+public record Waypoint(PointCh position, int closestNodeId, EdgePoint edgePoint) {
+
+    /**
+     * Creates a waypoint attached to a node only.
+     *
+     * @param position      the position of the point
+     * @param closestNodeId the index of the closest node to the waypoint
+     */
+    public Waypoint(PointCh position, int closestNodeId) {
+        this(position, closestNodeId, EdgePoint.NONE);
+    }
 }
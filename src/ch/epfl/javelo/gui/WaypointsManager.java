@@ -1,5 +1,6 @@
 package ch.epfl.javelo.gui;
 
+import ch.epfl.javelo.data.EdgePoint;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
@@ -23,14 +24,15 @@ import java.util.function.Consumer;
  */
 public final class WaypointsManager {
 
-    private final Graph graph;
+    private Graph graph;
     private final ObjectProperty<MapViewParameters> mapViewParameters;
     private final ObservableList<Waypoint> wayPoints;
     private final Consumer<String> error;
     private final Pane pane;
     private final List<Group> groups;
 
-    private static final double SEARCH_DISTANCE = 500;
+    // The waypoints are attached to the closest point of the roads, not to their nodes
+    private static final double SEARCH_DISTANCE = 150;
     private static final String NO_ROAD_WARNING = "Aucune route à proximité !";
 
     /**
@@ -66,6 +68,23 @@ public final class WaypointsManager {
         return pane;
     }
 
+    /**
+     * Replaces the graph : the waypoints are attached to the closest roads of the new
+     * graph, and those which are not close to any road anymore are removed.
+     *
+     * @param newGraph the new graph
+     */
+    public void graphChanged(Graph newGraph) {
+        graph = newGraph;
+        List<Waypoint> newWayPoints = new ArrayList<>(wayPoints.size());
+        for (Waypoint w : wayPoints) {
+            Waypoint newWaypoint = waypointAt(w.position());
+            if (newWaypoint != null) newWayPoints.add(newWaypoint);
+        }
+        if (newWayPoints.size() < wayPoints.size()) error.accept(NO_ROAD_WARNING);
+        wayPoints.setAll(newWayPoints);
+    }
+
     /**
      * Adds a waypoint (if possible) to the list of waypoints and displays it on the pane.
      *
@@ -160,18 +179,29 @@ public final class WaypointsManager {
     private boolean waypointCanExist(double x, double y) {
         MapViewParameters mvp = mapViewParameters.get();
         PointCh point = mvp.pointAt(x, y).toPointCh();
-        int nodeId = -1;
-        if (point != null)
-            nodeId = graph.nodeClosestTo(point, SEARCH_DISTANCE);
-
-        return nodeId != -1;
+        return point != null && graph.edgePointClosestTo(point, SEARCH_DISTANCE) != EdgePoint.NONE;
     }
 
     private Waypoint waypointFromXAndY(double x, double y) {
         MapViewParameters mvp = mapViewParameters.get();
-        PointCh point = mvp.pointAt(x, y).toPointCh();
-        int nodeId = graph.nodeClosestTo(point, SEARCH_DISTANCE);
-        return new Waypoint(point, nodeId);
+        return waypointAt(mvp.pointAt(x, y).toPointCh());
+    }
+
+    /**
+     * Returns the waypoint at the given point, attached to the closest point of the roads
+     * and to the closest node of its edge.
+     *
+     * @param point the point in swiss coordinates
+     * @return the waypoint, or null if there is no road close to the point
+     */
+    public Waypoint waypointAt(PointCh point) {
+        EdgePoint edgePoint = graph.edgePointClosestTo(point, SEARCH_DISTANCE);
+        if (edgePoint == EdgePoint.NONE) return null;
+        int edgeId = edgePoint.edgeId();
+        int nodeId = edgePoint.position() <= graph.edgeLength(edgeId) / 2
+                ? graph.edgeSourceNodeId(edgeId)
+                : graph.edgeTargetNodeId(edgeId);
+        return new Waypoint(point, nodeId, edgePoint);
     }
 
     private void positionGroup(Group g, Waypoint w) {
@@ -0,0 +1,229 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents a planner of alternative itineraries, using the via-node (plateau) method :
+ * a forward search from the starting node and a backward search from the end node give
+ * two shortest path trees, and every node reached by both defines a route made of the
+ * best route to it and the best route from it. Routes whose middle part belongs to both
+ * trees over a long stretch (a "plateau") are locally optimal, and those which are not
+ * too expensive nor too similar to the routes already chosen are kept.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class AlternativeRouteComputer {
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final double maxStretch;
+    private final double maxSharing;
+    private final double minPlateau;
+    private final int NB_OF_NODES;
+
+    /**
+     * Default maximum ratio between the cost of an alternative and the cost of the best route.
+     */
+    public static final double DEFAULT_MAX_STRETCH = 1.25;
+    /**
+     * Default maximum fraction of the length of an alternative shared with the routes already chosen.
+     */
+    public static final double DEFAULT_MAX_SHARING = 0.7;
+    /**
+     * Default minimum ratio between the cost of the plateau of an alternative and its cost.
+     */
+    public static final double DEFAULT_MIN_PLATEAU = 0.2;
+
+    /**
+     * Creates a planner of alternative itineraries with the default limits.
+     *
+     * @param graph        the graph containing nodes and edges
+     * @param costFunction the cost function
+     */
+    public AlternativeRouteComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, DEFAULT_MAX_STRETCH, DEFAULT_MAX_SHARING, DEFAULT_MIN_PLATEAU);
+    }
+
+    /**
+     * Creates a planner of alternative itineraries with the given limits.
+     *
+     * @param graph        the graph containing nodes and edges
+     * @param costFunction the cost function
+     * @param maxStretch   the maximum ratio between the cost of an alternative and the cost of the best route
+     * @param maxSharing   the maximum fraction of the length of an alternative shared with the routes already chosen
+     * @param minPlateau   the minimum ratio between the cost of the plateau of an alternative and its cost
+     * @throws IllegalArgumentException if the stretch is smaller than 1, or one of the ratios
+     *                                  is not between 0 and 1
+     */
+    public AlternativeRouteComputer(Graph graph, CostFunction costFunction,
+                                    double maxStretch, double maxSharing, double minPlateau) {
+        Preconditions.checkArgument(maxStretch >= 1);
+        Preconditions.checkArgument(maxSharing >= 0 && maxSharing <= 1);
+        Preconditions.checkArgument(minPlateau >= 0 && minPlateau <= 1);
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.maxStretch = maxStretch;
+        this.maxSharing = maxSharing;
+        this.minPlateau = minPlateau;
+        this.NB_OF_NODES = graph.nodeCount();
+    }
+
+    /**
+     * Returns at most the given number of itineraries from the given starting node to the
+     * given end node, the first one being the best route and the following ones being
+     * meaningfully different alternatives, in increasing order of cost.
+     *
+     * @param startNodeId the index of the starting node
+     * @param endNodeId   the index of the end node
+     * @param maxCount    the maximum number of routes
+     * @return the routes, which is empty if there is none
+     * @throws IllegalArgumentException if both nodes are the same or the count is not strictly positive
+     */
+    public List<Route> alternativeRoutesBetween(int startNodeId, int endNodeId, int maxCount) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        Preconditions.checkArgument(maxCount > 0);
+
+        // Both trees must use the same factors
+        CostFunction costs = costFunction.snapshot();
+
+        // Both trees are only needed up to the maximum cost of an alternative
+        SearchState forward = SearchState.acquire(NB_OF_NODES, SearchState.FORWARD);
+        SearchState backward = SearchState.acquire(NB_OF_NODES, SearchState.BACKWARD);
+        int[] forwardOrder = shortestPathTree(costs, forward, startNodeId, endNodeId, false, Float.NaN);
+        float bestCost = forward.distance(endNodeId);
+        if (bestCost == Float.POSITIVE_INFINITY)
+            return List.of();
+        float maxCost = (float) (maxStretch * bestCost);
+        shortestPathTree(costs, backward, endNodeId, startNodeId, true, maxCost);
+
+        // Plateaus : chains of edges belonging to both trees, found in increasing forward distance.
+        // Each node of a plateau records its first node as predecessor, and the first node
+        // records the cost of the plateau as distance (in a pooled state, to allocate nothing by node).
+        SearchState plateaus = SearchState.acquire(NB_OF_NODES, SearchState.DERIVED);
+        List<Integer> candidates = new ArrayList<>();
+        for (int nodeId : forwardOrder) {
+            if (!backward.isSettled(nodeId)
+                    || forward.distance(nodeId) + backward.distance(nodeId) > maxCost)
+                continue;
+            int predecessor = forward.predecessorNode(nodeId);
+            boolean extendsPlateau = nodeId != startNodeId
+                    && plateaus.isReached(predecessor)
+                    && backward.isSettled(predecessor)
+                    && backward.predecessorNode(predecessor) == nodeId
+                    && backward.predecessorEdge(predecessor) == forward.predecessorEdge(nodeId);
+            int plateauStart = extendsPlateau ? plateaus.predecessorNode(predecessor) : nodeId;
+            if (extendsPlateau) plateaus.reach(nodeId, 0f, plateauStart, -1);
+            plateaus.reach(plateauStart,
+                    forward.distance(nodeId) - forward.distance(plateauStart), plateauStart, -1);
+            if (!extendsPlateau) candidates.add(nodeId);
+        }
+        candidates.sort((n1, n2) -> Float.compare(
+                forward.distance(n1) + backward.distance(n1),
+                forward.distance(n2) + backward.distance(n2)));
+
+        List<Route> routes = new ArrayList<>();
+        Set<Integer> chosenEdgeIds = new HashSet<>();
+        for (int viaNodeId : candidates) {
+            if (routes.size() == maxCount) break;
+            float viaCost = forward.distance(viaNodeId) + backward.distance(viaNodeId);
+            // Local optimality : the route is a best route over a long enough stretch
+            if (plateaus.distance(viaNodeId) < minPlateau * viaCost) continue;
+            int[] edgeIds = viaEdgeIds(forward, backward, startNodeId, endNodeId, viaNodeId);
+            if (edgeIds == null || !isDifferentEnough(edgeIds, chosenEdgeIds)) continue;
+            for (int edgeId : edgeIds) chosenEdgeIds.add(edgeId);
+            routes.add(getRoute(edgeIds));
+        }
+        return List.copyOf(routes);
+    }
+
+    /**
+     * Computes the tree of the best routes from the given node (or to it, if backward),
+     * stopping once the target is settled and the keys exceed the given maximum cost
+     * (or, if it is NaN, the stretched cost of the target). Returns the settled nodes
+     * in increasing order of cost.
+     */
+    private int[] shortestPathTree(CostFunction costs, SearchState state, int sourceId, int targetId,
+                                   boolean backward, float maxCost) {
+        NodeHeap exploring = state.heap();
+        state.reach(sourceId, 0f, sourceId, -1);
+        exploring.push(sourceId, 0f);
+        int[] order = new int[64];
+        int size = 0;
+        float limit = Float.isNaN(maxCost) ? Float.POSITIVE_INFINITY : maxCost;
+
+        while (!exploring.isEmpty() && exploring.peekKey() <= limit) {
+            int nodeId = exploring.poll();
+            state.settle(nodeId);
+            if (size == order.length) order = Arrays.copyOf(order, 2 * size);
+            order[size++] = nodeId;
+            float pathToNodeLength = state.distance(nodeId);
+            if (nodeId == targetId && Float.isNaN(maxCost))
+                limit = (float) (maxStretch * pathToNodeLength);
+
+            int nbOfEdges = backward ? graph.nodeInDegree(nodeId) : graph.nodeOutDegree(nodeId);
+            for (int edgeIndex = 0; edgeIndex < nbOfEdges; edgeIndex++) {
+                int edgeId = backward
+                        ? graph.nodeInEdgeId(nodeId, edgeIndex)
+                        : graph.nodeOutEdgeId(nodeId, edgeIndex);
+                int fromNodeId = backward ? graph.edgeSourceNodeId(edgeId) : nodeId;
+                int arrivalNodeId = backward ? fromNodeId : graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(arrivalNodeId))
+                    continue;
+                float pathToArrivalNodeLength = (float) (
+                        pathToNodeLength
+                                + costs.costFactor(fromNodeId, edgeId)
+                                * graph.edgeLength(edgeId));
+                if (pathToArrivalNodeLength < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeLength, nodeId, edgeId);
+                    exploring.push(arrivalNodeId, pathToArrivalNodeLength);
+                }
+            }
+        }
+        return Arrays.copyOf(order, size);
+    }
+
+    /**
+     * Returns the edges of the route going through the given node, or null if this
+     * route goes through some node twice.
+     */
+    private int[] viaEdgeIds(SearchState forward, SearchState backward,
+                             int startNodeId, int endNodeId, int viaNodeId) {
+        List<Integer> edgeIds = new ArrayList<>();
+        Set<Integer> nodeIds = new HashSet<>();
+        nodeIds.add(viaNodeId);
+        for (int nodeId = viaNodeId; nodeId != startNodeId; nodeId = forward.predecessorNode(nodeId)) {
+            edgeIds.add(forward.predecessorEdge(nodeId));
+            if (!nodeIds.add(forward.predecessorNode(nodeId))) return null;
+        }
+        List<Integer> result = new ArrayList<>(edgeIds.size());
+        for (int i = edgeIds.size() - 1; i >= 0; i--) result.add(edgeIds.get(i));
+        for (int nodeId = viaNodeId; nodeId != endNodeId; nodeId = backward.predecessorNode(nodeId)) {
+            result.add(backward.predecessorEdge(nodeId));
+            if (!nodeIds.add(backward.predecessorNode(nodeId))) return null;
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private boolean isDifferentEnough(int[] edgeIds, Set<Integer> chosenEdgeIds) {
+        double length = 0;
+        double sharedLength = 0;
+        for (int edgeId : edgeIds) {
+            length += graph.edgeLength(edgeId);
+            if (chosenEdgeIds.contains(edgeId)) sharedLength += graph.edgeLength(edgeId);
+        }
+        return sharedLength <= maxSharing * length;
+    }
+
+    private Route getRoute(int[] edgeIds) {
+        int[] nodeIds = new int[edgeIds.length + 1];
+        nodeIds[0] = graph.edgeSourceNodeId(edgeIds[0]);
+        for (int i = 0; i < edgeIds.length; i++) nodeIds[i + 1] = graph.edgeTargetNodeId(edgeIds[i]);
+        return new ColumnarRoute(graph, nodeIds, edgeIds);
+    }
+}
@@ -0,0 +1,256 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Represents a simple itinerary (see {@link SingleRoute}) made of edges of a graph, stored
+ * as arrays : the indexes of its nodes and edges, the positions of its nodes along it and
+ * their coordinates. The {@link Edge} objects and the profiles of the edges are only built
+ * when {@link #edges()} is called, the other methods reading the arrays and the graph.
+ * <p>
+ * The first and last edges may only be parts of edges of the graph, for itineraries
+ * starting or ending between two nodes.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class ColumnarRoute implements Route {
+    private final Graph graph;
+    private final int[] nodeIds;
+    private final int[] edgeIds;
+    // Positions along their edges of the start of the first edge and of the end of the last one
+    private final double startPosition;
+    private final double endPosition;
+    private final double[] nodePositions;
+    // East and north coordinates of the nodes, interleaved
+    private final double[] coordinates;
+    private volatile List<Edge> edges;
+    private volatile SegmentIndex segmentIndex;
+
+    /**
+     * Creates the itinerary following the given edges of a graph from one of their
+     * extremities to the other.
+     *
+     * @param graph   the graph
+     * @param nodeIds the indexes of the nodes of the itinerary (one more than of edges)
+     * @param edgeIds the indexes of the edges of the itinerary, each one going from the
+     *                node of the same index to the next one
+     * @throws IllegalArgumentException if there is no edge, or not one node more than edges
+     */
+    public ColumnarRoute(Graph graph, int[] nodeIds, int[] edgeIds) {
+        this(graph, nodeIds, edgeIds, 0,
+                edgeIds.length == 0 ? 0 : graph.edgeLength(edgeIds[edgeIds.length - 1]),
+                nodeIds.length == 0 ? null : graph.nodePoint(nodeIds[0]),
+                nodeIds.length == 0 ? null : graph.nodePoint(nodeIds[nodeIds.length - 1]));
+    }
+
+    /**
+     * Creates the itinerary following the given edges of a graph, starting at a given
+     * position along the first one and ending at a given position along the last one.
+     *
+     * @param graph         the graph
+     * @param nodeIds       the indexes of the nodes of the itinerary (one more than of edges),
+     *                      the first and last ones being the extremities of the edges even
+     *                      if the itinerary does not reach them
+     * @param edgeIds       the indexes of the edges of the itinerary, each one going from the
+     *                      node of the same index to the next one
+     * @param startPosition the position along the first edge at which the itinerary starts
+     * @param endPosition   the position along the last edge at which the itinerary ends
+     * @param startPoint    the point at which the itinerary starts
+     * @param endPoint      the point at which the itinerary ends
+     * @throws IllegalArgumentException if there is no edge, or not one node more than edges
+     */
+    public ColumnarRoute(Graph graph, int[] nodeIds, int[] edgeIds,
+                         double startPosition, double endPosition,
+                         PointCh startPoint, PointCh endPoint) {
+        Preconditions.checkArgument(edgeIds.length > 0 && nodeIds.length == edgeIds.length + 1);
+        this.graph = graph;
+        this.nodeIds = nodeIds.clone();
+        this.edgeIds = edgeIds.clone();
+        this.startPosition = startPosition;
+        this.endPosition = endPosition;
+
+        int edgeCount = edgeIds.length;
+        nodePositions = new double[edgeCount + 1];
+        for (int i = 0; i < edgeCount; i++) nodePositions[i + 1] = nodePositions[i] + edgeLength(i);
+
+        coordinates = new double[2 * (edgeCount + 1)];
+        for (int i = 0; i <= edgeCount; i++) {
+            PointCh point = i == 0 ? startPoint
+                    : i == edgeCount ? endPoint
+                    : graph.nodePoint(nodeIds[i]);
+            coordinates[2 * i] = point.e();
+            coordinates[2 * i + 1] = point.n();
+        }
+    }
+
+    /**
+     * Returns the index of the segment at the given position.
+     *
+     * @param position the position
+     * @return the index of the segment
+     */
+    @Override
+    public int indexOfSegmentAt(double position) {
+        return 0;
+    }
+
+    /**
+     * Returns the length of the itinerary in meters.
+     *
+     * @return the length of the itinerary in meters
+     */
+    @Override
+    public double length() {
+        return nodePositions[nodePositions.length - 1];
+    }
+
+    /**
+     * Returns the entirety of edges in the itinerary.
+     *
+     * @return the list of edges
+     */
+    @Override
+    public List<Edge> edges() {
+        List<Edge> result = edges;
+        if (result == null) {
+            List<Edge> newEdges = new ArrayList<>(edgeIds.length);
+            for (int i = 0; i < edgeIds.length; i++) {
+                DoubleUnaryOperator profile = graph.edgeProfile(edgeIds[i]);
+                double from = i == 0 ? startPosition : 0;
+                newEdges.add(new Edge(nodeIds[i], nodeIds[i + 1], point(i), point(i + 1),
+                        edgeLength(i),
+                        from == 0 ? profile : position -> profile.applyAsDouble(from + position)));
+            }
+            result = List.copyOf(newEdges);
+            edges = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns all the points located at the extremities of the edges
+     * of the itinerary.
+     *
+     * @return the list of points
+     */
+    @Override
+    public List<PointCh> points() {
+        return new AbstractList<>() {
+            @Override
+            public PointCh get(int index) {
+                return point(index);
+            }
+
+            @Override
+            public int size() {
+                return nodeIds.length;
+            }
+        };
+    }
+
+    /**
+     * Returns the point in swiss coordinates at the given position in the itinerary.
+     *
+     * @param position the position of the point
+     * @return the point in swiss coordinates
+     */
+    @Override
+    public PointCh pointAt(double position) {
+        double clamp = Math2.clamp(0, position, length());
+        int index = Arrays.binarySearch(nodePositions, clamp);
+        if (index >= 0)
+            return point(index);
+        int edgeIndex = -index - 2;
+        return pointAlongEdge(edgeIndex, clamp - nodePositions[edgeIndex]);
+    }
+
+    /**
+     * Returns the altitude of the point at the given position on the itinerary.
+     *
+     * @param position the position of the point
+     * @return the elevation
+     */
+    @Override
+    public double elevationAt(double position) {
+        double clamp = Math2.clamp(0, position, length());
+        int index = Arrays.binarySearch(nodePositions, clamp);
+        if (index == 0)
+            return elevationAlongEdge(0, 0);
+        if (index > 0)
+            return elevationAlongEdge(index - 1, edgeLength(index - 1));
+        int edgeIndex = -index - 2;
+        return elevationAlongEdge(edgeIndex, position - nodePositions[edgeIndex]);
+    }
+
+    /**
+     * Returns the index of the node that belongs to the itinerary which is closest to the given position.
+     *
+     * @param position the position
+     * @return the index of the node
+     */
+    @Override
+    public int nodeClosestTo(double position) {
+        double clamp = Math2.clamp(0, position, length());
+        int index = Arrays.binarySearch(nodePositions, clamp);
+        if (index >= 0)
+            return nodeIds[index];
+        int edgeIndex = -index - 2;
+        double ratio = (position - nodePositions[edgeIndex]) / edgeLength(edgeIndex);
+        return ratio <= 0.5 ? nodeIds[edgeIndex] : nodeIds[edgeIndex + 1];
+    }
+
+    /**
+     * Returns the point in the itinerary which is closest to the given reference point.
+     *
+     * @param point the reference point
+     * @return the closest point in the itinerary
+     */
+    @Override
+    public RoutePoint pointClosestTo(PointCh point) {
+        SegmentIndex index = segmentIndex;
+        if (index == null) {
+            // Built on first use, as most routes are never searched
+            double[] lengths = new double[edgeIds.length];
+            for (int i = 0; i < lengths.length; i++) lengths[i] = edgeLength(i);
+            index = new SegmentIndex(coordinates, nodePositions, lengths);
+            segmentIndex = index;
+        }
+        return index.pointClosestTo(point);
+    }
+
+    private PointCh point(int index) {
+        return new PointCh(coordinates[2 * index], coordinates[2 * index + 1]);
+    }
+
+    private double edgeLength(int edgeIndex) {
+        double from = edgeIndex == 0 ? startPosition : 0;
+        double to = edgeIndex == edgeIds.length - 1 ? endPosition : graph.edgeLength(edgeIds[edgeIndex]);
+        return to - from;
+    }
+
+    /**
+     * Returns the point at the given position along the edge of the given index
+     * (as {@link Edge#pointAt(double)} does).
+     */
+    private PointCh pointAlongEdge(int edgeIndex, double position) {
+        double length = edgeLength(edgeIndex);
+        if (length == 0) return point(edgeIndex);
+        return new PointCh(
+                Math2.interpolate(coordinates[2 * edgeIndex], coordinates[2 * edgeIndex + 2], position / length),
+                Math2.interpolate(coordinates[2 * edgeIndex + 1], coordinates[2 * edgeIndex + 3], position / length));
+    }
+
+    private double elevationAlongEdge(int edgeIndex, double position) {
+        double from = edgeIndex == 0 ? startPosition : 0;
+        return graph.edgeProfile(edgeIds[edgeIndex]).applyAsDouble(from + position);
+    }
+}
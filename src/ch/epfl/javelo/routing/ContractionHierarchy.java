@@ -0,0 +1,562 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Represents a contraction hierarchy of the JaVelo graph for a given cost function,
+ * i.e. an ordering of the nodes by importance and the shortcut edges added when
+ * contracting them.
+ * <p>
+ * Arcs of the hierarchy are identified by an index : indices smaller than the number
+ * of edges of the graph are the edges themselves, greater indices are shortcuts.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class ContractionHierarchy {
+    private final Graph graph;
+    private final int[] ranks;
+
+    private final int[] shortcutFrom;
+    private final int[] shortcutTo;
+    private final float[] shortcutCosts;
+    private final int[] shortcutFirst;
+    private final int[] shortcutSecond;
+
+    // Arcs leaving each node upwards, and arcs entering each node from above (CSR layout)
+    private final int[] upwardStarts;
+    private final int[] upwardArcs;
+    private final int[] upwardNodes;
+    private final float[] upwardCosts;
+    private final int[] downwardStarts;
+    private final int[] downwardArcs;
+    private final int[] downwardNodes;
+    private final float[] downwardCosts;
+
+    private static final String RANKS_FILE = "ch_%s_ranks.bin";
+    private static final String SHORTCUTS_FILE = "ch_%s_shortcuts.bin";
+    private static final int SHORTCUT_BYTES = 4 * Integer.BYTES + Float.BYTES;
+
+    private static final int WITNESS_SETTLED_LIMIT = 500;
+
+    private ContractionHierarchy(Graph graph, CostFunction costFunction, int[] ranks,
+                                 int[] shortcutFrom, int[] shortcutTo, float[] shortcutCosts,
+                                 int[] shortcutFirst, int[] shortcutSecond) {
+        Preconditions.checkArgument(ranks.length == graph.nodeCount());
+        this.graph = graph;
+        this.ranks = ranks;
+        this.shortcutFrom = shortcutFrom;
+        this.shortcutTo = shortcutTo;
+        this.shortcutCosts = shortcutCosts;
+        this.shortcutFirst = shortcutFirst;
+        this.shortcutSecond = shortcutSecond;
+
+        int nodeCount = graph.nodeCount();
+        int edgeCount = graph.edgeCount();
+        int arcCount = edgeCount + shortcutFrom.length;
+
+        float[] costs = new float[arcCount];
+        int[] from = new int[arcCount];
+        int[] to = new int[arcCount];
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            from[edgeId] = graph.edgeSourceNodeId(edgeId);
+            to[edgeId] = graph.edgeTargetNodeId(edgeId);
+            costs[edgeId] = edgeCost(graph, costFunction, from[edgeId], edgeId);
+        }
+        for (int i = 0; i < shortcutFrom.length; i++) {
+            from[edgeCount + i] = shortcutFrom[i];
+            to[edgeCount + i] = shortcutTo[i];
+            costs[edgeCount + i] = shortcutCosts[i];
+        }
+
+        upwardStarts = new int[nodeCount + 1];
+        downwardStarts = new int[nodeCount + 1];
+        for (int arc = 0; arc < arcCount; arc++) {
+            if (!isUsable(costs[arc], from[arc], to[arc])) continue;
+            if (ranks[to[arc]] > ranks[from[arc]]) upwardStarts[from[arc] + 1]++;
+            else downwardStarts[to[arc] + 1]++;
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            upwardStarts[nodeId + 1] += upwardStarts[nodeId];
+            downwardStarts[nodeId + 1] += downwardStarts[nodeId];
+        }
+        upwardArcs = new int[upwardStarts[nodeCount]];
+        upwardNodes = new int[upwardStarts[nodeCount]];
+        upwardCosts = new float[upwardStarts[nodeCount]];
+        downwardArcs = new int[downwardStarts[nodeCount]];
+        downwardNodes = new int[downwardStarts[nodeCount]];
+        downwardCosts = new float[downwardStarts[nodeCount]];
+
+        int[] upwardFill = Arrays.copyOf(upwardStarts, nodeCount);
+        int[] downwardFill = Arrays.copyOf(downwardStarts, nodeCount);
+        for (int arc = 0; arc < arcCount; arc++) {
+            if (!isUsable(costs[arc], from[arc], to[arc])) continue;
+            if (ranks[to[arc]] > ranks[from[arc]]) {
+                int i = upwardFill[from[arc]]++;
+                upwardArcs[i] = arc;
+                upwardNodes[i] = to[arc];
+                upwardCosts[i] = costs[arc];
+            } else {
+                int i = downwardFill[to[arc]]++;
+                downwardArcs[i] = arc;
+                downwardNodes[i] = from[arc];
+                downwardCosts[i] = costs[arc];
+            }
+        }
+    }
+
+    /**
+     * Computes the contraction hierarchy of the given graph for the given cost function.
+     * This is an expensive, offline operation.
+     *
+     * @param graph        the graph
+     * @param costFunction the cost function
+     * @return the contraction hierarchy
+     */
+    public static ContractionHierarchy compute(Graph graph, CostFunction costFunction) {
+        Contractor contractor = new Contractor(graph, costFunction);
+        contractor.contractAll();
+        int count = contractor.arcCount - contractor.originalArcCount;
+        int[] from = new int[count];
+        int[] to = new int[count];
+        float[] costs = new float[count];
+        int[] first = new int[count];
+        int[] second = new int[count];
+        for (int i = 0; i < count; i++) {
+            int arc = contractor.originalArcCount + i;
+            from[i] = contractor.arcFrom[arc];
+            to[i] = contractor.arcTo[arc];
+            costs[i] = contractor.arcCosts[arc];
+            first[i] = contractor.hierarchyArc(contractor.arcFirst[arc]);
+            second[i] = contractor.hierarchyArc(contractor.arcSecond[arc]);
+        }
+        return new ContractionHierarchy(graph, costFunction, contractor.ranks,
+                from, to, costs, first, second);
+    }
+
+    /**
+     * Loads the contraction hierarchy of the given profile stored in the given directory,
+     * previously written by {@link #writeTo(Path, String)}.
+     *
+     * @param basePath     the directory containing the hierarchy files
+     * @param profile      the name of the cost function profile
+     * @param graph        the graph the hierarchy was computed on
+     * @param costFunction the cost function the hierarchy was computed with
+     * @return the contraction hierarchy
+     * @throws IOException if there is a problem with a file or the path, or if the files
+     *                     do not match the graph (e.g. because they are truncated)
+     */
+    public static ContractionHierarchy loadFrom(Path basePath, String profile,
+                                                Graph graph,
+                                                CostFunction costFunction) throws IOException {
+        ByteBuffer ranksBytes = getBuffer(basePath.resolve(RANKS_FILE.formatted(profile)));
+        ByteBuffer shortcutsBuffer = getBuffer(basePath.resolve(SHORTCUTS_FILE.formatted(profile)));
+        int nodeCount = graph.nodeCount();
+        check(ranksBytes.capacity() == (long) Integer.BYTES * nodeCount,
+                "the ranks do not match the number of nodes");
+        check(shortcutsBuffer.capacity() % SHORTCUT_BYTES == 0, "the last shortcut is truncated");
+
+        int[] ranks = new int[nodeCount];
+        ranksBytes.asIntBuffer().get(0, ranks);
+        for (int rank : ranks) check(rank >= 0 && rank < nodeCount, "invalid rank");
+
+        int count = shortcutsBuffer.capacity() / SHORTCUT_BYTES;
+        int arcCount = graph.edgeCount() + count;
+        int[] from = new int[count];
+        int[] to = new int[count];
+        float[] costs = new float[count];
+        int[] first = new int[count];
+        int[] second = new int[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * SHORTCUT_BYTES;
+            from[i] = shortcutsBuffer.getInt(offset);
+            to[i] = shortcutsBuffer.getInt(offset + Integer.BYTES);
+            costs[i] = shortcutsBuffer.getFloat(offset + 2 * Integer.BYTES);
+            first[i] = shortcutsBuffer.getInt(offset + 2 * Integer.BYTES + Float.BYTES);
+            second[i] = shortcutsBuffer.getInt(offset + 3 * Integer.BYTES + Float.BYTES);
+            check(from[i] >= 0 && from[i] < nodeCount && to[i] >= 0 && to[i] < nodeCount
+                    && first[i] >= 0 && first[i] < arcCount && second[i] >= 0 && second[i] < arcCount,
+                    "invalid shortcut " + i);
+        }
+        return new ContractionHierarchy(graph, costFunction, ranks, from, to, costs, first, second);
+    }
+
+    /**
+     * Writes the node ordering and the shortcuts of this hierarchy to binary files
+     * in the given directory (typically the one containing the graph files).
+     *
+     * @param basePath the directory
+     * @param profile  the name of the cost function profile
+     * @throws IOException if there is a problem with a file or the path
+     */
+    public void writeTo(Path basePath, String profile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(RANKS_FILE.formatted(profile)))))) {
+            for (int rank : ranks) out.writeInt(rank);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(SHORTCUTS_FILE.formatted(profile)))))) {
+            for (int i = 0; i < shortcutFrom.length; i++) {
+                out.writeInt(shortcutFrom[i]);
+                out.writeInt(shortcutTo[i]);
+                out.writeFloat(shortcutCosts[i]);
+                out.writeInt(shortcutFirst[i]);
+                out.writeInt(shortcutSecond[i]);
+            }
+        }
+    }
+
+    /**
+     * Computes the contraction hierarchy of the graph stored in the given directory
+     * for the city bike cost function, and writes it next to the graph files.
+     *
+     * @param args the directory containing the graph files
+     * @throws IOException if there is a problem with a file or the path
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args[0]);
+        Graph graph = Graph.loadFrom(basePath);
+        long t0 = System.nanoTime();
+        ContractionHierarchy hierarchy = compute(graph, new CityBikeCF(graph));
+        hierarchy.writeTo(basePath, "citybike");
+        System.out.printf("Hiérarchie calculée en %d s (%d raccourcis)%n",
+                (System.nanoTime() - t0) / 1_000_000_000, hierarchy.shortcutCount());
+    }
+
+    /**
+     * Returns the graph this hierarchy was computed on.
+     *
+     * @return the graph
+     */
+    public Graph graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the rank (order of contraction) of the given node.
+     *
+     * @param nodeId the index of the node
+     * @return the rank of the node
+     */
+    public int rank(int nodeId) {
+        return ranks[nodeId];
+    }
+
+    /**
+     * Returns the number of shortcuts of the hierarchy.
+     *
+     * @return the number of shortcuts
+     */
+    public int shortcutCount() {
+        return shortcutFrom.length;
+    }
+
+    int upwardStart(int nodeId) {
+        return upwardStarts[nodeId];
+    }
+
+    int upwardEnd(int nodeId) {
+        return upwardStarts[nodeId + 1];
+    }
+
+    int upwardArc(int index) {
+        return upwardArcs[index];
+    }
+
+    int upwardNode(int index) {
+        return upwardNodes[index];
+    }
+
+    float upwardCost(int index) {
+        return upwardCosts[index];
+    }
+
+    int downwardStart(int nodeId) {
+        return downwardStarts[nodeId];
+    }
+
+    int downwardEnd(int nodeId) {
+        return downwardStarts[nodeId + 1];
+    }
+
+    int downwardArc(int index) {
+        return downwardArcs[index];
+    }
+
+    int downwardNode(int index) {
+        return downwardNodes[index];
+    }
+
+    float downwardCost(int index) {
+        return downwardCosts[index];
+    }
+
+    /**
+     * Unpacks the given arc into the edges of the graph it is made of,
+     * which are appended in order to the given list.
+     *
+     * @param arc   the arc
+     * @param edges the list receiving the edges
+     */
+    void unpack(int arc, List<Edge> edges) {
+        int edgeCount = graph.edgeCount();
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = arc;
+        while (top > 0) {
+            int current = stack[--top];
+            if (current < edgeCount) {
+                edges.add(Edge.of(graph, current,
+                        graph.edgeSourceNodeId(current), graph.edgeTargetNodeId(current)));
+            } else {
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+                stack[top++] = shortcutSecond[current - edgeCount];
+                stack[top++] = shortcutFirst[current - edgeCount];
+            }
+        }
+    }
+
+    private static boolean isUsable(float cost, int from, int to) {
+        return cost != Float.POSITIVE_INFINITY && from != to;
+    }
+
+    private static float edgeCost(Graph graph, CostFunction costFunction, int nodeId, int edgeId) {
+        return (float) (costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId));
+    }
+
+    private static ByteBuffer getBuffer(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size()).asReadOnlyBuffer();
+        }
+    }
+
+    private static void check(boolean condition, String message) throws IOException {
+        if (!condition) throw new IOException("Invalid contraction hierarchy : " + message);
+    }
+
+    /**
+     * Contracts the nodes of a graph one after the other, in order of increasing
+     * importance, adding the shortcuts needed to preserve shortest paths.
+     */
+    private static final class Contractor {
+        private final Graph graph;
+        private final int nodeCount;
+        private final int[] ranks;
+
+        // Arcs : usable edges of the graph first, then shortcuts
+        private final int originalArcCount;
+        private final int[] originalEdgeIds;
+        private int arcCount;
+        private int[] arcFrom;
+        private int[] arcTo;
+        private float[] arcCosts;
+        private int[] arcFirst;
+        private int[] arcSecond;
+
+        private final int[][] outArcs;
+        private final int[] outSizes;
+        private final int[][] inArcs;
+        private final int[] inSizes;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+
+        private final SearchState witnessState;
+
+        private record WeightedNode(int nodeId, float weight) implements Comparable<WeightedNode> {
+            @Override
+            public int compareTo(WeightedNode that) {
+                return Float.compare(this.weight, that.weight);
+            }
+        }
+
+        private Contractor(Graph graph, CostFunction costFunction) {
+            this.graph = graph;
+            this.nodeCount = graph.nodeCount();
+            this.ranks = new int[nodeCount];
+            this.outArcs = new int[nodeCount][];
+            this.outSizes = new int[nodeCount];
+            this.inArcs = new int[nodeCount][];
+            this.inSizes = new int[nodeCount];
+            this.contracted = new boolean[nodeCount];
+            this.contractedNeighbours = new int[nodeCount];
+            this.witnessState = new SearchState(nodeCount);
+
+            int edgeCount = graph.edgeCount();
+            arcFrom = new int[edgeCount];
+            arcTo = new int[edgeCount];
+            arcCosts = new float[edgeCount];
+            arcFirst = new int[edgeCount];
+            arcSecond = new int[edgeCount];
+            originalEdgeIds = new int[edgeCount];
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                    int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                    int target = graph.edgeTargetNodeId(edgeId);
+                    float cost = edgeCost(graph, costFunction, nodeId, edgeId);
+                    if (!isUsable(cost, nodeId, target)) continue;
+                    originalEdgeIds[arcCount] = edgeId;
+                    addArc(nodeId, target, cost, -1, -1);
+                }
+            }
+            originalArcCount = arcCount;
+        }
+
+        private int hierarchyArc(int arc) {
+            return arc < originalArcCount
+                    ? originalEdgeIds[arc]
+                    : graph.edgeCount() + arc - originalArcCount;
+        }
+
+        private void addArc(int from, int to, float cost, int first, int second) {
+            if (arcCount == arcFrom.length) {
+                int capacity = Math.max(16, 2 * arcCount);
+                arcFrom = Arrays.copyOf(arcFrom, capacity);
+                arcTo = Arrays.copyOf(arcTo, capacity);
+                arcCosts = Arrays.copyOf(arcCosts, capacity);
+                arcFirst = Arrays.copyOf(arcFirst, capacity);
+                arcSecond = Arrays.copyOf(arcSecond, capacity);
+            }
+            int arc = arcCount++;
+            arcFrom[arc] = from;
+            arcTo[arc] = to;
+            arcCosts[arc] = cost;
+            arcFirst[arc] = first;
+            arcSecond[arc] = second;
+            outArcs[from] = append(outArcs[from], outSizes[from]++, arc);
+            inArcs[to] = append(inArcs[to], inSizes[to]++, arc);
+        }
+
+        private static int[] append(int[] array, int size, int value) {
+            if (array == null) array = new int[4];
+            else if (size == array.length) array = Arrays.copyOf(array, 2 * size);
+            array[size] = value;
+            return array;
+        }
+
+        private void contractAll() {
+            PriorityQueue<WeightedNode> queue = new PriorityQueue<>();
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                queue.add(new WeightedNode(nodeId, priority(nodeId)));
+            }
+            int rank = 0;
+            while (!queue.isEmpty()) {
+                int nodeId = queue.remove().nodeId;
+                // Lazy update : re-insert the node if its priority got worse
+                float priority = priority(nodeId);
+                if (!queue.isEmpty() && priority > queue.peek().weight) {
+                    queue.add(new WeightedNode(nodeId, priority));
+                    continue;
+                }
+                shortcuts(nodeId, true);
+                contracted[nodeId] = true;
+                ranks[nodeId] = rank++;
+                for (int i = 0; i < outSizes[nodeId]; i++) contractedNeighbours[arcTo[outArcs[nodeId][i]]]++;
+                for (int i = 0; i < inSizes[nodeId]; i++) contractedNeighbours[arcFrom[inArcs[nodeId][i]]]++;
+            }
+        }
+
+        private float priority(int nodeId) {
+            int removedArcs = 0;
+            for (int i = 0; i < outSizes[nodeId]; i++) {
+                if (!contracted[arcTo[outArcs[nodeId][i]]]) removedArcs++;
+            }
+            for (int i = 0; i < inSizes[nodeId]; i++) {
+                if (!contracted[arcFrom[inArcs[nodeId][i]]]) removedArcs++;
+            }
+            return shortcuts(nodeId, false) - removedArcs + contractedNeighbours[nodeId];
+        }
+
+        /**
+         * Counts (and adds, if asked to) the shortcuts needed to contract the given node.
+         */
+        private int shortcuts(int nodeId, boolean add) {
+            int count = 0;
+            for (int i = 0; i < inSizes[nodeId]; i++) {
+                int inArc = inArcs[nodeId][i];
+                int source = arcFrom[inArc];
+                if (contracted[source] || !isCheapest(inArc, inArcs[nodeId], inSizes[nodeId], true))
+                    continue;
+
+                float maxCost = Float.NEGATIVE_INFINITY;
+                for (int j = 0; j < outSizes[nodeId]; j++) {
+                    int outArc = outArcs[nodeId][j];
+                    int target = arcTo[outArc];
+                    if (!contracted[target] && target != source)
+                        maxCost = Math.max(maxCost, arcCosts[outArc]);
+                }
+                if (maxCost == Float.NEGATIVE_INFINITY) continue;
+
+                witnessSearch(source, nodeId, arcCosts[inArc] + maxCost);
+                for (int j = 0; j < outSizes[nodeId]; j++) {
+                    int outArc = outArcs[nodeId][j];
+                    int target = arcTo[outArc];
+                    if (contracted[target] || target == source
+                            || !isCheapest(outArc, outArcs[nodeId], outSizes[nodeId], false))
+                        continue;
+                    float viaCost = arcCosts[inArc] + arcCosts[outArc];
+                    if (witnessCost(target) > viaCost) {
+                        count++;
+                        if (add) addArc(source, target, viaCost, inArc, outArc);
+                    }
+                }
+            }
+            return count;
+        }
+
+        private boolean isCheapest(int arc, int[] arcs, int size, boolean bySource) {
+            int neighbour = bySource ? arcFrom[arc] : arcTo[arc];
+            for (int i = 0; i < size; i++) {
+                int other = arcs[i];
+                if (other == arc || (bySource ? arcFrom[other] : arcTo[other]) != neighbour)
+                    continue;
+                if (arcCosts[other] < arcCosts[arc]
+                        || (arcCosts[other] == arcCosts[arc] && other < arc))
+                    return false;
+            }
+            return true;
+        }
+
+        private float witnessCost(int nodeId) {
+            return witnessState.distance(nodeId);
+        }
+
+        /**
+         * Runs a bounded Dijkstra search from the given source, ignoring contracted nodes
+         * and the node being contracted.
+         */
+        private void witnessSearch(int source, int excludedNodeId, float maxCost) {
+            witnessState.reset();
+            NodeHeap exploring = witnessState.heap();
+            witnessState.reach(source, 0, source, -1);
+            exploring.push(source, 0);
+            int settled = 0;
+            while (!exploring.isEmpty()) {
+                float cost = exploring.peekKey();
+                if (cost > maxCost || ++settled > WITNESS_SETTLED_LIMIT) return;
+                int nodeId = exploring.poll();
+                for (int i = 0; i < outSizes[nodeId]; i++) {
+                    int arc = outArcs[nodeId][i];
+                    int target = arcTo[arc];
+                    if (contracted[target] || target == excludedNodeId) continue;
+                    float targetCost = cost + arcCosts[arc];
+                    if (targetCost < witnessCost(target)) {
+                        witnessState.reach(target, targetCost, nodeId, arc);
+                        exploring.push(target, targetCost);
+                    }
+                }
+            }
+        }
+    }
+}
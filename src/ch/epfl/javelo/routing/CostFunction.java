@@ -15,4 +15,15 @@ public interface CostFunction {
      * @return the cost factor associated to the edge
      */
     double costFactor(int nodeId, int edgeId);
+
+    /**
+     * Returns a cost function giving the same factors as this one at the time of the call,
+     * even if it changes later on. Searches call it once before starting, so that they use
+     * consistent factors from start to end.
+     *
+     * @return the snapshot of the cost function, which is this one if it never changes
+     */
+    default CostFunction snapshot() {
+        return this;
+    }
 }
@@ -0,0 +1,326 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Represents a set of penalties applied at runtime to some edges of a graph (closures,
+ * construction work, events...) : each penalised edge has a multiplier of its cost factor,
+ * which is infinite if the edge is blocked.
+ * <p>
+ * The penalties are stored in immutable, versioned snapshots which are replaced atomically
+ * on every update, so that a search can use a single snapshot from start to end while the
+ * overlay is updated by another thread. Multipliers are never smaller than 1, so that lower
+ * bounds computed without the overlay (e.g. by {@link Landmarks}) remain valid.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class EdgeOverlay {
+    private final Graph graph;
+    private final AtomicReference<Snapshot> snapshot;
+    private final List<Consumer<Update>> listeners;
+
+    /**
+     * Multiplier of the edges which are not penalised.
+     */
+    public static final double NEUTRAL = 1;
+    /**
+     * Multiplier of the blocked edges.
+     */
+    public static final double BLOCKED = Double.POSITIVE_INFINITY;
+
+    /**
+     * Represents the penalties of the overlay at a given version. The arrays are copied
+     * when the snapshot is created and by their accessors, so that a snapshot cannot be
+     * modified while a search uses it.
+     *
+     * @param version     the version of the overlay
+     * @param edgeIds     the indexes of the penalised edges, sorted
+     * @param multipliers the multiplier of each penalised edge
+     */
+    public record Snapshot(long version, int[] edgeIds, float[] multipliers) {
+        private static final Snapshot EMPTY = new Snapshot(0, new int[0], new float[0]);
+
+        /**
+         * Creates a snapshot from copies of the given arrays.
+         *
+         * @throws IllegalArgumentException if the arrays have different lengths
+         */
+        public Snapshot {
+            Preconditions.checkArgument(edgeIds.length == multipliers.length);
+            edgeIds = edgeIds.clone();
+            multipliers = multipliers.clone();
+        }
+
+        /**
+         * Returns the indexes of the penalised edges, sorted.
+         *
+         * @return a copy of the array of edge indexes
+         */
+        @Override
+        public int[] edgeIds() {
+            return edgeIds.clone();
+        }
+
+        /**
+         * Returns the multiplier of each penalised edge, in the same order as {@link #edgeIds()}.
+         *
+         * @return a copy of the array of multipliers
+         */
+        @Override
+        public float[] multipliers() {
+            return multipliers.clone();
+        }
+
+        /**
+         * Returns the multiplier of the cost factor of the given edge.
+         *
+         * @param edgeId the index of the edge
+         * @return the multiplier, {@link #NEUTRAL} if the edge is not penalised
+         */
+        public double multiplier(int edgeId) {
+            if (edgeIds.length == 0) return NEUTRAL;
+            int index = Arrays.binarySearch(edgeIds, edgeId);
+            return index < 0 ? NEUTRAL : multipliers[index];
+        }
+
+        /**
+         * Returns the number of penalised edges.
+         *
+         * @return the number of edges
+         */
+        public int size() {
+            return edgeIds.length;
+        }
+    }
+
+    /**
+     * Represents an update of the overlay, as seen by its listeners.
+     *
+     * @param version   the version of the overlay after the update
+     * @param nodePairs the (source, target) pairs of the modified edges, each packed in a
+     *                  long, sorted
+     * @param relaxed   true if the penalty of some edge was decreased, in which case better
+     *                  routes may exist anywhere
+     */
+    public record Update(long version, long[] nodePairs, boolean relaxed) {
+
+        /**
+         * Creates an update from a copy of the given pairs, since it is shared by all the
+         * listeners.
+         */
+        public Update {
+            nodePairs = nodePairs.clone();
+        }
+
+        /**
+         * Returns the (source, target) pairs of the modified edges.
+         *
+         * @return a copy of the array of pairs
+         */
+        @Override
+        public long[] nodePairs() {
+            return nodePairs.clone();
+        }
+
+        /**
+         * Checks if the given route goes along one of the modified edges.
+         *
+         * @param route the route
+         * @return true if the route is affected by the update, false otherwise
+         */
+        public boolean affects(Route route) {
+            for (Edge edge : route.edges()) {
+                if (Arrays.binarySearch(nodePairs, pack(edge.fromNodeId(), edge.toNodeId())) >= 0)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Creates an empty overlay for the given graph.
+     *
+     * @param graph the graph
+     */
+    public EdgeOverlay(Graph graph) {
+        this.graph = graph;
+        this.snapshot = new AtomicReference<>(Snapshot.EMPTY);
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Returns the current penalties of the overlay.
+     *
+     * @return the current snapshot
+     */
+    public Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Adds a listener which is called (on the updating thread) after each update.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<Update> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the multiplier of the given edge.
+     *
+     * @param edgeId     the index of the edge
+     * @param multiplier the multiplier, {@link #NEUTRAL} to remove the penalty,
+     *                   {@link #BLOCKED} to block the edge
+     * @throws IllegalArgumentException if the edge does not exist or the multiplier is smaller than 1
+     */
+    public void set(int edgeId, double multiplier) {
+        update(Map.of(edgeId, multiplier));
+    }
+
+    /**
+     * Blocks the given edge.
+     *
+     * @param edgeId the index of the edge
+     * @throws IllegalArgumentException if the edge does not exist
+     */
+    public void block(int edgeId) {
+        set(edgeId, BLOCKED);
+    }
+
+    /**
+     * Removes the penalty of the given edge.
+     *
+     * @param edgeId the index of the edge
+     * @throws IllegalArgumentException if the edge does not exist
+     */
+    public void remove(int edgeId) {
+        set(edgeId, NEUTRAL);
+    }
+
+    /**
+     * Sets the multipliers of the given edges in a single update, the other edges keeping
+     * their penalties.
+     *
+     * @param multipliers the new multiplier of each edge
+     * @throws IllegalArgumentException if an edge does not exist or a multiplier is smaller than 1
+     */
+    public void update(Map<Integer, Double> multipliers) {
+        apply(multipliers, false);
+    }
+
+    /**
+     * Replaces all the penalties of the overlay by the given ones in a single update.
+     *
+     * @param multipliers the multiplier of each penalised edge
+     * @throws IllegalArgumentException if an edge does not exist or a multiplier is smaller than 1
+     */
+    public void replaceAll(Map<Integer, Double> multipliers) {
+        apply(multipliers, true);
+    }
+
+    /**
+     * Replaces all the penalties of the overlay by the ones read from the given text file,
+     * which contains one edge per line : its index followed either by its multiplier or by
+     * the word {@code blocked}. Empty lines and lines starting with {@code #} are ignored.
+     *
+     * @param file the file
+     * @throws IOException              if there is a problem with the file
+     * @throws IllegalArgumentException if a line is malformed, an edge does not exist
+     *                                  or a multiplier is smaller than 1
+     */
+    public void loadFrom(Path file) throws IOException {
+        Map<Integer, Double> multipliers = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\s+");
+                Preconditions.checkArgument(fields.length == 2);
+                try {
+                    int edgeId = Integer.parseInt(fields[0]);
+                    double multiplier = fields[1].equalsIgnoreCase("blocked")
+                            ? BLOCKED
+                            : Double.parseDouble(fields[1]);
+                    multipliers.put(edgeId, multiplier);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            }
+        }
+        replaceAll(multipliers);
+    }
+
+    private void apply(Map<Integer, Double> changes, boolean replace) {
+        changes.forEach((edgeId, multiplier) -> {
+            Preconditions.checkArgument(edgeId >= 0 && edgeId < graph.edgeCount());
+            Preconditions.checkArgument(multiplier >= NEUTRAL);
+        });
+
+        Update update;
+        synchronized (this) {
+            Snapshot current = snapshot.get();
+            int[] currentEdgeIds = current.edgeIds();
+            float[] currentMultipliers = current.multipliers();
+            TreeMap<Integer, Float> multipliers = new TreeMap<>();
+            if (!replace) {
+                for (int i = 0; i < current.size(); i++)
+                    multipliers.put(currentEdgeIds[i], currentMultipliers[i]);
+            }
+            changes.forEach((edgeId, multiplier) -> {
+                if (multiplier == NEUTRAL) multipliers.remove(edgeId);
+                else multipliers.put(edgeId, (float) (double) multiplier);
+            });
+
+            // Modified edges, and whether some penalty decreased
+            TreeMap<Integer, Boolean> modified = new TreeMap<>();
+            for (int i = 0; i < current.size(); i++) {
+                int edgeId = currentEdgeIds[i];
+                float newMultiplier = multipliers.getOrDefault(edgeId, (float) NEUTRAL);
+                if (newMultiplier != currentMultipliers[i])
+                    modified.put(edgeId, newMultiplier < currentMultipliers[i]);
+            }
+            multipliers.forEach((edgeId, multiplier) -> {
+                if (current.multiplier(edgeId) == NEUTRAL) modified.put(edgeId, false);
+            });
+            if (modified.isEmpty()) return;
+
+            int[] edgeIds = new int[multipliers.size()];
+            float[] values = new float[multipliers.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Float> entry : multipliers.entrySet()) {
+                edgeIds[i] = entry.getKey();
+                values[i] = entry.getValue();
+                i++;
+            }
+            long version = current.version() + 1;
+            snapshot.set(new Snapshot(version, edgeIds, values));
+
+            long[] nodePairs = modified.keySet().stream()
+                    .mapToLong(edgeId -> pack(graph.edgeSourceNodeId(edgeId), graph.edgeTargetNodeId(edgeId)))
+                    .sorted()
+                    .toArray();
+            update = new Update(version, nodePairs, modified.containsValue(true));
+        }
+        for (Consumer<Update> listener : listeners) listener.accept(update);
+    }
+
+    private static long pack(int fromNodeId, int toNodeId) {
+        return ((long) fromNodeId << Integer.SIZE) | Integer.toUnsignedLong(toNodeId);
+    }
+}
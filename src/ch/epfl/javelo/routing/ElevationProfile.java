@@ -1,6 +1,7 @@
 package ch.epfl.javelo.routing;
 
 import ch.epfl.javelo.Functions;
+import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.Preconditions;
 
 import java.util.DoubleSummaryStatistics;
@@ -8,12 +9,22 @@ import java.util.function.DoubleUnaryOperator;
 
 /**
  * Represents the elevation profile of an itinerary.
+ * <p>
+ * Besides its samples, the profile holds a pyramid of their extrema : at level 0, the
+ * smallest and greatest elevations of each segment joining two successive samples, and at
+ * each following level, those of twice longer ranges of samples. The extrema of the
+ * profile over intervals of any length are thus found by reading a few values of the level
+ * suited to that length, instead of all the samples.
  *
  * @author Edouard Mignan (345875)
  */
 public final class ElevationProfile {
     private final double length;
     private final float[] elevationSamples;
+    private final DoubleUnaryOperator elevationFunction;
+    // Extrema of the ranges of 2^level segments, by level
+    private final float[][] minPyramid;
+    private final float[][] maxPyramid;
 
     private final double minElevation;
     private final double maxElevation;
@@ -34,6 +45,7 @@ public final class ElevationProfile {
         System.arraycopy(elevationSamples, 0,
                 this.elevationSamples, 0,
                 elevationSamples.length);
+        elevationFunction = Functions.sampledView(this.elevationSamples, length);
         DoubleSummaryStatistics samplesStatistics = new DoubleSummaryStatistics();
         for (float elevation : this.elevationSamples) {
             samplesStatistics.accept(elevation);
@@ -43,6 +55,30 @@ public final class ElevationProfile {
         maxElevation = samplesStatistics.getMax();
         totalDescent = computeTotalDescent();
         totalAscent = computeTotalAscent();
+
+        int levelCount = 1;
+        while ((1 << (levelCount - 1)) < elevationSamples.length - 1) levelCount++;
+        minPyramid = new float[levelCount][];
+        maxPyramid = new float[levelCount][];
+        int segmentCount = elevationSamples.length - 1;
+        minPyramid[0] = new float[segmentCount];
+        maxPyramid[0] = new float[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            minPyramid[0][i] = Math.min(this.elevationSamples[i], this.elevationSamples[i + 1]);
+            maxPyramid[0][i] = Math.max(this.elevationSamples[i], this.elevationSamples[i + 1]);
+        }
+        for (int level = 1; level < levelCount; level++) {
+            float[] mins = minPyramid[level - 1];
+            float[] maxs = maxPyramid[level - 1];
+            int count = (mins.length + 1) / 2;
+            minPyramid[level] = new float[count];
+            maxPyramid[level] = new float[count];
+            for (int i = 0; i < count; i++) {
+                int last = Math.min(2 * i + 1, mins.length - 1);
+                minPyramid[level][i] = Math.min(mins[2 * i], mins[last]);
+                maxPyramid[level][i] = Math.max(maxs[2 * i], maxs[last]);
+            }
+        }
     }
 
     /**
@@ -54,6 +90,15 @@ public final class ElevationProfile {
         return length;
     }
 
+    /**
+     * Returns the number of samples of the elevation profile.
+     *
+     * @return the number of samples, taken at fixed intervals from one end of the profile to the other
+     */
+    public int sampleCount() {
+        return elevationSamples.length;
+    }
+
     /**
      * Returns the smallest altitude in the elevation profile.
      *
@@ -100,10 +145,45 @@ public final class ElevationProfile {
      * @return the elevation at the given position
      */
     public double elevationAt(double position) {
-        DoubleUnaryOperator function = Functions.sampled(
-                elevationSamples,
-                length);
-        return function.applyAsDouble(position);
+        return elevationFunction.applyAsDouble(position);
+    }
+
+    /**
+     * Computes the smallest and greatest elevations of the profile over each of the intervals
+     * of equal length dividing it, as many as the length of the given arrays. The extrema
+     * are read from the level of the pyramid whose ranges are the longest not longer than the
+     * intervals, so that they may also include the elevations of the profile a little before
+     * or after an interval, but never miss a peak or a valley inside it.
+     *
+     * @param minElevations the array receiving the smallest elevation of each interval
+     * @param maxElevations the array receiving the greatest elevation of each interval
+     * @throws IllegalArgumentException if the arrays are empty or of different lengths
+     */
+    public void elevationRanges(float[] minElevations, float[] maxElevations) {
+        int count = minElevations.length;
+        Preconditions.checkArgument(count > 0 && maxElevations.length == count);
+        int segmentCount = elevationSamples.length - 1;
+        double segmentsPerInterval = (double) segmentCount / count;
+        int level = 0;
+        while (level + 1 < minPyramid.length && (1 << (level + 1)) <= segmentsPerInterval) level++;
+        float[] mins = minPyramid[level];
+        float[] maxs = maxPyramid[level];
+
+        for (int j = 0; j < count; j++) {
+            // Segments overlapping the interval, then the ranges containing them
+            int firstSegment = Math.min((int) Math.floor(j * segmentsPerInterval), segmentCount - 1);
+            int lastSegment = Math2.clamp(firstSegment,
+                    (int) Math.ceil((j + 1) * segmentsPerInterval) - 1,
+                    segmentCount - 1);
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = firstSegment >> level; i <= lastSegment >> level; i++) {
+                min = Math.min(min, mins[i]);
+                max = Math.max(max, maxs[i]);
+            }
+            minElevations[j] = min;
+            maxElevations[j] = max;
+        }
     }
 
     private double computeTotalAscent() {
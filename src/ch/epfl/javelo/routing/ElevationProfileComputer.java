@@ -4,6 +4,7 @@ import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.Preconditions;
 
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Represents an elevation profile calculator.
@@ -16,7 +17,9 @@ public final class ElevationProfileComputer {
     }
 
     /**
-     * Returns the elevation profile of a given route.
+     * Returns the elevation profile of a given route. The edges of the route are walked
+     * once, each sample being taken on the edge reached by the previous one or on a
+     * following edge, and the holes of the profile are filled in a single pass.
      *
      * @param route         the route
      * @param maxStepLength the maximum length of the step in the elevation profile
@@ -30,80 +33,55 @@ public final class ElevationProfileComputer {
         float[] elevationSamples = new float[nbOfSamples];
 
         // get all elevations (even if they are NaN) from all edges at fixed step length
+        List<Edge> edges = route.edges();
+        int edgeIndex = 0;
+        double edgeStart = 0;
+        double edgeEnd = edges.get(0).length();
         for (int i = 0; i < nbOfSamples; i++) {
             double position = i * stepLength;
-            elevationSamples[i] = (float) route.elevationAt(position);
+            while (position > edgeEnd && edgeIndex < edges.size() - 1) {
+                edgeIndex++;
+                edgeStart = edgeEnd;
+                edgeEnd += edges.get(edgeIndex).length();
+            }
+            Edge edge = edges.get(edgeIndex);
+            // A sample at the end of an edge is taken on it, as Route.elevationAt does
+            elevationSamples[i] = (float) (position >= edgeEnd
+                    ? edge.elevationAt(edge.length())
+                    : edge.elevationAt(position - edgeStart));
         }
 
         int lastIndex = elevationSamples.length - 1;
-        float firstSample = elevationSamples[0];
-        float lastSample = elevationSamples[lastIndex];
         int firstRealIndex = 0;
-        int lastRealIndex = 0;
-
-        // replace NaN in head and tail of array by closest real elevations
-        if (Float.isNaN(firstSample) && containsRealValue(elevationSamples)) {
-            firstRealIndex = nextRealIndex(elevationSamples, 0);
-            Arrays.fill(elevationSamples,
-                    0,
-                    firstRealIndex,
-                    elevationSamples[firstRealIndex]);
-        }
-        if (Float.isNaN(lastSample) && containsRealValue(elevationSamples)) {
-            lastRealIndex = previousRealIndex(elevationSamples, lastIndex);
-            Arrays.fill(elevationSamples,
-                    lastRealIndex + 1,
-                    lastIndex + 1,
-                    elevationSamples[lastRealIndex]);
-        }
-        if (!containsRealValue(elevationSamples)) {
-            Arrays.fill(elevationSamples, 0, lastIndex + 1, 0);
+        while (firstRealIndex <= lastIndex && Float.isNaN(elevationSamples[firstRealIndex]))
+            firstRealIndex++;
+        if (firstRealIndex > lastIndex) {
+            Arrays.fill(elevationSamples, 0);
             return new ElevationProfile(route.length(), elevationSamples);
         }
+        int lastRealIndex = lastIndex;
+        while (Float.isNaN(elevationSamples[lastRealIndex]))
+            lastRealIndex--;
+
+        // replace NaN in head and tail of array by closest real elevations
+        Arrays.fill(elevationSamples, 0, firstRealIndex, elevationSamples[firstRealIndex]);
+        Arrays.fill(elevationSamples, lastRealIndex + 1, lastIndex + 1, elevationSamples[lastRealIndex]);
 
         // replace NaN holes in array by interpolation from the closest real values
-        int NaNIndex = firstNaNIndex(elevationSamples, firstRealIndex, lastRealIndex);
-        while (NaNIndex != 0) {
-            int nextRealValueIndex = nextRealIndex(elevationSamples, NaNIndex);
-            double distance = (nextRealValueIndex - NaNIndex + 1);
-            elevationSamples[NaNIndex] = (float) Math2.interpolate(
-                    elevationSamples[NaNIndex - 1],
-                    elevationSamples[nextRealValueIndex],
-                    1 / distance);
-            NaNIndex = firstNaNIndex(elevationSamples, NaNIndex, lastRealIndex);
+        for (int i = firstRealIndex + 1; i < lastRealIndex; i++) {
+            if (!Float.isNaN(elevationSamples[i])) continue;
+            int nextRealValueIndex = i + 1;
+            while (Float.isNaN(elevationSamples[nextRealValueIndex]))
+                nextRealValueIndex++;
+            for (int j = i; j < nextRealValueIndex; j++) {
+                double distance = (nextRealValueIndex - j + 1);
+                elevationSamples[j] = (float) Math2.interpolate(
+                        elevationSamples[j - 1],
+                        elevationSamples[nextRealValueIndex],
+                        1 / distance);
+            }
+            i = nextRealValueIndex;
         }
         return new ElevationProfile(route.length(), elevationSamples);
     }
-
-    private static int nextRealIndex(float[] samples, int start) {
-        int i = start;
-        while (Float.isNaN(samples[i])) {
-            i++;
-        }
-        return i;
-    }
-
-    private static int previousRealIndex(float[] samples, int start) {
-        int i = start;
-        while (Float.isNaN(samples[i])) {
-            i--;
-        }
-        return i;
-    }
-
-    private static boolean containsRealValue(float[] samples) {
-        for (float sample : samples) {
-            if (!Float.isNaN(sample)) return true;
-        }
-        return false;
-    }
-
-    private static int firstNaNIndex(float[] samples, int startIndex, int endIndex) {
-        Preconditions.checkArgument(startIndex < samples.length
-                && endIndex < samples.length);
-        for (int i = startIndex; i < samples.length; i++) {
-            if (Float.isNaN(samples[i])) return i;
-        }
-        return 0;
-    }
 }
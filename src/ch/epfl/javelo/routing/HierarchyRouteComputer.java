@@ -0,0 +1,113 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents an itinerary planner using a contraction hierarchy : two searches,
+ * one from each end of the route, only climb towards more important nodes and
+ * meet at the most important node of the best route.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class HierarchyRouteComputer {
+    private final ContractionHierarchy hierarchy;
+    private final int NB_OF_NODES;
+
+    /**
+     * Creates a route planner from the given contraction hierarchy.
+     *
+     * @param hierarchy the contraction hierarchy
+     */
+    public HierarchyRouteComputer(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        this.NB_OF_NODES = hierarchy.graph().nodeCount();
+    }
+
+    /**
+     * Returns the itinerary with minimum cost from the given starting node to the given end node.
+     *
+     * @param startNodeId the index of the starting node
+     * @param endNodeId   the index of the end node
+     * @return the best route between the two nodes, or null if there is none
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+
+        // Initialization (the states of the current thread are reused from query to query)
+        SearchState forward = SearchState.acquire(NB_OF_NODES, SearchState.FORWARD);
+        SearchState backward = SearchState.acquire(NB_OF_NODES, SearchState.BACKWARD);
+        forward.reach(startNodeId, 0f, startNodeId, -1);
+        forward.heap().push(startNodeId, 0f);
+        backward.reach(endNodeId, 0f, endNodeId, -1);
+        backward.heap().push(endNodeId, 0f);
+
+        float bestDistance = Float.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+
+        // Alternate between both searches, always advancing the one with the smallest key
+        while (!forward.heap().isEmpty() || !backward.heap().isEmpty()) {
+            float forwardMin = forward.heap().peekKey();
+            float backwardMin = backward.heap().peekKey();
+            if (Math.min(forwardMin, backwardMin) >= bestDistance)
+                break;
+
+            boolean isForward = forwardMin <= backwardMin;
+            SearchState state = isForward ? forward : backward;
+            SearchState other = isForward ? backward : forward;
+            int nodeId = state.heap().poll();
+            state.settle(nodeId);
+            float pathToNodeLength = state.distance(nodeId);
+
+            float throughNode = pathToNodeLength + other.distance(nodeId);
+            if (throughNode < bestDistance) {
+                bestDistance = throughNode;
+                meetingNodeId = nodeId;
+            }
+
+            int start = isForward
+                    ? hierarchy.upwardStart(nodeId)
+                    : hierarchy.downwardStart(nodeId);
+            int end = isForward
+                    ? hierarchy.upwardEnd(nodeId)
+                    : hierarchy.downwardEnd(nodeId);
+            for (int i = start; i < end; i++) {
+                int arrivalNodeId = isForward ? hierarchy.upwardNode(i) : hierarchy.downwardNode(i);
+                float cost = isForward ? hierarchy.upwardCost(i) : hierarchy.downwardCost(i);
+                int arc = isForward ? hierarchy.upwardArc(i) : hierarchy.downwardArc(i);
+                float pathToArrivalNodeLength = pathToNodeLength + cost;
+                if (pathToArrivalNodeLength < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeLength, nodeId, arc);
+                    state.heap().push(arrivalNodeId, pathToArrivalNodeLength);
+                }
+            }
+        }
+        if (meetingNodeId == -1)
+            return null;
+        return getRoute(forward, backward, startNodeId, endNodeId, meetingNodeId);
+    }
+
+    private Route getRoute(SearchState forward, SearchState backward,
+                           int startNodeId, int endNodeId, int meetingNodeId) {
+        // Arcs from start to meeting node, collected backwards
+        List<Integer> upArcs = new ArrayList<>();
+        int nodeId = meetingNodeId;
+        while (nodeId != startNodeId) {
+            upArcs.add(forward.predecessorEdge(nodeId));
+            nodeId = forward.predecessorNode(nodeId);
+        }
+        List<Edge> edges = new ArrayList<>();
+        for (int i = upArcs.size() - 1; i >= 0; i--) {
+            hierarchy.unpack(upArcs.get(i), edges);
+        }
+        // Arcs from meeting node to end, already in order
+        nodeId = meetingNodeId;
+        while (nodeId != endNodeId) {
+            hierarchy.unpack(backward.predecessorEdge(nodeId), edges);
+            nodeId = backward.predecessorNode(nodeId);
+        }
+        return new SingleRoute(edges);
+    }
+}
@@ -0,0 +1,373 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Represents the set of nodes reachable from a starting node within a given budget,
+ * measured either by the cost of the route, its length or its total ascent.
+ * <p>
+ * The nodes are stored in increasing order of their cost, in primitive arrays.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class Isochrone {
+    private final Graph graph;
+    private final int[] nodeIds;
+    private final float[] values;
+
+    /**
+     * Represents the quantity limited by the budget of an isochrone.
+     */
+    public enum Metric {
+        /**
+         * The cost of the route, as given by the cost function.
+         */
+        COST,
+        /**
+         * The length of the route, in meters.
+         */
+        LENGTH,
+        /**
+         * The total ascent of the route, in meters.
+         */
+        ASCENT
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final double DEFAULT_CELL_SIZE = 50;
+    // Directions of the outline (counterclockwise), and the moves of the corners along them
+    private static final int EAST = 0;
+    private static final int NORTH = 1;
+    private static final int WEST = 2;
+    private static final int SOUTH = 3;
+    private static final int[] DELTA_COLUMNS = {1, 0, -1, 0};
+    private static final int[] DELTA_ROWS = {0, 1, 0, -1};
+
+    private Isochrone(Graph graph, int[] nodeIds, float[] values) {
+        this.graph = graph;
+        this.nodeIds = nodeIds;
+        this.values = values;
+    }
+
+    /**
+     * Computes the nodes reachable from the given node within the given budget. Only the
+     * edges with a finite cost are followed, and the routes minimise the given metric.
+     *
+     * @param graph        the graph
+     * @param costFunction the cost function
+     * @param startNodeId  the index of the starting node
+     * @param metric       the metric limited by the budget
+     * @param budget       the budget
+     * @return the isochrone
+     * @throws IllegalArgumentException if the node does not exist or the budget is negative
+     */
+    public static Isochrone compute(Graph graph, CostFunction costFunction,
+                                    int startNodeId, Metric metric, double budget) {
+        Preconditions.checkArgument(startNodeId >= 0 && startNodeId < graph.nodeCount());
+        Preconditions.checkArgument(budget >= 0);
+        // The factors must not change during the search
+        CostFunction costs = costFunction.snapshot();
+
+        // Initialization (the state of the current thread is reused from query to query)
+        SearchState state = SearchState.acquire(graph.nodeCount(), SearchState.FORWARD);
+        NodeHeap exploring = state.heap();
+        state.reach(startNodeId, 0f, startNodeId, -1);
+        exploring.push(startNodeId, 0f);
+
+        int[] nodeIds = new int[INITIAL_CAPACITY];
+        float[] values = new float[INITIAL_CAPACITY];
+        int size = 0;
+
+        // Nodes are settled in increasing order of their value, so the search stops at the budget
+        while (!exploring.isEmpty() && exploring.peekKey() <= budget) {
+            int nodeId = exploring.poll();
+            state.settle(nodeId);
+            float pathToNodeValue = state.distance(nodeId);
+            if (size == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            nodeIds[size] = nodeId;
+            values[size] = pathToNodeValue;
+            size++;
+
+            int nbOfEdges = graph.nodeOutDegree(nodeId);
+            for (int edgeIndex = 0; edgeIndex < nbOfEdges; edgeIndex++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, edgeIndex);
+                int arrivalNodeId = graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(arrivalNodeId))
+                    continue;
+                double costFactor = costs.costFactor(nodeId, edgeId);
+                if (costFactor == Double.POSITIVE_INFINITY)
+                    continue;
+                float pathToArrivalNodeValue = (float) (pathToNodeValue + switch (metric) {
+                    case COST -> costFactor * graph.edgeLength(edgeId);
+                    case LENGTH -> graph.edgeLength(edgeId);
+                    case ASCENT -> graph.edgeElevationGain(edgeId);
+                });
+                if (pathToArrivalNodeValue < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeValue, nodeId, edgeId);
+                    exploring.push(arrivalNodeId, pathToArrivalNodeValue);
+                }
+            }
+        }
+        return new Isochrone(graph, Arrays.copyOf(nodeIds, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Computes the nodes reachable within the given budget from the node closest to the
+     * given point.
+     *
+     * @param graph          the graph
+     * @param costFunction   the cost function
+     * @param point          the starting point
+     * @param searchDistance the maximum distance between the point and the starting node
+     * @param metric         the metric limited by the budget
+     * @param budget         the budget
+     * @return the isochrone
+     * @throws IllegalArgumentException if there is no node close enough to the point,
+     *                                  or if the budget is negative
+     */
+    public static Isochrone compute(Graph graph, CostFunction costFunction, PointCh point,
+                                    double searchDistance, Metric metric, double budget) {
+        int startNodeId = graph.nodeClosestTo(point, searchDistance);
+        Preconditions.checkArgument(startNodeId != -1);
+        return compute(graph, costFunction, startNodeId, metric, budget);
+    }
+
+    /**
+     * Returns the number of reached nodes.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Returns the reached nodes, in increasing order of their value.
+     *
+     * @return a copy of the array of node indexes
+     */
+    public int[] nodeIds() {
+        return nodeIds.clone();
+    }
+
+    /**
+     * Returns the value (of the metric) of the best route to each of the reached nodes,
+     * in the same order as {@link #nodeIds()}.
+     *
+     * @return a copy of the array of values
+     */
+    public float[] values() {
+        return values.clone();
+    }
+
+    /**
+     * Returns the contour of the reached area, with cells of the default size
+     * (see {@link #contour(double)}).
+     *
+     * @return the contour, as a list of points in counterclockwise order
+     */
+    public List<PointCh> contour() {
+        return contour(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Returns the contour of the reached area : the outline of the square cells (of the given
+     * size) covering the reached nodes and the edges between them, as a list of points in
+     * counterclockwise order (without repeating the first point). Unlike the convex hull of
+     * the reached nodes, the contour follows the concave parts of the area, e.g. along a lake
+     * or a valley that the roads go around, within the size of a cell. The areas enclosed by
+     * the covered cells are part of the reached area.
+     *
+     * @param cellSize the size of the cells, in meters
+     * @return the contour, which contains at least four points
+     * @throws IllegalArgumentException if the size of the cells is not strictly positive
+     */
+    public List<PointCh> contour(double cellSize) {
+        Preconditions.checkArgument(cellSize > 0);
+        double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+        double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        BitSet reached = new BitSet(graph.nodeCount());
+        for (int nodeId : nodeIds) {
+            PointCh point = graph.nodePoint(nodeId);
+            minE = Math.min(minE, point.e());
+            minN = Math.min(minN, point.n());
+            maxE = Math.max(maxE, point.e());
+            maxN = Math.max(maxN, point.n());
+            reached.set(nodeId);
+        }
+        // The cells are shifted by half a cell, and the grid has a margin of a cell on each side
+        // which is never covered, so that the area outside the contour is connected
+        CellGrid grid = new CellGrid(minE - 1.5 * cellSize, minN - 1.5 * cellSize, cellSize,
+                (int) ((maxE - minE) / cellSize) + 4, (int) ((maxN - minN) / cellSize) + 4);
+
+        for (int nodeId : nodeIds) {
+            PointCh from = graph.nodePoint(nodeId);
+            grid.cover(from, from);
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int targetNodeId = graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, i));
+                if (reached.get(targetNodeId)) grid.cover(from, graph.nodePoint(targetNodeId));
+            }
+        }
+        grid.separateDiagonals();
+        grid.fillEnclosedCells();
+        return grid.outline();
+    }
+
+    /**
+     * Represents a grid of square cells, some of which are covered by the reached area.
+     */
+    private static final class CellGrid {
+        private final double originE;
+        private final double originN;
+        private final double cellSize;
+        private final int columns;
+        private final int rows;
+        private final boolean[] covered;
+
+        private CellGrid(double originE, double originN, double cellSize, int columns, int rows) {
+            this.originE = originE;
+            this.originN = originN;
+            this.cellSize = cellSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.covered = new boolean[columns * rows];
+        }
+
+        private boolean isCovered(int column, int row) {
+            return column >= 0 && column < columns && row >= 0 && row < rows
+                    && covered[row * columns + column];
+        }
+
+        /**
+         * Covers the cells crossed by the segment between the given points, so that they
+         * are connected by their sides (and not only by their corners).
+         */
+        private void cover(PointCh from, PointCh to) {
+            int steps = (int) Math.ceil(4 * from.distanceTo(to) / cellSize);
+            int previousColumn = column(from.e());
+            int previousRow = row(from.n());
+            covered[previousRow * columns + previousColumn] = true;
+            for (int step = 1; step <= steps; step++) {
+                double t = (double) step / steps;
+                int column = column(Math2.interpolate(from.e(), to.e(), t));
+                int row = row(Math2.interpolate(from.n(), to.n(), t));
+                if (column != previousColumn && row != previousRow)
+                    covered[previousRow * columns + column] = true;
+                covered[row * columns + column] = true;
+                previousColumn = column;
+                previousRow = row;
+            }
+        }
+
+        private int column(double e) {
+            return (int) ((e - originE) / cellSize);
+        }
+
+        private int row(double n) {
+            return (int) ((n - originN) / cellSize);
+        }
+
+        /**
+         * Covers one more cell of each block of two by two cells whose covered cells only
+         * touch by a corner, so that the outline never touches itself.
+         */
+        private void separateDiagonals() {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int row = 0; row < rows - 1; row++) {
+                    for (int column = 0; column < columns - 1; column++) {
+                        boolean bottomLeft = isCovered(column, row);
+                        boolean bottomRight = isCovered(column + 1, row);
+                        boolean topLeft = isCovered(column, row + 1);
+                        boolean topRight = isCovered(column + 1, row + 1);
+                        if (bottomLeft == topRight && bottomRight == topLeft && bottomLeft != bottomRight) {
+                            covered[row * columns + (bottomLeft ? column + 1 : column)] = true;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Covers the cells which cannot be reached from the margin of the grid without
+         * crossing a covered cell.
+         */
+        private void fillEnclosedCells() {
+            boolean[] outside = new boolean[covered.length];
+            int[] stack = new int[covered.length];
+            int size = 0;
+            outside[0] = true;
+            stack[size++] = 0;
+            while (size > 0) {
+                int cell = stack[--size];
+                int column = cell % columns;
+                int row = cell / columns;
+                for (int direction = 0; direction < 4; direction++) {
+                    int nextColumn = column + DELTA_COLUMNS[direction];
+                    int nextRow = row + DELTA_ROWS[direction];
+                    if (nextColumn < 0 || nextColumn >= columns || nextRow < 0 || nextRow >= rows)
+                        continue;
+                    int next = nextRow * columns + nextColumn;
+                    if (outside[next] || covered[next]) continue;
+                    outside[next] = true;
+                    stack[size++] = next;
+                }
+            }
+            for (int cell = 0; cell < covered.length; cell++) covered[cell] = !outside[cell];
+        }
+
+        /**
+         * Returns the corners of the outline of the covered cells, which form a single area
+         * without holes, following the outline with the covered cells on its left.
+         */
+        private List<PointCh> outline() {
+            // The bottom left corner of the first covered cell (in the order of the rows)
+            int first = 0;
+            while (!covered[first]) first++;
+            int startColumn = first % columns;
+            int startRow = first / columns;
+
+            List<PointCh> outline = new ArrayList<>();
+            int column = startColumn, row = startRow, direction = EAST;
+            do {
+                column += DELTA_COLUMNS[direction];
+                row += DELTA_ROWS[direction];
+                // The cells ahead of the corner, on the left and on the right of the direction
+                int leftColumn = column + (direction == NORTH || direction == WEST ? -1 : 0);
+                int leftRow = row + (direction == WEST || direction == SOUTH ? -1 : 0);
+                int rightColumn = column + (direction == WEST || direction == SOUTH ? -1 : 0);
+                int rightRow = row + (direction == EAST || direction == SOUTH ? -1 : 0);
+                int nextDirection;
+                if (!isCovered(leftColumn, leftRow))
+                    nextDirection = (direction + 1) % 4;
+                else if (isCovered(rightColumn, rightRow))
+                    nextDirection = (direction + 3) % 4;
+                else
+                    nextDirection = direction;
+                if (nextDirection != direction) outline.add(corner(column, row));
+                direction = nextDirection;
+            } while (column != startColumn || row != startRow || direction != EAST);
+            return List.copyOf(outline);
+        }
+
+        private PointCh corner(int column, int row) {
+            return new PointCh(
+                    Math2.clamp(SwissBounds.MIN_E, originE + column * cellSize, SwissBounds.MAX_E),
+                    Math2.clamp(SwissBounds.MIN_N, originN + row * cellSize, SwissBounds.MAX_N));
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Represents a set of landmarks and the cost of the best routes from each landmark to
+ * every node, and from every node to each landmark. By the triangle inequality, these
+ * give lower bounds on the cost between any two nodes (ALT heuristic).
+ * <p>
+ * The costs are stored node by node (all the costs from the landmarks, then all the
+ * costs to the landmarks), so that a bound only reads two small contiguous blocks.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class Landmarks {
+    private final int[] landmarkIds;
+    private final FloatBuffer costs;
+    private final int count;
+
+    /**
+     * Default number of landmarks.
+     */
+    public static final int DEFAULT_COUNT = 16;
+
+    private static final String LANDMARKS_FILE = "landmarks_%s.bin";
+    // Safety margin absorbing the rounding errors of the (float) costs
+    private static final float BOUND_MARGIN = 0.9999f;
+
+    private Landmarks(int[] landmarkIds, FloatBuffer costs) {
+        this.landmarkIds = landmarkIds;
+        this.costs = costs;
+        this.count = landmarkIds.length;
+    }
+
+    /**
+     * Chooses the given number of landmarks in the given graph and computes their costs.
+     * The first landmark is the node farthest from the center of the graph, each following
+     * one is the node farthest from all the landmarks already chosen, so that they end up
+     * spread along the borders of the covered area. This is an expensive, offline operation.
+     *
+     * @param graph        the graph
+     * @param costFunction the cost function
+     * @param count        the number of landmarks
+     * @return the landmarks
+     * @throws IllegalArgumentException if the count is not strictly positive
+     */
+    public static Landmarks compute(Graph graph, CostFunction costFunction, int count) {
+        Preconditions.checkArgument(count > 0);
+        int nodeCount = graph.nodeCount();
+        SearchState state = new SearchState(nodeCount);
+        float[] costs = new float[nodeCount * 2 * count];
+        int[] landmarkIds = new int[count];
+
+        float[] distances = new float[nodeCount];
+        shortestCosts(graph, costFunction, state, centralNode(graph), false);
+        int landmarkId = farthestNode(state, nodeCount, null);
+
+        for (int i = 0; i < count; i++) {
+            landmarkIds[i] = landmarkId;
+            shortestCosts(graph, costFunction, state, landmarkId, false);
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                float cost = state.distance(nodeId);
+                costs[nodeId * 2 * count + i] = cost;
+                distances[nodeId] = i == 0 ? cost : Math.min(distances[nodeId], cost);
+            }
+            shortestCosts(graph, costFunction, state, landmarkId, true);
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                costs[nodeId * 2 * count + count + i] = state.distance(nodeId);
+            }
+            landmarkId = farthestNode(state, nodeCount, distances);
+        }
+        return new Landmarks(landmarkIds, FloatBuffer.wrap(costs));
+    }
+
+    /**
+     * Loads the landmarks of the given profile stored in the given directory,
+     * previously written by {@link #writeTo(Path, String)}. The costs are not read
+     * but memory-mapped.
+     *
+     * @param basePath the directory containing the landmarks file
+     * @param profile  the name of the cost function profile
+     * @return the landmarks
+     * @throws IOException if there is a problem with the file or the path
+     */
+    public static Landmarks loadFrom(Path basePath, String profile) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(basePath.resolve(LANDMARKS_FILE.formatted(profile)))) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int count = buffer.getInt(0);
+        int[] landmarkIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            landmarkIds[i] = buffer.getInt((i + 1) * Integer.BYTES);
+        }
+        int headerBytes = (count + 1) * Integer.BYTES;
+        FloatBuffer costs = buffer
+                .slice(headerBytes, buffer.capacity() - headerBytes)
+                .asFloatBuffer()
+                .asReadOnlyBuffer();
+        return new Landmarks(landmarkIds, costs);
+    }
+
+    /**
+     * Writes the landmarks and their costs to a binary file in the given directory.
+     *
+     * @param basePath the directory
+     * @param profile  the name of the cost function profile
+     * @throws IOException if there is a problem with the file or the path
+     */
+    public void writeTo(Path basePath, String profile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(LANDMARKS_FILE.formatted(profile)))))) {
+            out.writeInt(count);
+            for (int landmarkId : landmarkIds) out.writeInt(landmarkId);
+            for (int i = 0; i < costs.capacity(); i++) out.writeFloat(costs.get(i));
+        }
+    }
+
+    /**
+     * Computes the landmarks of the graph stored in the given directory for the
+     * city bike cost function, and writes them next to the graph files.
+     *
+     * @param args the directory containing the graph files
+     * @throws IOException if there is a problem with a file or the path
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args[0]);
+        Graph graph = Graph.loadFrom(basePath);
+        long t0 = System.nanoTime();
+        Landmarks landmarks = compute(graph, new CityBikeCF(graph), DEFAULT_COUNT);
+        landmarks.writeTo(basePath, "citybike");
+        System.out.printf("Points de repère calculés en %d s%n",
+                (System.nanoTime() - t0) / 1_000_000_000);
+    }
+
+    /**
+     * Returns the number of landmarks.
+     *
+     * @return the number of landmarks
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the index of the node of the given landmark.
+     *
+     * @param index the index of the landmark
+     * @return the index of the node
+     */
+    public int landmarkNodeId(int index) {
+        return landmarkIds[index];
+    }
+
+    /**
+     * Returns a lower bound of the cost of the best route from the given node to the given
+     * target node, or 0 if no landmark gives any information.
+     *
+     * @param nodeId   the index of the node
+     * @param targetId the index of the target node
+     * @return the lower bound
+     */
+    public float lowerBound(int nodeId, int targetId) {
+        int nodeOffset = nodeId * 2 * count;
+        int targetOffset = targetId * 2 * count;
+        float bound = 0;
+        for (int i = 0; i < count; i++) {
+            // d(L, t) - d(L, v) <= d(v, t)
+            float fromLandmarkToTarget = costs.get(targetOffset + i);
+            float fromLandmarkToNode = costs.get(nodeOffset + i);
+            if (fromLandmarkToTarget != Float.POSITIVE_INFINITY
+                    && fromLandmarkToNode != Float.POSITIVE_INFINITY)
+                bound = Math.max(bound, fromLandmarkToTarget - fromLandmarkToNode);
+            // d(v, L) - d(t, L) <= d(v, t)
+            float fromNodeToLandmark = costs.get(nodeOffset + count + i);
+            float fromTargetToLandmark = costs.get(targetOffset + count + i);
+            if (fromNodeToLandmark != Float.POSITIVE_INFINITY
+                    && fromTargetToLandmark != Float.POSITIVE_INFINITY)
+                bound = Math.max(bound, fromNodeToLandmark - fromTargetToLandmark);
+        }
+        return bound * BOUND_MARGIN;
+    }
+
+    private static int centralNode(Graph graph) {
+        double minE = Double.POSITIVE_INFINITY, maxE = Double.NEGATIVE_INFINITY;
+        double minN = Double.POSITIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            PointCh point = graph.nodePoint(nodeId);
+            minE = Math.min(minE, point.e());
+            maxE = Math.max(maxE, point.e());
+            minN = Math.min(minN, point.n());
+            maxN = Math.max(maxN, point.n());
+        }
+        PointCh center = new PointCh((minE + maxE) / 2, (minN + maxN) / 2);
+        int centralNodeId = 0;
+        double smallestDistance = Double.POSITIVE_INFINITY;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            if (graph.nodeOutDegree(nodeId) == 0) continue;
+            double distance = center.squaredDistanceTo(graph.nodePoint(nodeId));
+            if (distance < smallestDistance) {
+                smallestDistance = distance;
+                centralNodeId = nodeId;
+            }
+        }
+        return centralNodeId;
+    }
+
+    /**
+     * Returns the reached node with the greatest (finite) distance, taken from the given
+     * array if any, or from the given search state otherwise.
+     */
+    private static int farthestNode(SearchState state, int nodeCount, float[] distances) {
+        int farthestNodeId = 0;
+        float greatestDistance = Float.NEGATIVE_INFINITY;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            float distance = distances == null ? state.distance(nodeId) : distances[nodeId];
+            if (distance != Float.POSITIVE_INFINITY && distance > greatestDistance) {
+                greatestDistance = distance;
+                farthestNodeId = nodeId;
+            }
+        }
+        return farthestNodeId;
+    }
+
+    /**
+     * Computes the cost of the best routes from the given node to all the others
+     * (or from all the others to the given node, if backward), leaving them in the state.
+     */
+    private static void shortestCosts(Graph graph, CostFunction costFunction,
+                                      SearchState state,
+                                      int sourceId, boolean backward) {
+        state.reset();
+        NodeHeap exploring = state.heap();
+        state.reach(sourceId, 0f, sourceId, -1);
+        exploring.push(sourceId, 0f);
+        while (!exploring.isEmpty()) {
+            int nodeId = exploring.poll();
+            state.settle(nodeId);
+            float pathToNodeLength = state.distance(nodeId);
+            int degree = backward ? graph.nodeInDegree(nodeId) : graph.nodeOutDegree(nodeId);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = backward
+                        ? graph.nodeInEdgeId(nodeId, i)
+                        : graph.nodeOutEdgeId(nodeId, i);
+                int fromNodeId = backward ? graph.edgeSourceNodeId(edgeId) : nodeId;
+                int arrivalNodeId = backward ? fromNodeId : graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(arrivalNodeId)) continue;
+                float pathToArrivalNodeLength = (float) (pathToNodeLength
+                        + costFunction.costFactor(fromNodeId, edgeId) * graph.edgeLength(edgeId));
+                if (pathToArrivalNodeLength < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeLength, nodeId, edgeId);
+                    exploring.push(arrivalNodeId, pathToArrivalNodeLength);
+                }
+            }
+        }
+    }
+}
@@ -14,6 +14,12 @@ import java.util.List;
  */
 public final class MultiRoute implements Route {
     private final List<Route> segments;
+    // Positions of the extremities of the segments along the itinerary
+    private final double[] segmentPositions;
+    // Number of (innermost) segments before each segment
+    private final int[] segmentIndexes;
+    private volatile List<Edge> edges;
+    private volatile List<PointCh> points;
 
     /**
      * Creates a multi-segment itinerary from a given list of segments.
@@ -23,6 +29,13 @@ public final class MultiRoute implements Route {
     public MultiRoute(List<Route> segments) {
         Preconditions.checkArgument(segments.size() != 0);
         this.segments = List.copyOf(segments);
+        this.segmentPositions = new double[segments.size() + 1];
+        this.segmentIndexes = new int[segments.size() + 1];
+        for (int i = 0; i < segments.size(); i++) {
+            Route segment = this.segments.get(i);
+            segmentPositions[i + 1] = segmentPositions[i] + segment.length();
+            segmentIndexes[i + 1] = segmentIndexes[i] + segment.indexOfSegmentAt(segment.length()) + 1;
+        }
     }
 
     /**
@@ -33,18 +46,9 @@ public final class MultiRoute implements Route {
      */
     @Override
     public int indexOfSegmentAt(double position) {
-        double positionMinusSegments = Math2.clamp(0, position, length());
-        int index = 0;
-        for (Route segment : segments) {
-            if (positionMinusSegments <= segment.length()) {
-                index += segment.indexOfSegmentAt(positionMinusSegments);
-                break;
-            } else {
-                positionMinusSegments -= segment.length();
-                index += segment.indexOfSegmentAt(segment.length()) + 1;
-            }
-        }
-        return index;
+        double clamp = Math2.clamp(0, position, length());
+        int i = segmentAt(clamp);
+        return segmentIndexes[i] + segments.get(i).indexOfSegmentAt(clamp - segmentPositions[i]);
     }
 
     /**
@@ -54,11 +58,7 @@ public final class MultiRoute implements Route {
      */
     @Override
     public double length() {
-        double totalLength = 0;
-        for (Route segment : segments) {
-            totalLength += segment.length();
-        }
-        return totalLength;
+        return segmentPositions[segments.size()];
     }
 
     /**
@@ -68,11 +68,16 @@ public final class MultiRoute implements Route {
      */
     @Override
     public List<Edge> edges() {
-        List<Edge> edges = new ArrayList<>();
-        for (Route segment : segments) {
-            edges.addAll(segment.edges());
+        List<Edge> result = edges;
+        if (result == null) {
+            List<Edge> allEdges = new ArrayList<>();
+            for (Route segment : segments) {
+                allEdges.addAll(segment.edges());
+            }
+            result = List.copyOf(allEdges);
+            edges = result;
         }
-        return edges;
+        return result;
     }
 
     /**
@@ -83,14 +88,18 @@ public final class MultiRoute implements Route {
      */
     @Override
     public List<PointCh> points() {
-        List<PointCh> points = new ArrayList<>();
-        points.add(pointAt(0));
-        for (Route segment : segments) {
-            List<PointCh> pointsMinus0 = new ArrayList<>(segment.points());
-            pointsMinus0.remove(0);
-            points.addAll(pointsMinus0);
+        List<PointCh> result = points;
+        if (result == null) {
+            List<PointCh> allPoints = new ArrayList<>();
+            allPoints.add(pointAt(0));
+            for (Route segment : segments) {
+                List<PointCh> segmentPoints = segment.points();
+                allPoints.addAll(segmentPoints.subList(1, segmentPoints.size()));
+            }
+            result = List.copyOf(allPoints);
+            points = result;
         }
-        return points;
+        return result;
     }
 
     /**
@@ -101,15 +110,9 @@ public final class MultiRoute implements Route {
      */
     @Override
     public PointCh pointAt(double position) {
-        double positionMinusSegments = Math2.clamp(0, position, length());
-        for (Route segment : segments) {
-            if (positionMinusSegments <= segment.length()) {
-                return segment.pointAt(positionMinusSegments);
-            } else {
-                positionMinusSegments -= segment.length();
-            }
-        }
-        return pointAt(length());
+        double clamp = Math2.clamp(0, position, length());
+        int i = segmentAt(clamp);
+        return segments.get(i).pointAt(clamp - segmentPositions[i]);
     }
 
     /**
@@ -120,15 +123,9 @@ public final class MultiRoute implements Route {
      */
     @Override
     public double elevationAt(double position) {
-        double positionMinusSegments = Math2.clamp(0, position, length());
-        for (Route segment : segments) {
-            if (positionMinusSegments <= segment.length()) {
-                return segment.elevationAt(positionMinusSegments);
-            } else {
-                positionMinusSegments -= segment.length();
-            }
-        }
-        return elevationAt(length());
+        double clamp = Math2.clamp(0, position, length());
+        int i = segmentAt(clamp);
+        return segments.get(i).elevationAt(clamp - segmentPositions[i]);
     }
 
     /**
@@ -139,15 +136,9 @@ public final class MultiRoute implements Route {
      */
     @Override
     public int nodeClosestTo(double position) {
-        double positionMinusSegments = Math2.clamp(0, position, length());
-        for (Route segment : segments) {
-            if (positionMinusSegments <= segment.length()) {
-                return segment.nodeClosestTo(positionMinusSegments);
-            } else {
-                positionMinusSegments -= segment.length();
-            }
-        }
-        return nodeClosestTo(length());
+        double clamp = Math2.clamp(0, position, length());
+        int i = segmentAt(clamp);
+        return segments.get(i).nodeClosestTo(clamp - segmentPositions[i]);
     }
 
     /**
@@ -159,16 +150,25 @@ public final class MultiRoute implements Route {
     @Override
     public RoutePoint pointClosestTo(PointCh point) {
         RoutePoint closestPoint = RoutePoint.NONE;
-        double globalPosition = 0;
-
         for (int i = 0; i < segments.size(); i++) {
-            if (i != 0)
-                globalPosition += segments.get(i - 1).length();
-            Route segment = segments.get(i);
-            RoutePoint testPoint = segment.pointClosestTo(point)
-                                          .withPositionShiftedBy(globalPosition);
+            RoutePoint testPoint = segments.get(i).pointClosestTo(point)
+                                               .withPositionShiftedBy(segmentPositions[i]);
             closestPoint = closestPoint.min(testPoint);
         }
         return closestPoint;
     }
+
+    /**
+     * Returns the index of the first segment ending at or after the given position
+     * (between 0 and the length of the itinerary), found by binary search.
+     */
+    private int segmentAt(double position) {
+        int low = 0, high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (segmentPositions[middle + 1] < position) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
 }
@@ -0,0 +1,169 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Represents a priority queue of nodes, implemented as an indexed 4-ary min-heap
+ * of primitive (node, key) pairs. Each node is present at most once, and its key
+ * can be decreased in place.
+ * <p>
+ * The index giving the position of each node in the heap is reset lazily using
+ * generation stamps, so that clearing the heap costs nothing.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+final class NodeHeap {
+    private static final int ARITY = 4;
+    private static final int REMOVED = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] nodes;
+    private float[] keys;
+    private final int[] positions;
+    private final int[] stamps;
+    private int stamp;
+    private int size;
+
+    /**
+     * Creates an empty heap able to contain nodes from 0 (included) to the given count (excluded).
+     *
+     * @param nodeCount the number of nodes
+     */
+    NodeHeap(int nodeCount) {
+        this.nodes = new int[INITIAL_CAPACITY];
+        this.keys = new float[INITIAL_CAPACITY];
+        this.positions = new int[nodeCount];
+        this.stamps = new int[nodeCount];
+        this.stamp = 1;
+    }
+
+    /**
+     * Removes all nodes from the heap.
+     */
+    void clear() {
+        size = 0;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            stamp = 0;
+        }
+        stamp++;
+    }
+
+    /**
+     * Returns the number of nodes in the heap.
+     *
+     * @return the number of nodes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the heap is empty.
+     *
+     * @return true if the heap is empty, false otherwise
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks if the given node is currently in the heap.
+     *
+     * @param nodeId the index of the node
+     * @return true if the node is in the heap, false otherwise
+     */
+    boolean contains(int nodeId) {
+        return stamps[nodeId] == stamp && positions[nodeId] != REMOVED;
+    }
+
+    /**
+     * Returns the node with the smallest key, without removing it.
+     *
+     * @return the index of the node
+     */
+    int peekNode() {
+        Preconditions.checkArgument(size > 0);
+        return nodes[0];
+    }
+
+    /**
+     * Returns the smallest key of the heap, or positive infinity if it is empty.
+     *
+     * @return the smallest key
+     */
+    float peekKey() {
+        return size == 0 ? Float.POSITIVE_INFINITY : keys[0];
+    }
+
+    /**
+     * Inserts the given node with the given key, or decreases its key if it is already
+     * in the heap with a greater key.
+     *
+     * @param nodeId the index of the node
+     * @param key    the key of the node
+     */
+    void push(int nodeId, float key) {
+        int position;
+        if (contains(nodeId)) {
+            position = positions[nodeId];
+            if (key >= keys[position]) return;
+        } else {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                keys = Arrays.copyOf(keys, 2 * size);
+            }
+            stamps[nodeId] = stamp;
+            position = size++;
+        }
+        siftUp(position, nodeId, key);
+    }
+
+    /**
+     * Removes the node with the smallest key from the heap and returns it.
+     *
+     * @return the index of the node
+     */
+    int poll() {
+        Preconditions.checkArgument(size > 0);
+        int nodeId = nodes[0];
+        positions[nodeId] = REMOVED;
+        size--;
+        if (size > 0) siftDown(0, nodes[size], keys[size]);
+        return nodeId;
+    }
+
+    private void siftUp(int position, int nodeId, float key) {
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            if (keys[parent] <= key) break;
+            place(position, nodes[parent], keys[parent]);
+            position = parent;
+        }
+        place(position, nodeId, key);
+    }
+
+    private void siftDown(int position, int nodeId, float key) {
+        while (true) {
+            int firstChild = ARITY * position + 1;
+            if (firstChild >= size) break;
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int smallest = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (keys[child] < keys[smallest]) smallest = child;
+            }
+            if (keys[smallest] >= key) break;
+            place(position, nodes[smallest], keys[smallest]);
+            position = smallest;
+        }
+        place(position, nodeId, key);
+    }
+
+    private void place(int position, int nodeId, float key) {
+        nodes[position] = nodeId;
+        keys[position] = key;
+        positions[nodeId] = position;
+    }
+}
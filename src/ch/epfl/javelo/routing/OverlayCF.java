@@ -0,0 +1,31 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Represents a cost function whose factors are the ones of a base cost function,
+ * multiplied by the penalties of an edge overlay.
+ *
+ * @param base    the base cost function
+ * @param overlay the overlay
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public record OverlayCF(CostFunction base, EdgeOverlay overlay) implements CostFunction {
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        return base.costFactor(nodeId, edgeId) * overlay.snapshot().multiplier(edgeId);
+    }
+
+    /**
+     * Returns a cost function using the current penalties of the overlay,
+     * which are not affected by its later updates.
+     *
+     * @return the snapshot of the cost function
+     */
+    @Override
+    public CostFunction snapshot() {
+        CostFunction baseSnapshot = base.snapshot();
+        EdgeOverlay.Snapshot overlaySnapshot = overlay.snapshot();
+        return (nodeId, edgeId) ->
+                baseSnapshot.costFactor(nodeId, edgeId) * overlaySnapshot.multiplier(edgeId);
+    }
+}
@@ -0,0 +1,169 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a cost function whose factors have been computed once for every edge of
+ * a graph, so that a factor is obtained by a single read. The factors can be written
+ * to a file named after the profile of the cost function, and memory-mapped back.
+ * The file starts with the number of edges and the {@linkplain Graph#fingerprint()
+ * fingerprint} of the graph, so that factors written for another graph (e.g. before an
+ * update of the data) are never used.
+ * <p>
+ * The decorated cost function must only depend on the edge, and not on the node
+ * from which it is taken (which is the case of {@link CityBikeCF}).
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class PrecomputedCF implements CostFunction {
+    private final FloatBuffer factors;
+
+    private final long fingerprint;
+
+    private static final String FACTORS_FILE = "cost_factors_%s.bin";
+    private static final int MAGIC = 0x4A56_4346; // "JVCF"
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+    private PrecomputedCF(FloatBuffer factors, long fingerprint) {
+        this.factors = factors;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Computes (in parallel) the factors of the given cost function for every edge of the
+     * given graph.
+     *
+     * @param graph        the graph
+     * @param costFunction the cost function
+     * @return the precomputed cost function
+     */
+    public static PrecomputedCF of(Graph graph, CostFunction costFunction) {
+        float[] factors = new float[graph.edgeCount()];
+        IntStream.range(0, factors.length).parallel().forEach(edgeId ->
+                factors[edgeId] = (float) costFunction.costFactor(
+                        graph.edgeSourceNodeId(edgeId), edgeId));
+        return new PrecomputedCF(FloatBuffer.wrap(factors), graph.fingerprint());
+    }
+
+    /**
+     * Loads the factors of the given profile from the given directory, in which they
+     * were previously written by {@link #writeTo(Path, String)}. The factors are not read
+     * but memory-mapped.
+     *
+     * @param basePath the directory containing the factors file
+     * @param profile  the name of the cost function profile
+     * @param graph    the graph for which the factors were computed
+     * @return the precomputed cost function
+     * @throws IOException              if there is a problem with the file or the path
+     * @throws IllegalArgumentException if the file was not written for the given graph
+     */
+    public static PrecomputedCF loadFrom(Path basePath, String profile, Graph graph)
+            throws IOException {
+        FloatBuffer factors = map(basePath.resolve(FACTORS_FILE.formatted(profile)), graph);
+        Preconditions.checkArgument(factors != null);
+        return new PrecomputedCF(factors, graph.fingerprint());
+    }
+
+    /**
+     * Loads the factors of the given profile from the given directory if they were already
+     * written there for the given graph, otherwise computes them from the given cost function
+     * and tries to write them, so that they do not need to be computed again on the next start.
+     *
+     * @param basePath     the directory containing the factors file
+     * @param profile      the name of the cost function profile
+     * @param graph        the graph
+     * @param costFunction the cost function
+     * @return the precomputed cost function
+     * @throws IOException if there is a problem with an existing file
+     */
+    public static PrecomputedCF loadOrCompute(Path basePath, String profile,
+                                              Graph graph, CostFunction costFunction)
+            throws IOException {
+        Path file = basePath.resolve(FACTORS_FILE.formatted(profile));
+        FloatBuffer factors = Files.exists(file) ? map(file, graph) : null;
+        return factors != null
+                ? new PrecomputedCF(factors, graph.fingerprint())
+                : compute(basePath, profile, graph, costFunction);
+    }
+
+    /**
+     * Computes the factors of the given cost function and tries to write them to the given
+     * directory, replacing the factors previously written there (e.g. for an older graph).
+     * <p>
+     * The previous file is deleted rather than overwritten, since it may still be mapped
+     * by a cost function of the older graph.
+     *
+     * @param basePath     the directory of the factors file
+     * @param profile      the name of the cost function profile
+     * @param graph        the graph
+     * @param costFunction the cost function
+     * @return the precomputed cost function
+     */
+    public static PrecomputedCF compute(Path basePath, String profile,
+                                        Graph graph, CostFunction costFunction) {
+        PrecomputedCF precomputed = of(graph, costFunction);
+        Path file = basePath.resolve(FACTORS_FILE.formatted(profile));
+        try {
+            Files.deleteIfExists(file);
+            precomputed.writeTo(basePath, profile);
+        } catch (IOException e) {
+            // The directory is not writable : the factors will be computed again next time
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }
+        return precomputed;
+    }
+
+    /**
+     * Maps the factors of the given file, if it was written for the given graph.
+     *
+     * @return the factors, or null if the file was written for another graph
+     */
+    private static FloatBuffer map(Path file, Graph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() != HEADER_SIZE + (long) Float.BYTES * graph.edgeCount()) return null;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC
+                    || buffer.getInt(Integer.BYTES) != graph.edgeCount()
+                    || buffer.getLong(2 * Integer.BYTES) != graph.fingerprint())
+                return null;
+            return buffer.position(HEADER_SIZE).slice().asFloatBuffer().asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Writes the factors, preceded by the number of edges and the fingerprint of the
+     * graph for which they were computed, to a binary file in the given directory.
+     *
+     * @param basePath the directory
+     * @param profile  the name of the cost function profile
+     * @throws IOException if there is a problem with the file or the path
+     */
+    public void writeTo(Path basePath, String profile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(FACTORS_FILE.formatted(profile)))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(factors.capacity());
+            out.writeLong(fingerprint);
+            for (int i = 0; i < factors.capacity(); i++) out.writeFloat(factors.get(i));
+        }
+    }
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        return factors.get(edgeId);
+    }
+}
@@ -1,14 +1,13 @@
 package ch.epfl.javelo.routing;
 
 import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.EdgePoint;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.function.DoubleUnaryOperator;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 
 /**
  * Represents an itinerary planner.
@@ -18,10 +17,11 @@ import java.util.function.DoubleUnaryOperator;
 public final class RouteComputer {
     private final Graph graph;
     private final CostFunction costFunction;
+    private final Landmarks landmarks;
     private final int NB_OF_NODES;
 
-    private static final float NOT_EXPLORED = Float.POSITIVE_INFINITY;
-    private static final float ALREADY_EXPLORED = Float.NEGATIVE_INFINITY;
+    // Number of nodes explored between two checks of the cancellation of a search
+    private static final int CANCELLATION_CHECK_INTERVAL = 1 << 10;
 
     /**
      * Creates a route planner from the given graph and cost function.
@@ -30,8 +30,22 @@ public final class RouteComputer {
      * @param costFunction the cost function
      */
     public RouteComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, null);
+    }
+
+    /**
+     * Creates a route planner from the given graph and cost function, guided by the
+     * lower bounds given by the given landmarks (which must have been computed for the
+     * same graph and cost function).
+     *
+     * @param graph        the graph containing nodes and edges
+     * @param costFunction the cost function
+     * @param landmarks    the landmarks, or null to only use the straight-line distance
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, Landmarks landmarks) {
         this.graph = graph;
         this.costFunction = costFunction;
+        this.landmarks = landmarks;
         this.NB_OF_NODES = graph.nodeCount();
     }
 
@@ -43,86 +57,393 @@ public final class RouteComputer {
      * @return the best route between the two nodes
      */
     public Route bestRouteBetween(int startNodeId, int endNodeId) {
-        Preconditions.checkArgument(startNodeId != endNodeId);
+        return bestRouteBetween(startNodeId, endNodeId, () -> false);
+    }
 
-        record WeightedNode(int nodeId, float sumDistance)
-                implements Comparable<WeightedNode> {
+    /**
+     * Returns the itinerary with minimum cost from the given starting node to the given end
+     * node (see {@link #bestRouteBetween(int, int)}), abandoning the search as soon as
+     * possible once the given condition is true, e.g. because the itinerary is no longer needed.
+     *
+     * @param startNodeId the index of the starting node
+     * @param endNodeId   the index of the end node
+     * @param cancelled   the condition, checked regularly during the search
+     * @return the best route between the two nodes
+     * @throws CancellationException if the search was abandoned
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId, BooleanSupplier cancelled) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        // The factors must not change during the search
+        CostFunction costFunction = this.costFunction.snapshot();
 
-            @Override
-            public int compareTo(WeightedNode that) {
-                return Float.compare(this.sumDistance, that.sumDistance);
-            }
-        }
-        // Initialization
-        float[] distances = new float[NB_OF_NODES]; // contains path lengths to each node from start
-        int[] predecessors = new int[NB_OF_NODES]; // contains node's predecessor in route
-        PriorityQueue<WeightedNode> exploring = new PriorityQueue<>();
-        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
-            distances[nodeId] = NOT_EXPLORED;
-        }
-        distances[startNodeId] = 0f;
-        exploring.add(new WeightedNode(startNodeId, 0));
+        // Initialization (the state of the current thread is reused from query to query)
+        SearchState state = SearchState.acquire(NB_OF_NODES, SearchState.FORWARD);
+        NodeHeap exploring = state.heap();
+        PointCh endPoint = graph.nodePoint(endNodeId);
+        state.reach(startNodeId, 0f, startNodeId, -1);
+        exploring.push(startNodeId, 0f);
 
         // Node exploration loop
-        while (exploring.size() != 0) {
-            WeightedNode node = exploring.remove();
-            // if node has already been explored
-            if (distances[node.nodeId] == ALREADY_EXPLORED)
-                continue;
+        int explored = 0;
+        while (!exploring.isEmpty()) {
+            checkCancellation(++explored, cancelled);
+            int nodeId = exploring.poll();
             // End node found
-            if (node.nodeId == endNodeId)
-                return getRoute(predecessors, startNodeId, endNodeId);
+            if (nodeId == endNodeId)
+                return getRoute(state, startNodeId, endNodeId);
+            // mark node as explored
+            state.settle(nodeId);
             // Exploration of all the nodes' edges
-            int nbOfEdges = graph.nodeOutDegree(node.nodeId);
-            float pathToNodeLength = distances[node.nodeId];
+            int nbOfEdges = graph.nodeOutDegree(nodeId);
+            float pathToNodeLength = state.distance(nodeId);
             for (int edgeIndex = 0; edgeIndex < nbOfEdges; edgeIndex++) {
-                int edgeId = graph.nodeOutEdgeId(node.nodeId, edgeIndex);
+                int edgeId = graph.nodeOutEdgeId(nodeId, edgeIndex);
                 int arrivalNodeId = graph.edgeTargetNodeId(edgeId);
                 // if arrival node has already been explored
-                if (distances[arrivalNodeId] == ALREADY_EXPLORED)
+                if (state.isSettled(arrivalNodeId))
                     continue;
                 float pathToArrivalNodeLength = (float) (
                         pathToNodeLength
-                                + costFunction.costFactor(node.nodeId, edgeId)
+                                + costFunction.costFactor(nodeId, edgeId)
                                 * graph.edgeLength(edgeId));
-                if (pathToArrivalNodeLength < distances[arrivalNodeId]) {
-                    distances[arrivalNodeId] = pathToArrivalNodeLength;
-                    predecessors[arrivalNodeId] = node.nodeId;
-                    float distanceToEndNode = (float) graph.nodePoint(arrivalNodeId)
-                            .distanceTo(graph.nodePoint(endNodeId));
-                    float sumDistance = pathToArrivalNodeLength + distanceToEndNode;
-                    exploring.add(new WeightedNode(arrivalNodeId, sumDistance));
+                if (pathToArrivalNodeLength < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeLength, nodeId, edgeId);
+                    float distanceToEndNode = remainingCostBound(arrivalNodeId, endNodeId, endPoint);
+                    exploring.push(arrivalNodeId, pathToArrivalNodeLength + distanceToEndNode);
                 }
             }
-            // mark node as explored
-            distances[node.nodeId] = ALREADY_EXPLORED;
         }
         return null;
     }
 
-    private Route getRoute(int[] predecessors, int startNodeId, int endNodeId) {
-        List<Edge> edges = new ArrayList<>();
+    /**
+     * Represents a point on an edge, seen in the direction of the edge : a road whose point
+     * lies on an edge can be taken along this edge, or along its opposite edge.
+     */
+    private record Direction(int edgeId, int fromNodeId, int toNodeId, double position) {
+    }
+
+    /**
+     * Returns the itinerary with minimum cost between two points of the edges of the graph
+     * (as given by {@link Graph#edgePointClosestTo}), which behave as temporary nodes
+     * splitting their edge : the itinerary starts (and ends) in the middle of an edge,
+     * in whichever direction the road can be taken.
+     * <p>
+     * The first and last edges of the itinerary are only the parts of the edges between
+     * their nodes and the given points, the index of their virtual extremity being the one
+     * of the node of the edge that they replace.
+     *
+     * @param start the starting point
+     * @param end   the end point
+     * @return the best route between the two points, or null if there is none or if both
+     * points are at the same place
+     * @throws IllegalArgumentException if a point does not exist, or if both points are equal
+     */
+    public Route bestRouteBetween(EdgePoint start, EdgePoint end) {
+        return bestRouteBetween(start, end, () -> false);
+    }
+
+    /**
+     * Returns the itinerary with minimum cost between two points of the edges of the graph
+     * (see {@link #bestRouteBetween(EdgePoint, EdgePoint)}), abandoning the search as soon as
+     * possible once the given condition is true, e.g. because the itinerary is no longer needed.
+     *
+     * @param start     the starting point
+     * @param end       the end point
+     * @param cancelled the condition, checked regularly during the search
+     * @return the best route between the two points, or null if there is none or if both
+     * points are at the same place
+     * @throws IllegalArgumentException if a point does not exist, or if both points are equal
+     * @throws CancellationException    if the search was abandoned
+     */
+    public Route bestRouteBetween(EdgePoint start, EdgePoint end, BooleanSupplier cancelled) {
+        Preconditions.checkArgument(start != EdgePoint.NONE && end != EdgePoint.NONE
+                && !start.equals(end));
+        // Already there, e.g. at the node where the edges of both points meet
+        if (start.point().equals(end.point()))
+            return null;
+        // The factors must not change during the search
+        CostFunction costFunction = this.costFunction.snapshot();
+        List<Direction> departures = directions(start);
+        List<Direction> arrivals = directions(end);
+
+        // Both points on the same edge, the end after the start
+        float bestCost = Float.POSITIVE_INFINITY;
+        Direction bestDeparture = null;
+        Direction bestArrival = null;
+        for (Direction departure : departures) {
+            for (Direction arrival : arrivals) {
+                if (departure.edgeId() != arrival.edgeId() || departure.position() > arrival.position())
+                    continue;
+                float cost = (float) (costFunction.costFactor(departure.fromNodeId(), departure.edgeId())
+                        * (arrival.position() - departure.position()));
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestDeparture = departure;
+                    bestArrival = arrival;
+                }
+            }
+        }
+
+        // The nodes at the end of the departure edges are reached from the starting point,
+        // which is recorded as their own predecessor
+        SearchState state = SearchState.acquire(NB_OF_NODES, SearchState.FORWARD);
+        NodeHeap exploring = state.heap();
+        PointCh endPoint = end.point();
+        for (Direction departure : departures) {
+            int nodeId = departure.toNodeId();
+            float cost = (float) (costFunction.costFactor(departure.fromNodeId(), departure.edgeId())
+                    * (graph.edgeLength(departure.edgeId()) - departure.position()));
+            if (cost < state.distance(nodeId)) {
+                state.reach(nodeId, cost, nodeId, departure.edgeId());
+                exploring.push(nodeId, cost + (float) graph.nodePoint(nodeId).distanceTo(endPoint));
+            }
+        }
+
+        boolean direct = bestDeparture != null;
+        int explored = 0;
+        while (!exploring.isEmpty() && exploring.peekKey() < bestCost) {
+            checkCancellation(++explored, cancelled);
+            int nodeId = exploring.poll();
+            state.settle(nodeId);
+            float pathToNodeLength = state.distance(nodeId);
+            // The end point is reached along one of the arrival edges
+            for (Direction arrival : arrivals) {
+                if (arrival.fromNodeId() != nodeId) continue;
+                float cost = (float) (pathToNodeLength
+                        + costFunction.costFactor(nodeId, arrival.edgeId()) * arrival.position());
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestArrival = arrival;
+                    direct = false;
+                }
+            }
+            int nbOfEdges = graph.nodeOutDegree(nodeId);
+            for (int edgeIndex = 0; edgeIndex < nbOfEdges; edgeIndex++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, edgeIndex);
+                int arrivalNodeId = graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(arrivalNodeId))
+                    continue;
+                float pathToArrivalNodeLength = (float) (
+                        pathToNodeLength
+                                + costFunction.costFactor(nodeId, edgeId)
+                                * graph.edgeLength(edgeId));
+                if (pathToArrivalNodeLength < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeLength, nodeId, edgeId);
+                    exploring.push(arrivalNodeId, pathToArrivalNodeLength
+                            + (float) graph.nodePoint(arrivalNodeId).distanceTo(endPoint));
+                }
+            }
+        }
+        if (bestArrival == null)
+            return null;
+        if (direct)
+            return nonEmpty(new ColumnarRoute(graph,
+                    new int[]{bestDeparture.fromNodeId(), bestDeparture.toNodeId()},
+                    new int[]{bestDeparture.edgeId()},
+                    bestDeparture.position(), bestArrival.position(), start.point(), end.point()));
+
+        // Nodes from the end of the departure edge to the start of the arrival edge
+        int pathEdgeCount = 0;
+        for (int nodeId = bestArrival.fromNodeId(); state.predecessorNode(nodeId) != nodeId;
+             nodeId = state.predecessorNode(nodeId)) {
+            pathEdgeCount++;
+        }
+        int[] nodeIds = new int[pathEdgeCount + 3];
+        int[] edgeIds = new int[pathEdgeCount + 2];
+        nodeIds[pathEdgeCount + 2] = bestArrival.toNodeId();
+        edgeIds[pathEdgeCount + 1] = bestArrival.edgeId();
+        int nodeId = bestArrival.fromNodeId();
+        for (int i = pathEdgeCount + 1; i > 0; i--) {
+            nodeIds[i] = nodeId;
+            edgeIds[i - 1] = state.predecessorEdge(nodeId);
+            nodeId = state.predecessorNode(nodeId);
+        }
+        // The first node is the one at the start of the departure edge
+        Direction bestDepartureEdge = departures.get(0);
+        for (Direction departure : departures) {
+            if (departure.edgeId() == edgeIds[0]) bestDepartureEdge = departure;
+        }
+        nodeIds[0] = bestDepartureEdge.fromNodeId();
+        return nonEmpty(new ColumnarRoute(graph, nodeIds, edgeIds,
+                bestDepartureEdge.position(), bestArrival.position(), start.point(), end.point()));
+    }
+
+    /**
+     * Returns the given itinerary, or null if it has no length, e.g. because both of its
+     * points are at the node where their edges meet : such an itinerary has no profile.
+     */
+    private static Route nonEmpty(Route route) {
+        return route.length() > 0 ? route : null;
+    }
+
+    /**
+     * Returns the directions in which the road of the given point can be taken : along the
+     * edge of the point, and along its opposite edge if there is one.
+     */
+    private List<Direction> directions(EdgePoint point) {
+        int edgeId = point.edgeId();
+        int fromNodeId = graph.edgeSourceNodeId(edgeId);
+        int toNodeId = graph.edgeTargetNodeId(edgeId);
+        Direction along = new Direction(edgeId, fromNodeId, toNodeId, point.position());
+        for (int i = 0; i < graph.nodeOutDegree(toNodeId); i++) {
+            int oppositeEdgeId = graph.nodeOutEdgeId(toNodeId, i);
+            if (graph.edgeTargetNodeId(oppositeEdgeId) == fromNodeId && oppositeEdgeId != edgeId) {
+                double length = graph.edgeLength(oppositeEdgeId);
+                double position = Math.max(0, length - point.position());
+                return List.of(along, new Direction(oppositeEdgeId, toNodeId, fromNodeId, position));
+            }
+        }
+        return List.of(along);
+    }
+
+    /**
+     * Returns the itinerary with minimum cost from the given starting node to the given end node,
+     * computed by two simultaneous searches : one from the starting node following the edges,
+     * and one from the end node following them backwards. Both searches are guided by the same
+     * (averaged) potentials, so that they explore far fewer nodes than a single search on long
+     * routes, and stop as soon as no better route than the best one found can exist.
+     *
+     * @param startNodeId the index of the starting node
+     * @param endNodeId   the index of the end node
+     * @return the best route between the two nodes, or null if there is none
+     */
+    public Route bidirectionalBestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        // The factors must not change during the search
+        CostFunction costFunction = this.costFunction.snapshot();
+
+        // Initialization (the states of the current thread are reused from query to query)
+        SearchState forward = SearchState.acquire(NB_OF_NODES, SearchState.FORWARD);
+        SearchState backward = SearchState.acquire(NB_OF_NODES, SearchState.BACKWARD);
+        PointCh startPoint = graph.nodePoint(startNodeId);
+        PointCh endPoint = graph.nodePoint(endNodeId);
+        forward.reach(startNodeId, 0f, startNodeId, -1);
+        forward.heap().push(startNodeId,
+                potential(startNodeId, startNodeId, startPoint, endNodeId, endPoint));
+        backward.reach(endNodeId, 0f, endNodeId, -1);
+        backward.heap().push(endNodeId,
+                -potential(endNodeId, startNodeId, startPoint, endNodeId, endPoint));
+
+        float bestCost = Float.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+
+        // Alternate between both searches, always advancing the one with the smallest queue
+        while (!forward.heap().isEmpty() && !backward.heap().isEmpty()) {
+            // No route through an unsettled node can be better than the best one found
+            if (forward.heap().peekKey() + backward.heap().peekKey() >= bestCost)
+                break;
+
+            boolean isForward = forward.heap().size() <= backward.heap().size();
+            SearchState state = isForward ? forward : backward;
+            SearchState other = isForward ? backward : forward;
+            int nodeId = state.heap().poll();
+            state.settle(nodeId);
+            float pathToNodeLength = state.distance(nodeId);
+
+            int nbOfEdges = isForward ? graph.nodeOutDegree(nodeId) : graph.nodeInDegree(nodeId);
+            for (int edgeIndex = 0; edgeIndex < nbOfEdges; edgeIndex++) {
+                int edgeId = isForward
+                        ? graph.nodeOutEdgeId(nodeId, edgeIndex)
+                        : graph.nodeInEdgeId(nodeId, edgeIndex);
+                int fromNodeId = isForward ? nodeId : graph.edgeSourceNodeId(edgeId);
+                int arrivalNodeId = isForward ? graph.edgeTargetNodeId(edgeId) : fromNodeId;
+                if (state.isSettled(arrivalNodeId))
+                    continue;
+                float pathToArrivalNodeLength = (float) (
+                        pathToNodeLength
+                                + costFunction.costFactor(fromNodeId, edgeId)
+                                * graph.edgeLength(edgeId));
+                if (pathToArrivalNodeLength < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeLength, nodeId, edgeId);
+                    float potential = potential(arrivalNodeId,
+                            startNodeId, startPoint, endNodeId, endPoint);
+                    state.heap().push(arrivalNodeId, pathToArrivalNodeLength
+                            + (isForward ? potential : -potential));
+                    // Both searches meet at the arrival node
+                    float throughNode = pathToArrivalNodeLength + other.distance(arrivalNodeId);
+                    if (throughNode < bestCost) {
+                        bestCost = throughNode;
+                        meetingNodeId = arrivalNodeId;
+                    }
+                }
+            }
+        }
+        if (meetingNodeId == -1)
+            return null;
+        return getRoute(forward, backward, startNodeId, endNodeId, meetingNodeId);
+    }
+
+    /**
+     * Returns the potential of the forward search at the given node, which is the average of
+     * the lower bounds of the remaining cost to the end node and of the cost from the start
+     * node. The potential of the backward search is its opposite, so that both searches
+     * use consistent keys and can share a single stopping criterion.
+     */
+    private float potential(int nodeId, int startNodeId, PointCh startPoint,
+                            int endNodeId, PointCh endPoint) {
+        float toEnd = remainingCostBound(nodeId, endNodeId, endPoint);
+        float fromStart = (float) graph.nodePoint(nodeId).distanceTo(startPoint);
+        if (landmarks != null)
+            fromStart = Math.max(fromStart, landmarks.lowerBound(startNodeId, nodeId));
+        return (toEnd - fromStart) / 2;
+    }
+
+    private static void checkCancellation(int explored, BooleanSupplier cancelled) {
+        if (explored % CANCELLATION_CHECK_INTERVAL == 0 && cancelled.getAsBoolean())
+            throw new CancellationException();
+    }
+
+    private float remainingCostBound(int nodeId, int endNodeId, PointCh endPoint) {
+        float distanceToEndNode = (float) graph.nodePoint(nodeId).distanceTo(endPoint);
+        return landmarks == null
+                ? distanceToEndNode
+                : Math.max(distanceToEndNode, landmarks.lowerBound(nodeId, endNodeId));
+    }
+
+    private Route getRoute(SearchState state, int startNodeId, int endNodeId) {
+        int edgeCount = 0;
+        for (int nodeId = endNodeId; nodeId != startNodeId; nodeId = state.predecessorNode(nodeId))
+            edgeCount++;
+        int[] nodeIds = new int[edgeCount + 1];
+        int[] edgeIds = new int[edgeCount];
         // Iterate through all the route's nodes from end to start
         int nodeId = endNodeId;
-        while (nodeId != startNodeId) {
-            int predecessor = predecessors[nodeId];
-            PointCh fromPoint = graph.nodePoint(predecessor);
-            PointCh toPoint = graph.nodePoint(nodeId);
-            int edgeId = 0;
-            // iterate through all the current node's edges
-            // until the one we want is found
-            for (int i = 0; i < graph.nodeOutDegree(predecessor); i++) {
-                edgeId = graph.nodeOutEdgeId(predecessor, i);
-                if (graph.edgeTargetNodeId(edgeId) == nodeId)
-                    break;
-            }
-            double length = graph.edgeLength(edgeId);
-            DoubleUnaryOperator profile = graph.edgeProfile(edgeId);
-            edges.add(new Edge(predecessor, nodeId, fromPoint, toPoint, length, profile));
-            nodeId = predecessor;
+        for (int i = edgeCount; i > 0; i--) {
+            nodeIds[i] = nodeId;
+            edgeIds[i - 1] = state.predecessorEdge(nodeId);
+            nodeId = state.predecessorNode(nodeId);
+        }
+        nodeIds[0] = startNodeId;
+        return new ColumnarRoute(graph, nodeIds, edgeIds);
+    }
+
+    private Route getRoute(SearchState forward, SearchState backward,
+                           int startNodeId, int endNodeId, int meetingNodeId) {
+        int forwardEdgeCount = 0;
+        for (int nodeId = meetingNodeId; nodeId != startNodeId; nodeId = forward.predecessorNode(nodeId))
+            forwardEdgeCount++;
+        int backwardEdgeCount = 0;
+        for (int nodeId = meetingNodeId; nodeId != endNodeId; nodeId = backward.predecessorNode(nodeId))
+            backwardEdgeCount++;
+        int[] nodeIds = new int[forwardEdgeCount + backwardEdgeCount + 1];
+        int[] edgeIds = new int[forwardEdgeCount + backwardEdgeCount];
+        // Edges from the start to the meeting node, collected backwards
+        int nodeId = meetingNodeId;
+        for (int i = forwardEdgeCount; i > 0; i--) {
+            nodeIds[i] = nodeId;
+            edgeIds[i - 1] = forward.predecessorEdge(nodeId);
+            nodeId = forward.predecessorNode(nodeId);
+        }
+        nodeIds[0] = startNodeId;
+        // Edges from the meeting node to the end, already in order
+        nodeId = meetingNodeId;
+        for (int i = forwardEdgeCount; i < edgeIds.length; i++) {
+            edgeIds[i] = backward.predecessorEdge(nodeId);
+            nodeId = backward.predecessorNode(nodeId);
+            nodeIds[i + 1] = nodeId;
         }
-        // reverse the list to get the route's edges in correct order
-        Collections.reverse(edges);
-        return new SingleRoute(edges);
+        nodeIds[forwardEdgeCount] = meetingNodeId;
+        return new ColumnarRoute(graph, nodeIds, edgeIds);
     }
 }
@@ -0,0 +1,262 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Represents the matrix of the best routes between a set of source nodes and a set of
+ * target nodes : their cost, length and total ascent, stored in dense arrays.
+ * <p>
+ * The matrix is computed with one search per source, stopping as soon as all the targets
+ * are reached, and the searches are run in parallel. Each parallel worker allocates its own
+ * search state for the duration of the computation, so that no state sized for the graph
+ * outlives it in the threads of the common pool. The routes themselves are not kept,
+ * but can be computed again on demand for the pairs that need them.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+public final class RouteMatrix {
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final int[] sourceNodeIds;
+    private final int[] targetNodeIds;
+    private final float[] costs;
+    private final float[] lengths;
+    private final float[] ascents;
+
+    private RouteMatrix(Graph graph, CostFunction costFunction,
+                        int[] sourceNodeIds, int[] targetNodeIds) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.sourceNodeIds = sourceNodeIds;
+        this.targetNodeIds = targetNodeIds;
+        int size = sourceNodeIds.length * targetNodeIds.length;
+        this.costs = new float[size];
+        this.lengths = new float[size];
+        this.ascents = new float[size];
+    }
+
+    /**
+     * Computes the matrix of the best routes from each of the given source nodes
+     * to each of the given target nodes.
+     *
+     * @param graph         the graph
+     * @param costFunction  the cost function
+     * @param sourceNodeIds the indexes of the source nodes
+     * @param targetNodeIds the indexes of the target nodes
+     * @return the matrix
+     * @throws IllegalArgumentException if one of the indexes is not a node of the graph
+     */
+    public static RouteMatrix compute(Graph graph, CostFunction costFunction,
+                                      int[] sourceNodeIds, int[] targetNodeIds) {
+        int nodeCount = graph.nodeCount();
+        for (int nodeId : sourceNodeIds)
+            Preconditions.checkArgument(nodeId >= 0 && nodeId < nodeCount);
+        for (int nodeId : targetNodeIds)
+            Preconditions.checkArgument(nodeId >= 0 && nodeId < nodeCount);
+
+        // All the rows (and the routes computed again later) use the same factors
+        RouteMatrix matrix = new RouteMatrix(graph, costFunction.snapshot(),
+                sourceNodeIds.clone(), targetNodeIds.clone());
+        int[] distinctTargets = IntStream.of(targetNodeIds).sorted().distinct().toArray();
+        // Each worker takes the next row to compute until there is none left
+        AtomicInteger nextRow = new AtomicInteger();
+        int workerCount = Math.min(sourceNodeIds.length, Runtime.getRuntime().availableProcessors());
+        IntStream.range(0, workerCount)
+                .parallel()
+                .forEach(worker -> {
+                    SearchState state = new SearchState(nodeCount);
+                    int row;
+                    while ((row = nextRow.getAndIncrement()) < sourceNodeIds.length) {
+                        state.reset();
+                        matrix.computeRow(row, distinctTargets, state);
+                    }
+                });
+        return matrix;
+    }
+
+    /**
+     * Computes the matrix of the best routes from each of the given source points to each
+     * of the given target points, each point being replaced by the node closest to it.
+     *
+     * @param graph          the graph
+     * @param costFunction   the cost function
+     * @param sources        the source points
+     * @param targets        the target points
+     * @param searchDistance the maximum distance between a point and its node
+     * @return the matrix
+     * @throws IllegalArgumentException if there is no node close enough to one of the points
+     */
+    public static RouteMatrix compute(Graph graph, CostFunction costFunction,
+                                      List<PointCh> sources, List<PointCh> targets,
+                                      double searchDistance) {
+        return compute(graph, costFunction,
+                closestNodes(graph, sources, searchDistance),
+                closestNodes(graph, targets, searchDistance));
+    }
+
+    private static int[] closestNodes(Graph graph, List<PointCh> points, double searchDistance) {
+        int[] nodeIds = new int[points.size()];
+        for (int i = 0; i < nodeIds.length; i++) {
+            nodeIds[i] = graph.nodeClosestTo(points.get(i), searchDistance);
+            Preconditions.checkArgument(nodeIds[i] != -1);
+        }
+        return nodeIds;
+    }
+
+    /**
+     * Returns the number of sources (rows) of the matrix.
+     *
+     * @return the number of sources
+     */
+    public int sourceCount() {
+        return sourceNodeIds.length;
+    }
+
+    /**
+     * Returns the number of targets (columns) of the matrix.
+     *
+     * @return the number of targets
+     */
+    public int targetCount() {
+        return targetNodeIds.length;
+    }
+
+    /**
+     * Returns the index of the node of the given source.
+     *
+     * @param sourceIndex the index of the source
+     * @return the index of the node
+     */
+    public int sourceNodeId(int sourceIndex) {
+        return sourceNodeIds[sourceIndex];
+    }
+
+    /**
+     * Returns the index of the node of the given target.
+     *
+     * @param targetIndex the index of the target
+     * @return the index of the node
+     */
+    public int targetNodeId(int targetIndex) {
+        return targetNodeIds[targetIndex];
+    }
+
+    /**
+     * Returns the cost of the best route from the given source to the given target,
+     * or positive infinity if there is none.
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return the cost of the route
+     */
+    public float cost(int sourceIndex, int targetIndex) {
+        return costs[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Returns the length in meters of the best route from the given source to the given
+     * target, or positive infinity if there is none.
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return the length of the route
+     */
+    public float length(int sourceIndex, int targetIndex) {
+        return lengths[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Returns the total ascent in meters of the best route from the given source to the
+     * given target, or positive infinity if there is none.
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return the total ascent of the route
+     */
+    public float ascent(int sourceIndex, int targetIndex) {
+        return ascents[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Computes again the best route from the given source to the given target.
+     *
+     * @param sourceIndex the index of the source
+     * @param targetIndex the index of the target
+     * @return the route, or null if there is none or if both nodes are the same
+     */
+    public Route route(int sourceIndex, int targetIndex) {
+        int startNodeId = sourceNodeId(sourceIndex);
+        int endNodeId = targetNodeId(targetIndex);
+        if (startNodeId == endNodeId || cost(sourceIndex, targetIndex) == Float.POSITIVE_INFINITY)
+            return null;
+        return new RouteComputer(graph, costFunction).bestRouteBetween(startNodeId, endNodeId);
+    }
+
+    private int index(int sourceIndex, int targetIndex) {
+        Preconditions.checkArgument(sourceIndex >= 0 && sourceIndex < sourceNodeIds.length
+                && targetIndex >= 0 && targetIndex < targetNodeIds.length);
+        return sourceIndex * targetNodeIds.length + targetIndex;
+    }
+
+    /**
+     * Runs the search from the given source until all the (distinct, sorted) targets are
+     * settled, then fills the row of the source, using the given (reset) search state.
+     */
+    private void computeRow(int sourceIndex, int[] distinctTargets, SearchState state) {
+        int sourceId = sourceNodeIds[sourceIndex];
+        NodeHeap exploring = state.heap();
+        state.reach(sourceId, 0f, sourceId, -1);
+        exploring.push(sourceId, 0f);
+
+        int remainingTargets = distinctTargets.length;
+        while (!exploring.isEmpty() && remainingTargets > 0) {
+            int nodeId = exploring.poll();
+            state.settle(nodeId);
+            if (Arrays.binarySearch(distinctTargets, nodeId) >= 0)
+                remainingTargets--;
+            float pathToNodeLength = state.distance(nodeId);
+            int nbOfEdges = graph.nodeOutDegree(nodeId);
+            for (int edgeIndex = 0; edgeIndex < nbOfEdges; edgeIndex++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, edgeIndex);
+                int arrivalNodeId = graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(arrivalNodeId))
+                    continue;
+                float pathToArrivalNodeLength = (float) (
+                        pathToNodeLength
+                                + costFunction.costFactor(nodeId, edgeId)
+                                * graph.edgeLength(edgeId));
+                if (pathToArrivalNodeLength < state.distance(arrivalNodeId)) {
+                    state.reach(arrivalNodeId, pathToArrivalNodeLength, nodeId, edgeId);
+                    exploring.push(arrivalNodeId, pathToArrivalNodeLength);
+                }
+            }
+        }
+
+        for (int targetIndex = 0; targetIndex < targetNodeIds.length; targetIndex++) {
+            int index = sourceIndex * targetNodeIds.length + targetIndex;
+            int targetId = targetNodeIds[targetIndex];
+            if (!state.isSettled(targetId)) {
+                costs[index] = lengths[index] = ascents[index] = Float.POSITIVE_INFINITY;
+                continue;
+            }
+            // Walk the route backwards to sum the length and ascent of its edges
+            double length = 0;
+            double ascent = 0;
+            for (int nodeId = targetId; nodeId != sourceId; nodeId = state.predecessorNode(nodeId)) {
+                int edgeId = state.predecessorEdge(nodeId);
+                length += graph.edgeLength(edgeId);
+                ascent += graph.edgeElevationGain(edgeId);
+            }
+            costs[index] = state.distance(targetId);
+            lengths[index] = (float) length;
+            ascents[index] = (float) ascent;
+        }
+    }
+}
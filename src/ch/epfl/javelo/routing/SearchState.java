@@ -0,0 +1,182 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ * Represents the (reusable) state of a shortest path search over the nodes of a graph :
+ * the distance, predecessor node and predecessor edge of every reached node, the set of
+ * settled nodes and the queue of nodes to explore.
+ * <p>
+ * The arrays are reset lazily using generation stamps : an entry is only valid if it was
+ * written during the current generation, so that a reset costs nothing and the cost of a
+ * search only depends on the number of nodes it explores. Instances are pooled per thread.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+final class SearchState {
+    /**
+     * Slot of the state used by one-directional searches and forward searches.
+     */
+    static final int FORWARD = 0;
+    /**
+     * Slot of the state used by backward searches.
+     */
+    static final int BACKWARD = 1;
+    /**
+     * Slot of the state holding data derived from the two others, by node.
+     */
+    static final int DERIVED = 2;
+
+    private static final int SLOTS = 3;
+    private static final ThreadLocal<SearchState[]> POOL =
+            ThreadLocal.withInitial(() -> new SearchState[SLOTS]);
+
+    private final float[] distances;
+    private final int[] predecessorNodes;
+    private final int[] predecessorEdges;
+    private final int[] reachedStamps;
+    private final int[] settledStamps;
+    private final NodeHeap heap;
+    private int generation;
+
+    /**
+     * Creates a search state for a graph containing the given number of nodes.
+     *
+     * @param nodeCount the number of nodes
+     */
+    SearchState(int nodeCount) {
+        this.distances = new float[nodeCount];
+        this.predecessorNodes = new int[nodeCount];
+        this.predecessorEdges = new int[nodeCount];
+        this.reachedStamps = new int[nodeCount];
+        this.settledStamps = new int[nodeCount];
+        this.heap = new NodeHeap(nodeCount);
+        this.generation = 1;
+    }
+
+    /**
+     * Returns the search state of the current thread in the given slot, reset and
+     * sized for a graph containing the given number of nodes.
+     *
+     * @param nodeCount the number of nodes
+     * @param slot      the slot ({@link #FORWARD}, {@link #BACKWARD} or {@link #DERIVED})
+     * @return the search state
+     */
+    static SearchState acquire(int nodeCount, int slot) {
+        SearchState[] states = POOL.get();
+        SearchState state = states[slot];
+        if (state == null || state.nodeCount() != nodeCount) {
+            state = new SearchState(nodeCount);
+            states[slot] = state;
+        } else {
+            state.reset();
+        }
+        return state;
+    }
+
+    /**
+     * Returns the number of nodes this state can hold.
+     *
+     * @return the number of nodes
+     */
+    int nodeCount() {
+        return distances.length;
+    }
+
+    /**
+     * Forgets all reached and settled nodes, and empties the queue.
+     */
+    void reset() {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(reachedStamps, 0);
+            Arrays.fill(settledStamps, 0);
+            generation = 0;
+        }
+        generation++;
+        heap.clear();
+    }
+
+    /**
+     * Returns the queue of nodes to explore.
+     *
+     * @return the queue
+     */
+    NodeHeap heap() {
+        return heap;
+    }
+
+    /**
+     * Checks if the given node has been reached during the current search.
+     *
+     * @param nodeId the index of the node
+     * @return true if the node has been reached, false otherwise
+     */
+    boolean isReached(int nodeId) {
+        return reachedStamps[nodeId] == generation;
+    }
+
+    /**
+     * Returns the best distance found so far to the given node,
+     * or positive infinity if it has not been reached.
+     *
+     * @param nodeId the index of the node
+     * @return the distance
+     */
+    float distance(int nodeId) {
+        return isReached(nodeId) ? distances[nodeId] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the node preceding the given (reached) node on the best path found so far.
+     *
+     * @param nodeId the index of the node
+     * @return the index of the predecessor node
+     */
+    int predecessorNode(int nodeId) {
+        return predecessorNodes[nodeId];
+    }
+
+    /**
+     * Returns the edge leading to the given (reached) node on the best path found so far.
+     *
+     * @param nodeId the index of the node
+     * @return the index of the predecessor edge
+     */
+    int predecessorEdge(int nodeId) {
+        return predecessorEdges[nodeId];
+    }
+
+    /**
+     * Records a new best path to the given node.
+     *
+     * @param nodeId          the index of the node
+     * @param distance        the distance to the node
+     * @param predecessorNode the node preceding it on the path
+     * @param predecessorEdge the edge leading to it on the path
+     */
+    void reach(int nodeId, float distance, int predecessorNode, int predecessorEdge) {
+        reachedStamps[nodeId] = generation;
+        distances[nodeId] = distance;
+        predecessorNodes[nodeId] = predecessorNode;
+        predecessorEdges[nodeId] = predecessorEdge;
+    }
+
+    /**
+     * Checks if the given node has been settled (i.e. its distance is final).
+     *
+     * @param nodeId the index of the node
+     * @return true if the node is settled, false otherwise
+     */
+    boolean isSettled(int nodeId) {
+        return settledStamps[nodeId] == generation;
+    }
+
+    /**
+     * Marks the given node as settled.
+     *
+     * @param nodeId the index of the node
+     */
+    void settle(int nodeId) {
+        settledStamps[nodeId] = generation;
+    }
+}
@@ -0,0 +1,158 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.PointCh;
+
+/**
+ * Represents a spatial index of the edges of an itinerary, used to find its point closest
+ * to a reference point : a hierarchy of bounding boxes over ranges of consecutive edges
+ * (which, following each other, are close to each other), stored as a complete binary
+ * tree in arrays. The searches only examine the edges whose boxes can contain a closer
+ * point than the best one found, and allocate nothing per edge.
+ * <p>
+ * The results are the same as when examining every edge in order : the positions and
+ * distances are computed in the same way, and of several points at the same distance,
+ * the one on the first edge is chosen.
+ *
+ * @author Edouard Mignan (345875) and Timo Moebel (345665)
+ */
+final class SegmentIndex {
+    private final double[] coordinates;
+    private final double[] nodePositions;
+    private final double[] lengths;
+    private final int edgeCount;
+    private final int leafCount;
+    // Bounding boxes of the nodes of the tree (the root being at index 1)
+    private final double[] minE;
+    private final double[] minN;
+    private final double[] maxE;
+    private final double[] maxN;
+
+    private static final int LEAF_SIZE = 8;
+    // Margin added to the boxes, larger than the rounding errors of the interpolated points
+    private static final double MARGIN = 1e-6;
+
+    /**
+     * Builds the index of the edges of an itinerary.
+     *
+     * @param coordinates   the east and north coordinates of the extremities of the edges, interleaved
+     * @param nodePositions the positions of the extremities of the edges along the itinerary
+     * @param lengths       the lengths of the edges
+     */
+    SegmentIndex(double[] coordinates, double[] nodePositions, double[] lengths) {
+        this.coordinates = coordinates;
+        this.nodePositions = nodePositions;
+        this.lengths = lengths;
+        this.edgeCount = lengths.length;
+        this.leafCount = Integer.highestOneBit(Math.max(1, (edgeCount + LEAF_SIZE - 1) / LEAF_SIZE) * 2 - 1);
+        int nodeCount = 2 * leafCount;
+        minE = new double[nodeCount];
+        minN = new double[nodeCount];
+        maxE = new double[nodeCount];
+        maxN = new double[nodeCount];
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            int node = leafCount + leaf;
+            minE[node] = minN[node] = Double.POSITIVE_INFINITY;
+            maxE[node] = maxN[node] = Double.NEGATIVE_INFINITY;
+            int end = Math.min(edgeCount, (leaf + 1) * LEAF_SIZE);
+            for (int i = leaf * LEAF_SIZE; i < end; i++) {
+                for (int extremity = i; extremity <= i + 1; extremity++) {
+                    double e = coordinates[2 * extremity];
+                    double n = coordinates[2 * extremity + 1];
+                    minE[node] = Math.min(minE[node], e - MARGIN);
+                    minN[node] = Math.min(minN[node], n - MARGIN);
+                    maxE[node] = Math.max(maxE[node], e + MARGIN);
+                    maxN[node] = Math.max(maxN[node], n + MARGIN);
+                }
+            }
+        }
+        for (int node = leafCount - 1; node >= 1; node--) {
+            minE[node] = Math.min(minE[2 * node], minE[2 * node + 1]);
+            minN[node] = Math.min(minN[2 * node], minN[2 * node + 1]);
+            maxE[node] = Math.max(maxE[2 * node], maxE[2 * node + 1]);
+            maxN[node] = Math.max(maxN[2 * node], maxN[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Returns the point of the itinerary closest to the given reference point.
+     *
+     * @param point the reference point
+     * @return the closest point of the itinerary
+     */
+    RoutePoint pointClosestTo(PointCh point) {
+        Search search = new Search(point.e(), point.n());
+        search.visit(1);
+        if (search.bestEdge == -1) return RoutePoint.NONE;
+
+        int i = search.bestEdge;
+        double position = search.bestPosition;
+        PointCh closest = lengths[i] == 0
+                ? new PointCh(coordinates[2 * i], coordinates[2 * i + 1])
+                : new PointCh(pointE(i, position), pointN(i, position));
+        return new RoutePoint(closest, nodePositions[i] + position, search.bestDistance);
+    }
+
+    private double pointE(int i, double position) {
+        return Math2.interpolate(coordinates[2 * i], coordinates[2 * i + 2], position / lengths[i]);
+    }
+
+    private double pointN(int i, double position) {
+        return Math2.interpolate(coordinates[2 * i + 1], coordinates[2 * i + 3], position / lengths[i]);
+    }
+
+    /**
+     * Represents the state of a search : the reference point and the best point found.
+     */
+    private final class Search {
+        private final double e;
+        private final double n;
+        private int bestEdge = -1;
+        private double bestPosition;
+        private double bestDistance = Double.POSITIVE_INFINITY;
+
+        private Search(double e, double n) {
+            this.e = e;
+            this.n = n;
+        }
+
+        private void visit(int node) {
+            if (boxDistance(node) > bestDistance) return;
+            if (node >= leafCount) {
+                int end = Math.min(edgeCount, (node - leafCount + 1) * LEAF_SIZE);
+                for (int i = (node - leafCount) * LEAF_SIZE; i < end; i++) examine(i);
+                return;
+            }
+            // The closest child first, so that the other one is more likely to be pruned
+            int first = 2 * node, second = 2 * node + 1;
+            if (boxDistance(second) < boxDistance(first)) {
+                first = second;
+                second = 2 * node;
+            }
+            visit(first);
+            visit(second);
+        }
+
+        private void examine(int i) {
+            double length = lengths[i];
+            double position = Math2.clamp(0,
+                    Math2.projectionLength(coordinates[2 * i], coordinates[2 * i + 1],
+                            coordinates[2 * i + 2], coordinates[2 * i + 3], e, n),
+                    length);
+            double pE = length == 0 ? coordinates[2 * i] : pointE(i, position);
+            double pN = length == 0 ? coordinates[2 * i + 1] : pointN(i, position);
+            double distance = Math.sqrt(Math2.squaredNorm(e - pE, n - pN));
+            if (distance < bestDistance || distance == bestDistance && i < bestEdge) {
+                bestEdge = i;
+                bestPosition = position;
+                bestDistance = distance;
+            }
+        }
+
+        private double boxDistance(int node) {
+            double dE = Math.max(0, Math.max(minE[node] - e, e - maxE[node]));
+            double dN = Math.max(0, Math.max(minN[node] - n, n - maxN[node]));
+            return Math.sqrt(Math2.squaredNorm(dE, dN));
+        }
+    }
+}
@@ -21,6 +21,7 @@ public final class SingleRoute implements Route {
     private final Edge FIRST_EDGE;
 
     private final List<PointCh> points;
+    private volatile SegmentIndex segmentIndex;
 
     /**
      * Creates a single route from a given list of edges.
@@ -158,22 +159,20 @@ public final class SingleRoute implements Route {
      */
     @Override
     public RoutePoint pointClosestTo(PointCh point) {
-        double absolutePosition;
-        double positionAlongEdge;
-        double testDistance;
-        RoutePoint closestPoint = RoutePoint.NONE;
-
-        for (int i = 0; i < edges.size(); i++) {
-            Edge edge = edges.get(i);
-            positionAlongEdge = Math2.clamp(0,
-                    edge.positionClosestTo(point),
-                    edge.length());
-            PointCh testPoint = edge.pointAt(positionAlongEdge);
-            testDistance = point.distanceTo(testPoint);
-            absolutePosition = nodePositions[i] + positionAlongEdge;
-            closestPoint = closestPoint.min(testPoint, absolutePosition, testDistance);
+        SegmentIndex index = segmentIndex;
+        if (index == null) {
+            // Built on first use, as most routes are never searched
+            double[] coordinates = new double[2 * points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                coordinates[2 * i] = i == 0 ? FIRST_EDGE.fromPoint().e() : edges.get(i - 1).toPoint().e();
+                coordinates[2 * i + 1] = i == 0 ? FIRST_EDGE.fromPoint().n() : edges.get(i - 1).toPoint().n();
+            }
+            double[] lengths = new double[edges.size()];
+            for (int i = 0; i < lengths.length; i++) lengths[i] = edges.get(i).length();
+            index = new SegmentIndex(coordinates, nodePositions, lengths);
+            segmentIndex = index;
         }
-        return closestPoint;
+        return index.pointClosestTo(point);
     }
 
     private double[] getNodePositions() {
@@ -97,4 +97,24 @@ class FunctionsTest {
             }
         }
     }
+
+    @Test
+    void functionsSampledViewBehavesLikeSampled() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var sampleCount = rng.nextInt(2, 20);
+            var samples = new float[sampleCount];
+            for (int j = 0; j < sampleCount; j += 1)
+                samples[j] = rng.nextFloat(-5000, 5000);
+            var xMax = rng.nextDouble(50, 100);
+            var f = Functions.sampled(samples, xMax);
+            var g = Functions.sampledView(samples, xMax);
+            for (int j = 0; j < 10; j += 1) {
+                var x = rng.nextDouble(-10, xMax + 10);
+                assertEquals(f.applyAsDouble(x), g.applyAsDouble(x));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> Functions.sampledView(new float[]{0}, 1));
+        assertThrows(IllegalArgumentException.class, () -> Functions.sampledView(new float[]{0, 1}, 0));
+    }
 }
@@ -0,0 +1,62 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeIndexTest {
+
+    private static double distanceToEdge(Graph graph, int edgeId, PointCh point) {
+        PointCh a = graph.nodePoint(graph.edgeSourceNodeId(edgeId));
+        PointCh b = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+        double abE = b.e() - a.e(), abN = b.n() - a.n();
+        double squaredLength = Math2.squaredNorm(abE, abN);
+        double t = squaredLength == 0 ? 0 : Math2.clamp(0,
+                Math2.dotProduct(point.e() - a.e(), point.n() - a.n(), abE, abN) / squaredLength, 1);
+        return Math2.norm(point.e() - (a.e() + t * abE), point.n() - (a.n() + t * abN));
+    }
+
+    @Test
+    void edgePointClosestToWorksOnRandomPoints() {
+        var rng = newRandom();
+        var graph = TestGraphs.newGridGraph(25, 18, rng);
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            PointCh point = new PointCh(
+                    TestGraphs.ORIGIN_E + rng.nextDouble(-300, 2700),
+                    TestGraphs.ORIGIN_N + rng.nextDouble(-300, 2000));
+            double searchDistance = rng.nextDouble(1, 200);
+            double expected = Double.POSITIVE_INFINITY;
+            for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1)
+                expected = Math.min(expected, distanceToEdge(graph, edgeId, point));
+
+            EdgePoint actual = graph.edgePointClosestTo(point, searchDistance);
+            if (expected > searchDistance) {
+                assertEquals(EdgePoint.NONE, actual);
+                continue;
+            }
+            assertEquals(expected, actual.distanceToReference(), 1e-6);
+            assertEquals(expected, actual.point().distanceTo(point), 1e-6);
+            assertEquals(actual.distanceToReference(), distanceToEdge(graph, actual.edgeId(), point), 1e-6);
+            assertTrue(actual.position() >= 0 && actual.position() <= graph.edgeLength(actual.edgeId()));
+        }
+    }
+
+    @Test
+    void edgePointClosestToFindsPointOnLongEdgeFarFromNodes() {
+        var graph = TestGraphs.newGridGraph(10, 10, newRandom());
+        int edgeId = graph.nodeOutEdgeId(0, 0);
+        PointCh a = graph.nodePoint(graph.edgeSourceNodeId(edgeId));
+        PointCh b = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+        PointCh middle = new PointCh((a.e() + b.e()) / 2, (a.n() + b.n()) / 2);
+        EdgePoint edgePoint = graph.edgePointClosestTo(middle, 1);
+        assertNotEquals(EdgePoint.NONE, edgePoint);
+        assertEquals(0, edgePoint.distanceToReference(), 1e-6);
+        // No node is close to the middle of the edge
+        assertEquals(-1, graph.nodeClosestTo(middle, 1));
+    }
+}
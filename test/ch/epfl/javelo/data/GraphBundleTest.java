@@ -0,0 +1,142 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphBundleTest {
+
+    private static Path packedGraph(Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir.resolve("graph"), 14, 11, newRandom());
+        Path bundle = dir.resolve("graph.bundle");
+        GraphBundle.pack(dir.resolve("graph"), bundle);
+        return bundle;
+    }
+
+    private static void assertSameGraph(Graph expected, Graph actual) {
+        assertEquals(expected.nodeCount(), actual.nodeCount());
+        assertEquals(expected.edgeCount(), actual.edgeCount());
+        for (int nodeId = 0; nodeId < expected.nodeCount(); nodeId += 1) {
+            assertEquals(expected.nodePoint(nodeId), actual.nodePoint(nodeId));
+            assertEquals(expected.nodeOutDegree(nodeId), actual.nodeOutDegree(nodeId));
+        }
+        for (int edgeId = 0; edgeId < expected.edgeCount(); edgeId += 1) {
+            assertEquals(expected.edgeTargetNodeId(edgeId), actual.edgeTargetNodeId(edgeId));
+            assertEquals(expected.edgeIsInverted(edgeId), actual.edgeIsInverted(edgeId));
+            assertEquals(expected.edgeLength(edgeId), actual.edgeLength(edgeId));
+            assertEquals(expected.edgeAttributes(edgeId), actual.edgeAttributes(edgeId));
+            assertEquals(expected.edgeProfile(edgeId).applyAsDouble(2),
+                    actual.edgeProfile(edgeId).applyAsDouble(2));
+        }
+        assertEquals(expected.nodeClosestTo(expected.nodePoint(7), 50),
+                actual.nodeClosestTo(actual.nodePoint(7), 50));
+    }
+
+    private static void overwrite(Path file, long position, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{value}), position);
+        }
+    }
+
+    @Test
+    void graphBundleContainsTheSameGraph(@TempDir Path dir) throws IOException {
+        Path bundle = packedGraph(dir);
+        Graph expected = Graph.loadFrom(dir.resolve("graph"));
+        GraphBundle opened = GraphBundle.open(bundle);
+        assertSameGraph(expected, opened.graph());
+        assertSameGraph(expected, Graph.loadFrom(bundle, Graph.Preload.HEAP));
+        assertDoesNotThrow(() -> opened.verification().join());
+
+        GraphBundle.Header header = opened.header();
+        assertEquals(GraphBundle.VERSION, header.version());
+        assertEquals(expected.nodeCount(), header.nodeCount());
+        assertEquals(expected.edgeCount(), header.edgeCount());
+        assertTrue(header.minE() <= header.maxE() && header.minN() <= header.maxN());
+        assertNotNull(header.section("nodes_osmid.bin"));
+        for (GraphBundle.Section section : header.sections())
+            assertEquals(0, section.offset() % Long.BYTES);
+    }
+
+    @Test
+    void graphBundleWorksWithColumnFiles(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir.resolve("graph"), 9, 8, newRandom());
+        GraphConverter.convert(dir.resolve("graph"), dir.resolve("columns"));
+        GraphBundle.pack(dir.resolve("columns"), dir.resolve("columns.bundle"));
+        GraphBundle opened = GraphBundle.open(dir.resolve("columns.bundle"));
+        assertNull(opened.header().section("nodes.bin"));
+        assertSameGraph(Graph.loadFrom(dir.resolve("columns")), opened.graph());
+        assertDoesNotThrow(() -> opened.verification().join());
+    }
+
+    @Test
+    void graphBundleWorksWithoutSectors(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir.resolve("graph"), 9, 8, newRandom());
+        Files.delete(dir.resolve("graph").resolve("sectors.bin"));
+        GraphBundle.pack(dir.resolve("graph"), dir.resolve("graph.bundle"));
+        GraphBundle opened = GraphBundle.open(dir.resolve("graph.bundle"));
+        assertNull(opened.header().section("sectors.bin"));
+        assertSameGraph(Graph.loadFrom(dir.resolve("graph")), opened.graph());
+        assertDoesNotThrow(() -> opened.verification().join());
+    }
+
+    @Test
+    void graphBundleDetectsCorruptedSectionInBackground(@TempDir Path dir) throws IOException {
+        Path bundle = packedGraph(dir);
+        GraphBundle.Section edges = GraphBundle.open(bundle).header().section("edges.bin");
+        byte[] bytes = Files.readAllBytes(bundle);
+        overwrite(bundle, edges.offset() + 5, (byte) ~bytes[(int) edges.offset() + 5]);
+
+        GraphBundle opened = GraphBundle.open(bundle);
+        var e = assertThrows(CompletionException.class, () -> opened.verification().join());
+        assertTrue(e.getCause() instanceof IOException);
+        assertTrue(e.getCause().getMessage().contains("edges.bin"));
+    }
+
+    @Test
+    void graphBundleRejectsInvalidHeaderOrTruncatedFile(@TempDir Path dir) throws IOException {
+        Path bundle = packedGraph(dir);
+        byte[] bytes = Files.readAllBytes(bundle);
+
+        Path truncated = dir.resolve("truncated.bundle");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 100));
+        assertThrows(IOException.class, () -> GraphBundle.open(truncated));
+
+        Path corrupted = dir.resolve("corrupted.bundle");
+        Files.write(corrupted, bytes);
+        // A byte of the number of nodes
+        overwrite(corrupted, 11, (byte) (bytes[11] + 1));
+        assertThrows(IOException.class, () -> GraphBundle.open(corrupted));
+
+        Path notBundle = dir.resolve("graph/nodes.bin");
+        assertThrows(IOException.class, () -> GraphBundle.open(notBundle));
+    }
+
+    @Test
+    void graphBundlePackReplacesExistingBundle(@TempDir Path dir) throws IOException {
+        Path bundle = packedGraph(dir);
+        GraphBundle first = GraphBundle.open(bundle);
+        TestGraphs.writeGridGraph(dir.resolve("other"), 5, 4, newRandom());
+        GraphBundle.pack(dir.resolve("other"), bundle);
+        // The graph mapped before the replacement is still readable
+        assertEquals(14 * 11, first.graph().nodeCount());
+        first.graph().nodePoint(14 * 11 - 1);
+        assertEquals(20, GraphBundle.open(bundle).graph().nodeCount());
+        assertNotEquals(first.graph().fingerprint(), GraphBundle.open(bundle).graph().fingerprint());
+        assertEquals(GraphBundle.open(bundle).graph().fingerprint(), GraphBundle.open(bundle).graph().fingerprint());
+        try (var files = Files.list(dir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+}
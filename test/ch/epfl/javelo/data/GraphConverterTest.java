@@ -0,0 +1,156 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphConverterTest {
+
+    private static Graph[] convertedGraphs(Path dir) throws IOException {
+        Path source = dir.resolve("source");
+        Path target = dir.resolve("target");
+        TestGraphs.writeGridGraph(source, 24, 17, newRandom());
+        GraphConverter.convert(source, target);
+        assertTrue(Files.exists(target.resolve(Graph.FIRST_EDGE_IDS_FILE)));
+        assertFalse(Files.exists(target.resolve("nodes.bin")));
+        return new Graph[]{Graph.loadFrom(source), Graph.loadFrom(target)};
+    }
+
+    /**
+     * Returns the index in the second graph of each node of the first one.
+     */
+    private static int[] nodeMapping(Graph original, Graph converted) {
+        Map<PointCh, Integer> convertedIds = new HashMap<>();
+        for (int nodeId = 0; nodeId < converted.nodeCount(); nodeId += 1)
+            convertedIds.put(converted.nodePoint(nodeId), nodeId);
+        int[] mapping = new int[original.nodeCount()];
+        for (int nodeId = 0; nodeId < original.nodeCount(); nodeId += 1)
+            mapping[nodeId] = convertedIds.get(original.nodePoint(nodeId));
+        return mapping;
+    }
+
+    @Test
+    void graphConverterKeepsNodesAndEdges(@TempDir Path dir) throws IOException {
+        Graph[] graphs = convertedGraphs(dir);
+        Graph original = graphs[0];
+        Graph converted = graphs[1];
+        assertEquals(original.nodeCount(), converted.nodeCount());
+        assertEquals(original.edgeCount(), converted.edgeCount());
+
+        int[] mapping = nodeMapping(original, converted);
+        for (int nodeId = 0; nodeId < original.nodeCount(); nodeId += 1) {
+            int convertedNodeId = mapping[nodeId];
+            int degree = original.nodeOutDegree(nodeId);
+            assertEquals(degree, converted.nodeOutDegree(convertedNodeId));
+            for (int i = 0; i < degree; i += 1) {
+                int edgeId = original.nodeOutEdgeId(nodeId, i);
+                int convertedEdgeId = converted.nodeOutEdgeId(convertedNodeId, i);
+                assertEquals(mapping[original.edgeTargetNodeId(edgeId)],
+                        converted.edgeTargetNodeId(convertedEdgeId));
+                assertEquals(original.edgeIsInverted(edgeId), converted.edgeIsInverted(convertedEdgeId));
+                assertEquals(original.edgeLength(edgeId), converted.edgeLength(convertedEdgeId));
+                assertEquals(original.edgeElevationGain(edgeId),
+                        converted.edgeElevationGain(convertedEdgeId));
+                assertEquals(original.edgeAttributes(edgeId), converted.edgeAttributes(convertedEdgeId));
+                double length = original.edgeLength(edgeId);
+                for (double x = 0; x <= length; x += length / 8) {
+                    assertEquals(original.edgeProfile(edgeId).applyAsDouble(x),
+                            converted.edgeProfile(convertedEdgeId).applyAsDouble(x), 0, "x = " + x);
+                }
+            }
+        }
+    }
+
+    @Test
+    void graphConverterOrdersEdgesBySourceNode(@TempDir Path dir) throws IOException {
+        Graph converted = convertedGraphs(dir)[1];
+        int expectedEdgeId = 0;
+        for (int nodeId = 0; nodeId < converted.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < converted.nodeOutDegree(nodeId); i += 1)
+                assertEquals(expectedEdgeId++, converted.nodeOutEdgeId(nodeId, i));
+        }
+        assertEquals(converted.edgeCount(), expectedEdgeId);
+    }
+
+    @Test
+    void graphConverterKeepsClosestNodesAndRoutes(@TempDir Path dir) throws IOException {
+        Graph[] graphs = convertedGraphs(dir);
+        Graph original = graphs[0];
+        Graph converted = graphs[1];
+        int[] mapping = nodeMapping(original, converted);
+        var rng = newRandom();
+        var originalRouter = new RouteComputer(original, new CityBikeCF(original));
+        var convertedRouter = new RouteComputer(converted, new CityBikeCF(converted));
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            PointCh point = new PointCh(
+                    TestGraphs.ORIGIN_E + rng.nextDouble(-100, 2500),
+                    TestGraphs.ORIGIN_N + rng.nextDouble(-100, 1800));
+            int nodeId = original.nodeClosestTo(point, 150);
+            int convertedNodeId = converted.nodeClosestTo(point, 150);
+            if (nodeId == -1) {
+                assertEquals(-1, convertedNodeId);
+            } else {
+                assertEquals(original.nodePoint(nodeId).distanceTo(point),
+                        converted.nodePoint(convertedNodeId).distanceTo(point), 1e-9);
+            }
+
+            int startNodeId = rng.nextInt(original.nodeCount());
+            int endNodeId = rng.nextInt(original.nodeCount());
+            if (startNodeId == endNodeId) continue;
+            Route route = originalRouter.bestRouteBetween(startNodeId, endNodeId);
+            Route convertedRoute = convertedRouter.bestRouteBetween(
+                    mapping[startNodeId], mapping[endNodeId]);
+            if (route == null) {
+                assertNull(convertedRoute);
+            } else {
+                assertEquals(route.length(), convertedRoute.length(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void graphConverterPermutesOsmIds(@TempDir Path dir) throws IOException {
+        Graph[] graphs = convertedGraphs(dir);
+        int[] mapping = nodeMapping(graphs[0], graphs[1]);
+        var original = Files.readAllBytes(dir.resolve("source/nodes_osmid.bin"));
+        var converted = Files.readAllBytes(dir.resolve("target/nodes_osmid.bin"));
+        var originalIds = ByteBuffer.wrap(original).asLongBuffer();
+        var convertedIds = ByteBuffer.wrap(converted).asLongBuffer();
+        for (int nodeId = 0; nodeId < mapping.length; nodeId += 1)
+            assertEquals(originalIds.get(nodeId), convertedIds.get(mapping[nodeId]));
+    }
+
+    @Test
+    void hilbertIndexVisitsEveryCellOnceThroughNeighbours() {
+        int size = 16;
+        int[] xs = new int[size * size];
+        int[] ys = new int[size * size];
+        boolean[] seen = new boolean[size * size];
+        for (int x = 0; x < size; x += 1) {
+            for (int y = 0; y < size; y += 1) {
+                int index = (int) GraphConverter.hilbertIndex(size, x, y);
+                assertFalse(seen[index]);
+                seen[index] = true;
+                xs[index] = x;
+                ys[index] = y;
+            }
+        }
+        for (int i = 1; i < size * size; i += 1)
+            assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+    }
+}
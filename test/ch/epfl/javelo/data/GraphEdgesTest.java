@@ -264,6 +264,33 @@ class GraphEdgesTest {
         }
     }
 
+    @Test
+    void graphEdgesBulkProfileSamplesWorksWithOffset() {
+        var rng = newRandom();
+        var edgesBuffer = ByteBuffer.allocate(10);
+        var elevations = ShortBuffer.allocate(48);
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            for (int j = 0; j < elevations.capacity(); j += 1)
+                elevations.put(j, (short) rng.nextInt(1 << 16));
+            var profileIds = IntBuffer.wrap(new int[]{rng.nextInt(1, 4) << 30 | rng.nextInt(5)});
+            var sampleCount = rng.nextInt(2, 40);
+            edgesBuffer.putShort(4, (short) ((2 * (sampleCount - 1)) << 4));
+            edgesBuffer.putInt(0, rng.nextBoolean() ? 0 : ~0);
+            var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
+
+            var expected = graphEdges.profileSamples(0);
+            assertEquals(sampleCount, expected.length);
+            assertEquals(sampleCount, graphEdges.profileSampleCount(0));
+            var offset = rng.nextInt(10);
+            var destination = new float[offset + sampleCount + 3];
+            Arrays.fill(destination, -1);
+            assertEquals(sampleCount, graphEdges.profileSamples(0, destination, offset));
+            assertArrayEquals(expected, Arrays.copyOfRange(destination, offset, offset + sampleCount));
+            for (int j = 0; j < offset; j += 1) assertEquals(-1, destination[j]);
+            for (int j = offset + sampleCount; j < destination.length; j += 1) assertEquals(-1, destination[j]);
+        }
+    }
+
     @Test
     void graphEdgesAttributesIndexWorksOnRandomValues() {
         var edgesCount = 10_000;
@@ -0,0 +1,156 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphProviderTest {
+
+    private static Graph gridGraph(Path dir, int width, int height) throws IOException {
+        TestGraphs.writeGridGraph(dir, width, height, newRandom());
+        return Graph.loadFrom(dir);
+    }
+
+    @Test
+    void graphProviderLeaseKeepsGraphUntilClosed(@TempDir Path dir) throws IOException {
+        Graph first = gridGraph(dir.resolve("first"), 4, 3);
+        Graph second = gridGraph(dir.resolve("second"), 5, 5);
+        GraphProvider provider = new GraphProvider(first);
+
+        GraphProvider.Lease lease = provider.acquire();
+        CompletableFuture<Void> retired = provider.replace(second);
+        assertSame(second, provider.current());
+        assertSame(first, lease.graph());
+        assertFalse(retired.isDone());
+
+        try (GraphProvider.Lease newLease = provider.acquire()) {
+            assertSame(second, newLease.graph());
+        }
+        lease.close();
+        assertTrue(retired.isDone());
+    }
+
+    @Test
+    void graphProviderRetiresUnleasedGraphImmediately(@TempDir Path dir) throws IOException {
+        Graph first = gridGraph(dir.resolve("first"), 4, 3);
+        GraphProvider provider = new GraphProvider(first);
+        provider.acquire().close();
+        assertTrue(provider.replace(gridGraph(dir.resolve("second"), 3, 3)).isDone());
+    }
+
+    @Test
+    void graphProviderDoubleCloseDoesNotRetireCurrentGraph(@TempDir Path dir) throws IOException {
+        GraphProvider provider = new GraphProvider(gridGraph(dir.resolve("first"), 4, 3));
+        CompletableFuture<Void> retired = provider.replace(gridGraph(dir.resolve("second"), 3, 3));
+        assertTrue(retired.isDone());
+
+        GraphProvider.Lease lease = provider.acquire();
+        lease.close();
+        lease.close();
+        GraphProvider.Lease other = provider.acquire();
+        CompletableFuture<Void> secondRetired = provider.replace(gridGraph(dir.resolve("third"), 2, 2));
+        assertFalse(secondRetired.isDone());
+        other.close();
+        assertTrue(secondRetired.isDone());
+    }
+
+    @Test
+    void graphProviderNotifiesListeners(@TempDir Path dir) throws IOException {
+        GraphProvider provider = new GraphProvider(gridGraph(dir.resolve("first"), 4, 3));
+        List<Graph> notified = new ArrayList<>();
+        provider.addListener(notified::add);
+        Graph second = gridGraph(dir.resolve("second"), 3, 3);
+        provider.replace(second);
+        assertEquals(List.of(second), notified);
+    }
+
+    @Test
+    void graphProviderReloadsInBackground(@TempDir Path dir) throws IOException {
+        GraphProvider provider = new GraphProvider(gridGraph(dir.resolve("first"), 4, 3));
+        TestGraphs.writeGridGraph(dir.resolve("second"), 6, 7, newRandom());
+        List<Graph> notified = new ArrayList<>();
+        provider.addListener(notified::add);
+
+        Graph reloaded = provider.reload(dir.resolve("second")).join();
+        assertEquals(6 * 7, reloaded.nodeCount());
+        assertSame(reloaded, provider.current());
+        assertEquals(List.of(reloaded), notified);
+    }
+
+    @Test
+    void graphProviderKeepsGraphWhenReloadFails(@TempDir Path dir) throws IOException {
+        Graph first = gridGraph(dir.resolve("first"), 4, 3);
+        GraphProvider provider = new GraphProvider(first);
+        var e = assertThrows(CompletionException.class,
+                () -> provider.reload(dir.resolve("missing")).join());
+        assertTrue(e.getCause().getCause() instanceof IOException);
+        assertSame(first, provider.current());
+    }
+
+    @Test
+    void graphProviderDuplicatedLeaseOutlivesOriginal(@TempDir Path dir) throws IOException {
+        Graph first = gridGraph(dir.resolve("first"), 4, 3);
+        GraphProvider provider = new GraphProvider(first);
+        GraphProvider.Lease lease = provider.acquire();
+        GraphProvider.Lease query = lease.duplicate();
+        CompletableFuture<Void> retired = provider.replace(gridGraph(dir.resolve("second"), 3, 3));
+
+        lease.close();
+        assertThrows(IllegalStateException.class, lease::duplicate);
+        assertSame(first, query.graph());
+        assertFalse(retired.isDone());
+        query.close();
+        assertTrue(retired.isDone());
+    }
+
+    @Test
+    void graphProviderRestoresPreviousGraphWhenListenerFails(@TempDir Path dir) throws IOException {
+        Graph first = gridGraph(dir.resolve("first"), 4, 3);
+        Graph second = gridGraph(dir.resolve("second"), 3, 3);
+        GraphProvider provider = new GraphProvider(first);
+        List<Graph> notified = new ArrayList<>();
+        provider.addListener(notified::add);
+        provider.addListener(graph -> {
+            if (graph == second) throw new IllegalStateException();
+        });
+
+        assertThrows(IllegalStateException.class, () -> provider.replace(second));
+        assertSame(first, provider.current());
+        // The first listener is told that the previous graph is back
+        assertEquals(List.of(second, first), notified);
+
+        // The previous graph is still held by the provider, and can be replaced again
+        GraphProvider.Lease lease = provider.acquire();
+        assertSame(first, lease.graph());
+        Graph third = gridGraph(dir.resolve("third"), 2, 2);
+        CompletableFuture<Void> retired = provider.replace(third);
+        assertSame(third, provider.current());
+        assertFalse(retired.isDone());
+        lease.close();
+        assertTrue(retired.isDone());
+    }
+
+    @Test
+    void graphProviderReloadFailsWhenListenerFails(@TempDir Path dir) throws IOException {
+        Graph first = gridGraph(dir.resolve("first"), 4, 3);
+        TestGraphs.writeGridGraph(dir.resolve("second"), 6, 7, newRandom());
+        GraphProvider provider = new GraphProvider(first);
+        provider.addListener(graph -> {
+            throw new UncheckedIOException(new IOException());
+        });
+        var e = assertThrows(CompletionException.class, () -> provider.reload(dir.resolve("second")).join());
+        assertTrue(e.getCause() instanceof UncheckedIOException);
+        assertSame(first, provider.current());
+    }
+}
@@ -1,39 +1,33 @@
 package ch.epfl.javelo.data;
 
 import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GraphTest {
 
-    private static final int SUBDIVISIONS_PER_SIDE = 128;
-    private static final int SECTORS_COUNT = SUBDIVISIONS_PER_SIDE * SUBDIVISIONS_PER_SIDE;
-
-    private static final ByteBuffer SECTORS_BUFFER = createSectorsBuffer();
-
-    private static ByteBuffer createSectorsBuffer() {
-        ByteBuffer sectorsBuffer = ByteBuffer.allocate(SECTORS_COUNT * (Integer.BYTES + Short.BYTES));
-        for (int i = 0; i < SECTORS_COUNT; i += 1) {
-            sectorsBuffer.putInt(i);
-            sectorsBuffer.putShort((short) 1);
-        }
-        assert !sectorsBuffer.hasRemaining();
-        return sectorsBuffer.rewind().asReadOnlyBuffer();
-    }
-
     @Test
     void graphLoadFromWorksOnLausanneData() throws IOException {
         var graph = Graph.loadFrom(Path.of("lausanne"));
@@ -69,7 +63,6 @@ class GraphTest {
         var edgesBuffer = ByteBuffer.allocate(10 * edgesCount);
         var profileIds = IntBuffer.allocate(edgesCount);
         var elevations = ShortBuffer.allocate(10);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
         var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
         var attributeSets = List.<AttributeSet>of();
 
@@ -77,7 +70,7 @@ class GraphTest {
             var buffer = IntBuffer.allocate(3 * count);
             var graphNodes = new GraphNodes(buffer);
 
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, attributeSets);
+            var graph = new Graph(graphNodes, graphEdges, attributeSets);
             assertEquals(count, graph.nodeCount());
         }
     }
@@ -88,7 +81,6 @@ class GraphTest {
         var edgesBuffer = ByteBuffer.allocate(10 * edgesCount);
         var profileIds = IntBuffer.allocate(edgesCount);
         var elevations = ShortBuffer.allocate(10);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
         var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
         var attributeSets = List.<AttributeSet>of();
 
@@ -107,7 +99,7 @@ class GraphTest {
             buffer.put(3 * nodeId + 1, n_q28_4);
             var graphNodes = new GraphNodes(buffer);
 
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, attributeSets);
+            var graph = new Graph(graphNodes, graphEdges, attributeSets);
             assertEquals(new PointCh(e, n), graph.nodePoint(nodeId));
         }
     }
@@ -118,7 +110,6 @@ class GraphTest {
         var edgesBuffer = ByteBuffer.allocate(10 * edgesCount);
         var profileIds = IntBuffer.allocate(edgesCount);
         var elevations = ShortBuffer.allocate(10);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
         var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
         var attributeSets = List.<AttributeSet>of();
 
@@ -130,7 +121,7 @@ class GraphTest {
             var nodeId = rng.nextInt(nodesCount);
             buffer.put(3 * nodeId + 2, (outDegree << 28) | firstEdgeId);
             var graphNodes = new GraphNodes(buffer);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, attributeSets);
+            var graph = new Graph(graphNodes, graphEdges, attributeSets);
             assertEquals(outDegree, graph.nodeOutDegree(nodeId));
         }
     }
@@ -141,7 +132,6 @@ class GraphTest {
         var edgesBuffer = ByteBuffer.allocate(10 * edgesCount);
         var profileIds = IntBuffer.allocate(edgesCount);
         var elevations = ShortBuffer.allocate(10);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
         var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
         var attributeSets = List.<AttributeSet>of();
 
@@ -153,13 +143,78 @@ class GraphTest {
             var nodeId = rng.nextInt(nodesCount);
             buffer.put(3 * nodeId + 2, (outDegree << 28) | firstEdgeId);
             var graphNodes = new GraphNodes(buffer);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, attributeSets);
+            var graph = new Graph(graphNodes, graphEdges, attributeSets);
 
             for (int i = 0; i < outDegree; i += 1)
                 assertEquals(firstEdgeId + i, graph.nodeOutEdgeId(nodeId, i));
         }
     }
 
+    @Test
+    void graphInEdgesAreTheReverseOfOutEdges() {
+        var g = TestGraphs.newGridGraph(15, 12, newRandom());
+        var inEdgesCount = 0;
+        for (int nodeId = 0; nodeId < g.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < g.nodeOutDegree(nodeId); i += 1) {
+                var edgeId = g.nodeOutEdgeId(nodeId, i);
+                assertEquals(nodeId, g.edgeSourceNodeId(edgeId));
+            }
+            for (int i = 0; i < g.nodeInDegree(nodeId); i += 1) {
+                var edgeId = g.nodeInEdgeId(nodeId, i);
+                assertEquals(nodeId, g.edgeTargetNodeId(edgeId));
+                if (i > 0) assertTrue(g.nodeInEdgeId(nodeId, i - 1) < edgeId);
+            }
+            inEdgesCount += g.nodeInDegree(nodeId);
+        }
+        assertEquals(g.edgeCount(), inEdgesCount);
+    }
+
+    @Test
+    void graphLoadFromGivesSameGraphWithEveryPreload(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir.resolve("interleaved"), 12, 9, newRandom());
+        GraphConverter.convert(dir.resolve("interleaved"), dir.resolve("columnar"));
+        for (String format : List.of("interleaved", "columnar")) {
+            Graph expected = Graph.loadFrom(dir.resolve(format));
+            for (Graph.Preload preload : Graph.Preload.values()) {
+                Graph graph = Graph.loadFrom(dir.resolve(format), preload);
+                assertEquals(expected.nodeCount(), graph.nodeCount());
+                assertEquals(expected.edgeCount(), graph.edgeCount());
+                for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                    assertEquals(expected.nodePoint(nodeId), graph.nodePoint(nodeId));
+                    assertEquals(expected.nodeOutDegree(nodeId), graph.nodeOutDegree(nodeId));
+                }
+                for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+                    assertEquals(expected.edgeTargetNodeId(edgeId), graph.edgeTargetNodeId(edgeId));
+                    assertEquals(expected.edgeLength(edgeId), graph.edgeLength(edgeId));
+                    assertEquals(expected.edgeAttributes(edgeId), graph.edgeAttributes(edgeId));
+                    assertEquals(expected.edgeProfile(edgeId).applyAsDouble(1),
+                            graph.edgeProfile(edgeId).applyAsDouble(1));
+                }
+            }
+        }
+    }
+
+    @Test
+    void graphFingerprintChangesWithTheFiles(@TempDir Path dir) throws IOException {
+        var rng = newRandom();
+        TestGraphs.writeGridGraph(dir.resolve("graph"), 12, 9, rng);
+        long fingerprint = Graph.loadFrom(dir.resolve("graph")).fingerprint();
+        assertEquals(fingerprint, Graph.loadFrom(dir.resolve("graph"), Graph.Preload.HEAP).fingerprint());
+
+        // The same graph written again (e.g. by an update of the data)
+        TestGraphs.writeGridGraph(dir.resolve("other"), 12, 9, rng);
+        Path file = dir.resolve("graph").resolve("attributes.bin");
+        Files.copy(dir.resolve("other").resolve("attributes.bin"), file, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertNotEquals(fingerprint, Graph.loadFrom(dir.resolve("graph")).fingerprint());
+
+        var g1 = TestGraphs.newGridGraph(12, 9, rng);
+        var g2 = TestGraphs.newGridGraph(12, 9, rng);
+        assertEquals(g1.fingerprint(), g1.fingerprint());
+        assertNotEquals(0, g1.fingerprint());
+        assertNotEquals(g1.fingerprint(), g2.fingerprint());
+    }
+
     @Test
     void graphNodeClosestToWorksOnLausanneData() throws IOException {
         var graph = Graph.loadFrom(Path.of("lausanne"));
@@ -182,7 +237,6 @@ class GraphTest {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
         var attributeSets = List.<AttributeSet>of();
 
         var edgesCount = 10_000;
@@ -195,7 +249,7 @@ class GraphTest {
             var edgeId = rng.nextInt(edgesCount);
             edgesBuffer.putInt(10 * edgeId, targetNodeId);
             var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, attributeSets);
+            var graph = new Graph(graphNodes, graphEdges, attributeSets);
             var expectedTargetNodeId = targetNodeId < 0 ? ~targetNodeId : targetNodeId;
             assertEquals(expectedTargetNodeId, graph.edgeTargetNodeId(edgeId));
         }
@@ -206,7 +260,6 @@ class GraphTest {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
         var attributeSets = List.<AttributeSet>of();
 
         var edgesCount = 10_000;
@@ -218,7 +271,7 @@ class GraphTest {
             var edgeId = rng.nextInt(edgesCount);
             edgesBuffer.putInt(10 * edgeId, targetNodeId);
             var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, attributeSets);
+            var graph = new Graph(graphNodes, graphEdges, attributeSets);
             assertEquals(targetNodeId < 0, graph.edgeIsInverted(edgeId));
         }
     }
@@ -228,7 +281,6 @@ class GraphTest {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
 
         var attributeSetsCount = 3 * RANDOM_ITERATIONS;
         var rng = newRandom();
@@ -248,7 +300,7 @@ class GraphTest {
             var attributeSetIndex = (short) rng.nextInt(attributeSetsCount);
             edgesBuffer.putShort(10 * edgeId + 8, attributeSetIndex);
             var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, unmodifiableAttributeSets);
+            var graph = new Graph(graphNodes, graphEdges, unmodifiableAttributeSets);
             assertEquals(
                     unmodifiableAttributeSets.get(attributeSetIndex),
                     graph.edgeAttributes(edgeId));
@@ -260,7 +312,6 @@ class GraphTest {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
 
         var attributeSet = new AttributeSet(0b1111L);
         var attributeSets = new ArrayList<>(List.of(attributeSet));
@@ -272,17 +323,53 @@ class GraphTest {
         var elevations = ShortBuffer.allocate(10);
         edgesBuffer.putShort(8, (short) 0);
         var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
-        var graph = new Graph(graphNodes, graphSectors, graphEdges, unmodifiableAttributeSets);
+        var graph = new Graph(graphNodes, graphEdges, unmodifiableAttributeSets);
         attributeSets.set(0, new AttributeSet(0L));
         assertEquals(attributeSet, graph.edgeAttributes(0));
     }
 
+    @Test
+    void graphEdgeFiltersWorkOnGridGraph() {
+        var g = TestGraphs.newGridGraph(15, 12, newRandom());
+        var rng = newRandom();
+        var all = Attribute.ALL;
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var attributes = AttributeSet.of(
+                    all.get(rng.nextInt(all.size())), all.get(rng.nextInt(all.size())));
+            var filter = g.edgeFilter(attributes);
+            for (int edgeId = 0; edgeId < g.edgeCount(); edgeId += 1) {
+                var expected = g.edgeAttributes(edgeId).intersects(attributes);
+                assertEquals(expected, filter.test(edgeId));
+                assertEquals(expected, g.edgeAttributesIntersect(edgeId, attributes));
+            }
+            var expected = IntStream.range(0, g.edgeCount())
+                    .filter(edgeId -> g.edgeAttributes(edgeId).intersects(attributes))
+                    .toArray();
+            assertArrayEquals(expected, g.edgesWithAnyOf(attributes));
+
+            var bottomLeft = new PointCh(
+                    TestGraphs.ORIGIN_E + rng.nextDouble(-100, 800),
+                    TestGraphs.ORIGIN_N + rng.nextDouble(-100, 600));
+            var topRight = new PointCh(
+                    bottomLeft.e() + rng.nextDouble(0, 800),
+                    bottomLeft.n() + rng.nextDouble(0, 600));
+            var expectedInside = IntStream.of(expected).filter(edgeId -> {
+                var source = g.nodePoint(g.edgeSourceNodeId(edgeId));
+                return source.e() >= bottomLeft.e() && source.e() <= topRight.e()
+                        && source.n() >= bottomLeft.n() && source.n() <= topRight.n();
+            }).toArray();
+            assertArrayEquals(expectedInside, g.edgesWithAnyOf(attributes, bottomLeft, topRight));
+        }
+        assertThrows(IllegalArgumentException.class, () -> g.edgesWithAnyOf(AttributeSet.of(),
+                new PointCh(TestGraphs.ORIGIN_E + 10, TestGraphs.ORIGIN_N),
+                new PointCh(TestGraphs.ORIGIN_E, TestGraphs.ORIGIN_N + 10)));
+    }
+
     @Test
     void graphEdgeLengthWorksOnRandomValues() {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
 
         var edgesCount = 10_000;
         var edgesBuffer = ByteBuffer.allocate(10 * edgesCount);
@@ -296,7 +383,7 @@ class GraphTest {
             length = Math.scalb((double) length_q12_4, -4);
             edgesBuffer.putShort(10 * edgeId + 4, (short) length_q12_4);
             var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, List.of());
+            var graph = new Graph(graphNodes, graphEdges, List.of());
 
             assertEquals(length, graph.edgeLength(edgeId));
         }
@@ -307,7 +394,6 @@ class GraphTest {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
 
         var edgesCount = 10_000;
         var edgesBuffer = ByteBuffer.allocate(10 * edgesCount);
@@ -321,7 +407,7 @@ class GraphTest {
             elevationGain = Math.scalb((double) elevationGain_q12_4, -4);
             edgesBuffer.putShort(10 * edgeId + 6, (short) elevationGain_q12_4);
             var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, List.of());
+            var graph = new Graph(graphNodes, graphEdges, List.of());
 
             assertEquals(elevationGain, graph.edgeElevationGain(edgeId));
         }
@@ -332,7 +418,6 @@ class GraphTest {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
 
         var edgesCount = 10_000;
         var elevationsCount = 25_000;
@@ -345,7 +430,7 @@ class GraphTest {
             var firstSampleIndex = rng.nextInt(elevationsCount);
             profileIds.put(edgeId, firstSampleIndex);
             var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, List.of());
+            var graph = new Graph(graphNodes, graphEdges, List.of());
             var edgeProfile = graph.edgeProfile(edgeId);
             assertTrue(Double.isNaN(edgeProfile.applyAsDouble(-1)));
             assertTrue(Double.isNaN(edgeProfile.applyAsDouble(0)));
@@ -358,7 +443,6 @@ class GraphTest {
         var nodesCount = 10;
         var nodesBuffer = IntBuffer.allocate(3 * nodesCount);
         var graphNodes = new GraphNodes(nodesBuffer);
-        var graphSectors = new GraphSectors(SECTORS_BUFFER);
 
         var elevationsCount = 500;
         var edgesBuffer = ByteBuffer.allocate(10);
@@ -376,7 +460,7 @@ class GraphTest {
             edgesBuffer.putShort(4, (short) edgeLength_q28_4);
             profileIds.put(0, (1 << 30) | firstSampleIndex);
             var graphEdges = new GraphEdges(edgesBuffer.asReadOnlyBuffer(), profileIds.asReadOnlyBuffer(), elevations.asReadOnlyBuffer());
-            var graph = new Graph(graphNodes, graphSectors, graphEdges, List.of());
+            var graph = new Graph(graphNodes, graphEdges, List.of());
             var edgeProfile = graph.edgeProfile(0);
 
             for (int j = 0; j < sampleCount; j += 1) {
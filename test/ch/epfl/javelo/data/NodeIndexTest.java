@@ -0,0 +1,206 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeIndexTest {
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 20;
+
+    private static GraphNodes gridNodes() {
+        var rng = newRandom();
+        IntBuffer buffer = IntBuffer.allocate(WIDTH * HEIGHT * 3);
+        for (int i = 0; i < WIDTH * HEIGHT; i += 1) {
+            buffer.put((int) Math.scalb(TestGraphs.ORIGIN_E + rng.nextDouble(0, WIDTH * TestGraphs.SPACING), 4));
+            buffer.put((int) Math.scalb(TestGraphs.ORIGIN_N + rng.nextDouble(0, HEIGHT * TestGraphs.SPACING), 4));
+            buffer.put(0);
+        }
+        return new GraphNodes(buffer.rewind());
+    }
+
+    private static PointCh point(NodeStore nodes, int nodeId) {
+        return new PointCh(nodes.nodeE(nodeId), nodes.nodeN(nodeId));
+    }
+
+    /**
+     * Returns the nodes at most at the given distance, sorted as the index must return them.
+     */
+    private static List<Integer> sortedNodesWithin(NodeStore nodes, PointCh point, double distance) {
+        List<Integer> nodeIds = new ArrayList<>();
+        for (int nodeId = 0; nodeId < nodes.count(); nodeId += 1) {
+            if (point.squaredDistanceTo(point(nodes, nodeId)) <= distance * distance) nodeIds.add(nodeId);
+        }
+        nodeIds.sort(Comparator.comparingDouble((Integer nodeId) -> point.squaredDistanceTo(point(nodes, nodeId)))
+                .thenComparing(Comparator.reverseOrder()));
+        return nodeIds;
+    }
+
+    private static PointCh randomPoint(RandomGenerator rng) {
+        return new PointCh(
+                TestGraphs.ORIGIN_E + rng.nextDouble(-200, WIDTH * TestGraphs.SPACING + 200),
+                TestGraphs.ORIGIN_N + rng.nextDouble(-200, HEIGHT * TestGraphs.SPACING + 200));
+    }
+
+    @Test
+    void nodeIndexNodeClosestToWorksOnRandomPoints() {
+        var nodes = gridNodes();
+        var index = NodeIndex.of(nodes);
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            PointCh point = randomPoint(rng);
+            double distance = rng.nextDouble(0, 300);
+            List<Integer> expected = sortedNodesWithin(nodes, point, distance);
+            assertEquals(expected.isEmpty() ? -1 : expected.get(0), index.nodeClosestTo(point, distance));
+        }
+    }
+
+    @Test
+    void nodeIndexNodesClosestToWorksOnRandomPoints() {
+        var nodes = gridNodes();
+        var index = NodeIndex.of(nodes);
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            PointCh point = randomPoint(rng);
+            double distance = rng.nextDouble(0, 500);
+            int count = rng.nextInt(0, 20);
+            List<Integer> expected = sortedNodesWithin(nodes, point, distance);
+            int[] expectedIds = expected.subList(0, Math.min(count, expected.size())).stream()
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            assertArrayEquals(expectedIds, index.nodesClosestTo(point, count, distance));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> index.nodesClosestTo(point(nodes, 0), -1, 100));
+    }
+
+    @Test
+    void nodeIndexForEachNodeWithinWorksOnRandomPoints() {
+        var nodes = gridNodes();
+        var index = NodeIndex.of(nodes);
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            PointCh point = randomPoint(rng);
+            double distance = rng.nextDouble(0, 500);
+            int[] expected = sortedNodesWithin(nodes, point, distance).stream()
+                    .mapToInt(Integer::intValue)
+                    .sorted()
+                    .toArray();
+            List<Integer> actual = new ArrayList<>();
+            index.forEachNodeWithin(point, distance, actual::add);
+            assertArrayEquals(expected, actual.stream().mapToInt(Integer::intValue).sorted().toArray());
+        }
+    }
+
+    @Test
+    void nodeIndexForEachNodeInWorksOnRandomRectangles() {
+        var nodes = gridNodes();
+        var index = NodeIndex.of(nodes);
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            PointCh corner = randomPoint(rng);
+            // Every other rectangle has a node on each of its borders
+            PointCh bottomLeft = i % 2 == 0 ? corner : point(nodes, rng.nextInt(nodes.count()));
+            PointCh topRight = new PointCh(
+                    bottomLeft.e() + rng.nextDouble(0, 800),
+                    bottomLeft.n() + rng.nextDouble(0, 600));
+            int[] expected = IntStream.range(0, nodes.count())
+                    .filter(nodeId -> nodes.nodeE(nodeId) >= bottomLeft.e()
+                            && nodes.nodeE(nodeId) <= topRight.e()
+                            && nodes.nodeN(nodeId) >= bottomLeft.n()
+                            && nodes.nodeN(nodeId) <= topRight.n())
+                    .toArray();
+            List<Integer> actual = new ArrayList<>();
+            index.forEachNodeIn(bottomLeft, topRight, actual::add);
+            assertArrayEquals(expected, actual.stream().mapToInt(Integer::intValue).sorted().toArray());
+        }
+    }
+
+    @Test
+    void nodeIndexReturnsGreatestNodeIdOnTies() {
+        // Four nodes at the same place, and one elsewhere
+        IntBuffer buffer = IntBuffer.allocate(5 * 3);
+        int e = (int) Math.scalb(TestGraphs.ORIGIN_E, 4);
+        int n = (int) Math.scalb(TestGraphs.ORIGIN_N, 4);
+        for (int i = 0; i < 4; i += 1) buffer.put(e).put(n).put(0);
+        buffer.put(e + 160).put(n).put(0);
+        var index = NodeIndex.of(new GraphNodes(buffer.rewind()));
+        PointCh point = new PointCh(TestGraphs.ORIGIN_E + 1, TestGraphs.ORIGIN_N);
+        assertEquals(3, index.nodeClosestTo(point, 5));
+        assertArrayEquals(new int[]{3, 2, 1, 0}, index.nodesClosestTo(point, 4, 100));
+        assertEquals(-1, index.nodeClosestTo(point, 0.5));
+        // A node exactly at the search distance is found
+        assertEquals(3, index.nodeClosestTo(point, 1));
+    }
+
+    @Test
+    void nodeIndexWorksOnEmptyGraph() {
+        var index = NodeIndex.of(new GraphNodes(IntBuffer.allocate(0)));
+        PointCh point = new PointCh(TestGraphs.ORIGIN_E, TestGraphs.ORIGIN_N);
+        assertEquals(-1, index.nodeClosestTo(point, 1000));
+        assertArrayEquals(new int[0], index.nodesClosestTo(point, 3, 1000));
+    }
+
+    @Test
+    void nodeIndexWrittenToFileGivesSameResults(@TempDir Path dir) throws IOException {
+        var nodes = gridNodes();
+        var index = NodeIndex.of(nodes);
+        Path file = dir.resolve("nodes_index.bin");
+        index.writeTo(file);
+        IntBuffer entries = ByteBuffer.wrap(Files.readAllBytes(file)).asIntBuffer();
+        var read = NodeIndex.of(entries, nodes.count());
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            PointCh point = randomPoint(rng);
+            assertEquals(index.nodeClosestTo(point, 150), read.nodeClosestTo(point, 150));
+        }
+        assertThrows(IllegalArgumentException.class, () -> NodeIndex.of(entries, nodes.count() + 1));
+    }
+
+    @Test
+    void graphUsesNodeIndexWrittenByConverter(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir.resolve("graph"), 12, 9, newRandom());
+        GraphConverter.convert(dir.resolve("graph"), dir.resolve("columns"));
+        assertTrue(Files.exists(dir.resolve("columns").resolve("nodes_index.bin")));
+        Graph graph = Graph.loadFrom(dir.resolve("columns"));
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            PointCh point = new PointCh(
+                    TestGraphs.ORIGIN_E + rng.nextDouble(-100, 1300),
+                    TestGraphs.ORIGIN_N + rng.nextDouble(-100, 1000));
+            int expected = -1;
+            double best = 150 * 150;
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                double squaredDistance = point.squaredDistanceTo(graph.nodePoint(nodeId));
+                if (squaredDistance <= best) {
+                    expected = nodeId;
+                    best = squaredDistance;
+                }
+            }
+            assertEquals(expected, graph.nodeClosestTo(point, 150));
+            int[] closest = graph.nodesClosestTo(point, 3, 150);
+            if (expected != -1) assertEquals(expected, closest[0]);
+            int[] within = new int[1];
+            graph.forEachNodeWithin(point, 150, nodeId -> within[0] += 1);
+            assertTrue(within[0] >= closest.length);
+        }
+        assertEquals(5, Arrays.stream(graph.nodesClosestTo(graph.nodePoint(0), 5, 1e6)).distinct().count());
+    }
+}
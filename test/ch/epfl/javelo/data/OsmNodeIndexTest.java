@@ -0,0 +1,122 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OsmNodeIndexTest {
+    private static long[] randomOsmIds(int count) {
+        var rng = newRandom();
+        var osmIds = new long[count];
+        // Few distinct values, so that some identities are shared by several nodes
+        for (int i = 0; i < count; i += 1) osmIds[i] = 10_000_000_000L + rng.nextInt(2 * count);
+        return osmIds;
+    }
+
+    private static int expectedNodeId(long[] osmIds, long osmId) {
+        for (int nodeId = 0; nodeId < osmIds.length; nodeId += 1) {
+            if (osmIds[nodeId] == osmId) return nodeId;
+        }
+        return -1;
+    }
+
+    @Test
+    void osmNodeIndexNodeIdWorksOnRandomIds() {
+        var osmIds = randomOsmIds(1_000);
+        var index = OsmNodeIndex.of(LongBuffer.wrap(osmIds));
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var osmId = 10_000_000_000L + rng.nextInt(-10, 2_010);
+            assertEquals(expectedNodeId(osmIds, osmId), index.nodeId(osmId));
+        }
+        assertEquals(-1, index.nodeId(Long.MIN_VALUE));
+        assertEquals(-1, index.nodeId(Long.MAX_VALUE));
+    }
+
+    @Test
+    void osmNodeIndexNodeIdsWorksOnSortedAndUnsortedIds() {
+        var osmIds = randomOsmIds(1_000);
+        var index = OsmNodeIndex.of(LongBuffer.wrap(osmIds));
+        var rng = newRandom();
+        var queries = new long[RANDOM_ITERATIONS];
+        for (int i = 0; i < queries.length; i += 1) queries[i] = 10_000_000_000L + rng.nextInt(-10, 2_010);
+        for (int pass = 0; pass < 2; pass += 1) {
+            if (pass == 1) Arrays.sort(queries);
+            var nodeIds = new int[queries.length];
+            index.nodeIds(queries, nodeIds);
+            for (int i = 0; i < queries.length; i += 1)
+                assertEquals(expectedNodeId(osmIds, queries[i]), nodeIds[i]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> index.nodeIds(new long[2], new int[1]));
+    }
+
+    @Test
+    void osmNodeIndexWrittenToFileGivesSameResults(@TempDir Path dir) throws IOException {
+        var osmIds = randomOsmIds(500);
+        var index = OsmNodeIndex.of(LongBuffer.wrap(osmIds));
+        var file = dir.resolve("nodes_osmid_index.bin");
+        index.writeTo(file);
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        var read = OsmNodeIndex.of(buffer, osmIds.length);
+        for (int i = -10; i < 1_010; i += 1)
+            assertEquals(index.nodeId(10_000_000_000L + i), read.nodeId(10_000_000_000L + i));
+        assertThrows(IllegalArgumentException.class, () -> OsmNodeIndex.of(buffer, osmIds.length + 1));
+    }
+
+    @Test
+    void osmNodeIndexWorksOnEmptyGraph() {
+        var index = OsmNodeIndex.of(LongBuffer.allocate(0));
+        assertEquals(-1, index.nodeId(0));
+    }
+
+    @Test
+    void graphLooksUpOsmIdsWithAndWithoutIndexFile(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir.resolve("graph"), 12, 9, newRandom());
+        GraphConverter.convert(dir.resolve("graph"), dir.resolve("columns"));
+        assertTrue(Files.exists(dir.resolve("columns").resolve("nodes_osmid_index.bin")));
+        for (var graph : new Graph[]{
+                Graph.loadFrom(dir.resolve("graph")),
+                Graph.loadFrom(dir.resolve("graph"), Graph.Preload.LOAD),
+                Graph.loadFrom(dir.resolve("columns"))}) {
+            assertTrue(graph.hasOsmIds());
+            var nodeIds = new int[graph.nodeCount()];
+            var osmIds = new long[graph.nodeCount()];
+            for (int nodeId = 0; nodeId < nodeIds.length; nodeId += 1) nodeIds[nodeId] = nodeId;
+            graph.nodeOsmIds(nodeIds, osmIds);
+            var found = new int[osmIds.length];
+            graph.nodeIdsOfOsmIds(osmIds, found);
+            assertArrayEquals(nodeIds, found);
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                assertEquals(osmIds[nodeId], graph.nodeOsmId(nodeId));
+                assertEquals(nodeId, graph.nodeIdOfOsmId(graph.nodeOsmId(nodeId)));
+            }
+            assertEquals(-1, graph.nodeIdOfOsmId(-1));
+        }
+    }
+
+    @Test
+    void graphWithoutOsmIdsThrows() {
+        var graph = TestGraphs.newGridGraph(3, 3, newRandom());
+        assertFalse(graph.hasOsmIds());
+        assertThrows(IllegalStateException.class, () -> graph.nodeOsmId(0));
+        assertThrows(IllegalStateException.class, () -> graph.nodeIdOfOsmId(0));
+    }
+
+    @Test
+    void graphLoadFromRejectsOsmIdsOfOtherNodeCount(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir, 4, 3, newRandom());
+        Files.write(dir.resolve("nodes_osmid.bin"), new byte[5 * Long.BYTES]);
+        assertThrows(IOException.class, () -> Graph.loadFrom(dir));
+    }
+}
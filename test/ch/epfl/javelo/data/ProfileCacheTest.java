@@ -0,0 +1,52 @@
+package ch.epfl.javelo.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileCacheTest {
+    private static GraphEdges edges() {
+        // Four edges of 4 meters, with a profile of type 1 starting at their index
+        var edgesBuffer = ByteBuffer.allocate(10 * 4);
+        var profileIds = IntBuffer.allocate(4);
+        for (int edgeId = 0; edgeId < 4; edgeId += 1) {
+            edgesBuffer.putShort(10 * edgeId + 4, (short) (4 << 4));
+            profileIds.put(edgeId, 1 << 30 | edgeId);
+        }
+        var elevations = ShortBuffer.allocate(8);
+        for (int i = 0; i < elevations.capacity(); i += 1) elevations.put(i, (short) (i << 4));
+        return new GraphEdges(edgesBuffer, profileIds, elevations);
+    }
+
+    @Test
+    void profileCacheReturnsDecodedSamples() {
+        var edges = edges();
+        var cache = new ProfileCache(edges, 2);
+        for (int edgeId = 0; edgeId < 4; edgeId += 1)
+            assertArrayEquals(edges.profileSamples(edgeId), cache.samples(edgeId));
+        assertArrayEquals(new float[]{1, 2, 3}, cache.samples(1));
+    }
+
+    @Test
+    void profileCacheKeepsSamplesUntilSlotIsReused() {
+        var cache = new ProfileCache(edges(), 2);
+        float[] samples0 = cache.samples(0);
+        float[] samples1 = cache.samples(1);
+        assertSame(samples0, cache.samples(0));
+        assertSame(samples1, cache.samples(1));
+        // Edge 2 uses the slot of edge 0
+        cache.samples(2);
+        assertNotSame(samples0, cache.samples(0));
+        assertSame(samples1, cache.samples(1));
+    }
+
+    @Test
+    void profileCacheConstructorThrowsOnInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ProfileCache(edges(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new ProfileCache(edges(), 3));
+    }
+}
@@ -0,0 +1,129 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageTest {
+
+    private static byte[] randomBytes(int size) {
+        var rng = newRandom();
+        byte[] bytes = new byte[size];
+        rng.nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void chunkedStorageReadsValuesAcrossChunks(@TempDir Path dir) throws IOException {
+        byte[] bytes = randomBytes(1000);
+        Path file = dir.resolve("data.bin");
+        Files.write(file, bytes);
+        ByteBuffer expected = ByteBuffer.wrap(bytes);
+        // Chunks of 16 bytes : many values straddle two chunks
+        Storage storage = ChunkedStorage.map(file, 4);
+        assertEquals(bytes.length, storage.byteSize());
+        for (int offset = 0; offset + Long.BYTES <= bytes.length; offset += 1) {
+            assertEquals(expected.getShort(offset), storage.getShort(offset));
+            assertEquals(expected.getInt(offset), storage.getInt(offset));
+            assertEquals(expected.getLong(offset), storage.getLong(offset));
+        }
+        assertEquals(expected.getShort(998), storage.getShort(998));
+    }
+
+    @Test
+    void chunkedStorageWorksOnEmptyFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("empty.bin");
+        Files.write(file, new byte[0]);
+        assertEquals(0, Storage.map(file).byteSize());
+    }
+
+    @Test
+    void chunkedStorageFailsOutsideOfFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("data.bin");
+        Files.write(file, randomBytes(64));
+        Storage storage = ChunkedStorage.map(file, 4);
+        assertThrows(IndexOutOfBoundsException.class, () -> storage.getInt(62));
+        assertThrows(IndexOutOfBoundsException.class, () -> storage.getInt(64));
+    }
+
+    @Test
+    void storageCopiesToHeapAndLoads(@TempDir Path dir) throws IOException {
+        byte[] bytes = randomBytes(500);
+        Path file = dir.resolve("data.bin");
+        Files.write(file, bytes);
+        ByteBuffer expected = ByteBuffer.wrap(bytes);
+        Storage mapped = ChunkedStorage.map(file, 5);
+        for (Storage storage : new Storage[]{
+                mapped.load(),
+                mapped.copyToHeap(),
+                Storage.of(ByteBuffer.wrap(bytes)).copyToHeap()}) {
+            assertEquals(bytes.length, storage.byteSize());
+            for (int offset = 0; offset + Long.BYTES <= bytes.length; offset += 1) {
+                assertEquals(expected.getInt(offset), storage.getInt(offset));
+                assertEquals(expected.getLong(offset), storage.getLong(offset));
+            }
+        }
+    }
+
+    @Test
+    void bufferStorageReadsBuffer() {
+        byte[] bytes = randomBytes(100);
+        ByteBuffer expected = ByteBuffer.wrap(bytes);
+        Storage storage = Storage.of(ByteBuffer.wrap(bytes));
+        assertEquals(100, storage.byteSize());
+        for (int offset = 0; offset + Long.BYTES <= bytes.length; offset += 1) {
+            assertEquals(expected.getShort(offset), storage.getShort(offset));
+            assertEquals(expected.getInt(offset), storage.getInt(offset));
+            assertEquals(expected.getLong(offset), storage.getLong(offset));
+        }
+    }
+
+    @Test
+    void storageNodesAndEdgesMatchBufferNodesAndEdges(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGridGraph(dir, 20, 15, newRandom());
+        ByteBuffer nodesBytes = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("nodes.bin")));
+        ByteBuffer edgesBytes = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("edges.bin")));
+        IntBuffer profileIds = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("profile_ids.bin"))).asIntBuffer();
+        ShortBuffer elevations = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("elevations.bin"))).asShortBuffer();
+        var nodes = new GraphNodes(nodesBytes.asIntBuffer());
+        var edges = new GraphEdges(edgesBytes, profileIds, elevations);
+
+        var storageNodes = new StorageNodes(ChunkedStorage.map(dir.resolve("nodes.bin"), 6));
+        var storageEdges = new StorageEdges(
+                ChunkedStorage.map(dir.resolve("edges.bin"), 6),
+                ChunkedStorage.map(dir.resolve("profile_ids.bin"), 6),
+                ChunkedStorage.map(dir.resolve("elevations.bin"), 6));
+
+        assertEquals(nodes.count(), storageNodes.count());
+        for (int nodeId = 0; nodeId < nodes.count(); nodeId += 1) {
+            assertEquals(nodes.nodeE(nodeId), storageNodes.nodeE(nodeId));
+            assertEquals(nodes.nodeN(nodeId), storageNodes.nodeN(nodeId));
+            assertEquals(nodes.outDegree(nodeId), storageNodes.outDegree(nodeId));
+            for (int i = 0; i < nodes.outDegree(nodeId); i += 1)
+                assertEquals(nodes.edgeId(nodeId, i), storageNodes.edgeId(nodeId, i));
+            int degree = nodes.outDegree(nodeId);
+            int node = nodeId;
+            assertThrows(IllegalArgumentException.class, () -> storageNodes.edgeId(node, degree));
+        }
+        assertEquals(edges.count(), storageEdges.count());
+        for (int edgeId = 0; edgeId < edges.count(); edgeId += 1) {
+            assertEquals(edges.isInverted(edgeId), storageEdges.isInverted(edgeId));
+            assertEquals(edges.targetNodeId(edgeId), storageEdges.targetNodeId(edgeId));
+            assertEquals(edges.length(edgeId), storageEdges.length(edgeId));
+            assertEquals(edges.elevationGain(edgeId), storageEdges.elevationGain(edgeId));
+            assertEquals(edges.hasProfile(edgeId), storageEdges.hasProfile(edgeId));
+            assertArrayEquals(edges.profileSamples(edgeId), storageEdges.profileSamples(edgeId));
+            assertEquals(edges.attributesIndex(edgeId), storageEdges.attributesIndex(edgeId));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.data.EdgePoint;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteBeanTest {
+
+    @Test
+    void routeBeanConsecutiveLegsShareTheirEndpoint() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(15, 12, rng);
+        var rc = new RouteComputer(g, (nodeId, edgeId) -> 1);
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            // Some waypoints are only attached to a node, like the ones of older versions
+            List<Waypoint> waypoints = new ArrayList<>();
+            boolean alongEdges = true;
+            for (int j = 0; j < 4; j += 1) {
+                var point = new PointCh(
+                        TestGraphs.ORIGIN_E + rng.nextDouble(0, 1400),
+                        TestGraphs.ORIGIN_N + rng.nextDouble(0, 1100));
+                int nodeId = g.nodeClosestTo(point, 200);
+                if (rng.nextInt(4) == 0) {
+                    waypoints.add(new Waypoint(point, nodeId));
+                    alongEdges = false;
+                } else {
+                    waypoints.add(new Waypoint(point, nodeId, g.edgePointClosestTo(point, 200)));
+                }
+            }
+
+            List<RouteBean.Leg> legs = RouteBean.Leg.between(waypoints);
+            assertEquals(waypoints.size() - 1, legs.size());
+            PointCh previousEnd = null;
+            for (RouteBean.Leg leg : legs) {
+                assertEquals(alongEdges, leg.start() != EdgePoint.NONE);
+                if (leg.isEmpty()) continue;
+                Route route = leg.computeWith(rc, () -> false);
+                if (route == null) {
+                    previousEnd = null;
+                    continue;
+                }
+                if (previousEnd != null) assertEquals(previousEnd, route.pointAt(0));
+                previousEnd = route.pointAt(route.length());
+            }
+        }
+    }
+}
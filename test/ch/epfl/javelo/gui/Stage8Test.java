@@ -48,7 +48,7 @@ public final class Stage8Test extends Application {
                         waypointsManager,
                         mapViewParametersP);
 
-        RouteManager routeManager = new RouteManager(routeBean, mapViewParametersP);
+        RouteManager routeManager = new RouteManager(routeBean, waypointsManager, mapViewParametersP);
 
         StackPane mainPane =
                 new StackPane(baseMapManager.pane(),
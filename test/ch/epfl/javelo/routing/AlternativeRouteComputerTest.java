@@ -0,0 +1,103 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlternativeRouteComputerTest {
+
+    private static List<Integer> nodeIds(Route route) {
+        var nodeIds = new ArrayList<Integer>();
+        nodeIds.add(route.edges().get(0).fromNodeId());
+        for (var edge : route.edges()) nodeIds.add(edge.toNodeId());
+        return nodeIds;
+    }
+
+    @Test
+    void alternativeRoutesAreValidAndDifferent() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(30, 30, rng);
+        var cf = new CityBikeCF(g);
+        var rc = new RouteComputer(g, cf);
+        var arc = new AlternativeRouteComputer(g, cf);
+        var foundAlternative = false;
+        for (int i = 0; i < 40; i += 1) {
+            var start = rng.nextInt(g.nodeCount());
+            int end;
+            do end = rng.nextInt(g.nodeCount()); while (end == start);
+            var best = rc.bestRouteBetween(start, end);
+            var routes = arc.alternativeRoutesBetween(start, end, 3);
+            if (best == null) {
+                assertTrue(routes.isEmpty());
+                continue;
+            }
+            assertFalse(routes.isEmpty());
+            assertTrue(routes.size() <= 3);
+            assertEquals(best.length(), routes.get(0).length(), 1e-6);
+            var seen = new HashSet<List<Integer>>();
+            for (var route : routes) {
+                var nodeIds = nodeIds(route);
+                assertEquals(start, nodeIds.get(0));
+                assertEquals(end, nodeIds.get(nodeIds.size() - 1));
+                assertEquals(nodeIds.size(), new HashSet<>(nodeIds).size());
+                for (int j = 1; j < route.edges().size(); j += 1)
+                    assertEquals(route.edges().get(j - 1).toNodeId(), route.edges().get(j).fromNodeId());
+                assertTrue(seen.add(nodeIds));
+            }
+            foundAlternative |= routes.size() > 1;
+        }
+        assertTrue(foundAlternative);
+    }
+
+    @Test
+    void alternativeRoutesAreSameWhenQueriesAreRepeated() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(25, 25, rng);
+        var arc = new AlternativeRouteComputer(g, new CityBikeCF(g));
+        var starts = new int[30];
+        var ends = new int[30];
+        var expected = new ArrayList<List<List<Integer>>>();
+        for (int i = 0; i < starts.length; i += 1) {
+            starts[i] = rng.nextInt(g.nodeCount());
+            do ends[i] = rng.nextInt(g.nodeCount()); while (ends[i] == starts[i]);
+            expected.add(arc.alternativeRoutesBetween(starts[i], ends[i], 3).stream()
+                    .map(AlternativeRouteComputerTest::nodeIds).toList());
+        }
+        for (int i = starts.length - 1; i >= 0; i -= 1) {
+            var actual = arc.alternativeRoutesBetween(starts[i], ends[i], 3).stream()
+                    .map(AlternativeRouteComputerTest::nodeIds).toList();
+            assertEquals(expected.get(i), actual);
+        }
+    }
+
+    @Test
+    void alternativeRoutesRespectMaxCount() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(20, 20, rng);
+        var cf = new CityBikeCF(g);
+        var arc = new AlternativeRouteComputer(g, cf, 2, 1, 0);
+        for (int i = 0; i < 20; i += 1) {
+            var start = rng.nextInt(g.nodeCount());
+            int end;
+            do end = rng.nextInt(g.nodeCount()); while (end == start);
+            assertTrue(arc.alternativeRoutesBetween(start, end, 1).size() <= 1);
+        }
+    }
+
+    @Test
+    void alternativeRouteComputerFailsOnInvalidArguments() {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var cf = new CityBikeCF(g);
+        assertThrows(IllegalArgumentException.class, () -> new AlternativeRouteComputer(g, cf, 0.5, 0.5, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> new AlternativeRouteComputer(g, cf, 1.5, 1.5, 0.5));
+        var arc = new AlternativeRouteComputer(g, cf);
+        assertThrows(IllegalArgumentException.class, () -> arc.alternativeRoutesBetween(2, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> arc.alternativeRoutesBetween(1, 2, 0));
+    }
+}
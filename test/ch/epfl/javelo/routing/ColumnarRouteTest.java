@@ -0,0 +1,134 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarRouteTest {
+    private static final Graph GRAPH = TestGraphs.newGridGraph(20, 15, newRandom());
+
+    private record Walk(int[] nodeIds, int[] edgeIds) {
+    }
+
+    private static Walk randomWalk(RandomGenerator rng) {
+        int edgeCount = rng.nextInt(1, 30);
+        int[] nodeIds = new int[edgeCount + 1];
+        int[] edgeIds = new int[edgeCount];
+        nodeIds[0] = rng.nextInt(GRAPH.nodeCount());
+        for (int i = 0; i < edgeCount; i += 1) {
+            while (GRAPH.nodeOutDegree(nodeIds[i]) == 0) nodeIds[i] = rng.nextInt(GRAPH.nodeCount());
+            edgeIds[i] = GRAPH.nodeOutEdgeId(nodeIds[i], rng.nextInt(GRAPH.nodeOutDegree(nodeIds[i])));
+            nodeIds[i + 1] = GRAPH.edgeTargetNodeId(edgeIds[i]);
+        }
+        return new Walk(nodeIds, edgeIds);
+    }
+
+    private static PointCh randomPoint(RandomGenerator rng) {
+        return new PointCh(
+                TestGraphs.ORIGIN_E + rng.nextDouble(-100, 2_100),
+                TestGraphs.ORIGIN_N + rng.nextDouble(-100, 1_600));
+    }
+
+    private static void assertSameRoute(Route expected, Route actual, RandomGenerator rng) {
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected.points(), actual.points());
+        assertEquals(expected.edges().size(), actual.edges().size());
+        for (int i = 0; i < expected.edges().size(); i += 1) {
+            var e = expected.edges().get(i);
+            var a = actual.edges().get(i);
+            assertEquals(e.fromNodeId(), a.fromNodeId());
+            assertEquals(e.toNodeId(), a.toNodeId());
+            assertEquals(e.fromPoint(), a.fromPoint());
+            assertEquals(e.toPoint(), a.toPoint());
+            assertEquals(e.length(), a.length());
+            assertEquals(e.elevationAt(e.length() / 3), a.elevationAt(a.length() / 3));
+        }
+        for (int i = 0; i < 50; i += 1) {
+            var position = rng.nextDouble(-10, expected.length() + 10);
+            assertEquals(expected.pointAt(position), actual.pointAt(position));
+            assertEquals(expected.elevationAt(position), actual.elevationAt(position));
+            assertEquals(expected.nodeClosestTo(position), actual.nodeClosestTo(position));
+            var point = randomPoint(rng);
+            assertEquals(expected.pointClosestTo(point), actual.pointClosestTo(point));
+        }
+        for (var position : new double[]{0, expected.length()}) {
+            assertEquals(expected.pointAt(position), actual.pointAt(position));
+            assertEquals(expected.elevationAt(position), actual.elevationAt(position));
+            assertEquals(expected.nodeClosestTo(position), actual.nodeClosestTo(position));
+        }
+    }
+
+    @Test
+    void columnarRouteBehavesLikeSingleRoute() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var walk = randomWalk(rng);
+            var edges = new ArrayList<Edge>();
+            for (int j = 0; j < walk.edgeIds().length; j += 1)
+                edges.add(Edge.of(GRAPH, walk.edgeIds()[j], walk.nodeIds()[j], walk.nodeIds()[j + 1]));
+            assertSameRoute(new SingleRoute(edges),
+                    new ColumnarRoute(GRAPH, walk.nodeIds(), walk.edgeIds()), rng);
+        }
+    }
+
+    @Test
+    void columnarRouteWorksWithPartialEdges() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var walk = randomWalk(rng);
+            int[] nodeIds = walk.nodeIds();
+            int[] edgeIds = walk.edgeIds();
+            int last = edgeIds.length - 1;
+            var firstLength = GRAPH.edgeLength(edgeIds[0]);
+            var lastLength = GRAPH.edgeLength(edgeIds[last]);
+            var startPosition = rng.nextDouble(0, firstLength);
+            var endPosition = last == 0
+                    ? rng.nextDouble(startPosition, firstLength)
+                    : rng.nextDouble(0, lastLength);
+            var startPoint = Edge.of(GRAPH, edgeIds[0], nodeIds[0], nodeIds[1]).pointAt(startPosition);
+            var endPoint = Edge.of(GRAPH, edgeIds[last], nodeIds[last], nodeIds[last + 1]).pointAt(endPosition);
+
+            var edges = new ArrayList<Edge>();
+            for (int j = 0; j <= last; j += 1) {
+                var from = j == 0 ? startPosition : 0;
+                var to = j == last ? endPosition : GRAPH.edgeLength(edgeIds[j]);
+                var profile = GRAPH.edgeProfile(edgeIds[j]);
+                edges.add(new Edge(nodeIds[j], nodeIds[j + 1],
+                        j == 0 ? startPoint : GRAPH.nodePoint(nodeIds[j]),
+                        j == last ? endPoint : GRAPH.nodePoint(nodeIds[j + 1]),
+                        to - from,
+                        from == 0 ? profile : x -> profile.applyAsDouble(from + x)));
+            }
+            assertSameRoute(new SingleRoute(edges),
+                    new ColumnarRoute(GRAPH, nodeIds, edgeIds, startPosition, endPosition, startPoint, endPoint),
+                    rng);
+        }
+    }
+
+    @Test
+    void columnarRouteConstructorThrowsOnInvalidArrays() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarRoute(GRAPH, new int[]{0}, new int[0]));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarRoute(GRAPH, new int[]{0, 1, 2}, new int[]{GRAPH.nodeOutEdgeId(0, 0)}));
+    }
+
+    @Test
+    void columnarRouteEdgesAreImmutable() {
+        var walk = randomWalk(newRandom());
+        var route = new ColumnarRoute(GRAPH, walk.nodeIds(), walk.edgeIds());
+        assertSame(route.edges(), route.edges());
+        assertThrows(UnsupportedOperationException.class, () -> route.edges().clear());
+        assertThrows(UnsupportedOperationException.class, () -> route.points().clear());
+        assertEquals(List.copyOf(route.points()), route.points());
+    }
+}
@@ -0,0 +1,142 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeOverlayTest {
+
+    @Test
+    void edgeOverlaySnapshotsAreImmutableAndVersioned() {
+        var g = TestGraphs.newGridGraph(10, 10, newRandom());
+        var overlay = new EdgeOverlay(g);
+        var empty = overlay.snapshot();
+        assertEquals(0, empty.version());
+        assertEquals(EdgeOverlay.NEUTRAL, empty.multiplier(3));
+
+        overlay.set(3, 2);
+        overlay.block(7);
+        var snapshot = overlay.snapshot();
+        assertEquals(2, snapshot.version());
+        assertEquals(2, snapshot.multiplier(3));
+        assertEquals(EdgeOverlay.BLOCKED, snapshot.multiplier(7));
+        assertEquals(EdgeOverlay.NEUTRAL, snapshot.multiplier(5));
+        assertEquals(EdgeOverlay.NEUTRAL, empty.multiplier(3));
+
+        // Neither the arrays given by the snapshot nor the ones it was created from change it
+        snapshot.edgeIds()[0] = 5;
+        snapshot.multipliers()[0] = 10;
+        assertArrayEquals(new int[]{3, 7}, snapshot.edgeIds());
+        assertEquals(2, snapshot.multiplier(3));
+        int[] edgeIds = {4};
+        float[] multipliers = {2};
+        var created = new EdgeOverlay.Snapshot(1, edgeIds, multipliers);
+        edgeIds[0] = 5;
+        multipliers[0] = 3;
+        assertEquals(2, created.multiplier(4));
+        assertThrows(IllegalArgumentException.class,
+                () -> new EdgeOverlay.Snapshot(1, new int[]{4}, new float[0]));
+
+        overlay.remove(3);
+        assertEquals(EdgeOverlay.NEUTRAL, overlay.snapshot().multiplier(3));
+        assertEquals(2, snapshot.multiplier(3));
+        assertEquals(1, overlay.snapshot().size());
+
+        overlay.replaceAll(Map.of(1, 3d));
+        assertEquals(EdgeOverlay.NEUTRAL, overlay.snapshot().multiplier(7));
+        assertEquals(3, overlay.snapshot().multiplier(1));
+    }
+
+    @Test
+    void edgeOverlayNotifiesModifiedEdges() {
+        var g = TestGraphs.newGridGraph(10, 10, newRandom());
+        var overlay = new EdgeOverlay(g);
+        var updates = new ArrayList<EdgeOverlay.Update>();
+        overlay.addListener(updates::add);
+
+        overlay.update(Map.of(4, 2d, 9, EdgeOverlay.BLOCKED));
+        assertEquals(1, updates.size());
+        assertFalse(updates.get(0).relaxed());
+        assertEquals(2, updates.get(0).nodePairs().length);
+
+        var edge = Edge.of(g, 4, g.edgeSourceNodeId(4), g.edgeTargetNodeId(4));
+        var other = Edge.of(g, 5, g.edgeSourceNodeId(5), g.edgeTargetNodeId(5));
+        assertTrue(updates.get(0).affects(new SingleRoute(List.of(edge))));
+        assertFalse(updates.get(0).affects(new SingleRoute(List.of(other))));
+
+        overlay.set(4, 2);
+        assertEquals(1, updates.size());
+        overlay.set(4, 1.5);
+        assertTrue(updates.get(1).relaxed());
+        overlay.set(9, EdgeOverlay.BLOCKED);
+        assertEquals(2, updates.size());
+    }
+
+    @Test
+    void edgeOverlayFailsOnInvalidPenalties() {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var overlay = new EdgeOverlay(g);
+        assertThrows(IllegalArgumentException.class, () -> overlay.set(0, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> overlay.set(g.edgeCount(), 2));
+        assertThrows(IllegalArgumentException.class, () -> overlay.set(-1, 2));
+        assertEquals(0, overlay.snapshot().version());
+    }
+
+    @Test
+    void edgeOverlayCanBeLoadedFromFile(@TempDir Path dir) throws IOException {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var overlay = new EdgeOverlay(g);
+        var file = dir.resolve("overlay.txt");
+        Files.writeString(file, "# closures\n2 blocked\n\n6   1.5\n");
+        overlay.loadFrom(file);
+        assertEquals(EdgeOverlay.BLOCKED, overlay.snapshot().multiplier(2));
+        assertEquals(1.5, overlay.snapshot().multiplier(6));
+
+        Files.writeString(file, "2 often\n");
+        assertThrows(IllegalArgumentException.class, () -> overlay.loadFrom(file));
+        assertEquals(EdgeOverlay.BLOCKED, overlay.snapshot().multiplier(2));
+    }
+
+    @Test
+    void overlayCFAvoidsBlockedEdgesAndUsesSnapshots() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(20, 20, rng);
+        var base = new CityBikeCF(g);
+        var overlay = new EdgeOverlay(g);
+        var cf = new OverlayCF(base, overlay);
+        var rc = new RouteComputer(g, cf);
+
+        for (int i = 0; i < 20; i += 1) {
+            var start = rng.nextInt(g.nodeCount());
+            int end;
+            do end = rng.nextInt(g.nodeCount()); while (end == start);
+            var route = rc.bestRouteBetween(start, end);
+            if (route == null) continue;
+            var firstEdge = route.edges().get(0);
+            var blockedEdgeId = -1;
+            for (int j = 0; j < g.nodeOutDegree(start); j += 1) {
+                var edgeId = g.nodeOutEdgeId(start, j);
+                if (g.edgeTargetNodeId(edgeId) == firstEdge.toNodeId()) blockedEdgeId = edgeId;
+            }
+            var snapshot = cf.snapshot();
+            overlay.block(blockedEdgeId);
+            assertEquals(Double.POSITIVE_INFINITY, cf.costFactor(start, blockedEdgeId));
+            assertEquals(base.costFactor(start, blockedEdgeId), snapshot.costFactor(start, blockedEdgeId));
+            var detour = rc.bestRouteBetween(start, end);
+            if (detour != null) {
+                assertNotEquals(firstEdge.toNodeId(), detour.edges().get(0).toNodeId());
+            }
+            overlay.remove(blockedEdgeId);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package ch.epfl.javelo.routing;
 
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
+import java.util.random.RandomGenerator;
 
 import static ch.epfl.javelo.routing.ElevationProfileComputer.elevationProfile;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
@@ -130,6 +134,75 @@ class ElevationProfileComputerTest {
         }
     }
 
+    /**
+     * Returns a route following a random walk of the given number of edges in the graph.
+     */
+    private static Route randomRoute(Graph graph, int edgesCount, RandomGenerator rng) {
+        var nodeIds = new int[edgesCount + 1];
+        var edgeIds = new int[edgesCount];
+        nodeIds[0] = rng.nextInt(graph.nodeCount());
+        for (int i = 0; i < edgesCount; i += 1) {
+            while (graph.nodeOutDegree(nodeIds[i]) == 0) nodeIds[i] = rng.nextInt(graph.nodeCount());
+            edgeIds[i] = graph.nodeOutEdgeId(nodeIds[i], rng.nextInt(graph.nodeOutDegree(nodeIds[i])));
+            nodeIds[i + 1] = graph.edgeTargetNodeId(edgeIds[i]);
+        }
+        return new ColumnarRoute(graph, nodeIds, edgeIds);
+    }
+
+    /**
+     * Returns the samples of the profile of a route, taken with Route.elevationAt,
+     * and whose holes are filled as the profile computer does.
+     */
+    private static float[] expectedSamples(Route route, double maxStepLength) {
+        int count = (int) Math.ceil(route.length() / maxStepLength) + 1;
+        double step = route.length() / (count - 1);
+        var samples = new float[count];
+        for (int i = 0; i < count; i += 1) samples[i] = (float) route.elevationAt(i * step);
+        int previousReal = -1;
+        for (int i = 0; i < count; i += 1) {
+            if (Float.isNaN(samples[i])) continue;
+            if (previousReal == -1) {
+                for (int j = 0; j < i; j += 1) samples[j] = samples[i];
+            } else {
+                for (int j = previousReal + 1; j < i; j += 1)
+                    samples[j] = (float) Math2.interpolate(samples[j - 1], samples[i], 1d / (i - j + 1));
+            }
+            previousReal = i;
+        }
+        if (previousReal == -1) return new float[count];
+        for (int j = previousReal + 1; j < count; j += 1) samples[j] = samples[previousReal];
+        return samples;
+    }
+
+    @Test
+    void elevationProfileComputerGivesSameSamplesAsElevationAt() {
+        var rng = newRandom();
+        var graph = TestGraphs.newGridGraph(20, 15, rng);
+        for (int i = 0; i < 100; i += 1) {
+            var route = randomRoute(graph, rng.nextInt(1, 100), rng);
+            var maxStepLength = rng.nextDouble(0.5, 50);
+            var expected = expectedSamples(route, maxStepLength);
+            var profile = elevationProfile(route, maxStepLength);
+            var step = route.length() / (expected.length - 1);
+            for (int j = 0; j < expected.length; j += 1)
+                assertEquals(expected[j], profile.elevationAt(j * step), 1e-3);
+        }
+    }
+
+    @Test
+    void elevationProfileComputerIsFastOnLongRoutes() {
+        var rng = newRandom();
+        var graph = TestGraphs.newGridGraph(20, 15, rng);
+        // About 300 km
+        var route = randomRoute(graph, 3_000, rng);
+        elevationProfile(route, 5);
+        long t0 = System.nanoTime();
+        var profile = elevationProfile(route, 5);
+        System.out.printf("Profil de %.0f km calculé en %.1f ms%n",
+                route.length() / 1000, (System.nanoTime() - t0) / 1e6);
+        assertEquals(route.length(), profile.length());
+    }
+
     private static final class FakeRoute implements Route {
         private static final double ORIGIN_E = 2_600_000;
         private static final double ORIGIN_N = 1_200_000;
@@ -9,6 +9,7 @@ import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ElevationProfileTest {
 
@@ -139,4 +140,98 @@ class ElevationProfileTest {
         var expected7 = 294.125;
         assertEquals(expected7, actual7);
     }
-}
\ No newline at end of file
+
+    @Test
+    void elevationProfileElevationRangesThrowsOnInvalidArrays() {
+        var profile = new ElevationProfile(1000, new float[]{1, 2, 3});
+        assertThrows(IllegalArgumentException.class, () -> {
+            profile.elevationRanges(new float[0], new float[0]);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            profile.elevationRanges(new float[2], new float[3]);
+        });
+    }
+
+    @Test
+    void elevationProfileElevationRangesWorksWithOneIntervalOrOnePerSegment() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var samples = randomSamples(rng, rng.nextInt(2, 500));
+            var profile = new ElevationProfile(1000, samples);
+
+            var min = new float[1];
+            var max = new float[1];
+            profile.elevationRanges(min, max);
+            assertEquals(profile.minElevation(), min[0]);
+            assertEquals(profile.maxElevation(), max[0]);
+
+            var mins = new float[samples.length - 1];
+            var maxs = new float[samples.length - 1];
+            profile.elevationRanges(mins, maxs);
+            for (int j = 0; j < mins.length; j += 1) {
+                assertEquals(Math.min(samples[j], samples[j + 1]), mins[j]);
+                assertEquals(Math.max(samples[j], samples[j + 1]), maxs[j]);
+            }
+        }
+    }
+
+    @Test
+    void elevationProfileElevationRangesContainProfileAndAreTight() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var samples = randomSamples(rng, rng.nextInt(2, 5000));
+            var length = rng.nextDouble(1, 100_000);
+            var profile = new ElevationProfile(length, samples);
+            var count = rng.nextInt(1, 1000);
+            var mins = new float[count];
+            var maxs = new float[count];
+            profile.elevationRanges(mins, maxs);
+
+            var step = length / (samples.length - 1);
+            var intervalLength = length / count;
+            for (int j = 0; j < samples.length; j += 1) {
+                // The samples are in the ranges of the intervals containing them
+                var interval = Math.min((int) (j * step / intervalLength), count - 1);
+                assertTrue(mins[interval] <= samples[j] && samples[j] <= maxs[interval]);
+            }
+            for (int j = 0; j < count; j += 1) {
+                // The ranges do not extend beyond twice the interval on each side
+                var from = Math.max(0, (int) Math.floor((j - 2) * intervalLength / step));
+                var to = Math.min(samples.length - 1, (int) Math.ceil((j + 3) * intervalLength / step));
+                var statistics = new DoubleSummaryStatistics();
+                for (int k = from; k <= to; k += 1) statistics.accept(samples[k]);
+                assertTrue(statistics.getMin() <= mins[j] && maxs[j] <= statistics.getMax());
+            }
+        }
+    }
+
+    @Test
+    void elevationProfileElevationRangesIsFasterThanSampling() {
+        var rng = newRandom();
+        // A 300 km profile sampled every 5 m, drawn on 1000 pixels
+        var profile = new ElevationProfile(300_000, randomSamples(rng, 60_001));
+        var mins = new float[1000];
+        var maxs = new float[1000];
+        for (int i = 0; i < 10; i += 1) profile.elevationRanges(mins, maxs);
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 100; i += 1) profile.elevationRanges(mins, maxs);
+        long t1 = System.nanoTime();
+        // Finding the same extrema by reading every sample
+        for (int i = 0; i < 100; i += 1) {
+            for (int j = 0; j < 1000; j += 1) {
+                float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+                for (int k = 60 * j; k <= 60 * (j + 1); k += 1) {
+                    float elevation = (float) profile.elevationAt(5d * k);
+                    min = Math.min(min, elevation);
+                    max = Math.max(max, elevation);
+                }
+                mins[j] = min;
+                maxs[j] = max;
+            }
+        }
+        long t2 = System.nanoTime();
+        System.out.printf("Extrema de 1000 colonnes : %.1f µs par la pyramide, %.1f µs par les échantillons%n",
+                (t1 - t0) / 100e3, (t2 - t1) / 100e3);
+    }
+}
@@ -0,0 +1,107 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchyRouteComputerTest {
+    private static final double DELTA = 1e-3;
+
+    private static void assertSameRoute(Route expected, Route actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.length(), actual.length(), DELTA);
+        assertEquals(expected.points().get(0), actual.points().get(0));
+        assertEquals(expected.points().get(expected.points().size() - 1),
+                actual.points().get(actual.points().size() - 1));
+        for (int i = 1; i < actual.edges().size(); i += 1) {
+            assertEquals(actual.edges().get(i - 1).toNodeId(), actual.edges().get(i).fromNodeId());
+        }
+    }
+
+    @Test
+    void hierarchyRouteComputerThrowsOnIdenticalStartAndEndNodes() {
+        var rng = newRandom();
+        var graph = TestGraphs.newGridGraph(5, 5, rng);
+        var hierarchy = ContractionHierarchy.compute(graph, new CityBikeCF(graph));
+        var rc = new HierarchyRouteComputer(hierarchy);
+        assertThrows(IllegalArgumentException.class, () -> rc.bestRouteBetween(3, 3));
+    }
+
+    @Test
+    void hierarchyRouteComputerFindsSameRoutesAsRouteComputer() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(20, 15, rng);
+        var cf = new CityBikeCF(graph);
+        var hierarchy = ContractionHierarchy.compute(graph, cf);
+        var expected = new RouteComputer(graph, cf);
+        var actual = new HierarchyRouteComputer(hierarchy);
+        for (int i = 0; i < 200; i += 1) {
+            int start = rng.nextInt(graph.nodeCount());
+            int end = rng.nextInt(graph.nodeCount());
+            if (start == end) continue;
+            assertSameRoute(expected.bestRouteBetween(start, end),
+                    actual.bestRouteBetween(start, end));
+        }
+    }
+
+    @Test
+    void contractionHierarchyRejectsTruncatedOrMismatchedFiles(@TempDir Path directory) throws IOException {
+        Graph graph = TestGraphs.newGridGraph(8, 8, newRandom());
+        var cf = new CityBikeCF(graph);
+        ContractionHierarchy.compute(graph, cf).writeTo(directory, "citybike");
+        Path ranks = directory.resolve("ch_citybike_ranks.bin");
+        Path shortcuts = directory.resolve("ch_citybike_shortcuts.bin");
+        byte[] ranksBytes = Files.readAllBytes(ranks);
+        byte[] shortcutsBytes = Files.readAllBytes(shortcuts);
+
+        // Shortcuts whose last record is truncated
+        Files.write(shortcuts, Arrays.copyOf(shortcutsBytes, shortcutsBytes.length - 3));
+        assertThrows(IOException.class, () -> ContractionHierarchy.loadFrom(directory, "citybike", graph, cf));
+        Files.write(shortcuts, shortcutsBytes);
+
+        // Ranks of another graph
+        Files.write(ranks, Arrays.copyOf(ranksBytes, ranksBytes.length - Integer.BYTES));
+        assertThrows(IOException.class, () -> ContractionHierarchy.loadFrom(directory, "citybike", graph, cf));
+        Graph other = TestGraphs.newGridGraph(9, 8, newRandom());
+        Files.write(ranks, ranksBytes);
+        assertThrows(IOException.class,
+                () -> ContractionHierarchy.loadFrom(directory, "citybike", other, new CityBikeCF(other)));
+    }
+
+    @Test
+    void contractionHierarchyCanBeWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(12, 12, rng);
+        var cf = new CityBikeCF(graph);
+        var hierarchy = ContractionHierarchy.compute(graph, cf);
+        hierarchy.writeTo(directory, "citybike");
+        var loaded = ContractionHierarchy.loadFrom(directory, "citybike", graph, cf);
+
+        assertEquals(hierarchy.shortcutCount(), loaded.shortcutCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1)
+            assertEquals(hierarchy.rank(nodeId), loaded.rank(nodeId));
+
+        var original = new HierarchyRouteComputer(hierarchy);
+        var reloaded = new HierarchyRouteComputer(loaded);
+        for (int i = 0; i < 50; i += 1) {
+            int start = rng.nextInt(graph.nodeCount());
+            int end = rng.nextInt(graph.nodeCount());
+            if (start == end) continue;
+            assertSameRoute(original.bestRouteBetween(start, end),
+                    reloaded.bestRouteBetween(start, end));
+        }
+    }
+}
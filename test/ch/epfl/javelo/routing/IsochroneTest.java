@@ -0,0 +1,133 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsochroneTest {
+
+    @Test
+    void isochroneContainsExactlyTheNodesWithinBudget() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(20, 20, rng);
+        var cf = new CityBikeCF(g);
+        var start = rng.nextInt(g.nodeCount());
+        var budget = 800d;
+        var isochrone = Isochrone.compute(g, cf, start, Isochrone.Metric.COST, budget);
+        var nodeIds = isochrone.nodeIds();
+        var values = isochrone.values();
+
+        assertEquals(isochrone.size(), nodeIds.length);
+        assertEquals(start, nodeIds[0]);
+        assertEquals(0, values[0]);
+        for (int i = 1; i < values.length; i += 1) {
+            assertTrue(values[i - 1] <= values[i]);
+            assertTrue(values[i] <= budget);
+        }
+
+        var all = RouteMatrix.compute(g, cf, new int[]{start},
+                IntStream.range(0, g.nodeCount()).toArray());
+        var reached = new HashSet<Integer>();
+        for (int i = 0; i < nodeIds.length; i += 1) {
+            reached.add(nodeIds[i]);
+            assertEquals(all.cost(0, nodeIds[i]), values[i]);
+        }
+        for (int nodeId = 0; nodeId < g.nodeCount(); nodeId += 1) {
+            if (!reached.contains(nodeId)) assertTrue(all.cost(0, nodeId) > budget);
+        }
+    }
+
+    @Test
+    void isochroneWorksWithLengthAndAscent() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(15, 15, rng);
+        var cf = new CityBikeCF(g);
+        var start = rng.nextInt(g.nodeCount());
+        var byLength = Isochrone.compute(g, cf, g.nodePoint(start), 1, Isochrone.Metric.LENGTH, 500);
+        assertEquals(start, byLength.nodeIds()[0]);
+        for (var value : byLength.values()) assertTrue(value <= 500);
+        var byAscent = Isochrone.compute(g, cf, start, Isochrone.Metric.ASCENT, 10);
+        for (var value : byAscent.values()) assertTrue(value <= 10);
+        var zero = Isochrone.compute(g, cf, start, Isochrone.Metric.LENGTH, 0);
+        assertArrayEquals(new int[]{start}, zero.nodeIds());
+    }
+
+    private static boolean isInside(List<PointCh> polygon, PointCh p) {
+        boolean inside = false;
+        for (int i = 0, j = polygon.size() - 1; i < polygon.size(); j = i++) {
+            var a = polygon.get(i);
+            var b = polygon.get(j);
+            if ((a.n() > p.n()) != (b.n() > p.n())
+                    && p.e() < (b.e() - a.e()) * (p.n() - a.n()) / (b.n() - a.n()) + a.e())
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    private static double signedArea(List<PointCh> polygon) {
+        double area = 0;
+        for (int i = 0; i < polygon.size(); i += 1) {
+            var a = polygon.get(i);
+            var b = polygon.get((i + 1) % polygon.size());
+            area += a.e() * b.n() - b.e() * a.n();
+        }
+        return area / 2;
+    }
+
+    @Test
+    void isochroneContourContainsAllReachedNodes() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(20, 20, rng);
+        var isochrone = Isochrone.compute(g, new CityBikeCF(g), rng.nextInt(g.nodeCount()),
+                Isochrone.Metric.LENGTH, 1_000);
+        var contour = isochrone.contour();
+        assertTrue(contour.size() >= 4);
+        assertTrue(signedArea(contour) > 0);
+        for (var nodeId : isochrone.nodeIds())
+            assertTrue(isInside(contour, g.nodePoint(nodeId)));
+        assertEquals(4, Isochrone.compute(g, new CityBikeCF(g), 0, Isochrone.Metric.LENGTH, 0)
+                .contour().size());
+    }
+
+    @Test
+    void isochroneContourFollowsConcaveAreas() {
+        var g = TestGraphs.newGridGraph(20, 20, newRandom());
+        // A lake in the middle of the grid, open to the north, which the roads go around
+        Predicate<PointCh> inLake = p -> {
+            long x = Math.round((p.e() - TestGraphs.ORIGIN_E) / TestGraphs.SPACING);
+            long y = Math.round((p.n() - TestGraphs.ORIGIN_N) / TestGraphs.SPACING);
+            return x >= 5 && x <= 14 && y >= 5;
+        };
+        CostFunction cf = (nodeId, edgeId) ->
+                inLake.test(g.nodePoint(nodeId)) || inLake.test(g.nodePoint(g.edgeTargetNodeId(edgeId)))
+                        ? Double.POSITIVE_INFINITY
+                        : 1;
+        var start = g.nodeClosestTo(new PointCh(TestGraphs.ORIGIN_E + 200, TestGraphs.ORIGIN_N + 200), 50);
+        var isochrone = Isochrone.compute(g, cf, start, Isochrone.Metric.LENGTH, 100_000);
+        var contour = isochrone.contour(50);
+        for (var nodeId : isochrone.nodeIds())
+            assertTrue(isInside(contour, g.nodePoint(nodeId)));
+        // The middle of the lake is within the convex hull of the reached nodes, but not reached
+        var lake = new PointCh(TestGraphs.ORIGIN_E + 950, TestGraphs.ORIGIN_N + 1400);
+        assertFalse(isInside(contour, lake));
+        assertThrows(IllegalArgumentException.class, () -> isochrone.contour(0));
+    }
+
+    @Test
+    void isochroneFailsOnInvalidArguments() {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var cf = new CityBikeCF(g);
+        assertThrows(IllegalArgumentException.class, () ->
+                Isochrone.compute(g, cf, 0, Isochrone.Metric.COST, -1));
+        assertThrows(IllegalArgumentException.class, () ->
+                Isochrone.compute(g, cf, g.nodeCount(), Isochrone.Metric.COST, 10));
+    }
+}
@@ -0,0 +1,69 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LandmarksTest {
+    @Test
+    void landmarksComputeThrowsOnInvalidCount() {
+        var graph = TestGraphs.newGridGraph(4, 4, newRandom());
+        assertThrows(IllegalArgumentException.class, () ->
+                Landmarks.compute(graph, new CityBikeCF(graph), 0));
+    }
+
+    @Test
+    void landmarksLowerBoundIsZeroForIdenticalNodes() {
+        var graph = TestGraphs.newGridGraph(10, 10, newRandom());
+        var landmarks = Landmarks.compute(graph, new CityBikeCF(graph), 4);
+        assertEquals(4, landmarks.count());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1)
+            assertEquals(0, landmarks.lowerBound(nodeId, nodeId));
+    }
+
+    @Test
+    void routeComputerWithLandmarksFindsSameRoutes() {
+        var rng = newRandom();
+        var graph = TestGraphs.newGridGraph(20, 20, rng);
+        var cf = new CityBikeCF(graph);
+        var landmarks = Landmarks.compute(graph, cf, 8);
+        var expected = new RouteComputer(graph, cf);
+        var actual = new RouteComputer(graph, cf, landmarks);
+        for (int i = 0; i < 200; i += 1) {
+            int start = rng.nextInt(graph.nodeCount());
+            int end = rng.nextInt(graph.nodeCount());
+            if (start == end) continue;
+            var expectedRoute = expected.bestRouteBetween(start, end);
+            var actualRoute = actual.bestRouteBetween(start, end);
+            if (expectedRoute == null) {
+                assertNull(actualRoute);
+            } else {
+                assertNotNull(actualRoute);
+                assertEquals(expectedRoute.length(), actualRoute.length(), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    void landmarksCanBeWrittenAndLoaded(@TempDir Path directory) throws IOException {
+        var rng = newRandom();
+        var graph = TestGraphs.newGridGraph(10, 10, rng);
+        var landmarks = Landmarks.compute(graph, new CityBikeCF(graph), 4);
+        landmarks.writeTo(directory, "citybike");
+        var loaded = Landmarks.loadFrom(directory, "citybike");
+        assertEquals(landmarks.count(), loaded.count());
+        for (int i = 0; i < landmarks.count(); i += 1)
+            assertEquals(landmarks.landmarkNodeId(i), loaded.landmarkNodeId(i));
+        for (int i = 0; i < 500; i += 1) {
+            int nodeId = rng.nextInt(graph.nodeCount());
+            int targetId = rng.nextInt(graph.nodeCount());
+            assertEquals(landmarks.lowerBound(nodeId, targetId), loaded.lowerBound(nodeId, targetId));
+        }
+    }
+}
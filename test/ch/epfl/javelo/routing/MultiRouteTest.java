@@ -330,4 +330,93 @@ class MultiRouteTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    private static PointCh serpentinePoint(int i) {
+        var row = i / 200;
+        var column = (row & 1) == 0 ? i % 200 : 199 - i % 200;
+        return new PointCh(ORIGIN_E + 100 * column, ORIGIN_N + 100 * row);
+    }
+
+    /**
+     * Returns the legs of a tour, each one made of a random number of edges (following
+     * a serpentine), following each other.
+     */
+    private static List<Route> tourLegs(int legsCount, int maxEdgesPerLeg) {
+        var rng = newRandom();
+        var edges = new ArrayList<Edge>();
+        for (int i = 0; i < legsCount * maxEdgesPerLeg; i += 1) {
+            var p1 = serpentinePoint(i);
+            var p2 = serpentinePoint(i + 1);
+            var startingElevation = 500 + (i % 10) * 10;
+            edges.add(new Edge(i, i + 1, p1, p2, p1.distanceTo(p2), x -> startingElevation + x / 10));
+        }
+        var legs = new ArrayList<Route>();
+        int from = 0;
+        for (int i = 0; i < legsCount; i += 1) {
+            int to = i == legsCount - 1 ? edges.size() : from + rng.nextInt(1, maxEdgesPerLeg + 1);
+            legs.add(new SingleRoute(edges.subList(from, to)));
+            from = to;
+        }
+        return legs;
+    }
+
+    /**
+     * Returns the elevation at the given position of a route made of the given legs,
+     * searching the leg linearly.
+     */
+    private static double linearElevationAt(List<Route> legs, double position) {
+        double length = 0;
+        for (var leg : legs) length += leg.length();
+        double remaining = Math.max(0, Math.min(position, length));
+        for (var leg : legs) {
+            if (remaining <= leg.length()) return leg.elevationAt(remaining);
+            remaining -= leg.length();
+        }
+        return legs.get(legs.size() - 1).elevationAt(legs.get(legs.size() - 1).length());
+    }
+
+    @Test
+    void multiRouteQueriesMatchLinearSearch() {
+        var legs = new ArrayList<Route>();
+        var edges = sawToothEdges(40);
+        for (int i = 0; i < 20; i += 1) legs.add(new SingleRoute(edges.subList(2 * i, 2 * i + 2)));
+        var route = new MultiRoute(legs);
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var position = rng.nextDouble(-1000, route.length() + 1000);
+            var leg = (int) Math.max(0, Math.min(19, Math.ceil(position / (2 * TOOTH_LENGTH)) - 1));
+            var positionOnLeg = Math.max(0, Math.min(position, route.length())) - leg * 2 * TOOTH_LENGTH;
+            assertEquals(leg, route.indexOfSegmentAt(position));
+            assertEquals(legs.get(leg).pointAt(positionOnLeg), route.pointAt(position));
+            assertEquals(legs.get(leg).nodeClosestTo(positionOnLeg), route.nodeClosestTo(position));
+            assertEquals(linearElevationAt(legs, position), route.elevationAt(position), 1e-9);
+        }
+        // At the end of a leg, the leg is the first one
+        assertEquals(0, route.indexOfSegmentAt(2 * TOOTH_LENGTH));
+        assertEquals(1, route.indexOfSegmentAt(2 * TOOTH_LENGTH + 1e-6));
+        assertSame(route.edges(), route.edges());
+        assertSame(route.points(), route.points());
+    }
+
+    @Test
+    void multiRouteElevationProfileOfTwentyLegTour() {
+        var legs = tourLegs(20, 400);
+        var route = new MultiRoute(legs);
+        var sampleCount = (int) Math.ceil(route.length() / 5) + 1;
+        var step = route.length() / (sampleCount - 1);
+
+        long t0 = System.nanoTime();
+        var linear = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i += 1) linear[i] = linearElevationAt(legs, i * step);
+        long linearTime = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        var indexed = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i += 1) indexed[i] = route.elevationAt(i * step);
+        long indexedTime = System.nanoTime() - t0;
+
+        assertArrayEquals(linear, indexed, 1e-9);
+        System.out.printf("%d échantillons sur 20 étapes : %d ms (recherche linéaire : %d ms)%n",
+                sampleCount, indexedTime / 1_000_000, linearTime / 1_000_000);
+    }
+}
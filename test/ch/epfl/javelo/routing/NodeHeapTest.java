@@ -0,0 +1,65 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeHeapTest {
+    @Test
+    void nodeHeapPollsNodesInIncreasingKeyOrder() {
+        var rng = newRandom();
+        var heap = new NodeHeap(1_000);
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            heap.clear();
+            var keys = new float[1_000];
+            Arrays.fill(keys, Float.POSITIVE_INFINITY);
+            for (int j = 0; j < 500; j += 1) {
+                var nodeId = rng.nextInt(1_000);
+                var key = rng.nextFloat(1_000);
+                heap.push(nodeId, key);
+                keys[nodeId] = Math.min(keys[nodeId], key);
+            }
+            var previous = Float.NEGATIVE_INFINITY;
+            var polled = 0;
+            while (!heap.isEmpty()) {
+                var key = heap.peekKey();
+                var nodeId = heap.poll();
+                assertEquals(keys[nodeId], key);
+                assertTrue(previous <= key);
+                assertFalse(heap.contains(nodeId));
+                previous = key;
+                polled += 1;
+            }
+            var pushed = 0;
+            for (float key : keys) if (key != Float.POSITIVE_INFINITY) pushed += 1;
+            assertEquals(pushed, polled);
+        }
+    }
+
+    @Test
+    void nodeHeapIgnoresGreaterKeys() {
+        var heap = new NodeHeap(10);
+        heap.push(3, 5f);
+        heap.push(3, 7f);
+        heap.push(4, 6f);
+        assertEquals(2, heap.size());
+        assertEquals(3, heap.poll());
+        assertEquals(4, heap.poll());
+    }
+
+    @Test
+    void nodeHeapIsEmptyAfterClear() {
+        var heap = new NodeHeap(10);
+        heap.push(1, 1f);
+        heap.push(2, 2f);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(1));
+        assertEquals(Float.POSITIVE_INFINITY, heap.peekKey());
+        assertThrows(IllegalArgumentException.class, heap::poll);
+    }
+}
@@ -0,0 +1,128 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecomputedCFTest {
+
+    @Test
+    void precomputedCFGivesSameFactorsAsCostFunction() {
+        var g = TestGraphs.newGridGraph(20, 20, newRandom());
+        var cf = new CityBikeCF(g);
+        var precomputed = PrecomputedCF.of(g, cf);
+        for (int nodeId = 0; nodeId < g.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < g.nodeOutDegree(nodeId); i += 1) {
+                var edgeId = g.nodeOutEdgeId(nodeId, i);
+                assertEquals((float) cf.costFactor(nodeId, edgeId),
+                        precomputed.costFactor(nodeId, edgeId));
+            }
+        }
+    }
+
+    @Test
+    void precomputedCFCanBeWrittenAndLoaded(@TempDir Path dir) throws IOException {
+        var g = TestGraphs.newGridGraph(15, 10, newRandom());
+        var precomputed = PrecomputedCF.of(g, new CityBikeCF(g));
+        precomputed.writeTo(dir, "test");
+        var loaded = PrecomputedCF.loadFrom(dir, "test", g);
+        for (int edgeId = 0; edgeId < g.edgeCount(); edgeId += 1)
+            assertEquals(precomputed.costFactor(0, edgeId), loaded.costFactor(0, edgeId));
+
+        var other = TestGraphs.newGridGraph(5, 5, newRandom());
+        assertThrows(IllegalArgumentException.class, () -> PrecomputedCF.loadFrom(dir, "test", other));
+    }
+
+    @Test
+    void precomputedCFLoadOrComputeWritesFactorsOnlyOnce(@TempDir Path dir) throws IOException {
+        var g = TestGraphs.newGridGraph(10, 10, newRandom());
+        var cf = new CityBikeCF(g);
+        var computed = PrecomputedCF.loadOrCompute(dir, "test", g, cf);
+        var file = dir.resolve("cost_factors_test.bin");
+        assertTrue(Files.exists(file));
+        assertEquals(16 + 4L * g.edgeCount(), Files.size(file));
+        CostFunction failing = (nodeId, edgeId) -> {
+            throw new AssertionError();
+        };
+        var loaded = PrecomputedCF.loadOrCompute(dir, "test", g, failing);
+        for (int edgeId = 0; edgeId < g.edgeCount(); edgeId += 1)
+            assertEquals(computed.costFactor(0, edgeId), loaded.costFactor(0, edgeId));
+    }
+
+    @Test
+    void precomputedCFLoadOrComputeRecomputesFactorsOfUpdatedGraph(@TempDir Path dir) throws IOException {
+        var rng = newRandom();
+        TestGraphs.writeGridGraph(dir, 10, 10, rng);
+        var g = Graph.loadFrom(dir);
+        PrecomputedCF.loadOrCompute(dir, "test", g, new CityBikeCF(g));
+
+        // Same edges, but other attribute sets, as after an update of the data
+        var sets = new ArrayList<>(TestGraphs.attributeSets());
+        Collections.reverse(sets);
+        var attributes = ByteBuffer.allocate(sets.size() * Long.BYTES);
+        for (var set : sets) attributes.putLong(set.bits());
+        var attributesFile = dir.resolve("attributes.bin");
+        var modified = Files.getLastModifiedTime(attributesFile).toMillis();
+        Files.write(attributesFile, attributes.array());
+        Files.setLastModifiedTime(attributesFile, FileTime.fromMillis(modified + 1000));
+        var updated = Graph.loadFrom(dir);
+        assertEquals(g.edgeCount(), updated.edgeCount());
+
+        assertThrows(IllegalArgumentException.class, () -> PrecomputedCF.loadFrom(dir, "test", updated));
+        var cf = new CityBikeCF(updated);
+        var recomputed = PrecomputedCF.loadOrCompute(dir, "test", updated, cf);
+        for (int edgeId = 0; edgeId < updated.edgeCount(); edgeId += 1)
+            assertEquals((float) cf.costFactor(updated.edgeSourceNodeId(edgeId), edgeId),
+                    recomputed.costFactor(0, edgeId));
+        var loaded = PrecomputedCF.loadFrom(dir, "test", updated);
+        for (int edgeId = 0; edgeId < updated.edgeCount(); edgeId += 1)
+            assertEquals(recomputed.costFactor(0, edgeId), loaded.costFactor(0, edgeId));
+    }
+
+    @Test
+    void precomputedCFLoadOrComputeRecomputesFactorsOfOtherFormatOrSize(@TempDir Path dir) throws IOException {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(10, 10, rng);
+        var file = dir.resolve("cost_factors_test.bin");
+        // Factors written without header
+        Files.write(file, new byte[4 * g.edgeCount()]);
+        assertThrows(IllegalArgumentException.class, () -> PrecomputedCF.loadFrom(dir, "test", g));
+        var cf = new CityBikeCF(g);
+        var recomputed = PrecomputedCF.loadOrCompute(dir, "test", g, cf);
+        assertEquals((float) cf.costFactor(g.edgeSourceNodeId(0), 0), recomputed.costFactor(0, 0));
+
+        var smaller = TestGraphs.newGridGraph(5, 5, rng);
+        PrecomputedCF.loadOrCompute(dir, "test", smaller, new CityBikeCF(smaller));
+        assertEquals(16 + 4L * smaller.edgeCount(), Files.size(file));
+    }
+
+    @Test
+    void routeComputerGivesSameRoutesWithPrecomputedCF() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(20, 20, rng);
+        var cf = new CityBikeCF(g);
+        var rc = new RouteComputer(g, cf);
+        var precomputedRc = new RouteComputer(g, PrecomputedCF.of(g, cf));
+        for (int i = 0; i < 50; i += 1) {
+            var start = rng.nextInt(g.nodeCount());
+            int end;
+            do end = rng.nextInt(g.nodeCount()); while (end == start);
+            var expected = rc.bestRouteBetween(start, end);
+            var actual = precomputedRc.bestRouteBetween(start, end);
+            if (expected == null) assertNull(actual);
+            else assertEquals(expected.length(), actual.length(), 1e-6);
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package ch.epfl.javelo.routing;
 
+import ch.epfl.javelo.data.EdgePoint;
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.test.KmlPrinter;
+import ch.epfl.test.TestGraphs;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 
+import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.*;
 
 class RouteComputerTest {
@@ -94,6 +101,216 @@ class RouteComputerTest {
         assertEquals(expected20kN, actualPointAt20kN, 1);
     }
 
+    @Test
+    void routeComputerGivesSameRoutesWhenQueriesAreRepeated() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(20, 20, rng);
+        var rc = new RouteComputer(g, new CityBikeCF(g));
+        var starts = new int[50];
+        var ends = new int[50];
+        var lengths = new double[50];
+        for (int i = 0; i < starts.length; i += 1) {
+            starts[i] = rng.nextInt(g.nodeCount());
+            do ends[i] = rng.nextInt(g.nodeCount()); while (ends[i] == starts[i]);
+            var route = rc.bestRouteBetween(starts[i], ends[i]);
+            lengths[i] = route == null ? -1 : route.length();
+        }
+        for (int i = starts.length - 1; i >= 0; i -= 1) {
+            var route = rc.bestRouteBetween(starts[i], ends[i]);
+            assertEquals(lengths[i], route == null ? -1 : route.length());
+        }
+    }
+
+    @Test
+    void bestRouteBetweenIsAbandonedOnceCancelled() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(40, 40, rng);
+        var rc = new RouteComputer(g, new CityBikeCF(g));
+        var cancellations = 0;
+        for (int i = 0; i < 20; i += 1) {
+            int start = rng.nextInt(g.nodeCount());
+            int end;
+            do end = rng.nextInt(g.nodeCount()); while (end == start);
+            var checks = new int[1];
+            var route = rc.bestRouteBetween(start, end, () -> {
+                checks[0] += 1;
+                return false;
+            });
+            var expected = rc.bestRouteBetween(start, end);
+            assertEquals(expected == null ? -1 : expected.length(), route == null ? -1 : route.length());
+
+            int s = start, e = end;
+            if (checks[0] > 0) {
+                // Long enough searches are abandoned
+                assertThrows(CancellationException.class, () -> rc.bestRouteBetween(s, e, () -> true));
+                cancellations += 1;
+            } else {
+                var uncancelled = rc.bestRouteBetween(s, e, () -> true);
+                assertEquals(route == null ? -1 : route.length(), uncancelled == null ? -1 : uncancelled.length());
+            }
+        }
+        assertTrue(cancellations > 0);
+
+        var start = g.edgePointClosestTo(g.nodePoint(0), 200);
+        var end = g.edgePointClosestTo(g.nodePoint(g.nodeCount() - 1), 200);
+        assertThrows(CancellationException.class, () -> rc.bestRouteBetween(start, end, () -> true));
+        assertNotNull(rc.bestRouteBetween(start, end, () -> false));
+    }
+
+    @Test
+    void bidirectionalBestRouteBetweenGivesSameRoutesAsBestRouteBetween() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(25, 20, rng);
+        var cf = new CityBikeCF(g);
+        var routeComputers = List.of(
+                new RouteComputer(g, cf),
+                new RouteComputer(g, cf, Landmarks.compute(g, cf, 4)));
+        for (var rc : routeComputers) {
+            for (int i = 0; i < 100; i += 1) {
+                var start = rng.nextInt(g.nodeCount());
+                int end;
+                do end = rng.nextInt(g.nodeCount()); while (end == start);
+                var expected = rc.bestRouteBetween(start, end);
+                var actual = rc.bidirectionalBestRouteBetween(start, end);
+                if (expected == null) {
+                    assertNull(actual);
+                } else {
+                    assertEquals(nodeIds(expected), nodeIds(actual));
+                }
+            }
+        }
+    }
+
+    private static List<Integer> nodeIds(Route route) {
+        var nodeIds = new ArrayList<Integer>();
+        nodeIds.add(route.edges().get(0).fromNodeId());
+        for (var edge : route.edges()) nodeIds.add(edge.toNodeId());
+        return nodeIds;
+    }
+
+    @Test
+    void bidirectionalBestRouteBetweenFailsWithSameStartAndEnd() {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var rc = new RouteComputer(g, new CityBikeCF(g));
+        assertThrows(IllegalArgumentException.class, () -> rc.bidirectionalBestRouteBetween(3, 3));
+    }
+
+    /**
+     * Returns the length of the shortest route between two edge points, computed from the
+     * routes between the nodes of their edges.
+     */
+    private static double shortestLength(Graph g, RouteComputer rc, EdgePoint start, EdgePoint end) {
+        double best = Double.POSITIVE_INFINITY;
+        for (var departure : directions(g, start)) {
+            for (var arrival : directions(g, end)) {
+                if (departure[0] == arrival[0] && departure[3] <= arrival[3])
+                    best = Math.min(best, arrival[3] - departure[3]);
+                double middle;
+                if (departure[2] == arrival[1]) {
+                    middle = 0;
+                } else {
+                    var route = rc.bestRouteBetween((int) departure[2], (int) arrival[1]);
+                    if (route == null) continue;
+                    middle = route.length();
+                }
+                best = Math.min(best, g.edgeLength((int) departure[0]) - departure[3] + middle + arrival[3]);
+            }
+        }
+        return best;
+    }
+
+    // Edge, source node, target node and position of the point, for the edge and its opposite
+    private static List<double[]> directions(Graph g, EdgePoint point) {
+        int edgeId = point.edgeId();
+        int from = g.edgeSourceNodeId(edgeId);
+        int to = g.edgeTargetNodeId(edgeId);
+        var directions = new ArrayList<double[]>();
+        directions.add(new double[]{edgeId, from, to, point.position()});
+        for (int i = 0; i < g.nodeOutDegree(to); i += 1) {
+            int opposite = g.nodeOutEdgeId(to, i);
+            if (g.edgeTargetNodeId(opposite) == from && opposite != edgeId) {
+                directions.add(new double[]{opposite, to, from,
+                        Math.max(0, g.edgeLength(opposite) - point.position())});
+                break;
+            }
+        }
+        return directions;
+    }
+
+    @Test
+    void bestRouteBetweenEdgePointsStartsAndEndsInTheMiddleOfEdges() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(15, 12, rng);
+        CostFunction cf = (nodeId, edgeId) -> 1;
+        var rc = new RouteComputer(g, cf);
+        for (int i = 0; i < 100; i += 1) {
+            var start = g.edgePointClosestTo(new PointCh(
+                    TestGraphs.ORIGIN_E + rng.nextDouble(0, 1400),
+                    TestGraphs.ORIGIN_N + rng.nextDouble(0, 1100)), 200);
+            var end = g.edgePointClosestTo(new PointCh(
+                    TestGraphs.ORIGIN_E + rng.nextDouble(0, 1400),
+                    TestGraphs.ORIGIN_N + rng.nextDouble(0, 1100)), 200);
+            if (start.equals(end)) continue;
+            var route = rc.bestRouteBetween(start, end);
+            double expected = shortestLength(g, rc, start, end);
+            if (route == null) {
+                assertEquals(Double.POSITIVE_INFINITY, expected);
+                continue;
+            }
+            assertEquals(expected, route.length(), 1e-2);
+            assertEquals(start.point(), route.pointAt(0));
+            assertEquals(end.point(), route.pointAt(route.length()));
+        }
+    }
+
+    @Test
+    void bestRouteBetweenEdgePointsOnSameEdge() {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var rc = new RouteComputer(g, (nodeId, edgeId) -> 1);
+        int edgeId = g.nodeOutEdgeId(0, 0);
+        double length = g.edgeLength(edgeId);
+        var edge = Edge.of(g, edgeId, 0, g.edgeTargetNodeId(edgeId));
+        var start = new EdgePoint(edgeId, length / 4, edge.pointAt(length / 4), 0);
+        var end = new EdgePoint(edgeId, length / 2, edge.pointAt(length / 2), 0);
+        var route = rc.bestRouteBetween(start, end);
+        assertEquals(1, route.edges().size());
+        assertEquals(length / 4, route.length(), 1e-9);
+        assertEquals(g.edgeProfile(edgeId).applyAsDouble(length / 2), route.elevationAt(length / 4), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> rc.bestRouteBetween(start, start));
+        assertThrows(IllegalArgumentException.class, () -> rc.bestRouteBetween(start, EdgePoint.NONE));
+    }
+
+    @Test
+    void bestRouteBetweenEdgePointsOnEitherSideOfANodeIsNull() {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var rc = new RouteComputer(g, (nodeId, edgeId) -> 1);
+        // The node in the middle of the grid, reached by one edge and left by another one
+        int nodeId = 12;
+        PointCh nodePoint = g.nodePoint(nodeId);
+        int outEdgeId = g.nodeOutEdgeId(nodeId, 0);
+        int inEdgeId = -1;
+        for (int fromNodeId = 0; fromNodeId < g.nodeCount() && inEdgeId == -1; fromNodeId++) {
+            if (fromNodeId == g.edgeTargetNodeId(outEdgeId)) continue;
+            for (int i = 0; i < g.nodeOutDegree(fromNodeId); i++) {
+                int edgeId = g.nodeOutEdgeId(fromNodeId, i);
+                if (g.edgeTargetNodeId(edgeId) == nodeId) inEdgeId = edgeId;
+            }
+        }
+        var start = new EdgePoint(inEdgeId, g.edgeLength(inEdgeId), nodePoint, 0);
+        var end = new EdgePoint(outEdgeId, 0, nodePoint, 0);
+        assertNull(rc.bestRouteBetween(start, end));
+        assertNull(rc.bestRouteBetween(end, start));
+    }
+
+    @Test
+    void edgePointsClosestToNodesAreAtTheirNode() {
+        var g = TestGraphs.newGridGraph(8, 6, newRandom());
+        for (int nodeId = 0; nodeId < g.nodeCount(); nodeId++) {
+            PointCh nodePoint = g.nodePoint(nodeId);
+            assertEquals(nodePoint, g.edgePointClosestTo(nodePoint, 10).point());
+        }
+    }
+
     @Test
     void checkTest1() throws IOException {
         Graph g = Graph.loadFrom(Path.of("lausanne"));
@@ -0,0 +1,82 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteMatrixTest {
+
+    @Test
+    void routeMatrixAgreesWithRouteComputer() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(20, 20, rng);
+        var cf = new CityBikeCF(g);
+        var rc = new RouteComputer(g, cf);
+        var sources = rng.ints(12, 0, g.nodeCount()).toArray();
+        var targets = rng.ints(15, 0, g.nodeCount()).toArray();
+        var matrix = RouteMatrix.compute(g, cf, sources, targets);
+
+        assertEquals(sources.length, matrix.sourceCount());
+        assertEquals(targets.length, matrix.targetCount());
+        for (int i = 0; i < sources.length; i += 1) {
+            for (int j = 0; j < targets.length; j += 1) {
+                assertEquals(sources[i], matrix.sourceNodeId(i));
+                assertEquals(targets[j], matrix.targetNodeId(j));
+                if (sources[i] == targets[j]) {
+                    assertEquals(0, matrix.cost(i, j));
+                    assertEquals(0, matrix.length(i, j));
+                    assertNull(matrix.route(i, j));
+                    continue;
+                }
+                var expected = rc.bestRouteBetween(sources[i], targets[j]);
+                if (expected == null) {
+                    assertEquals(Float.POSITIVE_INFINITY, matrix.cost(i, j));
+                    assertEquals(Float.POSITIVE_INFINITY, matrix.length(i, j));
+                    assertNull(matrix.route(i, j));
+                } else {
+                    assertEquals(expected.length(), matrix.length(i, j), 1e-2);
+                    assertEquals(expected.length(), matrix.route(i, j).length());
+                    assertTrue(matrix.ascent(i, j) >= 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    void routeMatrixResolvesPointsToClosestNodes() {
+        var rng = newRandom();
+        var g = TestGraphs.newGridGraph(10, 10, rng);
+        var cf = new CityBikeCF(g);
+        var points = new ArrayList<PointCh>();
+        var nodeIds = new int[5];
+        for (int i = 0; i < nodeIds.length; i += 1) {
+            nodeIds[i] = rng.nextInt(g.nodeCount());
+            points.add(g.nodePoint(nodeIds[i]));
+        }
+        var fromPoints = RouteMatrix.compute(g, cf, points, points, 10);
+        var fromNodes = RouteMatrix.compute(g, cf, nodeIds, nodeIds);
+        for (int i = 0; i < nodeIds.length; i += 1) {
+            for (int j = 0; j < nodeIds.length; j += 1)
+                assertEquals(fromNodes.cost(i, j), fromPoints.cost(i, j));
+        }
+    }
+
+    @Test
+    void routeMatrixFailsOnInvalidInputs() {
+        var g = TestGraphs.newGridGraph(5, 5, newRandom());
+        var cf = new CityBikeCF(g);
+        assertThrows(IllegalArgumentException.class, () ->
+                RouteMatrix.compute(g, cf, new int[]{0}, new int[]{g.nodeCount()}));
+        var far = new PointCh(2_700_000, 1_200_000);
+        assertThrows(IllegalArgumentException.class, () ->
+                RouteMatrix.compute(g, cf, List.of(far), List.of(g.nodePoint(0)), 100));
+        var matrix = RouteMatrix.compute(g, cf, new int[]{0}, new int[]{1});
+        assertThrows(IllegalArgumentException.class, () -> matrix.cost(1, 0));
+    }
+}
@@ -0,0 +1,84 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.projection.PointCh;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentIndexTest {
+    private static final double ORIGIN_E = 2_600_000;
+    private static final double ORIGIN_N = 1_200_000;
+
+    /**
+     * Returns the point of the given edges closest to a point, examining every edge in order.
+     */
+    private static RoutePoint linearPointClosestTo(List<Edge> edges, PointCh point) {
+        var closest = RoutePoint.NONE;
+        var position = 0d;
+        for (var edge : edges) {
+            var positionAlongEdge = Math.max(0, Math.min(edge.positionClosestTo(point), edge.length()));
+            var edgePoint = edge.pointAt(positionAlongEdge);
+            closest = closest.min(edgePoint, position + positionAlongEdge, point.distanceTo(edgePoint));
+            position += edge.length();
+        }
+        return closest;
+    }
+
+    /**
+     * Returns the edges of a random walk, in which some edges go back along the previous
+     * one and some have a length of zero.
+     */
+    private static List<Edge> randomWalk(RandomGenerator rng, int edgesCount) {
+        var edges = new ArrayList<Edge>(edgesCount);
+        var from = new PointCh(ORIGIN_E, ORIGIN_N);
+        for (int i = 0; i < edgesCount; i += 1) {
+            PointCh to;
+            var kind = rng.nextInt(10);
+            if (kind == 0 && i > 0) to = edges.get(i - 1).fromPoint();
+            else if (kind == 1) to = from;
+            else to = new PointCh(from.e() + rng.nextDouble(-200, 200), from.n() + rng.nextDouble(-200, 200));
+            edges.add(new Edge(i, i + 1, from, to, from.distanceTo(to), x -> Double.NaN));
+            from = to;
+        }
+        return edges;
+    }
+
+    @Test
+    void segmentIndexGivesSameResultsAsLinearSearch() {
+        var rng = newRandom();
+        for (int i = 0; i < 50; i += 1) {
+            var edges = randomWalk(rng, rng.nextInt(1, 2_000));
+            var route = new SingleRoute(edges);
+            for (int j = 0; j < RANDOM_ITERATIONS / 10; j += 1) {
+                var point = new PointCh(
+                        ORIGIN_E + rng.nextDouble(-5_000, 5_000),
+                        ORIGIN_N + rng.nextDouble(-5_000, 5_000));
+                assertEquals(linearPointClosestTo(edges, point), route.pointClosestTo(point));
+            }
+        }
+    }
+
+    @Test
+    void segmentIndexChoosesFirstEdgeOnTies() {
+        var a = new PointCh(ORIGIN_E, ORIGIN_N);
+        var b = new PointCh(ORIGIN_E + 100, ORIGIN_N);
+        var edges = new ArrayList<Edge>();
+        // Back and forth along the same road, 10 times
+        for (int i = 0; i < 20; i += 1)
+            edges.add((i & 1) == 0
+                    ? new Edge(i, i + 1, a, b, 100, x -> Double.NaN)
+                    : new Edge(i, i + 1, b, a, 100, x -> Double.NaN));
+        var route = new SingleRoute(edges);
+        var point = new PointCh(ORIGIN_E + 30, ORIGIN_N + 10);
+        var closest = route.pointClosestTo(point);
+        assertEquals(30, closest.position(), 1e-9);
+        assertEquals(10, closest.distanceToReference(), 1e-9);
+        assertEquals(linearPointClosestTo(edges, point), closest);
+    }
+}
@@ -0,0 +1,232 @@
+package ch.epfl.test;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphEdges;
+import ch.epfl.javelo.data.GraphNodes;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * Builds small synthetic graphs in the binary JaVelo format, so that routing
+ * code can be tested without the (large) real data files.
+ */
+public final class TestGraphs {
+    public static final double ORIGIN_E = 2_600_000;
+    public static final double ORIGIN_N = 1_200_000;
+    public static final double SPACING = 100;
+
+    private static final int SECTORS_PER_SIDE = 128;
+    private static final int EDGE_BYTES = 10;
+    private static final long OSM_ID_OFFSET = 1_000_000_000L;
+
+    private static final List<AttributeSet> ATTRIBUTE_SETS = List.of(
+            AttributeSet.of(),
+            AttributeSet.of(HIGHWAY_RESIDENTIAL),
+            AttributeSet.of(HIGHWAY_CYCLEWAY, ICN_YES),
+            AttributeSet.of(HIGHWAY_SECONDARY, SURFACE_ASPHALT),
+            AttributeSet.of(HIGHWAY_TRACK, SURFACE_GRAVEL, TRACKTYPE_GRADE3),
+            AttributeSet.of(HIGHWAY_PRIMARY, ONEWAY_YES),
+            AttributeSet.of(HIGHWAY_MOTORWAY),
+            AttributeSet.of(HIGHWAY_STEPS));
+
+    private TestGraphs() {
+    }
+
+    /**
+     * Returns the attribute sets used by the synthetic graphs.
+     *
+     * @return the attribute sets
+     */
+    public static List<AttributeSet> attributeSets() {
+        return ATTRIBUTE_SETS;
+    }
+
+    /**
+     * Builds a jittered grid graph of the given size, whose neighbouring nodes are
+     * linked by a pair of edges (one in each direction, the second one inverted).
+     * Some diagonals are added as one-way edges and a few edges are removed, so that
+     * routes are not trivial. Every other way has a (type 1) elevation profile.
+     *
+     * @param width  the number of columns of the grid
+     * @param height the number of rows of the grid
+     * @param rng    the random generator
+     * @return the graph
+     */
+    public static Graph newGridGraph(int width, int height, RandomGenerator rng) {
+        GridBuffers buffers = gridBuffers(width, height, rng);
+        return new Graph(new GraphNodes(buffers.nodes()),
+                new GraphEdges(buffers.edges(), buffers.profileIds(), buffers.elevations()),
+                ATTRIBUTE_SETS);
+    }
+
+    /**
+     * Writes the files of the same graph as {@link #newGridGraph} (for the same generator
+     * state) in the given directory, in the interleaved format of the real data files.
+     * The OSM identity of each node is its index plus a constant.
+     *
+     * @param directory the directory
+     * @param width     the number of columns of the grid
+     * @param height    the number of rows of the grid
+     * @param rng       the random generator
+     * @throws IOException if a file cannot be written
+     */
+    public static void writeGridGraph(Path directory, int width, int height, RandomGenerator rng)
+            throws IOException {
+        GridBuffers buffers = gridBuffers(width, height, rng);
+        int nodeCount = buffers.nodes().capacity() / 3;
+        ByteBuffer nodes = ByteBuffer.allocate(buffers.nodes().capacity() * Integer.BYTES);
+        nodes.asIntBuffer().put(buffers.nodes().rewind());
+        ByteBuffer profileIds = ByteBuffer.allocate(buffers.profileIds().capacity() * Integer.BYTES);
+        profileIds.asIntBuffer().put(buffers.profileIds().rewind());
+        ByteBuffer elevations = ByteBuffer.allocate(buffers.elevations().capacity() * Short.BYTES);
+        elevations.asShortBuffer().put(buffers.elevations().rewind());
+        ByteBuffer attributes = ByteBuffer.allocate(ATTRIBUTE_SETS.size() * Long.BYTES);
+        for (AttributeSet set : ATTRIBUTE_SETS) attributes.putLong(set.bits());
+        ByteBuffer osmIds = ByteBuffer.allocate(nodeCount * Long.BYTES);
+        for (int i = 0; i < nodeCount; i += 1) osmIds.putLong(OSM_ID_OFFSET + i);
+
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("nodes.bin"), nodes.array());
+        Files.write(directory.resolve("edges.bin"), buffers.edges().array());
+        Files.write(directory.resolve("profile_ids.bin"), profileIds.array());
+        Files.write(directory.resolve("elevations.bin"), elevations.array());
+        Files.write(directory.resolve("sectors.bin"), buffers.sectors().array());
+        Files.write(directory.resolve("attributes.bin"), attributes.array());
+        Files.write(directory.resolve("nodes_osmid.bin"), osmIds.array());
+    }
+
+    private record GridBuffers(IntBuffer nodes, ByteBuffer sectors, ByteBuffer edges,
+                               IntBuffer profileIds, ShortBuffer elevations) {
+    }
+
+    private static GridBuffers gridBuffers(int width, int height, RandomGenerator rng) {
+        int nodeCount = width * height;
+        int[] e = new int[nodeCount];
+        int[] n = new int[nodeCount];
+        for (int y = 0; y < height; y += 1) {
+            for (int x = 0; x < width; x += 1) {
+                int i = y * width + x;
+                e[i] = (int) Math.scalb(ORIGIN_E + x * SPACING + rng.nextDouble(-20, 20), 4);
+                n[i] = (int) Math.scalb(ORIGIN_N + y * SPACING + rng.nextDouble(-20, 20), 4);
+            }
+        }
+
+        // Sort nodes by sector, as the real data files do.
+        Integer[] order = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i += 1) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> sectorOf(e[i], n[i])));
+        int[] newId = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i += 1) newId[order[i]] = i;
+
+        // Ways between grid neighbours (and some one-way diagonals).
+        List<int[]> ways = new ArrayList<>();
+        for (int y = 0; y < height; y += 1) {
+            for (int x = 0; x < width; x += 1) {
+                int i = y * width + x;
+                if (x + 1 < width && rng.nextInt(10) != 0) ways.add(new int[]{i, i + 1, 0});
+                if (y + 1 < height && rng.nextInt(10) != 0) ways.add(new int[]{i, i + width, 0});
+                if (x + 1 < width && y + 1 < height && rng.nextInt(4) == 0)
+                    ways.add(new int[]{i, i + width + 1, 1});
+            }
+        }
+
+        List<List<int[]>> outEdges = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i += 1) outEdges.add(new ArrayList<>());
+        List<Short> elevations = new ArrayList<>();
+        for (int w = 0; w < ways.size(); w += 1) {
+            int[] way = ways.get(w);
+            int from = newId[way[0]];
+            int to = newId[way[1]];
+            double length = Math.hypot(
+                    Math.scalb((double) e[way[0]] - e[way[1]], -4),
+                    Math.scalb((double) n[way[0]] - n[way[1]], -4));
+            int lengthQ = (int) Math.scalb(length, 4);
+            int attributes = way[2] == 1 ? 5 : rng.nextInt(ATTRIBUTE_SETS.size());
+            int profileId = 0;
+            int gainForward = 0;
+            int gainBackward = 0;
+            if (w % 2 == 0) {
+                int samples = 1 + (lengthQ + 31) / 32;
+                int firstSample = elevations.size();
+                int elevation = (int) Math.scalb(500 + rng.nextDouble(100), 4);
+                int previous = elevation;
+                for (int s = 0; s < samples; s += 1) {
+                    elevations.add((short) elevation);
+                    int delta = elevation - previous;
+                    if (delta > 0) gainForward += delta;
+                    else gainBackward -= delta;
+                    previous = elevation;
+                    elevation += rng.nextInt(-24, 48);
+                }
+                profileId = (1 << 30) | firstSample;
+            }
+            int[] forward = {to, lengthQ, gainForward, attributes, profileId, 0};
+            outEdges.get(from).add(forward);
+            if (way[2] == 0) {
+                int[] backward = {from, lengthQ, gainBackward, attributes, profileId, 1};
+                outEdges.get(to).add(backward);
+            }
+        }
+
+        int edgeCount = 0;
+        for (List<int[]> out : outEdges) edgeCount += out.size();
+        IntBuffer nodesBuffer = IntBuffer.allocate(3 * nodeCount);
+        ByteBuffer edgesBuffer = ByteBuffer.allocate(EDGE_BYTES * edgeCount);
+        IntBuffer profileIds = IntBuffer.allocate(edgeCount);
+        int edgeId = 0;
+        for (int i = 0; i < nodeCount; i += 1) {
+            int oldId = order[i];
+            nodesBuffer.put(3 * i, e[oldId]);
+            nodesBuffer.put(3 * i + 1, n[oldId]);
+            nodesBuffer.put(3 * i + 2, (outEdges.get(i).size() << 28) | edgeId);
+            for (int[] edge : outEdges.get(i)) {
+                int offset = EDGE_BYTES * edgeId;
+                edgesBuffer.putInt(offset, edge[5] == 1 ? ~edge[0] : edge[0]);
+                edgesBuffer.putShort(offset + 4, (short) edge[1]);
+                edgesBuffer.putShort(offset + 6, (short) edge[2]);
+                edgesBuffer.putShort(offset + 8, (short) edge[3]);
+                profileIds.put(edgeId, edge[4]);
+                edgeId += 1;
+            }
+        }
+
+        ShortBuffer elevationsBuffer = ShortBuffer.allocate(Math.max(1, elevations.size()));
+        for (int i = 0; i < elevations.size(); i += 1) elevationsBuffer.put(i, elevations.get(i));
+
+        ByteBuffer sectorsBuffer = ByteBuffer.allocate(
+                SECTORS_PER_SIDE * SECTORS_PER_SIDE * (Integer.BYTES + Short.BYTES));
+        int nodeId = 0;
+        for (int sector = 0; sector < SECTORS_PER_SIDE * SECTORS_PER_SIDE; sector += 1) {
+            int first = nodeId;
+            while (nodeId < nodeCount && sectorOf(e[order[nodeId]], n[order[nodeId]]) == sector)
+                nodeId += 1;
+            sectorsBuffer.putInt(first);
+            sectorsBuffer.putShort((short) (nodeId - first));
+        }
+
+        return new GridBuffers(nodesBuffer, sectorsBuffer.rewind(), edgesBuffer,
+                profileIds, elevationsBuffer);
+    }
+
+    private static int sectorOf(int eQ28_4, int nQ28_4) {
+        double e = Math.scalb((double) eQ28_4, -4);
+        double n = Math.scalb((double) nQ28_4, -4);
+        int x = (int) ((e - SwissBounds.MIN_E) / SwissBounds.WIDTH * SECTORS_PER_SIDE);
+        int y = (int) ((n - SwissBounds.MIN_N) / SwissBounds.HEIGHT * SECTORS_PER_SIDE);
+        return y * SECTORS_PER_SIDE + x;
+    }
+}